@@ -79,6 +79,7 @@ import org.apache.wicket.request.cycle.IRequestCycleListener;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.cycle.RequestCycleContext;
 import org.apache.wicket.request.cycle.RequestCycleListenerCollection;
+import org.apache.wicket.request.cycle.RequestPhaseStatistics;
 import org.apache.wicket.request.mapper.ICompoundRequestMapper;
 import org.apache.wicket.request.resource.ResourceReferenceRegistry;
 import org.apache.wicket.response.filter.EmptySrcAttributeCheckFilter;
@@ -190,6 +191,9 @@ public abstract class Application implements UnboundListener, IEventSink
 	/** Request logger instance. */
 	private IRequestLogger requestLogger;
 
+	/** The latencies of the request phases. */
+	private final RequestPhaseStatistics requestPhaseStatistics = new RequestPhaseStatistics();
+
 	/** The session facade. */
 	private volatile ISessionStore sessionStore;
 
@@ -456,6 +460,17 @@ public abstract class Application implements UnboundListener, IEventSink
 		return requestLogger;
 	}
 
+	/**
+	 * Gets the latencies of the request phases. Requests are recorded only if
+	 * {@link IRequestCycleSettings#getRecordRequestPhases()} is enabled.
+	 * 
+	 * @return The request phase statistics
+	 */
+	public final RequestPhaseStatistics getRequestPhaseStatistics()
+	{
+		return requestPhaseStatistics;
+	}
+
 	/**
 	 * Gets the facade object for working getting/ storing session instances.
 	 * 
@@ -65,7 +65,8 @@ final class Behaviors implements IDetachable
 		component.data_add(behavior);
 		if (behavior.getStatelessHint(component) == false)
 		{
-			getBehaviorId(behavior);
+			// the behavior was just added, no need to look it up before generating its id
+			newBehaviorId(behavior);
 		}
 	}
 
@@ -267,6 +268,17 @@ final class Behaviors implements IDetachable
 					behavior + ", Component: " + this);
 		}
 
+		return newBehaviorId(behavior);
+	}
+
+	/**
+	 * Gets the id of a behavior added to the component, generating it if necessary
+	 * 
+	 * @param behavior
+	 * @return the id of the behavior
+	 */
+	private int newBehaviorId(Behavior behavior)
+	{
 		ArrayList<Behavior> ids = getBehaviorsIdList(true);
 
 		int id = ids.indexOf(behavior);
@@ -1542,38 +1542,21 @@ public abstract class Component
 	 * @return The metadata or null of no metadata was found for the given key
 	 * @see MetaDataKey
 	 */
+	@SuppressWarnings("unchecked")
 	public final <M extends Serializable> M getMetaData(final MetaDataKey<M> key)
 	{
-		return key.get(getMetaData());
-	}
-
-	/**
-	 * 
-	 * @return meta data entry
-	 */
-	private MetaDataEntry<?>[] getMetaData()
-	{
-		MetaDataEntry<?>[] metaData = null;
-
-		// index where we should expect the entry
-		int index = getFlag(FLAG_MODEL_SET) ? 1 : 0;
-
-		int length = data_length();
-
-		if (index < length)
+		Object metaData = data_get(data_start());
+		if (metaData instanceof MetaDataEntry<?>)
 		{
-			Object object = data_get(index);
-			if (object instanceof MetaDataEntry<?>[])
-			{
-				metaData = (MetaDataEntry<?>[])object;
-			}
-			else if (object instanceof MetaDataEntry)
-			{
-				metaData = new MetaDataEntry[] { (MetaDataEntry<?>)object };
-			}
+			// a single entry is looked up without wrapping it into an array
+			MetaDataEntry<?> entry = (MetaDataEntry<?>)metaData;
+			return key.equals(entry.key) ? (M)entry.object : null;
 		}
-
-		return metaData;
+		else if (metaData instanceof MetaDataEntry<?>[])
+		{
+			return key.get((MetaDataEntry<?>[])metaData);
+		}
+		return null;
 	}
 
 	/**
@@ -2659,7 +2642,7 @@ public abstract class Component
 				log.debug("renderHead: {}", toString(false));
 			}
 
-			IHeaderResponse response = container.getHeaderResponse();
+			IHeaderResponse response = container.getHeaderResponse(this);
 
 			// Allow component to contribute
 			if (response.wasRendered(this) == false)
@@ -2912,28 +2895,44 @@ public abstract class Component
 	 */
 	public final <M> void setMetaData(final MetaDataKey<M> key, final M object)
 	{
-		MetaDataEntry<?>[] old = getMetaData();
+		int index = data_start();
+		Object metaData = data_get(index);
 
-		Object metaData = null;
-		MetaDataEntry<?>[] metaDataArray = key.set(getMetaData(), object);
-		if (metaDataArray != null && metaDataArray.length > 0)
+		if (metaData instanceof MetaDataEntry<?>)
 		{
-			metaData = (metaDataArray.length > 1) ? metaDataArray : metaDataArray[0];
-		}
-
-		int index = getFlag(FLAG_MODEL_SET) ? 1 : 0;
-
-		if (old == null && metaData != null)
-		{
-			data_insert(index, metaData);
+			MetaDataEntry<?> entry = (MetaDataEntry<?>)metaData;
+			if (key.equals(entry.key))
+			{
+				if (object != null)
+				{
+					entry.object = object;
+				}
+				else
+				{
+					data_remove(index);
+				}
+			}
+			else if (object != null)
+			{
+				data_set(index, new MetaDataEntry<?>[] { entry, new MetaDataEntry<M>(key, object) });
+			}
 		}
-		else if (old != null && metaData != null)
+		else if (metaData instanceof MetaDataEntry<?>[])
 		{
-			data_set(index, metaData);
+			MetaDataEntry<?>[] metaDataArray = key.set((MetaDataEntry<?>[])metaData, object);
+			if (metaDataArray.length == 1)
+			{
+				// a single entry is stored without an array
+				data_set(index, metaDataArray[0]);
+			}
+			else if (metaDataArray != metaData)
+			{
+				data_set(index, metaDataArray);
+			}
 		}
-		else if (old != null && metaData == null)
+		else if (object != null)
 		{
-			data_remove(index);
+			data_insert(index, new MetaDataEntry<M>(key, object));
 		}
 	}
 
@@ -23,6 +23,7 @@ import org.apache.wicket.page.IPageManagerContext;
 import org.apache.wicket.page.PageStoreManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
@@ -38,6 +39,12 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 {
 	protected final Application application;
 
+	private IDataStore dataStore;
+
+	private DeltaDataStore deltaDataStore;
+
+	private AsynchronousDataStore asynchronousDataStore;
+
 	/**
 	 * Construct.
 	 * 
@@ -52,13 +59,31 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 	public IPageManager get(IPageManagerContext pageManagerContext)
 	{
 		IDataStore dataStore = newDataStore();
+		this.dataStore = dataStore;
 
 		IStoreSettings storeSettings = getStoreSettings();
 
+		int maxDeltaChainLength = storeSettings.getMaxDeltaChainLength();
+		if (maxDeltaChainLength > 0)
+		{
+			deltaDataStore = new DeltaDataStore(dataStore, maxDeltaChainLength);
+			dataStore = deltaDataStore;
+		}
+		else
+		{
+			deltaDataStore = null;
+		}
+
 		if (dataStore.canBeAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int threadCount = storeSettings.getAsynchronousThreadCount();
+			asynchronousDataStore = new AsynchronousDataStore(dataStore, capacity, threadCount);
+			dataStore = asynchronousDataStore;
+		}
+		else
+		{
+			asynchronousDataStore = null;
 		}
 
 		IPageStore pageStore = newPageStore(dataStore);
@@ -69,8 +94,10 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
 		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
+		Bytes inmemoryCacheMaxBytes = getStoreSettings().getInmemoryCacheMaxBytes();
 		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
-		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
+		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize,
+			inmemoryCacheMaxBytes);
 	}
 
 	protected IDataStore newDataStore()
@@ -79,7 +106,38 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		Bytes maxSizePerSession = storeSettings.getMaxSizePerSession();
 		File fileStoreFolder = storeSettings.getFileStoreFolder();
 
-		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession);
+		int fileChannelPoolCapacity = storeSettings.getFileChannelPoolCapacity();
+
+		return new DiskDataStore(application.getName(), fileStoreFolder, maxSizePerSession,
+			fileChannelPoolCapacity);
+	}
+
+	/**
+	 * @return the {@link IDataStore} created by the last call of {@link #newDataStore()}, before
+	 *         it is wrapped in {@link DeltaDataStore} or {@link AsynchronousDataStore}, or
+	 *         {@code null} if no page manager has been created yet
+	 */
+	public IDataStore getDataStore()
+	{
+		return dataStore;
+	}
+
+	/**
+	 * @return the {@link DeltaDataStore} which wraps the last created {@link IDataStore} or
+	 *         {@code null} if the pages are stored in full
+	 */
+	public DeltaDataStore getDeltaDataStore()
+	{
+		return deltaDataStore;
+	}
+
+	/**
+	 * @return the {@link AsynchronousDataStore} which wraps the last created {@link IDataStore} or
+	 *         {@code null} if the pages are stored synchronously
+	 */
+	public AsynchronousDataStore getAsynchronousDataStore()
+	{
+		return asynchronousDataStore;
 	}
 
 	IStoreSettings getStoreSettings()
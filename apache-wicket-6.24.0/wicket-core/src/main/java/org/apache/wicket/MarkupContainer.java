@@ -20,8 +20,10 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.core.util.string.ComponentStrings;
 import org.apache.wicket.markup.ComponentTag;
@@ -33,6 +35,7 @@ import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.markup.MarkupNotFoundException;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.MarkupType;
+import org.apache.wicket.markup.RawMarkup;
 import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.border.Border;
 import org.apache.wicket.markup.html.internal.InlineEnclosure;
@@ -1090,26 +1093,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 		else
 		{
-			Object[] children;
-			int size = 0;
-			if (this.children instanceof ChildList)
-			{
-				children = ((ChildList)this.children).childs;
-				size = ((ChildList)this.children).size;
-			}
-			else
-			{
-				children = (Object[])this.children;
-				size = children.length;
-			}
-			for (int i = 0; i < size; i++)
-			{
-				if (getId(children[i]).equals(id))
-				{
-					component = (Component)children[i];
-					break;
-				}
-			}
+			component = (Component)children_list().getChild(id);
 		}
 		return component;
 	}
@@ -1134,30 +1118,26 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		}
 		else
 		{
-			int size = 0;
-			Object[] children;
-			if (this.children instanceof Object[])
-			{
-				children = (Object[])this.children;
-				size = children.length;
-			}
-			else
-			{
-				children = ((ChildList)this.children).childs;
-				size = ((ChildList)this.children).size;
-			}
-
-			for (int i = 0; i < size; i++)
-			{
-				if (getId(children[i]).equals(child.getId()))
-				{
-					return i;
-				}
-			}
+			return children_list().indexOfChild(child.getId());
 		}
 		return -1;
 	}
 
+	/**
+	 * Gets the children as a {@link ChildList}, so they can be looked up by id. A compacted array
+	 * is wrapped without copying it.
+	 * 
+	 * @return The list of the children
+	 */
+	private ChildList children_list()
+	{
+		if (children instanceof Object[])
+		{
+			children = new ChildList(children);
+		}
+		return (ChildList)children;
+	}
+
 	/**
 	 * 
 	 * @param component
@@ -1438,6 +1418,12 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 				markupStream.throwMarkupException(msg.toString());
 			}
 		}
+		else if (element instanceof RawMarkup)
+		{
+			// Render as raw markup
+			((RawMarkup)element).writeTo(getResponse());
+			return true;
+		}
 		else
 		{
 			// Render as raw markup
@@ -1744,9 +1730,16 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	private static class ChildList extends AbstractList<Object> implements IClusterable
 	{
 		private static final long serialVersionUID = -7861580911447631127L;
+
+		/** The number of children above which the children are indexed by id */
+		private static final int INDEX_THRESHOLD = 16;
+
 		private int size;
 		private Object[] childs;
 
+		/** The children by id, built lazily once there are more than {@link #INDEX_THRESHOLD} */
+		private transient Map<String, Object> index;
+
 		/**
 		 * Construct.
 		 * 
@@ -1772,6 +1765,80 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			return childs[index];
 		}
 
+		/**
+		 * Gets the child with the given id.
+		 * 
+		 * @param id
+		 * @return The child, {@code null} if there is none
+		 */
+		public Object getChild(String id)
+		{
+			if (isIndexed())
+			{
+				return index.get(id);
+			}
+
+			int i = indexOfChild(id);
+			return (i != -1) ? childs[i] : null;
+		}
+
+		/**
+		 * Gets the position of the child with the given id.
+		 * 
+		 * @param id
+		 * @return The index of the child, -1 if there is none
+		 */
+		public int indexOfChild(String id)
+		{
+			if (isIndexed() && (index.containsKey(id) == false))
+			{
+				return -1;
+			}
+
+			for (int i = 0; i < size; i++)
+			{
+				if (((Component)childs[i]).getId().equals(id))
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Builds the index if there are enough children.
+		 * 
+		 * @return {@code true} if the children are indexed
+		 */
+		private boolean isIndexed()
+		{
+			if ((index == null) && (size > INDEX_THRESHOLD))
+			{
+				index = new HashMap<String, Object>(size * 2);
+				for (int i = 0; i < size; i++)
+				{
+					indexed(childs[i]);
+				}
+			}
+			return index != null;
+		}
+
+		private void indexed(Object child)
+		{
+			if (index != null)
+			{
+				index.put(((Component)child).getId(), child);
+			}
+		}
+
+		private void unindexed(Object child)
+		{
+			if (index != null)
+			{
+				index.remove(((Component)child).getId());
+			}
+		}
+
 		@Override
 		public int size()
 		{
@@ -1783,6 +1850,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		{
 			ensureCapacity(size + 1);
 			childs[size++] = o;
+			indexed(o);
 			return true;
 		}
 
@@ -1798,6 +1866,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 			System.arraycopy(childs, index, childs, index + 1, size - index);
 			childs[index] = element;
 			size++;
+			indexed(element);
 		}
 
 		@Override
@@ -1810,6 +1879,8 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 
 			Object oldValue = childs[index];
 			childs[index] = element;
+			unindexed(oldValue);
+			indexed(element);
 			return oldValue;
 		}
 
@@ -1829,6 +1900,7 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 				System.arraycopy(childs, index + 1, childs, index, numMoved);
 			}
 			childs[--size] = null; // Let gc do its work
+			unindexed(oldValue);
 
 			return oldValue;
 		}
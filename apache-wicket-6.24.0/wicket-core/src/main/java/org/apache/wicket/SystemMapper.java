@@ -16,13 +16,18 @@
  */
 package org.apache.wicket;
 
+import org.apache.wicket.core.request.handler.IPageClassRequestHandler;
 import org.apache.wicket.core.request.mapper.BookmarkableMapper;
 import org.apache.wicket.core.request.mapper.BufferedResponseMapper;
 import org.apache.wicket.core.request.mapper.HomePageMapper;
 import org.apache.wicket.core.request.mapper.PageInstanceMapper;
 import org.apache.wicket.core.request.mapper.ResourceReferenceMapper;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestHandlerDelegate;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.mapper.CompoundRequestMapper;
+import org.apache.wicket.request.mapper.IIndexedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.util.IProvider;
@@ -55,6 +60,32 @@ public class SystemMapper extends CompoundRequestMapper
 		add(new BufferedResponseMapper());
 	}
 
+	/**
+	 * The key of a handler is the resource reference of a resource handler or the page class of a
+	 * page handler, as used by the mounted mappers.
+	 * 
+	 * @see IIndexedRequestMapper#getHandlerKey()
+	 */
+	@Override
+	protected Object getHandlerKey(final IRequestHandler handler)
+	{
+		if (handler instanceof ResourceReferenceRequestHandler)
+		{
+			return ((ResourceReferenceRequestHandler)handler).getResourceReference();
+		}
+
+		IRequestHandler delegate = handler;
+		while (delegate instanceof IRequestHandlerDelegate)
+		{
+			delegate = ((IRequestHandlerDelegate)delegate).getDelegateHandler();
+		}
+		if (delegate instanceof IPageClassRequestHandler)
+		{
+			return ((IPageClassRequestHandler)delegate).getPageClass();
+		}
+		return null;
+	}
+
 	private IProvider<IResourceCachingStrategy> getResourceCachingStrategy()
 	{
 		return new IProvider<IResourceCachingStrategy>()
@@ -44,6 +44,8 @@ import org.apache.wicket.markup.repeater.AbstractRepeater;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Classes;
@@ -148,7 +150,15 @@ public abstract class AbstractAjaxResponse
 			fireOnBeforeRespondListeners();
 
 			// process added components
-			writeComponents(response, encoding);
+			long renderStart = RequestPhaseTimings.start();
+			try
+			{
+				writeComponents(response, encoding);
+			}
+			finally
+			{
+				RequestPhaseTimings.stop(RequestPhase.RENDER, renderStart);
+			}
 
 			fireOnAfterRespondListeners(response);
 
@@ -474,7 +484,15 @@ public abstract class AbstractAjaxResponse
 
 			IHeaderRenderStrategy strategy = AbstractHeaderRenderStrategy.get();
 
-			strategy.renderHeader(header, null, component);
+			long headerStart = RequestPhaseTimings.start();
+			try
+			{
+				strategy.renderHeader(header, null, component);
+			}
+			finally
+			{
+				RequestPhaseTimings.stop(RequestPhase.HEADER_RENDER, headerStart);
+			}
 		} finally {
 			// revert to old response
 			requestCycle.setResponse(oldResponse);
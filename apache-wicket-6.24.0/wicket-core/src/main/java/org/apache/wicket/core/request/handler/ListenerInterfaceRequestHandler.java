@@ -26,6 +26,8 @@ import org.apache.wicket.request.ILoggableRequestHandler;
 import org.apache.wicket.request.IRequestCycle;
 import org.apache.wicket.request.component.IRequestableComponent;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.util.lang.Args;
@@ -238,22 +240,30 @@ public class ListenerInterfaceRequestHandler
 
 	private void invokeListener()
 	{
-		if (getBehaviorIndex() == null)
-		{
-			listenerInterface.invoke(getComponent());
-		}
-		else
+		long start = RequestPhaseTimings.start();
+		try
 		{
-			try
+			if (getBehaviorIndex() == null)
 			{
-				Behavior behavior = getComponent().getBehaviorById(behaviorId);
-				listenerInterface.invoke(getComponent(), behavior);
+				listenerInterface.invoke(getComponent());
 			}
-			catch (IndexOutOfBoundsException e)
+			else
 			{
-				throw new WicketRuntimeException("Couldn't find component behavior.", e);
-			}
+				try
+				{
+					Behavior behavior = getComponent().getBehaviorById(behaviorId);
+					listenerInterface.invoke(getComponent(), behavior);
+				}
+				catch (IndexOutOfBoundsException e)
+				{
+					throw new WicketRuntimeException("Couldn't find component behavior.", e);
+				}
 
+			}
+		}
+		finally
+		{
+			RequestPhaseTimings.stop(RequestPhase.LISTENER_INVOCATION, start);
 		}
 	}
 
@@ -16,10 +16,13 @@
  */
 package org.apache.wicket.core.request.mapper;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.Session;
 import org.apache.wicket.core.request.handler.RequestSettingRequestHandler;
 import org.apache.wicket.protocol.http.PageExpiredException;
 import org.apache.wicket.request.IRequestHandler;
@@ -30,6 +33,7 @@ import org.apache.wicket.request.mapper.IRequestMapperDelegate;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.settings.ISecuritySettings;
 import org.apache.wicket.util.IProvider;
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
 import org.apache.wicket.util.crypt.ICrypt;
 import org.apache.wicket.util.crypt.ICryptFactory;
 import org.apache.wicket.util.lang.Args;
@@ -111,6 +115,16 @@ public class CryptoMapper implements IRequestMapperDelegate
 	 */
 	private boolean markEncryptedUrls = false;
 
+	/**
+	 * Already encrypted texts by session and plain text, {@code null} if disabled.
+	 */
+	private volatile Map<EncryptionCacheKey, String> encryptionCache;
+
+	/**
+	 * The maximum number of cached encryptions.
+	 */
+	private int encryptionCacheSize = 0;
+
 	/**
 	 * Encrypt with {@link ISecuritySettings#getCryptFactory()}.
 	 * <p>
@@ -173,6 +187,47 @@ public class CryptoMapper implements IRequestMapperDelegate
 		return this;
 	}
 
+	/**
+	 * Gets the maximum number of encrypted texts remembered for reuse.
+	 * 
+	 * @return the maximum number of cached encryptions, {@code 0} if caching is disabled
+	 * @see #setEncryptionCacheSize(int)
+	 */
+	public int getEncryptionCacheSize()
+	{
+		return encryptionCacheSize;
+	}
+
+	/**
+	 * Sets the maximum number of encrypted texts remembered for reuse. Pages often render the same
+	 * links again and again, with a cache these are encrypted only once per session. Encryptions are
+	 * cached per session id so a crypt with a key per session - e.g. from
+	 * {@link org.apache.wicket.core.util.crypt.KeyInSessionSunJceCryptFactory} - is supported.
+	 * <p>
+	 * The cache is shared by all sessions and disabled by default.
+	 * 
+	 * @param size
+	 *		the maximum number of cached encryptions, {@code 0} disables caching
+	 * 
+	 * @return {@code this}, for chaining.
+	 */
+	public CryptoMapper setEncryptionCacheSize(int size)
+	{
+		Args.withinRange(0, Integer.MAX_VALUE, size, "size");
+
+		encryptionCacheSize = size;
+		if (size == 0)
+		{
+			encryptionCache = null;
+		}
+		else
+		{
+			encryptionCache = Collections.synchronizedMap(new MostRecentlyUsedMap<EncryptionCacheKey, String>(
+				size));
+		}
+		return this;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -310,7 +365,7 @@ public class CryptoMapper implements IRequestMapperDelegate
 	 */
 	protected Url encryptEntireUrl(final Url url)
 	{
-		String encryptedUrlString = getCrypt().encryptUrlSafe(url.toString());
+		String encryptedUrlString = encryptUrlSafe(url.toString());
 
 		Url encryptedUrl = new Url(url.getCharset());
 
@@ -352,7 +407,7 @@ public class CryptoMapper implements IRequestMapperDelegate
 			if (MapperUtils.parsePageComponentInfoParameter(qp) != null)
 			{
 				it.remove();
-				String encryptedParameterValue = getCrypt().encryptUrlSafe(qp.getName());
+				String encryptedParameterValue = encryptUrlSafe(qp.getName());
 				Url.QueryParameter encryptedParameter
 					= new Url.QueryParameter(ENCRYPTED_PAGE_COMPONENT_INFO_PARAMETER, encryptedParameterValue);
 				encryptedUrl.getQueryParameters().add(0, encryptedParameter);
@@ -371,6 +426,47 @@ public class CryptoMapper implements IRequestMapperDelegate
 		}
 	}
 
+	/**
+	 * Encrypts a text with the current crypt, reusing an earlier encryption of the same text in
+	 * the current session if caching is enabled.
+	 * 
+	 * @param plainText
+	 *		The text to encrypt.
+	 * 
+	 * @return The encrypted text.
+	 * @see #setEncryptionCacheSize(int)
+	 */
+	private String encryptUrlSafe(final String plainText)
+	{
+		// get the crypt first, it might bind the session
+		ICrypt crypt = getCrypt();
+
+		Map<EncryptionCacheKey, String> cache = encryptionCache;
+		if (cache == null)
+		{
+			return crypt.encryptUrlSafe(plainText);
+		}
+
+		String sessionId = Session.exists() ? Session.get().getId() : "";
+		if (sessionId == null)
+		{
+			// a temporary session
+			return crypt.encryptUrlSafe(plainText);
+		}
+
+		EncryptionCacheKey key = new EncryptionCacheKey(sessionId, plainText);
+		String encryptedText = cache.get(key);
+		if (encryptedText == null)
+		{
+			encryptedText = crypt.encryptUrlSafe(plainText);
+			if (encryptedText != null)
+			{
+				cache.put(key, encryptedText);
+			}
+		}
+		return encryptedText;
+	}
+
 	/**
 	 * Decrypts a {@link Url}. This method should return {@code null} if the URL is not decryptable, or if the
 	 * URL should have been encrypted but was not. Returning {@code null} results in a 404 error.
@@ -643,6 +739,43 @@ public class CryptoMapper implements IRequestMapperDelegate
 		}
 	}
 
+	/**
+	 * Key of a cached encryption.
+	 */
+	private static final class EncryptionCacheKey
+	{
+		private final String sessionId;
+
+		private final String plainText;
+
+		private EncryptionCacheKey(final String sessionId, final String plainText)
+		{
+			this.sessionId = sessionId;
+			this.plainText = plainText;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if (obj instanceof EncryptionCacheKey == false)
+			{
+				return false;
+			}
+			EncryptionCacheKey other = (EncryptionCacheKey)obj;
+			return sessionId.equals(other.sessionId) && plainText.equals(other.plainText);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * sessionId.hashCode() + plainText.hashCode();
+		}
+	}
+
 	/**
 	 * A generator of hashed segments.
 	 */
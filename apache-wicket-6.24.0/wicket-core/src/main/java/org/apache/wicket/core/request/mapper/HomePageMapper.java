@@ -19,6 +19,7 @@ package org.apache.wicket.core.request.mapper;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.mapper.IIndexedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.util.ClassProvider;
 import org.apache.wicket.util.IProvider;
@@ -27,7 +28,7 @@ import org.apache.wicket.util.reference.ClassReference;
 /**
  * A mapper that is used when a request to the home page ("/") is made
  */
-public class HomePageMapper extends MountedMapper
+public class HomePageMapper extends MountedMapper implements IIndexedRequestMapper
 {
 
 	/**
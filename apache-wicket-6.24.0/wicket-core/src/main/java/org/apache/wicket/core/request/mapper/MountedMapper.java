@@ -25,6 +25,7 @@ import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.mapper.IIndexedRequestMapper;
 import org.apache.wicket.request.mapper.info.ComponentInfo;
 import org.apache.wicket.request.mapper.info.PageComponentInfo;
 import org.apache.wicket.request.mapper.info.PageInfo;
@@ -65,7 +66,7 @@ import org.apache.wicket.util.string.Strings;
  * 
  * @author Matej Knopp
  */
-public class MountedMapper extends AbstractBookmarkableMapper
+public class MountedMapper extends AbstractBookmarkableMapper implements IIndexedRequestMapper
 {
 	private final IPageParametersEncoder pageParametersEncoder;
 
@@ -553,6 +554,29 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		return pageClassProvider.get();
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getFixedSegments()
+	 */
+	@Override
+	public String[] getFixedSegments()
+	{
+		return getFixedSegments(mountSegments);
+	}
+
+	/**
+	 * The key of the handlers is the mounted page class, if this mapper was constructed with a
+	 * class instead of a provider. Subclasses which declare {@link IIndexedRequestMapper} again and
+	 * override {@link #checkPageClass(Class)} to map other page classes should return
+	 * <code>null</code>.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getHandlerKey()
+	 */
+	@Override
+	public Object getHandlerKey()
+	{
+		return (pageClassProvider instanceof ClassReference) ? getPageClass() : null;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -28,6 +28,7 @@ import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.http.flow.AbortWithHttpErrorCodeException;
 import org.apache.wicket.request.mapper.AbstractMapper;
+import org.apache.wicket.request.mapper.IIndexedRequestMapper;
 import org.apache.wicket.request.mapper.parameter.IPageParametersEncoder;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.mapper.parameter.PageParametersEncoder;
@@ -69,7 +70,7 @@ import org.apache.wicket.util.string.Strings;
  *
  * @author Peter Ertl
  */
-public class ResourceMapper extends AbstractMapper implements IRequestMapper
+public class ResourceMapper extends AbstractMapper implements IRequestMapper, IIndexedRequestMapper
 {
 	// encode page parameters into url + decode page parameters from url
 	private final IPageParametersEncoder parametersEncoder;
@@ -160,6 +161,36 @@ public class ResourceMapper extends AbstractMapper implements IRequestMapper
 		return 0; // pages always have priority over resources
 	}
 
+	/**
+	 * The last segment of the mount path is not fixed since the url of the request can be
+	 * decorated by the caching strategy.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getFixedSegments()
+	 */
+	@Override
+	public String[] getFixedSegments()
+	{
+		String[] fixedSegments = getFixedSegments(mountSegments);
+		if (fixedSegments.length == mountSegments.length && fixedSegments.length > 0)
+		{
+			String[] res = new String[fixedSegments.length - 1];
+			System.arraycopy(fixedSegments, 0, res, 0, res.length);
+			return res;
+		}
+		return fixedSegments;
+	}
+
+	/**
+	 * The key of the handlers is the mounted resource reference.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getHandlerKey()
+	 */
+	@Override
+	public Object getHandlerKey()
+	{
+		return resourceReference;
+	}
+
 	@Override
 	public Url mapHandler(IRequestHandler requestHandler)
 	{
@@ -322,7 +322,22 @@ public class CheckingObjectOutputStream extends ObjectOutputStream
 	 */
 	public CheckingObjectOutputStream(final OutputStream outputStream, final IObjectChecker... checkers) throws IOException, SecurityException
 	{
-		this.out = new ObjectOutputStream(outputStream);
+		this(new ObjectOutputStream(outputStream), checkers);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *      the object output stream where the object will be written upon successful check
+	 * @param checkers
+	 *      the {@link IObjectChecker checkers} that will actually check the objects
+	 * @throws IOException
+	 * @throws SecurityException
+	 */
+	public CheckingObjectOutputStream(final ObjectOutputStream out, final IObjectChecker... checkers) throws IOException, SecurityException
+	{
+		this.out = out;
 		this.checkers = checkers;
 	}
 
@@ -704,6 +719,13 @@ public class CheckingObjectOutputStream extends ObjectOutputStream
 		writeObjectMethodMissing.clear();
 	}
 
+	@Override
+	public void flush() throws IOException
+	{
+		// do not call super.flush() because SerializableChecker uses ObjectOutputStream's no-arg constructor
+		out.flush();
+	}
+
 	@Override
 	public void close() throws IOException
 	{
@@ -17,6 +17,7 @@
 package org.apache.wicket.markup;
 
 import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,7 +31,9 @@ import org.apache.wicket.markup.parser.XmlTag;
 import org.apache.wicket.markup.parser.XmlTag.TagType;
 import org.apache.wicket.markup.parser.filter.HtmlHandler;
 import org.apache.wicket.request.Response;
+import org.apache.wicket.response.StringResponse;
 import org.apache.wicket.util.lang.Generics;
+import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 import org.apache.wicket.util.string.StringValue;
 import org.apache.wicket.util.string.Strings;
@@ -98,6 +101,12 @@ public class ComponentTag extends MarkupElement
 	/** Filters and Handlers may add their own attributes to the tag */
 	private Map<String, Object> userData;
 
+	/** If mutable, the immutable tag that this tag is a copy of */
+	private ComponentTag source;
+
+	/** The output of this immutable tag encoded with the charset of the last response */
+	private volatile PreEncodedMarkup encodedOutput;
+
 	/**
 	 * Automatically create a XmlTag, assign the name and the type, and construct a ComponentTag
 	 * based on this XmlTag.
@@ -424,6 +433,7 @@ public class ComponentTag extends MarkupElement
 	{
 		dest.id = id;
 		dest.flags = flags;
+		dest.source = (xmlTag.isMutable() ? source : this);
 		if (markupClassRef != null)
 		{
 			dest.setMarkupClass(markupClassRef.get());
@@ -678,7 +688,8 @@ public class ComponentTag extends MarkupElement
 	}
 
 	/**
-	 * Write the tag to the response
+	 * Write the tag to the response. Responses encoding their text get the pre-encoded bytes of
+	 * the markup tag, unless the tag has been modified.
 	 * 
 	 * @param response
 	 *            The response to write to
@@ -689,6 +700,92 @@ public class ComponentTag extends MarkupElement
 	 */
 	public final void writeOutput(final Response response, final boolean stripWicketAttributes,
 		final String namespace)
+	{
+		final Charset charset = PreEncodedMarkup.getCharset(response);
+		if (charset != null)
+		{
+			final ComponentTag unmodified = getUnmodifiedSource();
+			if (unmodified != null)
+			{
+				unmodified.getEncodedOutput(charset, stripWicketAttributes, namespace).writeTo(
+					response);
+				return;
+			}
+		}
+
+		writeText(response, stripWicketAttributes, namespace);
+	}
+
+	/**
+	 * @return the immutable tag with the same output as this tag, {@code null} if this tag has
+	 *         been modified
+	 */
+	private ComponentTag getUnmodifiedSource()
+	{
+		if (xmlTag.isMutable() == false)
+		{
+			return this;
+		}
+
+		if ((source == null) || (getType() != source.getType()) ||
+			(Objects.equal(getNamespace(), source.getNamespace()) == false) ||
+			(Objects.equal(getName(), source.getName()) == false))
+		{
+			return null;
+		}
+
+		// the attributes must be written in the same order too
+		final IValueMap attributes = getAttributes();
+		final IValueMap sourceAttributes = source.getAttributes();
+		if (attributes.size() != sourceAttributes.size())
+		{
+			return null;
+		}
+		final Iterator<Map.Entry<String, Object>> sourceEntries = sourceAttributes.entrySet()
+			.iterator();
+		for (Map.Entry<String, Object> entry : attributes.entrySet())
+		{
+			final Map.Entry<String, Object> sourceEntry = sourceEntries.next();
+			if ((Objects.equal(entry.getKey(), sourceEntry.getKey()) == false) ||
+				(Objects.equal(entry.getValue(), sourceEntry.getValue()) == false))
+			{
+				return null;
+			}
+		}
+		return source;
+	}
+
+	/**
+	 * @param charset
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 * @return the output of this immutable tag, encoded with the charset
+	 */
+	private PreEncodedMarkup getEncodedOutput(final Charset charset,
+		final boolean stripWicketAttributes, final String namespace)
+	{
+		PreEncodedMarkup encoded = encodedOutput;
+		if ((encoded == null) ||
+			(encoded.matches(charset, stripWicketAttributes, namespace) == false))
+		{
+			final StringResponse text = new StringResponse();
+			writeText(text, stripWicketAttributes, namespace);
+			encoded = new PreEncodedMarkup(text.getBuffer(), charset, stripWicketAttributes,
+				namespace);
+			encodedOutput = encoded;
+		}
+		return encoded;
+	}
+
+	/**
+	 * Writes the tag text to the response.
+	 * 
+	 * @param response
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 */
+	private void writeText(final Response response, final boolean stripWicketAttributes,
+		final String namespace)
 	{
 		response.write("<");
 
@@ -922,6 +1019,14 @@ public class ComponentTag extends MarkupElement
 		userData.put(key, value);
 	}
 
+	/**
+	 * @return the user data or {@code null} if there is none
+	 */
+	Map<String, Object> getUserData()
+	{
+		return userData;
+	}
+
 	/**
 	 * For subclasses to override. Gets called just before a Component gets rendered. It is
 	 * guaranteed that the markupStream is set on the Component and determineVisibility is not yet
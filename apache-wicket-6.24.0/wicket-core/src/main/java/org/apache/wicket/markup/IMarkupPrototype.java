@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.MarkupContainer;
+
+/**
+ * To be implemented by {@link MarkupContainer}s which stand in for instances of other classes
+ * when their markup is loaded, e.g. to fill the {@link MarkupCache} without creating components
+ * of these classes. The cache key is still created by the {@link IMarkupCacheKeyProvider} of the
+ * stand-in.
+ * 
+ * @see MarkupFactory#isPrototypeOf(MarkupContainer, Class)
+ * @see MarkupWarmup
+ */
+public interface IMarkupPrototype
+{
+	/**
+	 * @param containerClass
+	 *            the class whose markup is requested
+	 * @return true, if this container may load the markup of the class
+	 */
+	boolean isPrototypeOf(Class<?> containerClass);
+}
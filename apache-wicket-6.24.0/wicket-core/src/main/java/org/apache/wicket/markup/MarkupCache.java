@@ -16,16 +16,41 @@
  */
 package org.apache.wicket.markup;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.settings.IMarkupSettings;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.listener.IChangeListener;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
 import org.apache.wicket.util.watch.IModifiable;
 import org.apache.wicket.util.watch.IModificationWatcher;
 import org.apache.wicket.util.watch.ModificationWatcher;
@@ -53,6 +78,12 @@ public class MarkupCache implements IMarkupCache
 	/** Log for reporting. */
 	private static final Logger log = LoggerFactory.getLogger(MarkupCache.class);
 
+	/** The first bytes of a markup snapshot file */
+	private static final int SNAPSHOT_MAGIC = 0x57434d53;
+
+	/** The version of the markup snapshot file format */
+	private static final int SNAPSHOT_FORMAT = 2;
+
 	/** The actual cache: location => Markup */
 	private final ICache<String, Markup> markupCache;
 
@@ -67,6 +98,18 @@ public class MarkupCache implements IMarkupCache
 	/** The markup cache key provider used by MarkupCache */
 	private IMarkupCacheKeyProvider markupCacheKeyProvider;
 
+	/** The number of lookups which found the markup in the cache */
+	private final AtomicLong hitCount = new AtomicLong();
+
+	/** The number of lookups which didn't find the markup in the cache */
+	private final AtomicLong missCount = new AtomicLong();
+
+	/** The number of markup loaded */
+	private final AtomicLong loadCount = new AtomicLong();
+
+	/** The time spent loading markup in nanoseconds */
+	private final AtomicLong loadTime = new AtomicLong();
+
 	/**
 	 * Note that you can not use Application.get() since removeMarkup() will be called from a
 	 * ModificationWatcher thread which has no associated Application.
@@ -100,6 +143,19 @@ public class MarkupCache implements IMarkupCache
 		}
 
 		markupKeyCache = newCacheImplementation();
+
+		File snapshotFile = application.getMarkupSettings().getMarkupSnapshotFile();
+		if ((snapshotFile != null) && snapshotFile.exists())
+		{
+			try
+			{
+				readSnapshot(snapshotFile);
+			}
+			catch (IOException e)
+			{
+				log.warn("Couldn't read the markup snapshot " + snapshotFile, e);
+			}
+		}
 	}
 
 	@Override
@@ -112,6 +168,19 @@ public class MarkupCache implements IMarkupCache
 	@Override
 	public void shutdown()
 	{
+		File snapshotFile = application.getMarkupSettings().getMarkupSnapshotFile();
+		if (snapshotFile != null)
+		{
+			try
+			{
+				writeSnapshot(snapshotFile);
+			}
+			catch (IOException e)
+			{
+				log.warn("Couldn't write the markup snapshot " + snapshotFile, e);
+			}
+		}
+
 		markupCache.shutdown();
 		markupKeyCache.shutdown();
 	}
@@ -282,6 +351,14 @@ public class MarkupCache implements IMarkupCache
 		if ((enforceReload == false) && (cacheKey != null))
 		{
 			markup = getMarkupFromCache(cacheKey, container);
+			if (markup == null)
+			{
+				missCount.incrementAndGet();
+			}
+			else
+			{
+				hitCount.incrementAndGet();
+			}
 		}
 
 		// If markup not found in cache or cache disabled, than ...
@@ -445,8 +522,11 @@ public class MarkupCache implements IMarkupCache
 			locationString = cacheKey;
 		}
 
+		long start = System.nanoTime();
 		Markup markup = MarkupFactory.get().loadMarkup(container, markupResourceStream,
 			enforceReload);
+		loadTime.addAndGet(System.nanoTime() - start);
+		loadCount.incrementAndGet();
 		if (markup != null)
 		{
 			if (cacheKey != null)
@@ -514,34 +594,292 @@ public class MarkupCache implements IMarkupCache
 			}
 
 			// Watch file in the future
-			final IModificationWatcher watcher = application.getResourceSettings()
-				.getResourceWatcher(true);
-			if (watcher != null)
+			watchForChanges(cacheKey, markupResourceStream);
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Loading markup from " + markupResourceStream);
+		}
+		return loadMarkup(container, markupResourceStream, enforceReload);
+	}
+
+	/**
+	 * Adds an {@link IChangeListener} to the {@link ModificationWatcher} which removes the markup
+	 * from the cache when the resource changes.
+	 * 
+	 * @param cacheKey
+	 * @param markupResourceStream
+	 */
+	private void watchForChanges(final String cacheKey,
+		final MarkupResourceStream markupResourceStream)
+	{
+		final IModificationWatcher watcher = application.getResourceSettings().getResourceWatcher(
+			true);
+		if (watcher != null)
+		{
+			watcher.add(markupResourceStream, new IChangeListener()
 			{
-				watcher.add(markupResourceStream, new IChangeListener()
+				@Override
+				public void onChange()
 				{
-					@Override
-					public void onChange()
+					if (log.isDebugEnabled())
 					{
-						if (log.isDebugEnabled())
-						{
-							log.debug("Remove markup from watcher: " + markupResourceStream);
-						}
-
-						// Remove the markup from the cache. It will be reloaded
-						// next time when the markup is requested.
-						watcher.remove(markupResourceStream);
-						removeMarkup(cacheKey);
+						log.debug("Remove markup from watcher: " + markupResourceStream);
 					}
-				});
+
+					// Remove the markup from the cache. It will be reloaded
+					// next time when the markup is requested.
+					watcher.remove(markupResourceStream);
+					removeMarkup(cacheKey);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Writes the parsed markup of the cache to a snapshot file, which can be loaded with
+	 * {@link #readSnapshot(File)} by another instance of the application.
+	 * <p>
+	 * Merged markup (markup inheritance) is not written, it is merged again from the cached base
+	 * and derived markup. Neither is markup whose resource has no modification time or whose
+	 * elements cannot be written, see {@link MarkupSnapshotCodec}.
+	 * 
+	 * @param file
+	 *            the snapshot file
+	 * @return the number of markup written
+	 * @throws IOException
+	 */
+	public final int writeSnapshot(final File file) throws IOException
+	{
+		Args.notNull(file, "file");
+
+		int count = 0;
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(temp)));
+		try
+		{
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_FORMAT);
+			out.writeUTF(getSnapshotVersion());
+
+			for (String cacheKey : markupKeyCache.getKeys())
+			{
+				String locationString = markupKeyCache.get(cacheKey);
+				Markup markup = (locationString != null ? markupCache.get(locationString) : null);
+				byte[] data = serializeMarkup(markup);
+				if (data != null)
+				{
+					out.writeBoolean(true);
+					out.writeUTF(cacheKey);
+					out.writeUTF(locationString);
+					out.writeInt(data.length);
+					out.write(data);
+					count++;
+				}
 			}
+			out.writeBoolean(false);
+		}
+		finally
+		{
+			IOUtils.close(out);
 		}
 
-		if (log.isDebugEnabled())
+		if (temp.renameTo(file) == false)
 		{
-			log.debug("Loading markup from " + markupResourceStream);
+			// some platforms do not replace an existing file
+			Files.remove(file);
+			if (temp.renameTo(file) == false)
+			{
+				throw new IOException("Cannot rename " + temp + " to " + file);
+			}
+		}
+
+		log.info("Wrote {} markup to snapshot {}", count, file);
+		return count;
+	}
+
+	/**
+	 * Loads the markup of a snapshot file written by {@link #writeSnapshot(File)} into the cache.
+	 * The whole snapshot is ignored if it has been written with another
+	 * {@link #getSnapshotVersion() version}, single markup is ignored if its resource has been
+	 * modified since or if it is cached already.
+	 * 
+	 * @param file
+	 *            the snapshot file
+	 * @return the number of markup loaded into the cache
+	 * @throws IOException
+	 */
+	public final int readSnapshot(final File file) throws IOException
+	{
+		Args.notNull(file, "file");
+
+		int count = 0;
+		int stale = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(
+			file)));
+		try
+		{
+			if ((in.readInt() != SNAPSHOT_MAGIC) || (in.readInt() != SNAPSHOT_FORMAT))
+			{
+				throw new IOException("Not a markup snapshot: " + file);
+			}
+			if (getSnapshotVersion().equals(in.readUTF()) == false)
+			{
+				log.info("Ignoring markup snapshot {} written by another version", file);
+				return 0;
+			}
+
+			while (in.readBoolean())
+			{
+				String cacheKey = in.readUTF();
+				String locationString = in.readUTF();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+
+				if (markupCache.containsKey(locationString))
+				{
+					continue;
+				}
+				Markup markup = deserializeMarkup(data);
+				if (markup == null)
+				{
+					stale++;
+					continue;
+				}
+
+				MarkupResourceStream resourceStream = markup.getMarkupResourceStream();
+				markupKeyCache.put(cacheKey, locationString);
+				markupCache.put(locationString, markup);
+				watchForChanges(cacheKey, resourceStream);
+				count++;
+			}
+		}
+		finally
+		{
+			IOUtils.close(in);
+		}
+
+		log.info("Loaded {} markup from snapshot {}, {} were stale", new Object[] { count, file,
+				stale });
+		return count;
+	}
+
+	/**
+	 * Gets the version a markup snapshot has to be written with to be loaded. By default it
+	 * consists of the Wicket version, the configuration type and the markup settings which
+	 * influence the parsing of the markup. Applications may add their own version to invalidate
+	 * old snapshots on deployment.
+	 * 
+	 * @return the version of the snapshot
+	 */
+	protected String getSnapshotVersion()
+	{
+		IMarkupSettings settings = application.getMarkupSettings();
+		return application.getFrameworkSettings().getVersion() + ";" +
+			application.getConfigurationType() + ";" + settings.getAutomaticLinking() + ";" +
+			settings.getCompressWhitespace() + ";" + settings.getStripComments() + ";" +
+			settings.getStripWicketTags() + ";" + settings.getDefaultMarkupEncoding();
+	}
+
+	/**
+	 * @param markup
+	 * @return the serialized markup, {@code null} if it cannot be written to a snapshot
+	 */
+	private byte[] serializeMarkup(final Markup markup)
+	{
+		if ((markup == null) || (markup.getClass() != Markup.class))
+		{
+			// no markup or merged markup
+			return null;
+		}
+
+		MarkupResourceStream resourceStream = markup.getMarkupResourceStream();
+		Time lastModified = resourceStream.lastModifiedTime();
+		if (lastModified == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(data);
+			out.writeLong(lastModified.getMilliseconds());
+			out.writeObject(resourceStream);
+			MarkupSnapshotCodec.writeElements(out, markup);
+			out.close();
+			return data.toByteArray();
+		}
+		catch (IOException e)
+		{
+			log.debug("Markup {} cannot be written to the snapshot: {}", resourceStream,
+				e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param data
+	 * @return the markup, {@code null} if it cannot be read or its resource has been modified
+	 */
+	private Markup deserializeMarkup(final byte[] data)
+	{
+		try
+		{
+			ObjectInputStream in = new SnapshotObjectInputStream(new ByteArrayInputStream(data));
+			long lastModified = in.readLong();
+			MarkupResourceStream resourceStream = (MarkupResourceStream)in.readObject();
+			Time modified = resourceStream.lastModifiedTime();
+			if ((modified == null) || (modified.getMilliseconds() != lastModified))
+			{
+				return null;
+			}
+
+			Markup markup = new Markup(resourceStream);
+			MarkupSnapshotCodec.readElements(in, markup);
+			markup.makeImmutable();
+			return markup;
+		}
+		catch (IOException e)
+		{
+			log.debug("Markup cannot be read from the snapshot: {}", e.getMessage());
+			return null;
+		}
+		catch (ClassNotFoundException e)
+		{
+			log.debug("Markup cannot be read from the snapshot: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves the classes of the snapshot with the class resolver of the application.
+	 */
+	private class SnapshotObjectInputStream extends ObjectInputStream
+	{
+		private SnapshotObjectInputStream(final InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			try
+			{
+				return application.getApplicationSettings()
+					.getClassResolver()
+					.resolveClass(desc.getName());
+			}
+			catch (ClassNotFoundException e)
+			{
+				// primitive types
+				return super.resolveClass(desc);
+			}
 		}
-		return loadMarkup(container, markupResourceStream, enforceReload);
 	}
 
 	/**
@@ -565,16 +903,68 @@ public class MarkupCache implements IMarkupCache
 		return markupCacheKeyProvider;
 	}
 
+	/**
+	 * @return the number of lookups which found the markup in the cache
+	 */
+	public final long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	/**
+	 * @return the number of lookups which didn't find the markup in the cache
+	 */
+	public final long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	/**
+	 * @return the number of markup loaded
+	 */
+	public final long getLoadCount()
+	{
+		return loadCount.get();
+	}
+
+	/**
+	 * @return the total time spent loading markup
+	 */
+	public final Duration getLoadTime()
+	{
+		return Duration.milliseconds(loadTime.get() / 1000000);
+	}
+
+	/**
+	 * @return the number of markup evicted from a {@link BoundedCacheImplementation}, 0 if the
+	 *         cache is unbounded
+	 */
+	public final long getEvictionCount()
+	{
+		if (markupCache instanceof BoundedCacheImplementation)
+		{
+			return ((BoundedCacheImplementation<?, ?>)markupCache).getEvictionCount();
+		}
+		return 0;
+	}
+
 	/**
 	 * Allows you to change the map implementation which will hold the cache data. By default it is
-	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way.
+	 * a ConcurrentHashMap() in order to allow multiple thread to access the data in a secure way,
+	 * or a {@link BoundedCacheImplementation} if a maximum size is set.
 	 * 
 	 * @param <K>
 	 * @param <V>
 	 * @return new instance of cache implementation
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(Bytes)
 	 */
 	protected <K, V> ICache<K, V> newCacheImplementation()
 	{
+		Bytes maxSize = application.getMarkupSettings().getMarkupCacheMaxSize();
+		if (maxSize != null)
+		{
+			return new BoundedCacheImplementation<K, V>(maxSize);
+		}
 		return new DefaultCacheImplementation<K, V>();
 	}
 
@@ -738,4 +1128,250 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * A cache which evicts the least recently used entries when the estimated size of its entries
+	 * exceeds the maximum size. Lookups don't lock the cache, the entries are sorted by their last
+	 * access only when the cache has to be shrunk, which removes a quarter of the maximum size at
+	 * once.
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(Bytes)
+	 */
+	public static class BoundedCacheImplementation<K, V> implements ICache<K, V>
+	{
+		/** The estimated size of a cache entry besides its key and value */
+		private static final int ENTRY_OVERHEAD = 64;
+
+		private final ConcurrentHashMap<K, Entry<V>> cache = new ConcurrentHashMap<K, Entry<V>>();
+
+		private final long maxSize;
+
+		private final AtomicLong size = new AtomicLong();
+
+		private final AtomicLong evictionCount = new AtomicLong();
+
+		/**
+		 * Construct.
+		 * 
+		 * @param maxSize
+		 *            the maximum estimated size of all entries
+		 */
+		public BoundedCacheImplementation(final Bytes maxSize)
+		{
+			this.maxSize = Args.notNull(maxSize, "maxSize").bytes();
+		}
+
+		@Override
+		public void clear()
+		{
+			for (K key : cache.keySet())
+			{
+				remove(key);
+			}
+		}
+
+		@Override
+		public boolean containsKey(final Object key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			return cache.containsKey(key);
+		}
+
+		@Override
+		public V get(final Object key)
+		{
+			if (key == null)
+			{
+				return null;
+			}
+			Entry<V> entry = cache.get(key);
+			if (entry == null)
+			{
+				return null;
+			}
+			entry.lastAccess = System.nanoTime();
+			return entry.value;
+		}
+
+		@Override
+		public Collection<K> getKeys()
+		{
+			return cache.keySet();
+		}
+
+		@Override
+		public Collection<V> getValues()
+		{
+			List<V> values = new ArrayList<V>(cache.size());
+			for (Entry<V> entry : cache.values())
+			{
+				values.add(entry.value);
+			}
+			return values;
+		}
+
+		@Override
+		public void put(final K key, final V value)
+		{
+			Entry<V> entry = new Entry<V>(value, sizeOf(key, value));
+			Entry<V> replaced = cache.put(key, entry);
+			size.addAndGet(entry.size - ((replaced != null) ? replaced.size : 0));
+
+			if (size.get() > maxSize)
+			{
+				evict();
+			}
+		}
+
+		@Override
+		public boolean remove(final K key)
+		{
+			if (key == null)
+			{
+				return false;
+			}
+			Entry<V> removed = cache.remove(key);
+			if (removed != null)
+			{
+				size.addAndGet(-removed.size);
+			}
+			return removed != null;
+		}
+
+		@Override
+		public int size()
+		{
+			return cache.size();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			clear();
+		}
+
+		/**
+		 * @return the estimated size of all entries in bytes
+		 */
+		public long getEstimatedSize()
+		{
+			return size.get();
+		}
+
+		/**
+		 * @return the maximum estimated size of all entries in bytes
+		 */
+		public long getMaxSize()
+		{
+			return maxSize;
+		}
+
+		/**
+		 * @return the number of entries evicted because the cache was too big
+		 */
+		public long getEvictionCount()
+		{
+			return evictionCount.get();
+		}
+
+		/**
+		 * Estimates the memory used by an entry. Text is estimated with two bytes per character,
+		 * markup by the text of its elements.
+		 * 
+		 * @param key
+		 * @param value
+		 * @return the estimated size in bytes
+		 */
+		protected long sizeOf(final K key, final V value)
+		{
+			return ENTRY_OVERHEAD + sizeOf(key) + sizeOf(value);
+		}
+
+		private static long sizeOf(final Object object)
+		{
+			if (object instanceof CharSequence)
+			{
+				return 2L * ((CharSequence)object).length();
+			}
+			else if (object instanceof IMarkupFragment)
+			{
+				IMarkupFragment markup = (IMarkupFragment)object;
+				long size = 0;
+				for (int i = 0; i < markup.size(); i++)
+				{
+					size += ENTRY_OVERHEAD + 2L * markup.get(i).toCharSequence().length();
+				}
+				return size;
+			}
+			return 0;
+		}
+
+		/**
+		 * Removes the least recently used entries until the cache is shrunk to three quarters of
+		 * its maximum size.
+		 */
+		private synchronized void evict()
+		{
+			if (size.get() <= maxSize)
+			{
+				return;
+			}
+
+			// take a snapshot of the access times, they change while sorting
+			List<Map.Entry<K, Entry<V>>> entries = new ArrayList<Map.Entry<K, Entry<V>>>(
+				cache.entrySet());
+			final long[] lastAccess = new long[entries.size()];
+			Integer[] order = new Integer[entries.size()];
+			for (int i = 0; i < order.length; i++)
+			{
+				lastAccess[i] = entries.get(i).getValue().lastAccess;
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(final Integer a, final Integer b)
+				{
+					long diff = lastAccess[a] - lastAccess[b];
+					return (diff < 0) ? -1 : ((diff > 0) ? 1 : 0);
+				}
+			});
+
+			long targetSize = maxSize - maxSize / 4;
+			for (int i = 0; (i < order.length) && (size.get() > targetSize); i++)
+			{
+				Map.Entry<K, Entry<V>> entry = entries.get(order[i]);
+				if (cache.remove(entry.getKey(), entry.getValue()))
+				{
+					size.addAndGet(-entry.getValue().size);
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * A cached value with its estimated size and the time it was last accessed.
+		 * 
+		 * @param <V>
+		 */
+		private static class Entry<V>
+		{
+			private final V value;
+
+			private final long size;
+
+			private volatile long lastAccess = System.nanoTime();
+
+			private Entry(final V value, final long size)
+			{
+				this.value = value;
+				this.size = size;
+			}
+		}
+	}
 }
@@ -355,7 +355,7 @@ public class MarkupFactory
 		{
 			containerClass = container.getClass();
 		}
-		else if (!clazz.isAssignableFrom(container.getClass()))
+		else if (!clazz.isAssignableFrom(container.getClass()) && !isPrototypeOf(container, clazz))
 		{
 			throw new IllegalArgumentException("Parameter clazz must be an instance of " +
 				container.getClass().getName() + ", but is a " + clazz.getName());
@@ -363,6 +363,22 @@ public class MarkupFactory
 		return containerClass;
 	}
 
+	/**
+	 * Checks whether a container may load the markup of a class it is not an instance of. By
+	 * default only an {@link IMarkupPrototype} may, if it accepts the class.
+	 * 
+	 * @param container
+	 *            The MarkupContainer which requests to load the Markup resource stream
+	 * @param clazz
+	 *            The class whose markup is requested
+	 * @return true, if the container stands in for instances of the class
+	 */
+	protected boolean isPrototypeOf(final MarkupContainer container, final Class<?> clazz)
+	{
+		return (container instanceof IMarkupPrototype) &&
+			((IMarkupPrototype)container).isPrototypeOf(clazz);
+	}
+
 	/**
 	 * Loads markup from a resource stream. It'll call the registered markup loader to load the
 	 * markup.
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+
+/**
+ * Writes the elements of a {@link Markup} to a markup snapshot and reads them back, without making
+ * the markup elements {@link java.io.Serializable}. The fields of {@link RawMarkup},
+ * {@link ComponentTag}, {@link WicketTag} and {@link HtmlSpecialTag} are written explicitly, only
+ * the behaviors and the user data of the tags are written with Java Serialization. Markup with
+ * other elements cannot be written.
+ * 
+ * @see MarkupCache#writeSnapshot(java.io.File)
+ */
+final class MarkupSnapshotCodec
+{
+	private static final byte RAW_MARKUP = 0;
+
+	private static final byte COMPONENT_TAG = 1;
+
+	private static final byte WICKET_TAG = 2;
+
+	private static final byte HTML_SPECIAL_TAG = 3;
+
+	private MarkupSnapshotCodec()
+	{
+	}
+
+	/**
+	 * Writes the elements of the markup.
+	 * 
+	 * @param out
+	 * @param markup
+	 * @throws IOException
+	 *             if the markup cannot be written, e.g. because of an unknown element
+	 */
+	static void writeElements(final ObjectOutputStream out, final Markup markup)
+		throws IOException
+	{
+		// the index of each tag for the references to open tags, which may follow the tag
+		Map<Object, Integer> indexes = new IdentityHashMap<Object, Integer>();
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			indexes.put(element, i);
+			if (element instanceof ComponentTag)
+			{
+				indexes.put(((ComponentTag)element).getXmlTag(), i);
+			}
+			else if (element instanceof HtmlSpecialTag)
+			{
+				indexes.put(((HtmlSpecialTag)element).getXmlTag(), i);
+			}
+		}
+
+		out.writeInt(markup.size());
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			Class<?> elementClass = element.getClass();
+			if (elementClass == RawMarkup.class)
+			{
+				out.writeByte(RAW_MARKUP);
+				out.writeObject(element.toCharSequence().toString());
+			}
+			else if ((elementClass == ComponentTag.class) || (elementClass == WicketTag.class))
+			{
+				ComponentTag tag = (ComponentTag)element;
+				out.writeByte(elementClass == WicketTag.class ? WICKET_TAG : COMPONENT_TAG);
+				writeXmlTag(out, tag.getXmlTag());
+				writeIndex(out, tag.getXmlTag().getOpenTag(), indexes);
+				writeIndex(out, tag.getOpenTag(), indexes);
+				writeComponentTag(out, tag);
+			}
+			else if (elementClass == HtmlSpecialTag.class)
+			{
+				HtmlSpecialTag tag = (HtmlSpecialTag)element;
+				out.writeByte(HTML_SPECIAL_TAG);
+				writeXmlTag(out, tag.getXmlTag());
+				writeIndex(out, tag.getXmlTag().getOpenTag(), indexes);
+				writeEnum(out, tag.getHttpTagType());
+				out.writeInt(getFlags(tag));
+			}
+			else
+			{
+				throw new NotSerializableException(elementClass.getName());
+			}
+		}
+	}
+
+	/**
+	 * Reads the elements written by {@link #writeElements(ObjectOutputStream, Markup)} into the
+	 * markup.
+	 * 
+	 * @param in
+	 * @param markup
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	static void readElements(final ObjectInputStream in, final Markup markup)
+		throws IOException, ClassNotFoundException
+	{
+		int size = in.readInt();
+		List<MarkupElement> elements = new ArrayList<MarkupElement>(size);
+		List<XmlTag> xmlTags = new ArrayList<XmlTag>(size);
+		// the indexes of the open tags, resolved when all elements have been read
+		int[] openTags = new int[size];
+		int[] xmlOpenTags = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			MarkupElement element;
+			XmlTag xmlTag = null;
+			openTags[i] = -1;
+			xmlOpenTags[i] = -1;
+			byte type = in.readByte();
+			switch (type)
+			{
+				case RAW_MARKUP :
+					element = new RawMarkup((String)in.readObject());
+					break;
+				case COMPONENT_TAG :
+				case WICKET_TAG :
+					xmlTag = readXmlTag(in);
+					xmlOpenTags[i] = in.readInt();
+					ComponentTag tag = (type == WICKET_TAG ? new WicketTag(xmlTag)
+						: new ComponentTag(xmlTag));
+					openTags[i] = in.readInt();
+					readComponentTag(in, tag);
+					element = tag;
+					break;
+				case HTML_SPECIAL_TAG :
+					xmlTag = readXmlTag(in);
+					xmlOpenTags[i] = in.readInt();
+					HtmlSpecialTag specialTag = new HtmlSpecialTag(xmlTag, readEnum(in,
+						HttpTagType.class));
+					setFlags(specialTag, in.readInt());
+					element = specialTag;
+					break;
+				default :
+					throw new IOException("Unknown markup element " + type);
+			}
+			elements.add(element);
+			xmlTags.add(xmlTag);
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			MarkupElement element = elements.get(i);
+			if (openTags[i] != -1)
+			{
+				((ComponentTag)element).setOpenTag((ComponentTag)elements.get(openTags[i]));
+			}
+			if (xmlTags.get(i) != null)
+			{
+				xmlTags.get(i).setOpenTag(xmlOpenTags[i] != -1 ? xmlTags.get(xmlOpenTags[i])
+					: null);
+			}
+			markup.addMarkupElement(element);
+		}
+	}
+
+	private static void writeXmlTag(final ObjectOutputStream out, final XmlTag tag)
+		throws IOException
+	{
+		writeString(out, tag.getName());
+		writeString(out, tag.getNamespace());
+		writeEnum(out, tag.getType());
+
+		if (tag.hasAttributes())
+		{
+			out.writeInt(tag.getAttributes().size());
+			for (Map.Entry<String, Object> attribute : tag.getAttributes().entrySet())
+			{
+				out.writeUTF(attribute.getKey());
+				Object value = attribute.getValue();
+				out.writeObject(value != null ? value.toString() : null);
+			}
+		}
+		else
+		{
+			out.writeInt(0);
+		}
+
+		// immutable tags keep their parsed text only if they have no attributes
+		boolean hasText = (tag.isMutable() == false) && (tag.getLength() > 0);
+		out.writeBoolean(hasText);
+		if (hasText)
+		{
+			out.writeObject(tag.toCharSequence().toString());
+			out.writeInt(tag.getPos());
+			out.writeInt(tag.getLineNumber());
+			out.writeInt(tag.getColumnNumber());
+		}
+	}
+
+	private static XmlTag readXmlTag(final ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+	{
+		XmlTag tag = new XmlTag();
+		tag.setName(readString(in));
+		tag.setNamespace(readString(in));
+		tag.setType(readEnum(in, TagType.class));
+
+		int attributes = in.readInt();
+		for (int i = 0; i < attributes; i++)
+		{
+			tag.put(in.readUTF(), (String)in.readObject());
+		}
+
+		if (in.readBoolean())
+		{
+			tag.setText((String)in.readObject(), in.readInt(), in.readInt(), in.readInt());
+		}
+		return tag;
+	}
+
+	private static void writeComponentTag(final ObjectOutputStream out, final ComponentTag tag)
+		throws IOException
+	{
+		writeString(out, tag.getId());
+		out.writeObject(tag.getMarkupClass());
+
+		List<Behavior> behaviors = new ArrayList<Behavior>();
+		Iterator<? extends Behavior> iterator = tag.getBehaviors();
+		while (iterator.hasNext())
+		{
+			behaviors.add(iterator.next());
+		}
+		out.writeInt(behaviors.size());
+		for (Behavior behavior : behaviors)
+		{
+			out.writeObject(behavior);
+		}
+
+		Map<String, Object> userData = tag.getUserData();
+		out.writeInt(userData != null ? userData.size() : 0);
+		if (userData != null)
+		{
+			for (Map.Entry<String, Object> entry : userData.entrySet())
+			{
+				out.writeUTF(entry.getKey());
+				out.writeObject(entry.getValue());
+			}
+		}
+
+		out.writeInt(getFlags(tag));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void readComponentTag(final ObjectInputStream in, final ComponentTag tag)
+		throws IOException, ClassNotFoundException
+	{
+		tag.setId(readString(in));
+		tag.setMarkupClass((Class<? extends Component>)in.readObject());
+
+		int behaviors = in.readInt();
+		for (int i = 0; i < behaviors; i++)
+		{
+			tag.addBehavior((Behavior)in.readObject());
+		}
+
+		int userData = in.readInt();
+		for (int i = 0; i < userData; i++)
+		{
+			tag.setUserData(in.readUTF(), in.readObject());
+		}
+
+		// last, the setters above may have changed the flags
+		setFlags(tag, in.readInt());
+	}
+
+	private static int getFlags(final ComponentTag tag)
+	{
+		int flags = 0;
+		for (int flag = 1; flag != 0; flag <<= 1)
+		{
+			if (tag.getFlag(flag))
+			{
+				flags |= flag;
+			}
+		}
+		return flags;
+	}
+
+	private static void setFlags(final ComponentTag tag, final int flags)
+	{
+		for (int flag = 1; flag != 0; flag <<= 1)
+		{
+			tag.setFlag(flag, (flags & flag) != 0);
+		}
+	}
+
+	private static int getFlags(final HtmlSpecialTag tag)
+	{
+		int flags = 0;
+		for (int flag = 1; flag != 0; flag <<= 1)
+		{
+			if (tag.getFlag(flag))
+			{
+				flags |= flag;
+			}
+		}
+		return flags;
+	}
+
+	private static void setFlags(final HtmlSpecialTag tag, final int flags)
+	{
+		for (int flag = 1; flag != 0; flag <<= 1)
+		{
+			tag.setFlag(flag, (flags & flag) != 0);
+		}
+	}
+
+	private static void writeIndex(final ObjectOutputStream out, final Object tag,
+		final Map<Object, Integer> indexes) throws IOException
+	{
+		Integer index = (tag != null ? indexes.get(tag) : null);
+		out.writeInt(index != null ? index : -1);
+	}
+
+	private static void writeString(final ObjectOutputStream out, final String string)
+		throws IOException
+	{
+		out.writeBoolean(string != null);
+		if (string != null)
+		{
+			out.writeUTF(string);
+		}
+	}
+
+	private static String readString(final ObjectInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeEnum(final ObjectOutputStream out, final Enum<?> value)
+		throws IOException
+	{
+		writeString(out, value != null ? value.name() : null);
+	}
+
+	private static <T extends Enum<T>> T readEnum(final ObjectInputStream in, final Class<T> type)
+		throws IOException
+	{
+		String name = readString(in);
+		try
+		{
+			return name != null ? Enum.valueOf(type, name) : null;
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Unknown " + type.getSimpleName() + " " + name);
+		}
+	}
+}
@@ -0,0 +1,712 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.protocol.http.WebSession;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup of component classes into the {@link MarkupCache} before the first request
+ * needs it, e.g. in {@link Application#init()}:
+ * 
+ * <pre>
+ * new MarkupWarmup(this).addPackage(&quot;com.example.pages&quot;)
+ * 	.addLocales(Locale.ENGLISH, Locale.GERMAN)
+ * 	.run();
+ * </pre>
+ * 
+ * The markup of every class is loaded for each combination of the configured locales, styles and
+ * variations, by several threads in parallel. The markup is looked up and cached the same way as
+ * it is for a component instance, but no component of the class is created. Hence classes which
+ * provide their own markup or cache key (see {@link IMarkupResourceStreamProvider} and
+ * {@link IMarkupCacheKeyProvider}) are skipped, as are classes which override
+ * {@link MarkupContainer#getLocale()}, {@link MarkupContainer#getVariation()} or
+ * {@link MarkupContainer#getMarkupType()}: their instances may look up another markup than the
+ * configured one.
+ * 
+ * @see MarkupCache
+ */
+public class MarkupWarmup
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupWarmup.class);
+
+	/**
+	 * The outcome of loading the markup of a class
+	 */
+	public static enum Status {
+		/** the markup has been loaded into the cache */
+		LOADED,
+		/** the class has no markup */
+		NOT_FOUND,
+		/** the class provides its own markup, cache key, locale, variation or markup type */
+		SKIPPED,
+		/** the markup could not be loaded */
+		FAILED
+	}
+
+	/** the classes which may declare the methods the cache key is built from */
+	private static final Set<Class<?>> KEY_METHOD_DECLARERS = new HashSet<Class<?>>(
+		Arrays.<Class<?>> asList(Component.class, MarkupContainer.class, Page.class, WebPage.class));
+
+	private final Application application;
+
+	private final Set<Class<? extends MarkupContainer>> classes =
+		new LinkedHashSet<Class<? extends MarkupContainer>>();
+
+	private final Set<Locale> locales = new LinkedHashSet<Locale>();
+
+	private final Set<String> styles = new LinkedHashSet<String>();
+
+	private final Set<String> variations = new LinkedHashSet<String>();
+
+	private MarkupType markupType = MarkupType.HTML_MARKUP_TYPE;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param application
+	 *            the application whose markup cache is filled
+	 */
+	public MarkupWarmup(final Application application)
+	{
+		this.application = Args.notNull(application, "application");
+	}
+
+	/**
+	 * Adds classes to load the markup for.
+	 * 
+	 * @param classes
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup addClasses(final Class<? extends MarkupContainer>... classes)
+	{
+		for (Class<? extends MarkupContainer> clazz : classes)
+		{
+			this.classes.add(Args.notNull(clazz, "class"));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds all concrete {@link MarkupContainer} classes of a package and its sub packages, as
+	 * found by the class resolver of the application in directories and jar files.
+	 * 
+	 * @param packageName
+	 *            the name of the package, e.g. "com.example.pages"
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup addPackage(final String packageName)
+	{
+		Args.notEmpty(packageName, "packageName");
+
+		String path = packageName.replace('.', '/');
+		Iterator<URL> urls = application.getApplicationSettings()
+			.getClassResolver()
+			.getResources(path);
+		while (urls.hasNext())
+		{
+			URL url = urls.next();
+			try
+			{
+				for (String className : findClassNames(url, path))
+				{
+					addClass(className);
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException("Couldn't scan " + url + " for classes", e);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds locales to load the markup for. Defaults to the default locale of the JVM.
+	 * 
+	 * @param locales
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup addLocales(final Locale... locales)
+	{
+		for (Locale locale : locales)
+		{
+			this.locales.add(Args.notNull(locale, "locale"));
+		}
+		return this;
+	}
+
+	/**
+	 * Adds styles to load the markup for. Defaults to no style only, include {@code null} to load
+	 * the markup without style as well.
+	 * 
+	 * @param styles
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup addStyles(final String... styles)
+	{
+		Collections.addAll(this.styles, styles);
+		return this;
+	}
+
+	/**
+	 * Adds variations to load the markup for. Defaults to no variation only, include {@code null}
+	 * to load the markup without variation as well.
+	 * 
+	 * @param variations
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup addVariations(final String... variations)
+	{
+		Collections.addAll(this.variations, variations);
+		return this;
+	}
+
+	/**
+	 * Sets the type of the markup to load. Defaults to {@link MarkupType#HTML_MARKUP_TYPE}.
+	 * 
+	 * @param markupType
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup setMarkupType(final MarkupType markupType)
+	{
+		this.markupType = Args.notNull(markupType, "markupType");
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads loading the markup. Defaults to the number of processors.
+	 * 
+	 * @param threads
+	 * @return {@code this}
+	 */
+	public final MarkupWarmup setThreads(final int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("threads must be at least 1, but is " + threads);
+		}
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Loads the markup of all classes and waits until it has been loaded.
+	 * 
+	 * @return the report of the loaded markup
+	 */
+	public Report run()
+	{
+		List<Locale> locales = new ArrayList<Locale>(this.locales);
+		if (locales.isEmpty())
+		{
+			locales.add(Locale.getDefault());
+		}
+		List<String> styles = new ArrayList<String>(this.styles);
+		if (styles.isEmpty())
+		{
+			styles.add(null);
+		}
+		List<String> variations = new ArrayList<String>(this.variations);
+		if (variations.isEmpty())
+		{
+			variations.add(null);
+		}
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new WarmupThreadFactory());
+		try
+		{
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final Class<? extends MarkupContainer> clazz : classes)
+			{
+				for (final Locale locale : locales)
+				{
+					for (final String style : styles)
+					{
+						for (final String variation : variations)
+						{
+							futures.add(executor.submit(new Callable<Result>()
+							{
+								@Override
+								public Result call()
+								{
+									return load(clazz, locale, style, variation);
+								}
+							}));
+						}
+					}
+				}
+			}
+
+			List<Result> results = new ArrayList<Result>(futures.size());
+			for (Future<Result> future : futures)
+			{
+				results.add(future.get());
+			}
+
+			Report report = new Report(results, since(start));
+			log.info("{}", report);
+			return report;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WicketRuntimeException("Interrupted while loading the markup", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new WicketRuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads the markup of a class in a worker thread
+	 * 
+	 * @param clazz
+	 * @param locale
+	 * @param style
+	 * @param variation
+	 * @return the result
+	 */
+	private Result load(final Class<? extends MarkupContainer> clazz, final Locale locale,
+		final String style, final String variation)
+	{
+		if (IMarkupResourceStreamProvider.class.isAssignableFrom(clazz) ||
+			IMarkupCacheKeyProvider.class.isAssignableFrom(clazz) || overridesCacheKey(clazz))
+		{
+			return new Result(clazz, locale, style, variation, Status.SKIPPED, Duration.NONE, null);
+		}
+
+		long start = System.nanoTime();
+		Status status;
+		Exception error = null;
+		try
+		{
+			ThreadContext.setApplication(application);
+			Session session = new WebSession(new MockWebRequest(Url.parse("")));
+			session.setLocale(locale);
+			session.setStyle(style);
+			ThreadContext.setSession(session);
+
+			Prototype prototype = new Prototype(clazz, locale, variation, markupType);
+			Markup markup = application.getMarkupSettings().getMarkupFactory().getMarkup(
+				prototype, clazz, false);
+			status = (markup != null) ? Status.LOADED : Status.NOT_FOUND;
+		}
+		catch (RuntimeException e)
+		{
+			log.debug("Couldn't load the markup of " + clazz.getName(), e);
+			status = Status.FAILED;
+			error = e;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+		return new Result(clazz, locale, style, variation, status, since(start), error);
+	}
+
+	/**
+	 * Checks whether instances of the class may build another cache key than the prototype, i.e.
+	 * whether the class overrides one of the methods the key is built from.
+	 * 
+	 * @param clazz
+	 * @return true, if the markup of the class can't be loaded with a prototype
+	 */
+	private static boolean overridesCacheKey(final Class<?> clazz)
+	{
+		try
+		{
+			return !KEY_METHOD_DECLARERS.contains(clazz.getMethod("getLocale").getDeclaringClass()) ||
+				!KEY_METHOD_DECLARERS.contains(clazz.getMethod("getVariation").getDeclaringClass()) ||
+				!KEY_METHOD_DECLARERS.contains(clazz.getMethod("getMarkupType").getDeclaringClass());
+		}
+		catch (NoSuchMethodException e)
+		{
+			return true;
+		}
+	}
+
+	private static Duration since(final long start)
+	{
+		return Duration.milliseconds((System.nanoTime() - start) / 1000000L);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addClass(final String className)
+	{
+		Class<?> clazz;
+		try
+		{
+			clazz = application.getApplicationSettings()
+				.getClassResolver()
+				.resolveClass(className);
+		}
+		catch (ClassNotFoundException e)
+		{
+			log.debug("Couldn't load class {}", className);
+			return;
+		}
+		catch (LinkageError e)
+		{
+			log.debug("Couldn't load class {}", className);
+			return;
+		}
+
+		if (MarkupContainer.class.isAssignableFrom(clazz) &&
+			Modifier.isAbstract(clazz.getModifiers()) == false && clazz.isAnonymousClass() == false)
+		{
+			classes.add((Class<? extends MarkupContainer>)clazz);
+		}
+	}
+
+	/**
+	 * @param url
+	 *            the url of a package
+	 * @param path
+	 *            the path of the package
+	 * @return the names of the classes in the package and its sub packages
+	 * @throws IOException
+	 */
+	private static List<String> findClassNames(final URL url, final String path)
+		throws IOException
+	{
+		List<String> classNames = new ArrayList<String>();
+		if ("file".equals(url.getProtocol()))
+		{
+			File folder = new File(URLDecoder.decode(url.getPath(), "UTF-8"));
+			findClassNames(folder, path.replace('/', '.'), classNames);
+		}
+		else
+		{
+			URLConnection connection = url.openConnection();
+			if (connection instanceof JarURLConnection)
+			{
+				JarFile jar = ((JarURLConnection)connection).getJarFile();
+				Enumeration<JarEntry> entries = jar.entries();
+				while (entries.hasMoreElements())
+				{
+					String name = entries.nextElement().getName();
+					if (name.startsWith(path + "/") && name.endsWith(".class"))
+					{
+						classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+					}
+				}
+			}
+			else
+			{
+				log.warn("Cannot scan {} for classes", url);
+			}
+		}
+		return classNames;
+	}
+
+	private static void findClassNames(final File folder, final String packageName,
+		final List<String> classNames)
+	{
+		File[] files = folder.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			String name = file.getName();
+			if (file.isDirectory())
+			{
+				findClassNames(file, packageName + "." + name, classNames);
+			}
+			else if (name.endsWith(".class"))
+			{
+				classNames.add(packageName + "." + name.substring(0, name.length() - 6));
+			}
+		}
+	}
+
+	/**
+	 * Stands in for an instance of the class whose markup is loaded. It provides the locale,
+	 * variation and markup type the markup is looked up with.
+	 * 
+	 * @see MarkupFactory#isPrototypeOf(MarkupContainer, Class)
+	 */
+	private static final class Prototype extends WebMarkupContainer implements IMarkupPrototype
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Class<?> containerClass;
+
+		private final Locale locale;
+
+		private final String variation;
+
+		private final MarkupType markupType;
+
+		private Prototype(final Class<?> containerClass, final Locale locale,
+			final String variation, final MarkupType markupType)
+		{
+			super("prototype");
+
+			this.containerClass = containerClass;
+			this.locale = locale;
+			this.variation = variation;
+			this.markupType = markupType;
+		}
+
+		@Override
+		public Locale getLocale()
+		{
+			return locale;
+		}
+
+		@Override
+		public String getVariation()
+		{
+			return variation;
+		}
+
+		@Override
+		public MarkupType getMarkupType()
+		{
+			return markupType;
+		}
+
+		@Override
+		public boolean isPrototypeOf(final Class<?> containerClass)
+		{
+			return containerClass.isAssignableFrom(this.containerClass);
+		}
+	}
+
+	/**
+	 * Names the worker threads
+	 */
+	private static class WarmupThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Wicket-MarkupWarmup-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * The outcome of loading the markup of a class for a locale, style and variation
+	 */
+	public static class Result
+	{
+		private final Class<? extends MarkupContainer> containerClass;
+
+		private final Locale locale;
+
+		private final String style;
+
+		private final String variation;
+
+		private final Status status;
+
+		private final Duration duration;
+
+		private final Exception error;
+
+		private Result(final Class<? extends MarkupContainer> containerClass, final Locale locale,
+			final String style, final String variation, final Status status,
+			final Duration duration, final Exception error)
+		{
+			this.containerClass = containerClass;
+			this.locale = locale;
+			this.style = style;
+			this.variation = variation;
+			this.status = status;
+			this.duration = duration;
+			this.error = error;
+		}
+
+		/**
+		 * @return the class whose markup was loaded
+		 */
+		public Class<? extends MarkupContainer> getContainerClass()
+		{
+			return containerClass;
+		}
+
+		/**
+		 * @return the locale
+		 */
+		public Locale getLocale()
+		{
+			return locale;
+		}
+
+		/**
+		 * @return the style, may be {@code null}
+		 */
+		public String getStyle()
+		{
+			return style;
+		}
+
+		/**
+		 * @return the variation, may be {@code null}
+		 */
+		public String getVariation()
+		{
+			return variation;
+		}
+
+		/**
+		 * @return the outcome
+		 */
+		public Status getStatus()
+		{
+			return status;
+		}
+
+		/**
+		 * @return the time it took to load the markup
+		 */
+		public Duration getDuration()
+		{
+			return duration;
+		}
+
+		/**
+		 * @return the exception the loading failed with, {@code null} unless {@link Status#FAILED}
+		 */
+		public Exception getError()
+		{
+			return error;
+		}
+
+		@Override
+		public String toString()
+		{
+			return containerClass.getName() + " [locale=" + locale + ", style=" + style +
+				", variation=" + variation + "]: " + status + " in " + duration;
+		}
+	}
+
+	/**
+	 * The report of a warm-up
+	 */
+	public static class Report
+	{
+		private final List<Result> results;
+
+		private final Duration duration;
+
+		private Report(final List<Result> results, final Duration duration)
+		{
+			this.results = Collections.unmodifiableList(results);
+			this.duration = duration;
+		}
+
+		/**
+		 * @return the results in the order the classes were added
+		 */
+		public List<Result> getResults()
+		{
+			return results;
+		}
+
+		/**
+		 * @param status
+		 * @return the results with the given status
+		 */
+		public List<Result> getResults(final Status status)
+		{
+			List<Result> list = new ArrayList<Result>();
+			for (Result result : results)
+			{
+				if (result.getStatus() == status)
+				{
+					list.add(result);
+				}
+			}
+			return list;
+		}
+
+		/**
+		 * @return the time the whole warm-up took
+		 */
+		public Duration getDuration()
+		{
+			return duration;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Markup warm-up of " + results.size() + " combinations took " + duration +
+				": " + getResults(Status.LOADED).size() + " loaded, " +
+				getResults(Status.NOT_FOUND).size() + " not found, " +
+				getResults(Status.SKIPPED).size() + " skipped, " +
+				getResults(Status.FAILED).size() + " failed";
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.response.IEncodingResponse;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * The output of a markup element encoded with a charset. Instances are immutable, so they can be
+ * cached by the elements of the markup shared by all requests.
+ * 
+ * @see IEncodingResponse
+ */
+final class PreEncodedMarkup
+{
+	private final Charset charset;
+
+	private final boolean stripWicketAttributes;
+
+	private final String namespace;
+
+	private final byte[] bytes;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param text
+	 *            the text to encode
+	 * @param charset
+	 *            the charset to encode the text with
+	 * @param stripWicketAttributes
+	 *            whether the wicket attributes are removed from the text
+	 * @param namespace
+	 *            the wicket namespace of the text
+	 */
+	PreEncodedMarkup(final CharSequence text, final Charset charset,
+		final boolean stripWicketAttributes, final String namespace)
+	{
+		this.charset = charset;
+		this.stripWicketAttributes = stripWicketAttributes;
+		this.namespace = namespace;
+		bytes = text.toString().getBytes(charset);
+	}
+
+	/**
+	 * @param charset
+	 * @param stripWicketAttributes
+	 * @param namespace
+	 * @return true, if the markup was encoded with the same charset and output options
+	 */
+	boolean matches(final Charset charset, final boolean stripWicketAttributes,
+		final String namespace)
+	{
+		return this.charset.equals(charset) &&
+			(this.stripWicketAttributes == stripWicketAttributes) &&
+			Objects.equal(this.namespace, namespace);
+	}
+
+	/**
+	 * Writes the encoded markup to the response.
+	 * 
+	 * @param response
+	 */
+	void writeTo(final Response response)
+	{
+		response.write(bytes);
+	}
+
+	/**
+	 * @param response
+	 * @return the charset the response encodes its text with, {@code null} if the pre-encoded
+	 *         markup can't be written to the response
+	 */
+	static Charset getCharset(final Response response)
+	{
+		if (response instanceof IEncodingResponse)
+		{
+			return ((IEncodingResponse)response).getTextCharset();
+		}
+		return null;
+	}
+}
@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.markup;
 
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+
 /**
  * This class is for framework purposes only, which is why the class is (default) protected.
  * <p>
@@ -29,6 +33,9 @@ public class RawMarkup extends MarkupElement
 	/** The raw markup string * */
 	private final CharSequence string;
 
+	/** The raw markup encoded with the charset of the last response it was written to */
+	private volatile PreEncodedMarkup encoded;
+
 	/**
 	 * Create a RawMarkup element referencing an uninterpreted markup string.
 	 * 
@@ -96,6 +103,32 @@ public class RawMarkup extends MarkupElement
 		return string;
 	}
 
+	/**
+	 * Writes the raw markup to the response. Responses encoding their text get the bytes the raw
+	 * markup has been encoded to before.
+	 * 
+	 * @param response
+	 *            the response to write to
+	 * @see org.apache.wicket.response.IEncodingResponse
+	 */
+	public final void writeTo(final Response response)
+	{
+		final Charset charset = PreEncodedMarkup.getCharset(response);
+		if (charset == null)
+		{
+			response.write(string);
+			return;
+		}
+
+		PreEncodedMarkup encoded = this.encoded;
+		if ((encoded == null) || (encoded.matches(charset, false, null) == false))
+		{
+			encoded = new PreEncodedMarkup(string, charset, false, null);
+			this.encoded = encoded;
+		}
+		encoded.writeTo(response);
+	}
+
 	/**
 	 * @return This raw markup string
 	 */
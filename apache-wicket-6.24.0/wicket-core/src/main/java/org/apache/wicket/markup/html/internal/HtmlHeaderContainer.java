@@ -18,10 +18,12 @@ package org.apache.wicket.markup.html.internal;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.IMarkupFragment;
@@ -31,9 +33,14 @@ import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.PageHeaderItem;
 import org.apache.wicket.markup.head.internal.HeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponseDecorator;
 import org.apache.wicket.markup.html.TransparentWebMarkupContainer;
 import org.apache.wicket.markup.renderStrategy.AbstractHeaderRenderStrategy;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.response.StringResponse;
 
 
@@ -72,6 +79,13 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 {
 	private static final long serialVersionUID = 1L;
 
+	/** The decorators of the header responses of subtrees in the current request */
+	private static final MetaDataKey<Map<Component, IHeaderResponseDecorator>> SUBTREE_DECORATORS =
+		new MetaDataKey<Map<Component, IHeaderResponseDecorator>>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
 	/**
 	 * wicket:head tags (components) must only be added once. To allow for a little bit more
 	 * control, each wicket:head has an associated scope which by default is equal to the java class
@@ -167,8 +181,16 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 			}
 
 			// Render the header sections of all components on the page
-			AbstractHeaderRenderStrategy.get().renderHeader(this,
-				new HeaderStreamState(markupStream, openTag), getPage());
+			long headerStart = RequestPhaseTimings.start();
+			try
+			{
+				AbstractHeaderRenderStrategy.get().renderHeader(this,
+					new HeaderStreamState(markupStream, openTag), getPage());
+			}
+			finally
+			{
+				RequestPhaseTimings.stop(RequestPhase.HEADER_RENDER, headerStart);
+			}
 
 			// Close the header response before rendering the header container itself
 			// See https://issues.apache.org/jira/browse/WICKET-3728
@@ -318,6 +340,13 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 
 		renderedComponentsPerScope = null;
 		headerResponse = null;
+
+		// the head is complete, let the browser load the resources while the body is rendered
+		Response response = getResponse();
+		if (response instanceof StreamingWebResponse)
+		{
+			((StreamingWebResponse)response).stream();
+		}
 	}
 
 	/**
@@ -351,6 +380,72 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 		return headerResponse;
 	}
 
+	/**
+	 * Gets the header response a component contributes to: the header response of this container,
+	 * decorated by the decorators of the subtrees the component is part of.
+	 * 
+	 * @param component
+	 *            the component rendering its header contributions
+	 * @return header response
+	 * @see #decorateSubtree(Component, IHeaderResponseDecorator)
+	 */
+	public IHeaderResponse getHeaderResponse(final Component component)
+	{
+		IHeaderResponse response = getHeaderResponse();
+
+		Map<Component, IHeaderResponseDecorator> decorators = RequestCycle.get().getMetaData(
+			SUBTREE_DECORATORS);
+		if (decorators != null)
+		{
+			Component parent = component.getParent();
+			for (; parent != null; parent = parent.getParent())
+			{
+				IHeaderResponseDecorator decorator = decorators.get(parent);
+				if (decorator != null)
+				{
+					response = decorator.decorate(response);
+				}
+			}
+		}
+		return response;
+	}
+
+	/**
+	 * Decorates the header response the components below a root component contribute to in the
+	 * current request, e.g. to record their header items. The header render strategy may visit
+	 * these components before the root, hence the decorator must be registered before the header
+	 * is rendered, e.g. in {@link Component#onConfigure()}.
+	 * 
+	 * @param root
+	 *            the root of the subtree, its own contributions are not decorated
+	 * @param decorator
+	 *            the decorator, {@code null} to remove it
+	 */
+	public static void decorateSubtree(final Component root,
+		final IHeaderResponseDecorator decorator)
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		Map<Component, IHeaderResponseDecorator> decorators = requestCycle.getMetaData(
+			SUBTREE_DECORATORS);
+		if (decorator != null)
+		{
+			if (decorators == null)
+			{
+				decorators = new IdentityHashMap<Component, IHeaderResponseDecorator>();
+				requestCycle.setMetaData(SUBTREE_DECORATORS, decorators);
+			}
+			decorators.put(root, decorator);
+		}
+		else if (decorators != null)
+		{
+			decorators.remove(root);
+			if (decorators.isEmpty())
+			{
+				requestCycle.setMetaData(SUBTREE_DECORATORS, null);
+			}
+		}
+	}
+
 	@Override
 	public IMarkupFragment getMarkup()
 	{
@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * Stores the output rendered by component subtrees, see {@link OutputCacheBehavior}. The least
+ * recently used entries are evicted when the size of all entries exceeds the maximum size, and
+ * entries expire after their time to live. Entries are grouped by region, so all entries of a
+ * region can be invalidated at once.
+ * <p>
+ * There is one cache per application:
+ * 
+ * <pre>
+ * OutputCache.set(this, new OutputCache(Bytes.megabytes(50)));
+ * </pre>
+ * 
+ * @see OutputCacheBehavior
+ */
+public class OutputCache
+{
+	private static final MetaDataKey<OutputCache> KEY = new MetaDataKey<OutputCache>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/** The default maximum size of all entries */
+	public static final Bytes DEFAULT_MAX_SIZE = Bytes.megabytes(10);
+
+	private final long maxSize;
+
+	/** The entries in access order */
+	private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+	private long size;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all entries
+	 */
+	public OutputCache(final Bytes maxSize)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		this.maxSize = maxSize.bytes();
+	}
+
+	/**
+	 * Gets the output cache of the application, creates one with the {@link #DEFAULT_MAX_SIZE} if
+	 * none has been set.
+	 * 
+	 * @param application
+	 * @return the output cache
+	 */
+	public static OutputCache get(final Application application)
+	{
+		OutputCache cache = application.getMetaData(KEY);
+		if (cache == null)
+		{
+			synchronized (application)
+			{
+				cache = application.getMetaData(KEY);
+				if (cache == null)
+				{
+					cache = new OutputCache(DEFAULT_MAX_SIZE);
+					application.setMetaData(KEY, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Sets the output cache of the application.
+	 * 
+	 * @param application
+	 * @param cache
+	 */
+	public static void set(final Application application, final OutputCache cache)
+	{
+		application.setMetaData(KEY, cache);
+	}
+
+	/**
+	 * Gets the entry for the key.
+	 * 
+	 * @param key
+	 * @return the entry, {@code null} if there is no entry or it has expired
+	 */
+	public synchronized Entry get(final Object key)
+	{
+		Entry entry = entries.get(key);
+		if ((entry != null) && entry.isExpired(System.currentTimeMillis()))
+		{
+			remove(key);
+			entry = null;
+		}
+
+		if (entry == null)
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Puts an entry in the cache. Entries bigger than the maximum size are not cached.
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	public synchronized void put(final Object key, final Entry entry)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(entry, "entry");
+
+		remove(key);
+		if (entry.getSize() > maxSize)
+		{
+			return;
+		}
+
+		entries.put(key, entry);
+		size += entry.getSize();
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > maxSize)
+		{
+			Entry eldest = iterator.next();
+			iterator.remove();
+			size -= eldest.getSize();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes the entry for the key.
+	 * 
+	 * @param key
+	 */
+	public synchronized void remove(final Object key)
+	{
+		Entry entry = entries.remove(key);
+		if (entry != null)
+		{
+			size -= entry.getSize();
+		}
+	}
+
+	/**
+	 * Removes all entries of a region.
+	 * 
+	 * @param region
+	 *            the region to invalidate, {@code null} for all regions
+	 */
+	public synchronized void invalidate(final String region)
+	{
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if ((region == null) || region.equals(entry.getRegion()))
+			{
+				iterator.remove();
+				size -= entry.getSize();
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		invalidate(null);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public synchronized int getCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the size of all entries in bytes
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups which found an entry
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups which found no entry
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries evicted because the cache exceeded its maximum size
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * The output of a component subtree and the header items contributed by it.
+	 */
+	public static final class Entry
+	{
+		private final String region;
+
+		private final String markup;
+
+		private final List<HeaderItem> headerItems;
+
+		private final long expiresAt;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param region
+		 *            the region of the entry
+		 * @param markup
+		 *            the rendered markup
+		 * @param headerItems
+		 *            the header items contributed by the component subtree
+		 * @param timeToLive
+		 *            the duration the entry is valid
+		 */
+		public Entry(final String region, final CharSequence markup,
+			final List<HeaderItem> headerItems, final Duration timeToLive)
+		{
+			this.region = region;
+			this.markup = markup.toString();
+			this.headerItems = Collections.unmodifiableList(headerItems);
+
+			long now = System.currentTimeMillis();
+			long ttl = timeToLive.getMilliseconds();
+			expiresAt = (ttl > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + ttl;
+		}
+
+		/**
+		 * @return the region of the entry
+		 */
+		public String getRegion()
+		{
+			return region;
+		}
+
+		/**
+		 * @return the rendered markup
+		 */
+		public String getMarkup()
+		{
+			return markup;
+		}
+
+		/**
+		 * @return the header items contributed by the component subtree
+		 */
+		public List<HeaderItem> getHeaderItems()
+		{
+			return headerItems;
+		}
+
+		/**
+		 * @return the estimated size of the entry in bytes
+		 */
+		public long getSize()
+		{
+			return markup.length() * 2L;
+		}
+
+		private boolean isExpired(final long now)
+		{
+			return now >= expiresAt;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Entry[region=" + region + ", size=" + getSize() + ", headerItems=" +
+				headerItems.size() + "]";
+		}
+	}
+}
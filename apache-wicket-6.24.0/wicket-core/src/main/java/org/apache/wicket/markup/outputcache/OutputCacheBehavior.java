@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.event.IEvent;
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.DecoratingHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponseDecorator;
+import org.apache.wicket.markup.html.internal.HtmlHeaderContainer;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * A {@link Behavior} which caches the output of the component it is added to, including the output
+ * of all its children. While the cached output is valid, the children are not prepared for render
+ * and not rendered at all: their {@link Component#onBeforeRender()} is not called and their models
+ * are not loaded.
+ * <p>
+ * The output is cached under the key returned by {@link #getCacheKey(Component)}, e.g. the id and
+ * version of the model object. The key is combined with the component class, the component path,
+ * the locale, the style and the variation of the component. The header items contributed by the
+ * children, including the &lt;wicket:head&gt; sections of their markup, are recorded while the page
+ * renders its header and rendered again when the cached output is used.
+ * <p>
+ * Only subtrees with the same output for all pages and sessions may be cached, e.g. with
+ * bookmarkable links only. Listener urls and generated markup ids are specific to a page
+ * instance. Header contributions which are not {@link HeaderItem}s are not recorded.
+ * 
+ * <pre>
+ * menu.add(new OutputCacheBehavior(&quot;menu&quot;, Duration.minutes(10))
+ * {
+ * 	protected Object getCacheKey(Component component)
+ * 	{
+ * 		return menuModel.getObject().getVersion();
+ * 	}
+ * });
+ * </pre>
+ * 
+ * @see OutputCache
+ * @see OutputCacheInvalidation
+ */
+public abstract class OutputCacheBehavior extends Behavior
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String region;
+
+	private final Duration timeToLive;
+
+	/** The key of the output in the current request, null if not cached */
+	private transient Object key;
+
+	/** The cached output used in the current request */
+	private transient OutputCache.Entry entry;
+
+	/** The header items recorded in the current request */
+	private transient List<HeaderItem> headerItems;
+
+	/** The children hidden while the cached output is used */
+	private transient List<Component> hiddenChildren;
+
+	/** The request cycle's response before the output is captured */
+	private transient Response originalResponse;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param region
+	 *            the region of the cached output, used to invalidate it
+	 * @param timeToLive
+	 *            the duration the cached output is valid
+	 */
+	public OutputCacheBehavior(final String region, final Duration timeToLive)
+	{
+		this.region = Args.notNull(region, "region");
+		this.timeToLive = Args.notNull(timeToLive, "timeToLive");
+	}
+
+	/**
+	 * Gets the key which identifies the output of the component, e.g. the id and version of the
+	 * model object. The key must implement {@link Object#equals(Object)} and
+	 * {@link Object#hashCode()}.
+	 * 
+	 * @param component
+	 * @return the key, {@code null} to render the component without the cache
+	 */
+	protected abstract Object getCacheKey(Component component);
+
+	/**
+	 * @return the output cache
+	 */
+	protected OutputCache getOutputCache()
+	{
+		return OutputCache.get(Application.get());
+	}
+
+	/**
+	 * @return the region of the cached output
+	 */
+	public final String getRegion()
+	{
+		return region;
+	}
+
+	@Override
+	public void onConfigure(final Component component)
+	{
+		super.onConfigure(component);
+
+		if (component.isVisibleInHierarchy() == false)
+		{
+			return;
+		}
+
+		final Object cacheKey = getCacheKey(component);
+		if (cacheKey == null)
+		{
+			return;
+		}
+
+		key = Arrays.asList(region, component.getClass().getName(),
+			component.getPageRelativePath(), component.getLocale(), component.getStyle(),
+			component.getVariation(), cacheKey);
+		entry = getOutputCache().get(key);
+
+		if ((entry != null) && (component instanceof MarkupContainer))
+		{
+			// the children are hidden, so they are not prepared for render
+			hiddenChildren = new ArrayList<Component>();
+			for (Component child : (MarkupContainer)component)
+			{
+				if (child.isVisibilityAllowed())
+				{
+					child.setVisibilityAllowed(false);
+					hiddenChildren.add(child);
+				}
+			}
+		}
+		else if ((entry == null) && (headerItems == null))
+		{
+			// the children may contribute to the header before the component, so the recording
+			// starts before the header is rendered
+			headerItems = new ArrayList<HeaderItem>();
+			HtmlHeaderContainer.decorateSubtree(component, new HeaderRecorder(headerItems));
+		}
+	}
+
+	@Override
+	public void renderHead(final Component component, final IHeaderResponse response)
+	{
+		super.renderHead(component, response);
+
+		if (entry != null)
+		{
+			for (HeaderItem item : entry.getHeaderItems())
+			{
+				response.render(item);
+			}
+		}
+	}
+
+	@Override
+	public void beforeRender(final Component component)
+	{
+		super.beforeRender(component);
+
+		if (key == null)
+		{
+			return;
+		}
+
+		// Temporarily replace the web response to capture the output, or to discard it if the
+		// cached output is used
+		final RequestCycle requestCycle = RequestCycle.get();
+		originalResponse = requestCycle.getResponse();
+		WebResponse webResponse = (WebResponse)((originalResponse instanceof WebResponse)
+			? originalResponse : null);
+		requestCycle.setResponse(new BufferedWebResponse(webResponse));
+	}
+
+	@Override
+	public void afterRender(final Component component)
+	{
+		if (originalResponse == null)
+		{
+			return;
+		}
+
+		final RequestCycle requestCycle = RequestCycle.get();
+		final BufferedWebResponse tempResponse = (BufferedWebResponse)requestCycle.getResponse();
+		requestCycle.setResponse(originalResponse);
+
+		if (entry != null)
+		{
+			originalResponse.write(entry.getMarkup());
+		}
+		else
+		{
+			CharSequence output = tempResponse.getText();
+			if (output == null)
+			{
+				output = "";
+			}
+			originalResponse.write(output);
+
+			List<HeaderItem> items = headerItems;
+			if (items == null)
+			{
+				items = Collections.emptyList();
+			}
+			getOutputCache().put(key, new OutputCache.Entry(region, output, items, timeToLive));
+		}
+		originalResponse = null;
+
+		super.afterRender(component);
+	}
+
+	/**
+	 * Invalidates the region on receipt of an {@link OutputCacheInvalidation} for it.
+	 */
+	@Override
+	public void onEvent(final Component component, final IEvent<?> event)
+	{
+		super.onEvent(component, event);
+
+		if (event.getPayload() instanceof OutputCacheInvalidation)
+		{
+			String invalidated = ((OutputCacheInvalidation)event.getPayload()).getRegion();
+			if ((invalidated == null) || invalidated.equals(region))
+			{
+				getOutputCache().invalidate(region);
+			}
+		}
+	}
+
+	@Override
+	public void detach(final Component component)
+	{
+		// the children are visible again after the page has checked they all have been rendered
+		if (hiddenChildren != null)
+		{
+			for (Component child : hiddenChildren)
+			{
+				child.setVisibilityAllowed(true);
+			}
+		}
+
+		if (headerItems != null)
+		{
+			HtmlHeaderContainer.decorateSubtree(component, null);
+		}
+
+		key = null;
+		entry = null;
+		headerItems = null;
+		hiddenChildren = null;
+		originalResponse = null;
+
+		super.detach(component);
+	}
+
+	/**
+	 * Decorates the header response of the children to record their header items
+	 */
+	private static class HeaderRecorder implements IHeaderResponseDecorator
+	{
+		private final List<HeaderItem> items;
+
+		private HeaderRecorder(final List<HeaderItem> items)
+		{
+			this.items = items;
+		}
+
+		@Override
+		public IHeaderResponse decorate(final IHeaderResponse response)
+		{
+			return new DecoratingHeaderResponse(response)
+			{
+				@Override
+				public void render(final HeaderItem item)
+				{
+					items.add(item);
+					super.render(item);
+				}
+			};
+		}
+	}
+}
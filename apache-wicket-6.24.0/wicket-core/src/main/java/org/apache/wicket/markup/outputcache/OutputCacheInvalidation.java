@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import org.apache.wicket.util.io.IClusterable;
+
+/**
+ * An event payload which invalidates the cached output of a region. Components with an
+ * {@link OutputCacheBehavior} of that region invalidate it on receipt, e.g.:
+ * 
+ * <pre>
+ * send(getPage(), Broadcast.BREADTH, new OutputCacheInvalidation(&quot;menu&quot;));
+ * </pre>
+ * 
+ * @see OutputCache#invalidate(String)
+ */
+public class OutputCacheInvalidation implements IClusterable
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String region;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param region
+	 *            the region to invalidate, {@code null} for all regions
+	 */
+	public OutputCacheInvalidation(final String region)
+	{
+		this.region = region;
+	}
+
+	/**
+	 * @return the region to invalidate, {@code null} for all regions
+	 */
+	public String getRegion()
+	{
+		return region;
+	}
+}
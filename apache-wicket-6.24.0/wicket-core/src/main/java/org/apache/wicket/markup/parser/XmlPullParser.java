@@ -28,8 +28,6 @@ import org.apache.wicket.util.io.FullyBufferedReader;
 import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.io.XmlReader;
 import org.apache.wicket.util.lang.Args;
-import org.apache.wicket.util.parse.metapattern.parsers.TagNameParser;
-import org.apache.wicket.util.parse.metapattern.parsers.VariableAssignmentParser;
 import org.apache.wicket.util.string.Strings;
 
 /**
@@ -61,9 +59,18 @@ public final class XmlPullParser implements IXmlPullParser
 	/** temporary variable which will hold the name of the closing tag. */
 	private String skipUntilText;
 
-	/** The last substring selected from the input */
+	/** The last substring selected from the input, null until a body text is requested */
 	private CharSequence lastText;
 
+	/** Start index of a body text not yet copied from the input */
+	private int lastTextStart;
+
+	/** End index of a body text not yet copied from the input */
+	private int lastTextEnd;
+
+	/** The position marker, duplicated to address body texts by index */
+	private int positionMarker;
+
 	/** Everything in between &lt;!DOCTYPE ... &gt; */
 	private CharSequence doctype;
 
@@ -118,9 +125,8 @@ public final class XmlPullParser implements IXmlPullParser
 		final int tagNameLen = skipUntilText.length();
 
 		int pos = input.getPosition() - 1;
-		String endTagText = null;
 		int lastPos = 0;
-		while (!skipUntilText.equalsIgnoreCase(endTagText))
+		do
 		{
 			pos = input.find("</", pos + 1);
 			if ((pos == -1) || ((pos + (tagNameLen + 2)) >= input.size()))
@@ -130,11 +136,11 @@ public final class XmlPullParser implements IXmlPullParser
 			}
 
 			lastPos = pos + 2;
-			endTagText = input.getSubstring(lastPos, lastPos + tagNameLen).toString();
 		}
+		while (!skipUntilTextAt(lastPos));
 
 		input.setPosition(pos);
-		lastText = input.getSubstring(startIndex, pos);
+		setBodyText(startIndex, pos);
 		lastType = HttpTagType.BODY;
 
 		// Check that the tag is properly closed
@@ -149,6 +155,36 @@ public final class XmlPullParser implements IXmlPullParser
 		skipUntilText = null;
 	}
 
+	/**
+	 * Body texts are mostly ignored by the markup parser, hence they are copied from the input
+	 * only when requested via {@link #getString()}.
+	 * 
+	 * @param start
+	 * @param end
+	 */
+	private void setBodyText(final int start, final int end)
+	{
+		lastText = null;
+		lastTextStart = start;
+		lastTextEnd = end;
+	}
+
+	/**
+	 * @param pos
+	 * @return true, if the (lower case) skipUntilText is found at the position, ignoring case
+	 */
+	private boolean skipUntilTextAt(final int pos)
+	{
+		for (int i = 0; i < skipUntilText.length(); i++)
+		{
+			if (Character.toLowerCase(input.charAt(pos + i)) != skipUntilText.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * 
 	 * @return line and column number
@@ -187,13 +223,13 @@ public final class XmlPullParser implements IXmlPullParser
 			if (openBracketIndex == -1)
 			{
 				// There is no next matching tag.
-				lastText = input.getSubstring(-1);
+				setBodyText(positionMarker, input.size());
 				input.setPosition(input.size());
 				lastType = HttpTagType.BODY;
 				return lastType;
 			}
 
-			lastText = input.getSubstring(openBracketIndex);
+			setBodyText(positionMarker, openBracketIndex);
 			input.setPosition(openBracketIndex);
 			lastType = HttpTagType.BODY;
 			return lastType;
@@ -223,10 +259,13 @@ public final class XmlPullParser implements IXmlPullParser
 
 		// Get the complete tag text
 		lastText = input.getSubstring(openBracketIndex, closeBracketIndex + 1);
+		final String text = lastText.toString();
 
-		// Get the tagtext between open and close brackets
-		String tagText = lastText.subSequence(1, lastText.length() - 1).toString();
-		if (tagText.length() == 0)
+		// The tag text is in between the open and close brackets. It is not copied, but
+		// addressed by its start and end index in the complete tag text.
+		int start = 1;
+		int end = text.length() - 1;
+		if (start == end)
 		{
 			throw new ParseException("Found empty tag: '<>' at" + getLineAndColumnText(),
 				input.getPosition());
@@ -236,16 +275,16 @@ public final class XmlPullParser implements IXmlPullParser
 		final TagType type;
 
 		// If the tag ends in '/', it's a "simple" tag like <foo/>
-		if (tagText.endsWith("/"))
+		if (text.charAt(end - 1) == '/')
 		{
 			type = TagType.OPEN_CLOSE;
-			tagText = tagText.substring(0, tagText.length() - 1);
+			end--;
 		}
-		else if (tagText.startsWith("/"))
+		else if (text.charAt(start) == '/')
 		{
 			// The tag text starts with a '/', it's a simple close tag
 			type = TagType.CLOSE;
-			tagText = tagText.substring(1);
+			start++;
 		}
 		else
 		{
@@ -253,19 +292,20 @@ public final class XmlPullParser implements IXmlPullParser
 			type = TagType.OPEN;
 
 			// If open tag and starts with "s" like "script" or "style", than ...
-			if ((tagText.length() > STYLE.length()) &&
-				((tagText.charAt(0) == 's') || (tagText.charAt(0) == 'S')))
+			if ((end - start > STYLE.length()) &&
+				((text.charAt(start) == 's') || (text.charAt(start) == 'S')))
 			{
-				final String lowerCase = tagText.toLowerCase();
-				if (lowerCase.startsWith(SCRIPT))
+				if (text.regionMatches(true, start, SCRIPT, 0, SCRIPT.length()))
 				{
 					String typeAttr = "type=";
-					int idxOfType = lowerCase.indexOf(typeAttr);
-					if (idxOfType > 0)
+					int idxOfType = indexOfIgnoreCase(text, typeAttr, start, end);
+					if (idxOfType > start)
 					{
 						// +1 to remove the ' or "
-						String typePrefix = lowerCase.substring(idxOfType + typeAttr.length() + 1);
-						if (typePrefix.startsWith("text/javascript"))
+						int typePrefix = idxOfType + typeAttr.length() + 1;
+						String javascript = "text/javascript";
+						if ((typePrefix + javascript.length() <= end) &&
+							text.regionMatches(true, typePrefix, javascript, 0, javascript.length()))
 						{
 							// prepare to skip everything between the open and close tag
 							skipUntilText = SCRIPT;
@@ -280,7 +320,7 @@ public final class XmlPullParser implements IXmlPullParser
 						skipUntilText = SCRIPT;
 					}
 				}
-				else if (lowerCase.startsWith(STYLE))
+				else if (text.regionMatches(true, start, STYLE, 0, STYLE.length()))
 				{
 					// prepare to skip everything between the open and close tag
 					skipUntilText = STYLE;
@@ -288,27 +328,32 @@ public final class XmlPullParser implements IXmlPullParser
 			}
 		}
 
+		if (start == end)
+		{
+			throw new ParseException("Malformed tag" + getLineAndColumnText(), openBracketIndex);
+		}
+
 		// Handle special tags like <!-- and <![CDATA ...
-		final char firstChar = tagText.charAt(0);
+		final char firstChar = text.charAt(start);
 		if ((firstChar == '!') || (firstChar == '?'))
 		{
-			specialTagHandling(tagText, openBracketIndex, closeBracketIndex);
+			specialTagHandling(text.substring(start, end), openBracketIndex, closeBracketIndex);
 
 			input.countLinesTo(openBracketIndex);
-			TextSegment text = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
-				input.getColumnNumber());
-			lastTag = new XmlTag(text, type);
+			TextSegment segment = new TextSegment(lastText, openBracketIndex,
+				input.getLineNumber(), input.getColumnNumber());
+			lastTag = new XmlTag(segment, type);
 
 			return lastType;
 		}
 
-		TextSegment text = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
+		TextSegment segment = new TextSegment(lastText, openBracketIndex, input.getLineNumber(),
 			input.getColumnNumber());
-		XmlTag tag = new XmlTag(text, type);
+		XmlTag tag = new XmlTag(segment, type);
 		lastTag = tag;
 
 		// Parse the tag text and populate tag attributes
-		if (parseTagText(tag, tagText))
+		if (parseTagText(tag, text, start, end))
 		{
 			// Move to position after the tag
 			input.setPosition(closeBracketIndex + 1);
@@ -472,6 +517,11 @@ public final class XmlPullParser implements IXmlPullParser
 	@Override
 	public final CharSequence getString()
 	{
+		if ((lastText == null) && (lastType == HttpTagType.BODY))
+		{
+			lastText = (lastTextEnd < lastTextStart) ? "" : input.getSubstring(lastTextStart,
+				lastTextEnd);
+		}
 		return lastText;
 	}
 
@@ -564,6 +614,7 @@ public final class XmlPullParser implements IXmlPullParser
 		Args.notNull(string, "string");
 
 		this.input = new FullyBufferedReader(new StringReader(string.toString()));
+		this.positionMarker = 0;
 		this.encoding = null;
 	}
 
@@ -605,6 +656,7 @@ public final class XmlPullParser implements IXmlPullParser
 			XmlReader xmlReader = new XmlReader(new BufferedInputStream(inputStream, 4000),
 				encoding);
 			this.input = new FullyBufferedReader(xmlReader);
+			this.positionMarker = 0;
 			this.encoding = xmlReader.getEncoding();
 		}
 		finally
@@ -616,12 +668,13 @@ public final class XmlPullParser implements IXmlPullParser
 	@Override
 	public final void setPositionMarker()
 	{
-		input.setPositionMarker(input.getPosition());
+		setPositionMarker(input.getPosition());
 	}
 
 	@Override
 	public final void setPositionMarker(final int pos)
 	{
+		positionMarker = pos;
 		input.setPositionMarker(pos);
 	}
 
@@ -633,83 +686,268 @@ public final class XmlPullParser implements IXmlPullParser
 
 	/**
 	 * Parses the text between tags. For example, "a href=foo.html".
+	 * <p>
+	 * The text is scanned by hand instead of with regular expressions, only the names and values
+	 * found are copied into strings. The names are interned, since there are only a few of them
+	 * which are repeated in all markup.
 	 * 
 	 * @param tag
-	 * @param tagText
-	 *            The text between tags
+	 * @param text
+	 *            The complete tag text
+	 * @param start
+	 *            The index of the first char of the text between the brackets
+	 * @param end
+	 *            The index after the last char of the text between the brackets
 	 * @return false in case of an error
 	 * @throws ParseException
 	 */
-	private boolean parseTagText(final XmlTag tag, final String tagText) throws ParseException
+	private boolean parseTagText(final XmlTag tag, final String text, final int start,
+		final int end) throws ParseException
 	{
-		// Get the length of the tagtext
-		final int tagTextLength = tagText.length();
-
-		// If we match tagname pattern
-		final TagNameParser tagnameParser = new TagNameParser(tagText);
-		if (tagnameParser.matcher().lookingAt())
+		// [namespace:]name
+		int nameStart = start;
+		int nameEnd = scanName(text, start, end, false);
+		int colon = scanName(text, start, end, true);
+		if ((colon > start) && (colon < end) && (text.charAt(colon) == ':'))
 		{
-			// Extract the tag from the pattern matcher
-			tag.name = tagnameParser.getName();
-			tag.namespace = tagnameParser.getNamespace();
-
-			// Are we at the end? Then there are no attributes, so we just
-			// return the tag
-			int pos = tagnameParser.matcher().end(0);
-			if (pos == tagTextLength)
+			int localNameEnd = scanName(text, colon + 1, end, false);
+			if (localNameEnd > colon + 1)
 			{
-				return true;
+				tag.namespace = text.substring(start, colon).toLowerCase().intern();
+				nameStart = colon + 1;
+				nameEnd = localNameEnd;
 			}
+		}
+		if (nameEnd == nameStart)
+		{
+			return false;
+		}
+		tag.name = text.substring(nameStart, nameEnd).intern();
 
-			// Extract attributes
-			final VariableAssignmentParser attributeParser = new VariableAssignmentParser(tagText);
-			while (attributeParser.matcher().find(pos))
+		// Are we at the end? Then there are no attributes, so we just
+		// return the tag
+		int pos = nameEnd;
+
+		// Extract attributes: whitespace, [ns:[ns:]]key, optionally followed by = and a value.
+		// Text which doesn't match is skipped.
+		while (pos < end)
+		{
+			int keyStart = skipWhitespace(text, pos, end);
+			int keyEnd = scanAttributeName(text, keyStart, end);
+			if (keyEnd == -1)
 			{
-				// Get key and value using attribute pattern
-				String value = attributeParser.getValue();
+				pos = keyStart + 1;
+				continue;
+			}
 
-				// In case like <html xmlns:wicket> will the value be null
-				if (value == null)
+			String value = null;
+			pos = keyEnd;
+			int equals = skipWhitespace(text, keyEnd, end);
+			if ((equals < end) && (text.charAt(equals) == '='))
+			{
+				int valueStart = skipWhitespace(text, equals + 1, end);
+				int valueEnd = scanAttributeValue(text, valueStart, end);
+				if (valueEnd != -1)
 				{
-					value = "";
+					value = text.substring(valueStart, valueEnd);
+					pos = valueEnd;
 				}
+			}
 
-				// Set new position to end of attribute
-				pos = attributeParser.matcher().end(0);
+			// Set new position to end of attribute
+			pos = skipWhitespace(text, pos, end);
 
-				// Chop off double quotes or single quotes
-				if (value.startsWith("\"") || value.startsWith("\'"))
-				{
-					value = value.substring(1, value.length() - 1);
-				}
+			// In case like <html xmlns:wicket> will the value be null
+			if (value == null)
+			{
+				value = "";
+			}
 
-				// Trim trailing whitespace
-				value = value.trim();
+			// Chop off double quotes or single quotes
+			if (value.startsWith("\"") || value.startsWith("\'"))
+			{
+				value = value.substring(1, value.length() - 1);
+			}
+
+			// Trim trailing whitespace
+			value = value.trim();
 
-				// Unescape
+			// Unescape
+			if (value.indexOf('&') != -1)
+			{
 				value = Strings.unescapeMarkup(value).toString();
+			}
 
-				// Get key
-				final String key = attributeParser.getKey();
+			// Get key
+			final String key = text.substring(keyStart, keyEnd).intern();
 
-				// Put the attribute in the attributes hash
-				if (null != tag.getAttributes().put(key, value))
-				{
-					throw new ParseException("Same attribute found twice: " + key +
-						getLineAndColumnText(), input.getPosition());
-				}
+			// Put the attribute in the attributes hash
+			if (null != tag.getAttributes().put(key, value))
+			{
+				throw new ParseException("Same attribute found twice: " + key +
+					getLineAndColumnText(), input.getPosition());
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param text
+	 * @param pos
+	 * @param end
+	 * @return the index of the first char at or after pos which is no whitespace
+	 */
+	private static int skipWhitespace(final String text, int pos, final int end)
+	{
+		while ((pos < end) && isWhitespace(text.charAt(pos)))
+		{
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * @param c
+	 * @return true, if the char is whitespace, like \s in a regular expression
+	 */
+	private static boolean isWhitespace(final char c)
+	{
+		return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f') ||
+			(c == '\u000B');
+	}
 
-				// The input has to match exactly (no left over junk after
-				// attributes)
-				if (pos == tagTextLength)
+	/**
+	 * Scans a name starting with a letter or '_', followed by letters, digits and '_'. Names of
+	 * elements and attributes may contain '.' and '-' as well.
+	 * 
+	 * @param text
+	 * @param pos
+	 * @param end
+	 * @param variable
+	 *            true, if '.' and '-' are not allowed
+	 * @return the index after the name, pos if there is no name
+	 */
+	private static int scanName(final String text, final int pos, final int end,
+		final boolean variable)
+	{
+		if ((pos >= end) || !isNameStart(text.charAt(pos)))
+		{
+			return pos;
+		}
+
+		int i = pos + 1;
+		while (i < end)
+		{
+			char c = text.charAt(i);
+			if (!isNameStart(c) && !((c >= '0') && (c <= '9')) &&
+				(variable || ((c != '.') && (c != '-'))))
+			{
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @param c
+	 * @return true, if c is an ASCII letter or '_'
+	 */
+	private static boolean isNameStart(final char c)
+	{
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || (c == '_');
+	}
+
+	/**
+	 * Scans an attribute name with up to two namespaces, e.g. "wicket:message" or "xmlns:wicket".
+	 * 
+	 * @param text
+	 * @param pos
+	 * @param end
+	 * @return the index after the name, -1 if there is no name at pos
+	 */
+	private static int scanAttributeName(final String text, final int pos, final int end)
+	{
+		int namespaceEnd = scanName(text, pos, end, true);
+		if ((namespaceEnd > pos) && (namespaceEnd < end) && (text.charAt(namespaceEnd) == ':'))
+		{
+			int secondNamespaceEnd = scanName(text, namespaceEnd + 1, end, true);
+			if ((secondNamespaceEnd > namespaceEnd + 1) && (secondNamespaceEnd < end) &&
+				(text.charAt(secondNamespaceEnd) == ':'))
+			{
+				int nameEnd = scanName(text, secondNamespaceEnd + 1, end, false);
+				if (nameEnd > secondNamespaceEnd + 1)
 				{
-					return true;
+					return nameEnd;
 				}
 			}
 
-			return true;
+			int nameEnd = scanName(text, namespaceEnd + 1, end, false);
+			if (nameEnd > namespaceEnd + 1)
+			{
+				return nameEnd;
+			}
+		}
+
+		int nameEnd = scanName(text, pos, end, false);
+		return (nameEnd > pos) ? nameEnd : -1;
+	}
+
+	/**
+	 * Scans an attribute value: either a word of letters, digits, '_', '-' and '.' or a string in
+	 * double or single quotes.
+	 * 
+	 * @param text
+	 * @param pos
+	 * @param end
+	 * @return the index after the value, -1 if there is no value at pos
+	 */
+	private static int scanAttributeValue(final String text, final int pos, final int end)
+	{
+		if (pos >= end)
+		{
+			return -1;
+		}
+
+		char c = text.charAt(pos);
+		if ((c == '"') || (c == '\''))
+		{
+			int quote = text.indexOf(c, pos + 1);
+			return ((quote != -1) && (quote < end)) ? quote + 1 : -1;
 		}
 
-		return false;
+		int i = pos;
+		while (i < end)
+		{
+			c = text.charAt(i);
+			if (!isNameStart(c) && !((c >= '0') && (c <= '9')) && (c != '.') && (c != '-'))
+			{
+				break;
+			}
+			i++;
+		}
+		return (i > pos) ? i : -1;
+	}
+
+	/**
+	 * @param text
+	 * @param search
+	 *            lower case text to search for
+	 * @param start
+	 * @param end
+	 * @return the index of search in text in between start and end, ignoring case, -1 if not found
+	 */
+	private static int indexOfIgnoreCase(final String text, final String search, final int start,
+		final int end)
+	{
+		for (int i = start; i + search.length() <= end; i++)
+		{
+			if (text.regionMatches(true, i, search, 0, search.length()))
+			{
+				return i;
+			}
+		}
+		return -1;
 	}
 }
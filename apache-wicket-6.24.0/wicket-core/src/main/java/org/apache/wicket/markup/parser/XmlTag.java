@@ -515,6 +515,33 @@ public class XmlTag
 		}
 	}
 
+	/**
+	 * THIS METHOD IS NOT PART OF THE WICKET PUBLIC API. DO NOT USE IT!
+	 * <p>
+	 * Sets the text of the tag as it has been parsed, e.g. when the tag is read from a markup
+	 * snapshot.
+	 * 
+	 * @param text
+	 *            The full text of the tag
+	 * @param pos
+	 *            The position of the tag in the parsed markup
+	 * @param line
+	 *            The line number
+	 * @param column
+	 *            The column number
+	 */
+	public void setText(final CharSequence text, final int pos, final int line, final int column)
+	{
+		if (isMutable)
+		{
+			this.text = new TextSegment(text, pos, line, column);
+		}
+		else
+		{
+			throw new UnsupportedOperationException("Attempt to set text of immutable tag");
+		}
+	}
+
 	/**
 	 * Converts this object to a string representation.
 	 * 
@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.page;
 
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.util.lang.Args;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,7 +97,15 @@ public abstract class AbstractPageManager implements IPageManager
 	@Override
 	public void commitRequest()
 	{
-		getRequestAdapter().commitRequest();
+		long start = RequestPhaseTimings.start();
+		try
+		{
+			getRequestAdapter().commitRequest();
+		}
+		finally
+		{
+			RequestPhaseTimings.stop(RequestPhase.PAGE_STORE, start);
+		}
 	}
 
 	/**
@@ -104,7 +114,16 @@ public abstract class AbstractPageManager implements IPageManager
 	@Override
 	public IManageablePage getPage(int id)
 	{
-		IManageablePage page = getRequestAdapter().getPage(id);
+		long start = RequestPhaseTimings.start();
+		IManageablePage page;
+		try
+		{
+			page = getRequestAdapter().getPage(id);
+		}
+		finally
+		{
+			RequestPhaseTimings.stop(RequestPhase.PAGE_RESOLUTION, start);
+		}
 		if (page != null)
 		{
 			getRequestAdapter().touch(page);
@@ -17,9 +17,13 @@
 package org.apache.wicket.page;
 
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.settings.IExceptionSettings.ThreadDumpStrategy;
@@ -33,6 +37,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Synchronizes access to page instances from multiple threads
+ * <p>
+ * Every locked page has its own {@link PageLock}, which the threads waiting for the page wait on.
+ * The locks held by a thread are recorded for that thread, so releasing them at the end of a
+ * request does not have to look at the locks of other threads. The time spent waiting for locks
+ * and the pages the threads had to wait for are counted and can be read with
+ * {@link #getContendedLockCount()}, {@link #getTotalWaitTime()} and
+ * {@link #getContentionCounts()}.
  * 
  * @author Igor Vaynberg (ivaynberg)
  */
@@ -54,9 +65,39 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	};
 
+	/** the locks held by each thread */
+	private final IProvider<ConcurrentMap<Thread, List<PageLock>>> threadLocks = new LazyInitializer<ConcurrentMap<Thread, List<PageLock>>>()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected ConcurrentMap<Thread, List<PageLock>> createInstance()
+		{
+			return new ConcurrentHashMap<Thread, List<PageLock>>();
+		}
+	};
+
 	/** timeout value for acquiring a page lock */
 	private final Duration timeout;
 
+	/** the number of locks acquired */
+	private final AtomicLong lockCount = new AtomicLong();
+
+	/** the number of locks acquired after waiting for another thread */
+	private final AtomicLong contendedLockCount = new AtomicLong();
+
+	/** the number of locks that could not be acquired within the timeout */
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	/** the nanoseconds spent waiting for locks */
+	private final AtomicLong waitTime = new AtomicLong();
+
+	/** the longest wait for a lock in nanoseconds */
+	private final AtomicLong maxWaitTime = new AtomicLong();
+
+	/** the number of times threads had to wait for each page */
+	private final ConcurrentMap<Integer, AtomicLong> contentionCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+
 	/**
 	 * Constructor
 	 * 
@@ -94,18 +135,28 @@ public class PageAccessSynchronizer implements Serializable
 	public void lockPage(int pageId) throws CouldNotLockPageException
 	{
 		final Thread thread = Thread.currentThread();
+		final ConcurrentMap<Integer, PageLock> locks = this.locks.get();
+
+		final boolean isDebugEnabled = logger.isDebugEnabled();
+
+		PageLock previous = locks.get(pageId);
+		if (previous != null && previous.thread == thread)
+		{
+			// lock is already owned by this thread
+			lockCount.incrementAndGet();
+			return;
+		}
+
 		final PageLock lock = new PageLock(pageId, thread);
 		final Time start = Time.now();
+		final long startNanos = System.nanoTime();
 
 		boolean locked = false;
-
-		final boolean isDebugEnabled = logger.isDebugEnabled();
-
-		PageLock previous = null;
+		boolean contended = false;
 
 		Duration timeout = getTimeout(pageId);
 
-		while (!locked && start.elapsedSince().lessThan(timeout))
+		do
 		{
 			if (isDebugEnabled)
 			{
@@ -113,16 +164,24 @@ public class PageAccessSynchronizer implements Serializable
 					thread.getName(), pageId);
 			}
 
-			previous = locks.get().putIfAbsent(pageId, lock);
+			previous = locks.putIfAbsent(pageId, lock);
 
-			if (previous == null || previous.thread == thread)
+			if (previous == null)
 			{
-				// first thread to acquire lock or lock is already owned by this thread
+				// first thread to acquire lock
+				locked = true;
+				addThreadLock(thread, lock);
+			}
+			else if (previous.thread == thread)
+			{
+				// lock is already owned by this thread
 				locked = true;
 			}
 			else
 			{
-				// wait for a lock to become available
+				contended = true;
+
+				// wait for the lock to be released
 				long remaining = remaining(start, timeout);
 				if (remaining > 0)
 				{
@@ -130,8 +189,16 @@ public class PageAccessSynchronizer implements Serializable
 				}
 			}
 		}
+		while (!locked && start.elapsedSince().lessThan(timeout));
+
+		if (contended)
+		{
+			recordContention(pageId, System.nanoTime() - startNanos);
+		}
+
 		if (locked)
 		{
+			lockCount.incrementAndGet();
 			if (isDebugEnabled)
 			{
 				logger.debug("{} acquired lock to page {}", thread.getName(), pageId);
@@ -139,6 +206,7 @@ public class PageAccessSynchronizer implements Serializable
 		}
 		else
 		{
+			timeoutCount.incrementAndGet();
 			if (logger.isWarnEnabled())
 			{
 				logger.warn(
@@ -168,12 +236,58 @@ public class PageAccessSynchronizer implements Serializable
 		}
 	}
 
+	private void addThreadLock(final Thread thread, final PageLock lock)
+	{
+		// only the thread itself changes its list
+		ConcurrentMap<Thread, List<PageLock>> threadLocks = this.threadLocks.get();
+		List<PageLock> held = threadLocks.get(thread);
+		if (held == null)
+		{
+			held = new ArrayList<PageLock>(2);
+			threadLocks.put(thread, held);
+		}
+		held.add(lock);
+	}
+
+	private void recordContention(final int pageId, final long waited)
+	{
+		contendedLockCount.incrementAndGet();
+		waitTime.addAndGet(waited);
+
+		long max;
+		do
+		{
+			max = maxWaitTime.get();
+		}
+		while (waited > max && !maxWaitTime.compareAndSet(max, waited));
+
+		AtomicLong count = contentionCounts.get(pageId);
+		if (count == null)
+		{
+			AtomicLong newCount = new AtomicLong();
+			count = contentionCounts.putIfAbsent(pageId, newCount);
+			if (count == null)
+			{
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+	}
+
 	/**
 	 * Unlocks all pages locked by this thread
 	 */
 	public void unlockAllPages()
 	{
-		internalUnlockPages(null);
+		final Thread thread = Thread.currentThread();
+		final List<PageLock> held = threadLocks.get().remove(thread);
+		if (held != null)
+		{
+			for (PageLock lock : held)
+			{
+				release(lock);
+			}
+		}
 	}
 
 	/**
@@ -184,38 +298,89 @@ public class PageAccessSynchronizer implements Serializable
 	 */
 	public void unlockPage(int pageId)
 	{
-		internalUnlockPages(pageId);
+		final Thread thread = Thread.currentThread();
+		final PageLock lock = locks.get().get(pageId);
+		if (lock != null && lock.thread == thread)
+		{
+			ConcurrentMap<Thread, List<PageLock>> threadLocks = this.threadLocks.get();
+			List<PageLock> held = threadLocks.get(thread);
+			if (held != null)
+			{
+				held.remove(lock);
+				if (held.isEmpty())
+				{
+					threadLocks.remove(thread);
+				}
+			}
+			release(lock);
+		}
 	}
 
-	private void internalUnlockPages(final Integer pageId)
+	private void release(final PageLock lock)
 	{
-		final Thread thread = Thread.currentThread();
-		final Iterator<PageLock> locks = this.locks.get().values().iterator();
+		locks.get().remove(lock.pageId, lock);
 
 		final boolean isDebugEnabled = logger.isDebugEnabled();
+		if (isDebugEnabled)
+		{
+			logger.debug("'{}' released lock to page with id '{}'", lock.thread.getName(),
+				lock.pageId);
+		}
+		// notify threads waiting for the lock
+		lock.markReleased(isDebugEnabled);
+	}
+
+	/**
+	 * @return the number of acquired locks, including the locks already held by the thread
+	 */
+	public long getLockCount()
+	{
+		return lockCount.get();
+	}
 
-		while (locks.hasNext())
+	/**
+	 * @return the number of locks which were held by another thread when they were requested
+	 */
+	public long getContendedLockCount()
+	{
+		return contendedLockCount.get();
+	}
+
+	/**
+	 * @return the number of locks which could not be acquired within the timeout
+	 */
+	public long getTimeoutCount()
+	{
+		return timeoutCount.get();
+	}
+
+	/**
+	 * @return the time spent waiting for locks held by other threads in nanoseconds
+	 */
+	public long getTotalWaitTime()
+	{
+		return waitTime.get();
+	}
+
+	/**
+	 * @return the longest time spent waiting for a lock in nanoseconds
+	 */
+	public long getMaxWaitTime()
+	{
+		return maxWaitTime.get();
+	}
+
+	/**
+	 * @return the number of times threads had to wait for a page by page id
+	 */
+	public Map<Integer, Long> getContentionCounts()
+	{
+		Map<Integer, Long> counts = new HashMap<Integer, Long>();
+		for (Map.Entry<Integer, AtomicLong> entry : contentionCounts.entrySet())
 		{
-			// remove all locks held by this thread if 'pageId' is not specified
-			// otherwise just the lock for this 'pageId'
-			final PageLock lock = locks.next();
-			if ((pageId == null || pageId == lock.pageId) && lock.thread == thread)
-			{
-				locks.remove();
-				if (isDebugEnabled)
-				{
-					logger.debug("'{}' released lock to page with id '{}'", thread.getName(),
-						lock.pageId);
-				}
-				// if any locks were removed notify threads waiting for a lock
-				lock.markReleased(isDebugEnabled);
-				if (pageId != null)
-				{
-					// unlock just the page with the specified id
-					break;
-				}
-			}
+			counts.put(entry.getKey(), entry.getValue().get());
 		}
+		return counts;
 	}
 
 	/*
@@ -22,6 +22,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.util.lang.Args;
 import org.slf4j.Logger;
@@ -30,18 +31,24 @@ import org.slf4j.LoggerFactory;
 /**
  * Facade for {@link IDataStore} that does the actual saving in worker thread.
  * <p>
- * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in
- * {@link #entries} queue if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in one of the
+ * {@link #queues} if there is room. Acts as producer.<br/>
+ * Later {@link PageSavingRunnable} reads in blocking manner from its queue and saves each entry.
+ * Acts as consumer.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
+ * By default it starts only one instance of {@link PageSavingRunnable} because all we need is to
+ * make the page storing asynchronous. When the wrapped {@link IDataStore} is too slow for a single
+ * thread more threads can be used. The entries are distributed to the threads by session id, so the
+ * pages of a session are still stored in the order of their arrival. Storing a page which is still
+ * waiting in the queue just replaces its data.
+ * <p>
+ * We don't want to write concurrently in the wrapped {@link IDataStore} for the same session,
  * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * </p>
  * 
  * @author Matej Knopp
  */
-public class AsynchronousDataStore implements IDataStore
+public class AsynchronousDataStore implements IStreamingDataStore
 {
 	/** Log for reporting. */
 	private static final Logger log = LoggerFactory.getLogger(AsynchronousDataStore.class);
@@ -57,9 +64,9 @@ public class AsynchronousDataStore implements IDataStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The page saving threads.
 	 */
-	private final Thread pageSavingThread;
+	private final Thread[] pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
@@ -67,9 +74,10 @@ public class AsynchronousDataStore implements IDataStore
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored, one per page saving
+	 * thread
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final BlockingQueue<Entry>[] queues;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +85,22 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	/**
+	 * The statistics of the page saving threads
+	 */
+	private final Statistics statistics = new Statistics();
+
+	/**
+	 * The number of entries which have been stored synchronously because there was no room in the
+	 * queue
+	 */
+	private final AtomicLong synchronousStoreCount = new AtomicLong();
+
+	/**
+	 * The number of entries which replaced the data of an entry still waiting in the queue
+	 */
+	private final AtomicLong coalescedCount = new AtomicLong();
+
 	/**
 	 * Construct.
 	 * 
@@ -87,14 +111,43 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the capacity of the queues that delay the saving. It is split equally between the
+	 *            threads.
+	 * @param threads
+	 *            the number of threads which save the data
+	 */
+	@SuppressWarnings("unchecked")
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity, final int threads)
+	{
+		Args.withinRange(1, capacity, threads, "threads");
+
 		this.dataStore = dataStore;
-		entries = new LinkedBlockingQueue<Entry>(capacity);
 		entryMap = new ConcurrentHashMap<String, Entry>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		queues = new BlockingQueue[threads];
+		pageSavingThreads = new Thread[threads];
+		for (int i = 0; i < threads; i++)
+		{
+			int queueCapacity = capacity / threads + (i < capacity % threads ? 1 : 0);
+			queues[i] = new LinkedBlockingQueue<Entry>(queueCapacity);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, queues[i],
+				entryMap, statistics);
+			String name = threads == 1 ? "Wicket-PageSavingThread" : "Wicket-PageSavingThread-" +
+				i;
+			pageSavingThreads[i] = new Thread(savingRunnable, name);
+			pageSavingThreads[i].setDaemon(true);
+			pageSavingThreads[i].start();
+		}
 	}
 
 	/**
@@ -103,9 +156,15 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		for (Thread pageSavingThread : pageSavingThreads)
+		{
+			if (pageSavingThread.isAlive())
+			{
+				pageSavingThread.interrupt();
+			}
+		}
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
-			pageSavingThread.interrupt();
 			try
 			{
 				pageSavingThread.join();
@@ -130,6 +189,21 @@ public class AsynchronousDataStore implements IDataStore
 		return entryMap.get(getKey(sessionId, id));
 	}
 
+	/**
+	 * @param sessionId
+	 * @return the queue for the entries of the session
+	 */
+	private BlockingQueue<Entry> getQueue(final String sessionId)
+	{
+		if (queues.length == 1)
+		{
+			return queues[0];
+		}
+		int hash = sessionId.hashCode();
+		hash ^= (hash >>> 16);
+		return queues[(hash & Integer.MAX_VALUE) % queues.length];
+	}
+
 	/**
 	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
 	 */
@@ -139,10 +213,14 @@ public class AsynchronousDataStore implements IDataStore
 		Entry entry = getEntry(sessionId, id);
 		if (entry != null)
 		{
-			log.debug(
-				"Returning the data of a non-stored entry with sessionId '{}' and pageId '{}'",
-				sessionId, id);
-			return entry.data;
+			byte[] data = entry.getData();
+			if (data != null)
+			{
+				log.debug(
+					"Returning the data of a non-stored entry with sessionId '{}' and pageId '{}'",
+					sessionId, id);
+				return data;
+			}
 		}
 		byte[] data = dataStore.getData(sessionId, id);
 
@@ -170,10 +248,13 @@ public class AsynchronousDataStore implements IDataStore
 		String key = getKey(sessionId, id);
 		if (key != null)
 		{
-			Entry entry = entryMap.remove(key);
+			Entry entry = entryMap.get(key);
 			if (entry != null)
 			{
-				entries.remove(entry);
+				// a concurrent store must not replace the data of the removed entry
+				entry.take();
+				entryMap.remove(key, entry);
+				getQueue(sessionId).remove(entry);
 			}
 		}
 
@@ -186,7 +267,7 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
+		for (Iterator<Entry> itor = getQueue(sessionId).iterator(); itor.hasNext();)
 		{
 			Entry entry = itor.next();
 			if (entry != null) // this check is not needed in JDK6
@@ -195,7 +276,8 @@ public class AsynchronousDataStore implements IDataStore
 
 				if (sessionId.equals(entrySessionId))
 				{
-					entryMap.remove(getKey(entry));
+					entry.take();
+					entryMap.remove(getKey(entry), entry);
 					itor.remove();
 				}
 			}
@@ -206,36 +288,136 @@ public class AsynchronousDataStore implements IDataStore
 
 	/**
 	 * Save the entry in the queue if there is a room or directly pass it to the wrapped
-	 * {@link IDataStore} if there is no such
+	 * {@link IDataStore} if there is no such. If an entry for the same page is still waiting in the
+	 * queue only its data is replaced.
 	 * 
 	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
 	 */
 	@Override
 	public void storeData(final String sessionId, final int id, final byte[] data)
 	{
-		Entry entry = new Entry(sessionId, id, data);
+		storeEntry(new Entry(sessionId, id, Args.notNull(data, "data"), null));
+	}
+
+	/**
+	 * Save the entry in the queue like {@link #storeData(String, int, byte[])}. The buffer is passed
+	 * to the wrapped {@link IDataStore} if it is a {@link IStreamingDataStore}.
+	 * 
+	 * @see org.apache.wicket.pageStore.IStreamingDataStore#storeData(java.lang.String, int,
+	 *      org.apache.wicket.pageStore.PageDataBuffer)
+	 */
+	@Override
+	public void storeData(final String sessionId, final int id, final PageDataBuffer data)
+	{
+		storeEntry(new Entry(sessionId, id, null, Args.notNull(data, "data")));
+	}
+
+	private void storeEntry(final Entry entry)
+	{
+		final String sessionId = entry.sessionId;
+		final int id = entry.pageId;
 		String key = getKey(entry);
+
+		Entry queued = entryMap.get(key);
+		if (queued != null && queued.replaceData(entry))
+		{
+			coalescedCount.incrementAndGet();
+			return;
+		}
+
 		entryMap.put(key, entry);
 
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			boolean added = getQueue(sessionId).offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
 
 			if (added == false)
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
-				entryMap.remove(key);
-				dataStore.storeData(sessionId, id, data);
+				storeSynchronously(key, entry);
 			}
 		}
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
-			entryMap.remove(key);
-			dataStore.storeData(sessionId, id, data);
+			storeSynchronously(key, entry);
 		}
 	}
 
+	private void storeSynchronously(final String key, final Entry entry)
+	{
+		synchronousStoreCount.incrementAndGet();
+		entry.take();
+		entryMap.remove(key, entry);
+		entry.storeIn(dataStore);
+	}
+
+	/**
+	 * @return the number of entries waiting to be stored
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> queue : queues)
+		{
+			size += queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of page saving threads
+	 */
+	public int getThreadCount()
+	{
+		return pageSavingThreads.length;
+	}
+
+	/**
+	 * @return the number of entries stored asynchronously by the page saving threads
+	 */
+	public long getStoredCount()
+	{
+		return statistics.storedCount.get();
+	}
+
+	/**
+	 * @return the number of entries stored synchronously in the caller's thread because the queue
+	 *         was full
+	 */
+	public long getSynchronousStoreCount()
+	{
+		return synchronousStoreCount.get();
+	}
+
+	/**
+	 * @return the number of stored pages which replaced the data of the same page that was still
+	 *         waiting in the queue
+	 */
+	public long getCoalescedCount()
+	{
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return the average time in nanoseconds the wrapped {@link IDataStore} needed to store an
+	 *         entry in the page saving threads
+	 */
+	public long getAverageStoreTime()
+	{
+		long count = statistics.storedCount.get();
+		return count > 0 ? statistics.storeTime.get() / count : 0;
+	}
+
+	/**
+	 * @return the longest time in nanoseconds the wrapped {@link IDataStore} needed to store an
+	 *         entry in the page saving threads
+	 */
+	public long getMaxStoreTime()
+	{
+		return statistics.maxStoreTime.get();
+	}
+
 	/**
 	 * 
 	 * @param pageId
@@ -264,13 +446,102 @@ public class AsynchronousDataStore implements IDataStore
 	{
 		private final String sessionId;
 		private final int pageId;
-		private final byte data[];
 
-		public Entry(final String sessionId, final int pageId, final byte data[])
+		/** the data, unless it is in {@link #buffer} */
+		private byte data[];
+
+		/** the data written by a streaming serializer */
+		private PageDataBuffer buffer;
+
+		/**
+		 * Whether a page saving thread has already taken the data to store it
+		 */
+		private boolean taken;
+
+		public Entry(final String sessionId, final int pageId, final byte data[],
+			final PageDataBuffer buffer)
 		{
 			this.sessionId = Args.notNull(sessionId, "sessionId");
 			this.pageId = pageId;
-			this.data = Args.notNull(data, "data");
+			this.data = data;
+			this.buffer = buffer;
+		}
+
+		/**
+		 * @return the data or {@code null} if the buffer has already been released by the wrapped
+		 *         data store
+		 */
+		public synchronized byte[] getData()
+		{
+			if (buffer == null)
+			{
+				return data;
+			}
+			if (buffer.retain() == false)
+			{
+				return null;
+			}
+			try
+			{
+				return buffer.toByteArray();
+			}
+			finally
+			{
+				buffer.release();
+			}
+		}
+
+		/**
+		 * Replaces the data if it has not been taken yet for storing
+		 * 
+		 * @param entry
+		 *            the entry with the new data
+		 * @return {@code true} if the data has been replaced
+		 */
+		public synchronized boolean replaceData(final Entry entry)
+		{
+			if (taken)
+			{
+				return false;
+			}
+			if (buffer != null)
+			{
+				buffer.release();
+			}
+			data = entry.data;
+			buffer = entry.buffer;
+			return true;
+		}
+
+		/**
+		 * Marks the entry as taken for storing or removed. The data does not change any more.
+		 */
+		public synchronized void take()
+		{
+			taken = true;
+		}
+
+		/**
+		 * Stores the taken data in the data store
+		 * 
+		 * @param dataStore
+		 */
+		private void storeIn(final IDataStore dataStore)
+		{
+			if (buffer == null)
+			{
+				dataStore.storeData(sessionId, pageId, data);
+			}
+			else if (dataStore instanceof IStreamingDataStore)
+			{
+				((IStreamingDataStore)dataStore).storeData(sessionId, pageId, buffer);
+			}
+			else
+			{
+				byte[] bytes = buffer.toByteArray();
+				buffer.release();
+				dataStore.storeData(sessionId, pageId, bytes);
+			}
 		}
 
 		@Override
@@ -313,6 +584,31 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * The counters updated by the page saving threads
+	 */
+	private static class Statistics
+	{
+		private final AtomicLong storedCount = new AtomicLong();
+
+		private final AtomicLong storeTime = new AtomicLong();
+
+		private final AtomicLong maxStoreTime = new AtomicLong();
+
+		private void stored(final long duration)
+		{
+			storedCount.incrementAndGet();
+			storeTime.addAndGet(duration);
+
+			long max;
+			do
+			{
+				max = maxStoreTime.get();
+			}
+			while (duration > max && !maxStoreTime.compareAndSet(max, duration));
+		}
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -326,12 +622,15 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final IDataStore dataStore;
 
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+			ConcurrentMap<String, Entry> entryMap, Statistics statistics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.statistics = statistics;
 		}
 
 		@Override
@@ -352,8 +651,11 @@ public class AsynchronousDataStore implements IDataStore
 				if (entry != null)
 				{
 					log.debug("Saving asynchronously: {}...", entry);
-					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
-					entryMap.remove(getKey(entry));
+					entry.take();
+					long start = System.nanoTime();
+					entry.storeIn(dataStore);
+					statistics.stored(System.nanoTime() - start);
+					entryMap.remove(getKey(entry), entry);
 				}
 			}
 		}
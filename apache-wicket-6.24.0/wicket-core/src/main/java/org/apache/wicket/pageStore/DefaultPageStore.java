@@ -18,13 +18,22 @@ package org.apache.wicket.pageStore;
 
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.IStreamingSerializer;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,13 +70,54 @@ public class DefaultPageStore implements IPageStore
 	 */
 	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
 		final int cacheSize)
+	{
+		this(pageSerializer, dataStore, cacheSize, Bytes.bytes(0L));
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param pageSerializer
+	 *            the {@link ISerializer} that will be used to convert pages from/to byte arrays
+	 * @param dataStore
+	 *            the {@link IDataStore} that actually stores the pages
+	 * @param cacheSize
+	 *            the number of pages to cache in memory before passing them to
+	 *            {@link IDataStore#storeData(String, int, byte[])}, {@code 0} for no limit by count
+	 * @param cacheMaxBytes
+	 *            the maximum size of the pages cached in memory, {@code 0} for no limit by size
+	 */
+	public DefaultPageStore(final ISerializer pageSerializer, final IDataStore dataStore,
+		final int cacheSize, final Bytes cacheMaxBytes)
 	{
 		Args.notNull(pageSerializer, "pageSerializer");
 		Args.notNull(dataStore, "DataStore");
+		Args.notNull(cacheMaxBytes, "cacheMaxBytes");
 
 		this.pageSerializer = pageSerializer;
 		pageDataStore = dataStore;
-		serializedPagesCache = new SerializedPagesCache(cacheSize);
+		serializedPagesCache = new SerializedPagesCache(cacheSize, cacheMaxBytes.bytes());
+	}
+
+	/**
+	 * Whether the pages are serialized directly into a {@link PageDataBuffer} which is passed to
+	 * {@link #storePageData(String, int, PageDataBuffer)}, instead of calling
+	 * {@link #serializePage(String, IManageablePage)} and
+	 * {@link #storePageData(String, int, byte[])}. By default the pages are streamed if the
+	 * serializer is an {@link IStreamingSerializer} and the data store an
+	 * {@link IStreamingDataStore}.
+	 * <p>
+	 * Subclasses overriding {@link #serializePage(String, IManageablePage)} or
+	 * {@link #storePageData(String, int, byte[])}, or using a serializer which overrides only
+	 * {@link ISerializer#serialize(Object)}, should return {@code false} to have their overrides
+	 * called.
+	 * 
+	 * @return whether the pages are streamed to the data store
+	 */
+	protected boolean supportsStreaming()
+	{
+		return pageSerializer instanceof IStreamingSerializer &&
+			pageDataStore instanceof IStreamingDataStore;
 	}
 
 	/**
@@ -120,6 +170,21 @@ public class DefaultPageStore implements IPageStore
 		pageDataStore.storeData(sessionId, pageId, data);
 	}
 
+	/**
+	 * Stores the page data written by a streaming serializer. Used instead of
+	 * {@link #storePageData(String, int, byte[])} if {@link #supportsStreaming()}.
+	 * 
+	 * @param sessionId
+	 * @param pageId
+	 * @param data
+	 * @see IStreamingDataStore#storeData(String, int, PageDataBuffer)
+	 */
+	protected void storePageData(final String sessionId, final int pageId,
+		final PageDataBuffer data)
+	{
+		((IStreamingDataStore)pageDataStore).storeData(sessionId, pageId, data);
+	}
+
 	@Override
 	public IManageablePage getPage(final String sessionId, final int id)
 	{
@@ -147,6 +212,12 @@ public class DefaultPageStore implements IPageStore
 	@Override
 	public void storePage(final String sessionId, final IManageablePage page)
 	{
+		if (supportsStreaming())
+		{
+			streamPage(sessionId, page);
+			return;
+		}
+
 		SerializedPage serialized = serializePage(sessionId, page);
 		if (serialized != null)
 		{
@@ -373,7 +444,16 @@ public class DefaultPageStore implements IPageStore
 
 		SerializedPage serializedPage = null;
 
-		byte[] data = pageSerializer.serialize(page);
+		long start = RequestPhaseTimings.start();
+		byte[] data;
+		try
+		{
+			data = pageSerializer.serialize(page);
+		}
+		finally
+		{
+			RequestPhaseTimings.stop(RequestPhase.PAGE_SERIALIZATION, start);
+		}
 
 		if (data != null)
 		{
@@ -386,6 +466,50 @@ public class DefaultPageStore implements IPageStore
 		return serializedPage;
 	}
 
+	/**
+	 * Serializes the page into a {@link PageDataBuffer} and stores it without copying it into a
+	 * byte array. Only the pages kept in the {@link SerializedPagesCache} are copied.
+	 * 
+	 * @param sessionId
+	 * @param page
+	 */
+	private void streamPage(final String sessionId, final IManageablePage page)
+	{
+		Args.notNull(sessionId, "sessionId");
+		Args.notNull(page, "page");
+
+		PageDataBuffer data = new PageDataBuffer();
+		long start = RequestPhaseTimings.start();
+		boolean serialized;
+		try
+		{
+			serialized = ((IStreamingSerializer)pageSerializer).serialize(page, data);
+		}
+		finally
+		{
+			RequestPhaseTimings.stop(RequestPhase.PAGE_SERIALIZATION, start);
+		}
+		if (serialized)
+		{
+			if (serializedPagesCache.isEnabled())
+			{
+				// copied before the data store may release the buffer
+				serializedPagesCache.storePage(new SerializedPage(sessionId, page.getPageId(),
+					data.toByteArray()));
+			}
+			storePageData(sessionId, page.getPageId(), data);
+		}
+		else
+		{
+			data.release();
+			if (LOG.isWarnEnabled())
+			{
+				LOG.warn("Page {} cannot be serialized. See previous logs for possible reasons.",
+					page);
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * @param data
@@ -404,24 +528,100 @@ public class DefaultPageStore implements IPageStore
 	 * For example a page is serialized during request, but it might be also later serialized on
 	 * session replication. The purpose of this cache is to make sure that the data obtained from
 	 * first serialization is reused on second serialization.
+	 * <p>
+	 * The pages are indexed by session id and page id. To reduce contention the cache is split into
+	 * segments, each of them with its own lock and an equal share of the maximum number of entries.
+	 * The maximum number of bytes is shared by all segments - when it is exceeded the least
+	 * recently used page of the whole cache is evicted. A secondary index by session id makes the
+	 * removal of all pages of a session independent of the size of the cache.
 	 * 
 	 * @author Matej Knopp
 	 */
 	static class SerializedPagesCache
 	{
-		private final int size;
+		/**
+		 * The maximum number of segments
+		 */
+		private static final int MAX_SEGMENTS = 16;
 
-		private final List<SoftReference<SerializedPage>> cache;
+		/**
+		 * The minimum number of entries per segment, so that small caches keep a strict LRU order
+		 */
+		private static final int MIN_SEGMENT_SIZE = 16;
+
+		private final boolean enabled;
+
+		private final long maxBytes;
+
+		private final Segment[] segments;
+
+		/**
+		 * The ids of the cached pages per session
+		 */
+		private final ConcurrentMap<String, Set<Integer>> sessions = new ConcurrentHashMap<String, Set<Integer>>();
+
+		/**
+		 * The number of bytes of all cached pages
+		 */
+		private final AtomicLong bytes = new AtomicLong();
+
+		/**
+		 * Generates the access stamps used to find the least recently used page across segments
+		 */
+		private final AtomicLong clock = new AtomicLong();
 
 		/**
 		 * Construct.
 		 * 
 		 * @param size
+		 *            the maximum number of cached pages
 		 */
 		public SerializedPagesCache(final int size)
 		{
-			this.size = size;
-			cache = new ArrayList<SoftReference<SerializedPage>>(size);
+			this(size, 0);
+		}
+
+		/**
+		 * Construct.
+		 * 
+		 * @param size
+		 *            the maximum number of cached pages, {@code 0} for no limit by count
+		 * @param maxBytes
+		 *            the maximum number of bytes of the cached pages, {@code 0} for no limit by
+		 *            size
+		 */
+		public SerializedPagesCache(final int size, final long maxBytes)
+		{
+			enabled = size > 0 || maxBytes > 0;
+			this.maxBytes = maxBytes;
+
+			int count = 1;
+			while (count < MAX_SEGMENTS && (size == 0 || count * 2 * MIN_SEGMENT_SIZE <= size))
+			{
+				count *= 2;
+			}
+
+			segments = new Segment[count];
+			for (int i = 0; i < count; i++)
+			{
+				// distribute the limit so that the sum of the segments' limits is the total limit
+				segments[i] = new Segment(size / count + (i < size % count ? 1 : 0));
+			}
+		}
+
+		/**
+		 * @return {@code true} if the cache stores pages
+		 */
+		boolean isEnabled()
+		{
+			return enabled;
+		}
+
+		private Segment segmentFor(final PageKey key)
+		{
+			int hash = key.hashCode();
+			hash ^= (hash >>> 16);
+			return segments[hash & (segments.length - 1)];
 		}
 
 		/**
@@ -432,24 +632,12 @@ public class DefaultPageStore implements IPageStore
 		 */
 		public SerializedPage removePage(final String sessionId, final int id)
 		{
-			if (size > 0)
+			if (enabled)
 			{
 				Args.notNull(sessionId, "sessionId");
 
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == id &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							return entry;
-						}
-					}
-				}
+				PageKey key = new PageKey(sessionId, id);
+				return segmentFor(key).remove(key);
 			}
 			return null;
 		}
@@ -462,20 +650,17 @@ public class DefaultPageStore implements IPageStore
 		 */
 		public void removePages(String sessionId)
 		{
-			if (size > 0)
+			if (enabled)
 			{
 				Args.notNull(sessionId, "sessionId");
 
-				synchronized (cache)
+				Set<Integer> ids = sessions.remove(sessionId);
+				if (ids != null)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					for (Integer id : ids)
 					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-						}
+						PageKey key = new PageKey(sessionId, id);
+						segmentFor(key).remove(key);
 					}
 				}
 			}
@@ -492,34 +677,14 @@ public class DefaultPageStore implements IPageStore
 		 */
 		public SerializedPage getPage(String sessionId, int pageId)
 		{
-			SerializedPage result = null;
-			if (size > 0)
+			if (enabled)
 			{
 				Args.notNull(sessionId, "sessionId");
 
-				synchronized (cache)
-				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
-					{
-						SoftReference<SerializedPage> ref = i.next();
-						SerializedPage entry = ref.get();
-						if (entry != null && entry.getPageId() == pageId &&
-							entry.getSessionId().equals(sessionId))
-						{
-							i.remove();
-							result = entry;
-							break;
-						}
-					}
-
-					if (result != null)
-					{
-						// move to top
-						storePage(result);
-					}
-				}
+				PageKey key = new PageKey(sessionId, pageId);
+				return segmentFor(key).get(key);
 			}
-			return result;
+			return null;
 		}
 
 		/**
@@ -530,26 +695,268 @@ public class DefaultPageStore implements IPageStore
 		 */
 		void storePage(SerializedPage page)
 		{
-			if (size > 0)
+			if (enabled)
 			{
-				synchronized (cache)
+				PageKey key = new PageKey(page.getSessionId(), page.getPageId());
+				segmentFor(key).put(key, page);
+				index(key);
+				evictExceedingBytes();
+			}
+		}
+
+		/**
+		 * Evicts the least recently used pages of all segments until the cached pages fit into
+		 * {@link #maxBytes}
+		 */
+		private void evictExceedingBytes()
+		{
+			while (maxBytes > 0 && bytes.get() > maxBytes)
+			{
+				Segment victim = null;
+				long oldest = Long.MAX_VALUE;
+				for (Segment segment : segments)
 				{
-					for (Iterator<SoftReference<SerializedPage>> i = cache.iterator(); i.hasNext();)
+					long stamp = segment.eldestStamp();
+					if (stamp < oldest)
 					{
-						SoftReference<SerializedPage> r = i.next();
-						SerializedPage entry = r.get();
-						if (entry != null && entry.equals(page))
-						{
-							i.remove();
-							break;
-						}
+						oldest = stamp;
+						victim = segment;
 					}
-					cache.add(new SoftReference<SerializedPage>(page));
-					if (cache.size() > size)
+				}
+
+				if (victim == null)
+				{
+					break;
+				}
+				victim.evictEldest(oldest);
+			}
+		}
+
+		private void index(PageKey key)
+		{
+			Set<Integer> ids;
+			do
+			{
+				ids = sessions.get(key.sessionId);
+				if (ids == null)
+				{
+					ids = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+					Set<Integer> existing = sessions.putIfAbsent(key.sessionId, ids);
+					if (existing != null)
 					{
-						cache.remove(0);
+						ids = existing;
 					}
 				}
+				ids.add(key.pageId);
+			}
+			// retry if the set has been removed concurrently by unindex() or removePages()
+			while (sessions.get(key.sessionId) != ids);
+		}
+
+		private void unindex(PageKey key)
+		{
+			Set<Integer> ids = sessions.get(key.sessionId);
+			if (ids != null)
+			{
+				ids.remove(key.pageId);
+				if (ids.isEmpty())
+				{
+					sessions.remove(key.sessionId, ids);
+				}
+			}
+		}
+
+		/**
+		 * @return the number of cached pages
+		 */
+		int size()
+		{
+			int size = 0;
+			for (Segment segment : segments)
+			{
+				size += segment.size();
+			}
+			return size;
+		}
+
+		/**
+		 * @return the number of bytes of the cached pages
+		 */
+		long bytes()
+		{
+			return bytes.get();
+		}
+
+		/**
+		 * The key of a cached page
+		 */
+		private static final class PageKey
+		{
+			private final String sessionId;
+
+			private final int pageId;
+
+			private PageKey(String sessionId, int pageId)
+			{
+				this.sessionId = sessionId;
+				this.pageId = pageId;
+			}
+
+			@Override
+			public boolean equals(Object obj)
+			{
+				if (this == obj)
+				{
+					return true;
+				}
+				if ((obj instanceof PageKey) == false)
+				{
+					return false;
+				}
+				PageKey rhs = (PageKey)obj;
+				return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+			}
+
+			@Override
+			public int hashCode()
+			{
+				return 31 * sessionId.hashCode() + pageId;
+			}
+		}
+
+		/**
+		 * A soft reference to a cached page that remembers the size of the page's data, so that it
+		 * can be accounted for even after the page has been garbage collected.
+		 */
+		private static final class CacheEntry extends SoftReference<SerializedPage>
+		{
+			private final int length;
+
+			/**
+			 * The value of {@link SerializedPagesCache#clock} at the last access
+			 */
+			private long stamp;
+
+			private CacheEntry(SerializedPage page, long stamp)
+			{
+				super(page);
+				length = page.getData() != null ? page.getData().length : 0;
+				this.stamp = stamp;
+			}
+		}
+
+		/**
+		 * A part of the cache with its own lock
+		 */
+		private final class Segment
+		{
+			private final int maxEntries;
+
+			/**
+			 * The cached pages in access order
+			 */
+			private final LinkedHashMap<PageKey, CacheEntry> entries = new LinkedHashMap<PageKey, CacheEntry>(
+				16, 0.75f, true);
+
+			private Segment(int maxEntries)
+			{
+				this.maxEntries = maxEntries;
+			}
+
+			private synchronized SerializedPage get(PageKey key)
+			{
+				CacheEntry entry = entries.get(key);
+				if (entry == null)
+				{
+					return null;
+				}
+
+				SerializedPage page = entry.get();
+				if (page == null)
+				{
+					// collected by the garbage collector
+					remove(key);
+				}
+				else
+				{
+					entry.stamp = clock.incrementAndGet();
+				}
+				return page;
+			}
+
+			private synchronized void put(PageKey key, SerializedPage page)
+			{
+				CacheEntry entry = new CacheEntry(page, clock.incrementAndGet());
+				CacheEntry previous = entries.put(key, entry);
+				bytes.addAndGet(previous != null ? entry.length - previous.length : entry.length);
+
+				if (maxEntries > 0 && entries.size() > maxEntries)
+				{
+					Iterator<Map.Entry<PageKey, CacheEntry>> eldest = entries.entrySet().iterator();
+					evict(eldest);
+				}
+			}
+
+			private synchronized SerializedPage remove(PageKey key)
+			{
+				CacheEntry entry = entries.remove(key);
+				if (entry == null)
+				{
+					return null;
+				}
+				bytes.addAndGet(-entry.length);
+				unindex(key);
+				return entry.get();
+			}
+
+			/**
+			 * @return the access stamp of the least recently used page or {@link Long#MAX_VALUE}
+			 *         if the segment is empty
+			 */
+			private synchronized long eldestStamp()
+			{
+				if (entries.isEmpty())
+				{
+					return Long.MAX_VALUE;
+				}
+				return entries.values().iterator().next().stamp;
+			}
+
+			/**
+			 * Evicts the least recently used page if it has not been accessed since its stamp has
+			 * been read
+			 * 
+			 * @param stamp
+			 */
+			private synchronized void evictEldest(long stamp)
+			{
+				Iterator<Map.Entry<PageKey, CacheEntry>> eldest = entries.entrySet().iterator();
+				if (eldest.hasNext())
+				{
+					Map.Entry<PageKey, CacheEntry> entry = eldest.next();
+					if (entry.getValue().stamp == stamp)
+					{
+						evict(eldest, entry);
+					}
+				}
+			}
+
+			private void evict(Iterator<Map.Entry<PageKey, CacheEntry>> iterator)
+			{
+				evict(iterator, iterator.next());
+			}
+
+			private void evict(Iterator<Map.Entry<PageKey, CacheEntry>> iterator,
+				Map.Entry<PageKey, CacheEntry> entry)
+			{
+				iterator.remove();
+				bytes.addAndGet(-entry.getValue().length);
+				unindex(entry.getKey());
+			}
+
+			private synchronized int size()
+			{
+				return entries.size();
 			}
 		}
 	}
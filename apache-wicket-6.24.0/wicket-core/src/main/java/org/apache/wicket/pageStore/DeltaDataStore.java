@@ -0,0 +1,726 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link IDataStore} decorator which stores the pages of a session as binary deltas against a
+ * full snapshot of a previous page.
+ * <p>
+ * The first page of a session is stored once as a snapshot, under an id which is not used by
+ * pages, and the page itself as a small reference to it. The following pages, including the new
+ * versions of a page with the same id, are stored as deltas against this snapshot, until the
+ * configured number of deltas has been stored or a delta is not much smaller than the page. Then
+ * the page becomes the new snapshot. Consecutive versions of a page usually differ in a few bytes
+ * only, so the deltas are much smaller than the pages.
+ * </p>
+ * <p>
+ * The ids of the snapshots are counted per session. The last used one is stored with the
+ * snapshots, so they are not reused after a restart while deltas referring to them are stored.
+ * </p>
+ * <p>
+ * A page can only be read as long as its snapshot is in the wrapped data store. A data store which
+ * evicts the oldest data first, like {@link DiskDataStore}, would evict the snapshot before the
+ * pages referring to it. So the snapshot is stored after the first page referring to it, and
+ * stored again whenever the deltas written since then are as big as the snapshot. It is never
+ * older than more than one snapshot worth of deltas, and at most doubles the written bytes of the
+ * deltas. The records of this store start with a magic header, data which has not been written by
+ * this store is returned unchanged.
+ * </p>
+ */
+public class DeltaDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(DeltaDataStore.class);
+
+	/** the start of the records written by this store, serialized objects start with 0xACED */
+	private static final byte[] MAGIC = { (byte)0xDE, (byte)0x17, 'W', 'D' };
+
+	private static final byte SNAPSHOT = 0;
+
+	private static final byte DELTA = 1;
+
+	private static final byte REFERENCE = 2;
+
+	private static final byte SEQUENCE = 3;
+
+	/** the length of the magic header and the type of a record */
+	static final int HEADER_LENGTH = MAGIC.length + 1;
+
+	private static final byte OP_END = 0;
+
+	private static final byte OP_COPY = 1;
+
+	private static final byte OP_INSERT = 2;
+
+	/** the size of the blocks of a snapshot which are searched in a page */
+	static final int BLOCK_SIZE = 16;
+
+	/** a new snapshot is started when a delta is bigger than this part of the page */
+	private static final double MAX_DELTA_RATIO = 0.5;
+
+	private static final int DEFAULT_MAX_SESSIONS = 1000;
+
+	/** the id of the last used snapshot id of a session. Page ids are never negative. */
+	private static final int SEQUENCE_ID = Integer.MIN_VALUE;
+
+	/** the first id used for snapshots */
+	private static final int SNAPSHOT_ID_BASE = SEQUENCE_ID + 1;
+
+	private final IDataStore dataStore;
+
+	private final int maxChainLength;
+
+	/** the current snapshot of each session */
+	private final Map<String, Snapshot> snapshots;
+
+	private final AtomicLong snapshotCount = new AtomicLong();
+
+	private final AtomicLong deltaCount = new AtomicLong();
+
+	private final AtomicLong storedBytes = new AtomicLong();
+
+	private final AtomicLong writtenBytes = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped data store
+	 * @param maxChainLength
+	 *            the maximum number of pages stored as deltas against the same snapshot
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxChainLength)
+	{
+		this(dataStore, maxChainLength, DEFAULT_MAX_SESSIONS);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped data store
+	 * @param maxChainLength
+	 *            the maximum number of pages stored as deltas against the same snapshot
+	 * @param maxSessions
+	 *            the maximum number of sessions whose current snapshot is remembered. A session
+	 *            which is not remembered starts a new snapshot with its next page.
+	 */
+	public DeltaDataStore(final IDataStore dataStore, final int maxChainLength,
+		final int maxSessions)
+	{
+		this.dataStore = Args.notNull(dataStore, "dataStore");
+		this.maxChainLength = Args.withinRange(1, Integer.MAX_VALUE, maxChainLength,
+			"maxChainLength");
+		snapshots = new MostRecentlyUsedMap<String, Snapshot>(Args.withinRange(1,
+			Integer.MAX_VALUE, maxSessions, "maxSessions"));
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] data = dataStore.getData(sessionId, id);
+		if (data == null || data.length == 0)
+		{
+			return data;
+		}
+
+		switch (getType(data))
+		{
+			case SNAPSHOT :
+				return Arrays.copyOfRange(data, HEADER_LENGTH, data.length);
+			case DELTA :
+			case REFERENCE :
+				return readDelta(sessionId, id, data);
+			default :
+				// not written by this data store
+				return data;
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		dataStore.removeData(sessionId, id);
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		synchronized (snapshots)
+		{
+			snapshots.remove(sessionId);
+		}
+		dataStore.removeData(sessionId);
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		storedBytes.addAndGet(data.length);
+
+		Snapshot snapshot;
+		synchronized (snapshots)
+		{
+			snapshot = snapshots.get(sessionId);
+			if (snapshot == null)
+			{
+				snapshot = new Snapshot();
+				snapshots.put(sessionId, snapshot);
+			}
+		}
+
+		synchronized (snapshot)
+		{
+			if (snapshot.id != 0 && snapshot.deltas < maxChainLength)
+			{
+				byte[] base = getSnapshotData(sessionId, snapshot);
+				if (base != null)
+				{
+					byte[] delta = encode(snapshot.id, snapshot.checksum, base, data);
+					if (delta.length <= data.length * MAX_DELTA_RATIO)
+					{
+						snapshot.deltas++;
+						deltaCount.incrementAndGet();
+						write(sessionId, id, delta);
+						snapshot.written += delta.length;
+						if (snapshot.written >= base.length)
+						{
+							writeSnapshot(sessionId, snapshot, base);
+						}
+						return;
+					}
+				}
+			}
+
+			// the page becomes the new snapshot, its data is written once
+			snapshot.id = nextSnapshotId(sessionId, snapshot);
+			snapshot.checksum = checksum(data);
+			snapshot.data = new SoftReference<byte[]>(data);
+			snapshot.deltas = 0;
+			snapshotCount.incrementAndGet();
+			write(sessionId, id, reference(snapshot.id, snapshot.checksum));
+			writeSnapshot(sessionId, snapshot, data);
+			writeSequence(sessionId, snapshot.sequence);
+		}
+	}
+
+	/**
+	 * @param sessionId
+	 * @param snapshot
+	 * @return the next snapshot id of the session, after the last one stored in the wrapped data
+	 *         store
+	 */
+	private int nextSnapshotId(final String sessionId, final Snapshot snapshot)
+	{
+		if (snapshot.sequence < 0)
+		{
+			snapshot.sequence = readSequence(sessionId);
+		}
+		snapshot.sequence = (snapshot.sequence + 1) & 0x3FFFFFFF;
+		return SNAPSHOT_ID_BASE + snapshot.sequence;
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the last snapshot id of the session stored in the wrapped data store or {@code 0}
+	 */
+	private int readSequence(final String sessionId)
+	{
+		byte[] data = dataStore.getData(sessionId, SEQUENCE_ID);
+		if (data == null || data.length != HEADER_LENGTH + 4 || getType(data) != SEQUENCE)
+		{
+			return 0;
+		}
+		return ((data[HEADER_LENGTH] & 0xFF) << 24) | ((data[HEADER_LENGTH + 1] & 0xFF) << 16) |
+			((data[HEADER_LENGTH + 2] & 0xFF) << 8) | (data[HEADER_LENGTH + 3] & 0xFF);
+	}
+
+	/**
+	 * Stores the last snapshot id after the snapshot, so it is not evicted before it
+	 * 
+	 * @param sessionId
+	 * @param sequence
+	 */
+	private void writeSequence(final String sessionId, final int sequence)
+	{
+		byte[] data = record(SEQUENCE, 4);
+		data[HEADER_LENGTH] = (byte)(sequence >>> 24);
+		data[HEADER_LENGTH + 1] = (byte)(sequence >>> 16);
+		data[HEADER_LENGTH + 2] = (byte)(sequence >>> 8);
+		data[HEADER_LENGTH + 3] = (byte)sequence;
+		write(sessionId, SEQUENCE_ID, data);
+	}
+
+	/**
+	 * Stores the snapshot after the pages referring to it, so it is not evicted before them
+	 * 
+	 * @param sessionId
+	 * @param snapshot
+	 * @param data
+	 *            the data of the snapshot
+	 */
+	private void writeSnapshot(final String sessionId, final Snapshot snapshot, final byte[] data)
+	{
+		byte[] full = record(SNAPSHOT, data.length);
+		System.arraycopy(data, 0, full, HEADER_LENGTH, data.length);
+		write(sessionId, snapshot.id, full);
+		snapshot.written = 0;
+	}
+
+	/**
+	 * @param type
+	 * @param length
+	 *            the length of the data after the header
+	 * @return a record with the header of the type
+	 */
+	private static byte[] record(final byte type, final int length)
+	{
+		byte[] record = new byte[HEADER_LENGTH + length];
+		System.arraycopy(MAGIC, 0, record, 0, MAGIC.length);
+		record[MAGIC.length] = type;
+		return record;
+	}
+
+	/**
+	 * @param snapshotId
+	 * @param checksum
+	 * @return the record of a page which is the snapshot with the id
+	 */
+	private static byte[] reference(final int snapshotId, final long checksum)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_LENGTH + 12);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.write(MAGIC);
+			out.writeByte(REFERENCE);
+			out.writeInt(snapshotId);
+			out.writeLong(checksum);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// cannot happen with ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void write(final String sessionId, final int id, final byte[] data)
+	{
+		writtenBytes.addAndGet(data.length);
+		dataStore.storeData(sessionId, id, data);
+	}
+
+	@Override
+	public void destroy()
+	{
+		dataStore.destroy();
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return dataStore.isReplicated();
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return dataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the wrapped data store
+	 */
+	public IDataStore getDataStore()
+	{
+		return dataStore;
+	}
+
+	/**
+	 * @return the maximum number of pages stored as deltas against the same snapshot
+	 */
+	public int getMaxChainLength()
+	{
+		return maxChainLength;
+	}
+
+	/**
+	 * @return the number of snapshots written
+	 */
+	public long getSnapshotCount()
+	{
+		return snapshotCount.get();
+	}
+
+	/**
+	 * @return the number of pages stored as a delta against an existing snapshot
+	 */
+	public long getDeltaCount()
+	{
+		return deltaCount.get();
+	}
+
+	/**
+	 * @return the number of bytes of all stored pages
+	 */
+	public long getStoredBytes()
+	{
+		return storedBytes.get();
+	}
+
+	/**
+	 * @return the number of bytes written to the wrapped data store
+	 */
+	public long getWrittenBytes()
+	{
+		return writtenBytes.get();
+	}
+
+	/**
+	 * @param sessionId
+	 * @param snapshot
+	 * @return the data of the snapshot or {@code null} if it is no longer available
+	 */
+	private byte[] getSnapshotData(final String sessionId, final Snapshot snapshot)
+	{
+		byte[] data = snapshot.data.get();
+		if (data == null)
+		{
+			data = readSnapshot(sessionId, snapshot.id, snapshot.checksum);
+			if (data != null)
+			{
+				snapshot.data = new SoftReference<byte[]>(data);
+			}
+		}
+		return data;
+	}
+
+	private byte[] readSnapshot(final String sessionId, final int id, final long checksum)
+	{
+		byte[] data = dataStore.getData(sessionId, id);
+		if (data == null || getType(data) != SNAPSHOT)
+		{
+			return null;
+		}
+		data = Arrays.copyOfRange(data, HEADER_LENGTH, data.length);
+		// the id may have been reused after a restart
+		return checksum(data) == checksum ? data : null;
+	}
+
+	/**
+	 * @param sessionId
+	 * @param id
+	 * @param delta
+	 *            a delta or a reference to a snapshot
+	 * @return the data of the page or {@code null} if its snapshot is no longer available
+	 */
+	private byte[] readDelta(final String sessionId, final int id, final byte[] delta)
+	{
+		try
+		{
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta,
+				HEADER_LENGTH, delta.length - HEADER_LENGTH));
+			int snapshotId = in.readInt();
+			long checksum = in.readLong();
+
+			byte[] base = null;
+			Snapshot snapshot;
+			synchronized (snapshots)
+			{
+				snapshot = snapshots.get(sessionId);
+			}
+			if (snapshot != null)
+			{
+				synchronized (snapshot)
+				{
+					if (snapshot.id == snapshotId)
+					{
+						base = getSnapshotData(sessionId, snapshot);
+					}
+				}
+			}
+			if (base == null)
+			{
+				base = readSnapshot(sessionId, snapshotId, checksum);
+			}
+			if (base == null)
+			{
+				log.debug(
+					"The snapshot of page with id '{}' in session with id '{}' is no longer available",
+					id, sessionId);
+				return null;
+			}
+			if (getType(delta) == REFERENCE)
+			{
+				return base.clone();
+			}
+			return decode(in, base);
+		}
+		catch (IOException e)
+		{
+			log.error("Cannot read the delta of page with id '" + id + "' in session with id '" +
+				sessionId + "'", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Encodes the data as copies of blocks of the base and inserted bytes.
+	 * 
+	 * @param snapshotId
+	 * @param checksum
+	 *            the checksum of the base
+	 * @param base
+	 * @param data
+	 * @return the delta
+	 */
+	static byte[] encode(final int snapshotId, final long checksum, final byte[] base,
+		final byte[] data)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.write(MAGIC);
+			out.writeByte(DELTA);
+			out.writeInt(snapshotId);
+			out.writeLong(checksum);
+			out.writeInt(data.length);
+
+			int[] blocks = indexBlocks(base);
+			int mask = blocks.length - 1;
+			int literal = 0;
+			int i = 0;
+			while (i + BLOCK_SIZE <= data.length && blocks.length > 0)
+			{
+				int candidate = blocks[hash(data, i) & mask];
+				if (candidate >= 0 && equal(base, candidate, data, i))
+				{
+					// extend the match in both directions
+					int start = i;
+					int baseStart = candidate;
+					while (start > literal && baseStart > 0 &&
+						data[start - 1] == base[baseStart - 1])
+					{
+						start--;
+						baseStart--;
+					}
+					int end = i + BLOCK_SIZE;
+					int baseEnd = candidate + BLOCK_SIZE;
+					while (end < data.length && baseEnd < base.length && data[end] == base[baseEnd])
+					{
+						end++;
+						baseEnd++;
+					}
+
+					writeInsert(out, data, literal, start);
+					out.writeByte(OP_COPY);
+					out.writeInt(baseStart);
+					out.writeInt(end - start);
+					i = end;
+					literal = end;
+				}
+				else
+				{
+					i++;
+				}
+			}
+			writeInsert(out, data, literal, data.length);
+			out.writeByte(OP_END);
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch (IOException e)
+		{
+			// cannot happen with ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeInsert(final DataOutputStream out, final byte[] data,
+		final int start, final int end) throws IOException
+	{
+		if (end > start)
+		{
+			out.writeByte(OP_INSERT);
+			out.writeInt(end - start);
+			out.write(data, start, end - start);
+		}
+	}
+
+	/**
+	 * Applies the delta read from the stream to the base
+	 * 
+	 * @param in
+	 *            the delta after the snapshot id and checksum
+	 * @param base
+	 * @return the data
+	 * @throws IOException
+	 */
+	static byte[] decode(final DataInputStream in, final byte[] base) throws IOException
+	{
+		byte[] data = new byte[in.readInt()];
+		int position = 0;
+		byte op;
+		while ((op = in.readByte()) != OP_END)
+		{
+			int offset = op == OP_COPY ? in.readInt() : 0;
+			int length = in.readInt();
+			if (length < 0 || length > data.length - position)
+			{
+				throw new IOException("Invalid delta length " + length);
+			}
+			if (op == OP_COPY)
+			{
+				if (offset < 0 || offset > base.length - length)
+				{
+					throw new IOException("Invalid delta offset " + offset);
+				}
+				System.arraycopy(base, offset, data, position, length);
+			}
+			else if (op == OP_INSERT)
+			{
+				in.readFully(data, position, length);
+			}
+			else
+			{
+				throw new IOException("Invalid delta operation " + op);
+			}
+			position += length;
+		}
+		if (position != data.length)
+		{
+			throw new IOException("Incomplete delta");
+		}
+		return data;
+	}
+
+	/**
+	 * @param base
+	 * @return a hash table with the offset of the first block of the base with each hash or
+	 *         {@code -1}
+	 */
+	private static int[] indexBlocks(final byte[] base)
+	{
+		int count = base.length / BLOCK_SIZE;
+		if (count == 0)
+		{
+			return new int[0];
+		}
+		int[] blocks = new int[Integer.highestOneBit(count * 2 - 1) << 1];
+		Arrays.fill(blocks, -1);
+		int mask = blocks.length - 1;
+		for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE)
+		{
+			int slot = hash(base, offset) & mask;
+			if (blocks[slot] == -1)
+			{
+				blocks[slot] = offset;
+			}
+		}
+		return blocks;
+	}
+
+	private static int hash(final byte[] data, final int offset)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++)
+		{
+			hash = 31 * hash + data[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equal(final byte[] base, final int baseOffset, final byte[] data,
+		final int offset)
+	{
+		for (int i = 0; i < BLOCK_SIZE; i++)
+		{
+			if (base[baseOffset + i] != data[offset + i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param data
+	 * @return the type of the record or {@code -1} if it has not been written by this store
+	 */
+	private static int getType(final byte[] data)
+	{
+		if (data.length < HEADER_LENGTH)
+		{
+			return -1;
+		}
+		for (int i = 0; i < MAGIC.length; i++)
+		{
+			if (data[i] != MAGIC[i])
+			{
+				return -1;
+			}
+		}
+		return data[MAGIC.length];
+	}
+
+	private static long checksum(final byte[] data)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	/**
+	 * The current snapshot of a session
+	 */
+	private static class Snapshot
+	{
+		/** the id under which the snapshot is stored or {@code 0} if there is none yet */
+		private int id;
+
+		/** the last snapshot id of the session or {@code -1} if it has not been read yet */
+		private int sequence = -1;
+
+		private long checksum;
+
+		private SoftReference<byte[]> data;
+
+		/** the number of pages stored as deltas against this snapshot */
+		private int deltas;
+
+		/** the number of bytes of the deltas written since the snapshot has been stored */
+		private int written;
+	}
+}
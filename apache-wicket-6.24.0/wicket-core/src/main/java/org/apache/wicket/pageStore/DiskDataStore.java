@@ -16,24 +16,23 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
@@ -41,17 +40,44 @@ import org.apache.wicket.util.file.Files;
 import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A data store implementation which stores the data on disk (in a file system)
+ * <p>
+ * The pages of each session are stored in a data file in the session's folder. The positions of
+ * the pages in the data file are kept in memory and periodically written to a small binary index
+ * file next to the data file, so the pages survive a restart or a crash. Nothing is read at
+ * startup, the index of a session is loaded when the session is accessed for the first time, so
+ * the startup time does not depend on the number of stored sessions. A session folder without an
+ * index, e.g. written by older versions, is deleted then. Every
+ * page in the data file is preceded by a header with its id, size and
+ * checksum, so a page which has been overwritten after the last written index is never returned
+ * instead of another one.
  */
-public class DiskDataStore implements IDataStore
+public class DiskDataStore implements IStreamingDataStore
 {
 	private static final Logger log = LoggerFactory.getLogger(DiskDataStore.class);
 
-	private static final String INDEX_FILE_NAME = "DiskDataStoreIndex";
+	/**
+	 * The index of all sessions, written by older versions with Java serialization
+	 */
+	private static final String LEGACY_INDEX_FILE_NAME = "DiskDataStoreIndex";
+
+	private static final String INDEX_FILE_NAME = "index";
+
+	private static final int INDEX_MAGIC = 0x57444458;
+
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * The size of the header before each page in the data file: page id, data length and CRC32
+	 */
+	static final int PAGE_HEADER_SIZE = 16;
+
+	private static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.seconds(10);
 
 	private final String applicationName;
 
@@ -61,6 +87,25 @@ public class DiskDataStore implements IDataStore
 
 	private final ConcurrentMap<String, SessionEntry> sessionEntryMap;
 
+	private final FileChannelPool fileChannelPool;
+
+	/**
+	 * Orders the first accesses to the sessions, which may load or delete their folders
+	 */
+	private final Object sessionLoadLock = new Object();
+
+	private final long checkpointInterval;
+
+	/**
+	 * Started with the first stored page. Changed only while holding {@code this}.
+	 */
+	private volatile Thread checkpointThread;
+
+	/**
+	 * Guarded by {@code this}.
+	 */
+	private boolean destroyed;
+
 	/**
 	 * Construct.
 	 * 
@@ -71,16 +116,59 @@ public class DiskDataStore implements IDataStore
 	public DiskDataStore(final String applicationName, final File fileStoreFolder,
 		final Bytes maxSizePerSession)
 	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, 0);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 *            the maximum number of session data files kept open between accesses. {@code 0}
+	 *            opens and closes the file for every read and write.
+	 */
+	public DiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final int fileChannelPoolCapacity)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, fileChannelPoolCapacity,
+			DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 *            the maximum number of session data files kept open between accesses. {@code 0}
+	 *            opens and closes the file for every read and write.
+	 * @param checkpointInterval
+	 *            how often the indices of the modified sessions are written to disk.
+	 *            {@link Duration#NONE} writes them only when the store is destroyed. The thread
+	 *            writing them is started when the first page is stored.
+	 */
+	public DiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final int fileChannelPoolCapacity,
+		final Duration checkpointInterval)
+	{
+		this.checkpointInterval = Args.notNull(checkpointInterval, "checkpointInterval")
+			.getMilliseconds();
 		this.applicationName = applicationName;
 		this.fileStoreFolder = fileStoreFolder;
 		maxSizePerPageSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
 		sessionEntryMap = new ConcurrentHashMap<String, SessionEntry>();
+		fileChannelPool = fileChannelPoolCapacity > 0
+			? new FileChannelPool(fileChannelPoolCapacity) : null;
 
 		try
 		{
 			if (this.fileStoreFolder.exists() || this.fileStoreFolder.mkdirs())
 			{
-				loadIndex();
+				// the data files of older versions have no page headers and cannot be read
+				Files.remove(new File(getStoreFolder(), LEGACY_INDEX_FILE_NAME));
 			}
 			else
 			{
@@ -103,7 +191,30 @@ public class DiskDataStore implements IDataStore
 	public void destroy()
 	{
 		log.debug("Destroying...");
-		saveIndex();
+		Thread thread;
+		synchronized (this)
+		{
+			destroyed = true;
+			thread = checkpointThread;
+			checkpointThread = null;
+		}
+		if (thread != null)
+		{
+			thread.interrupt();
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(e.getMessage(), e);
+			}
+		}
+		checkpoint();
+		if (fileChannelPool != null)
+		{
+			fileChannelPool.clear();
+		}
 		log.debug("Destroyed.");
 	}
 
@@ -186,9 +297,41 @@ public class DiskDataStore implements IDataStore
 				log.debug("Storing data for page with id '{}' in session with id '{}'", id, sessionId);
 			}
 			sessionEntry.savePage(id, data);
+			startCheckpointThread();
+		}
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final PageDataBuffer data)
+	{
+		try
+		{
+			SessionEntry sessionEntry = getSessionEntry(sessionId, true);
+			if (sessionEntry != null)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("Storing data for page with id '{}' in session with id '{}'", id,
+						sessionId);
+				}
+				sessionEntry.savePage(id, data);
+				startCheckpointThread();
+			}
+		}
+		finally
+		{
+			data.release();
 		}
 	}
 
+	/**
+	 * @return the pool of open file channels or {@code null} if the channels are not pooled
+	 */
+	public FileChannelPool getFileChannelPool()
+	{
+		return fileChannelPool;
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -197,90 +340,193 @@ public class DiskDataStore implements IDataStore
 	 */
 	protected SessionEntry getSessionEntry(final String sessionId, final boolean create)
 	{
-		if (!create)
+		SessionEntry entry = sessionEntryMap.get(sessionId);
+		if (entry != null)
 		{
-			return sessionEntryMap.get(sessionId);
+			return entry;
 		}
 
-		SessionEntry entry = new SessionEntry(this, sessionId);
-		SessionEntry existing = sessionEntryMap.putIfAbsent(sessionId, entry);
-		return existing != null ? existing : entry;
+		// the session may have been stored before a restart
+		synchronized (sessionLoadLock)
+		{
+			entry = sessionEntryMap.get(sessionId);
+			if (entry == null)
+			{
+				File sessionFolder = getSessionFolder(sessionId, false);
+				if (new File(sessionFolder, INDEX_FILE_NAME).isFile())
+				{
+					entry = loadSessionEntry(sessionId);
+				}
+				if (entry == null)
+				{
+					// without an index the data cannot be read
+					deleteSessionFolder(sessionFolder);
+					if (create)
+					{
+						entry = new SessionEntry(this, sessionId);
+					}
+				}
+				if (entry != null)
+				{
+					sessionEntryMap.put(sessionId, entry);
+				}
+			}
+		}
+		return entry;
 	}
 
 	/**
-	 * Load the index
+	 * Deletes the folder of a session and its parents if they are empty then.
+	 * 
+	 * @param sessionFolder
 	 */
-	@SuppressWarnings("unchecked")
-	private void loadIndex()
+	private static void deleteSessionFolder(final File sessionFolder)
 	{
-		File storeFolder = getStoreFolder();
-		File index = new File(storeFolder, INDEX_FILE_NAME);
-		if (index.exists() && index.length() > 0)
+		if (sessionFolder.exists())
 		{
-			try
+			Files.removeFolder(sessionFolder);
+			SessionEntry.cleanup(sessionFolder);
+		}
+	}
+
+	/**
+	 * Starts the thread writing the indices unless it is running already or disabled.
+	 */
+	private void startCheckpointThread()
+	{
+		if (checkpointInterval <= 0 || checkpointThread != null)
+		{
+			return;
+		}
+		synchronized (this)
+		{
+			if (checkpointThread == null && destroyed == false)
 			{
-				InputStream stream = new FileInputStream(index);
-				ObjectInputStream ois = new ObjectInputStream(stream);
-				try
-				{
-					Map<String, SessionEntry> map = (Map<String, SessionEntry>)ois.readObject();
-					sessionEntryMap.clear();
-					sessionEntryMap.putAll(map);
+				checkpointThread = new Thread(new CheckpointRunnable(checkpointInterval),
+					"Wicket-DiskDataStoreCheckpointThread");
+				checkpointThread.setDaemon(true);
+				checkpointThread.start();
+			}
+		}
+	}
 
-					for (Entry<String, SessionEntry> entry : sessionEntryMap.entrySet())
-					{
-						// initialize the diskPageStore reference
-						SessionEntry sessionEntry = entry.getValue();
-						sessionEntry.diskDataStore = this;
-					}
-				} finally {
-					stream.close();
-					ois.close();
-				}
+	/**
+	 * Writes the indices of all sessions modified since the last checkpoint.
+	 */
+	void checkpoint()
+	{
+		for (SessionEntry entry : sessionEntryMap.values())
+		{
+			entry.saveIndex();
+		}
+	}
+
+	/**
+	 * Loads the session entry from the index file in the session folder
+	 * 
+	 * @param sessionId
+	 * @return the session entry or {@code null} if there is no index for the session
+	 */
+	private SessionEntry loadSessionEntry(final String sessionId)
+	{
+		File index = new File(getSessionFolder(sessionId, false), INDEX_FILE_NAME);
+		if (index.exists() == false)
+		{
+			return null;
+		}
+
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+			{
+				throw new IOException("Unsupported index format");
 			}
-			catch (Exception e)
+			SessionEntry entry = new SessionEntry(this, sessionId);
+			entry.manager = PageWindowManager.read(in, maxSizePerPageSession.bytes());
+			return entry;
+		}
+		catch (IOException e)
+		{
+			log.error("Couldn't load DiskDataStore index from file " + index + ".", e);
+			return null;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	/**
+	 * @param data
+	 * @return the CRC32 checksum of the data
+	 */
+	private static long checksum(byte[] data)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+		throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+		throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read < 0)
 			{
-				log.error("Couldn't load DiskDataStore index from file " + index + ".", e);
+				throw new EOFException();
 			}
+			position += read;
 		}
-		Files.remove(index);
 	}
 
 	/**
-	 * 
+	 * Periodically writes the indices of the modified sessions
 	 */
-	private void saveIndex()
+	private class CheckpointRunnable implements Runnable
 	{
-		File storeFolder = getStoreFolder();
-		if (storeFolder.exists())
+		private final long interval;
+
+		private CheckpointRunnable(long interval)
 		{
-			File index = new File(storeFolder, INDEX_FILE_NAME);
-			Files.remove(index);
-			try
+			this.interval = interval;
+		}
+
+		@Override
+		public void run()
+		{
+			while (true)
 			{
-				OutputStream stream = new FileOutputStream(index);
-				ObjectOutputStream oos = new ObjectOutputStream(stream);
 				try
 				{
-					Map<String, SessionEntry> map = new HashMap<String, SessionEntry>(
-						sessionEntryMap.size());
-					for (Entry<String, SessionEntry> e : sessionEntryMap.entrySet())
-					{
-						if (e.getValue().unbound == false)
-						{
-							map.put(e.getKey(), e.getValue());
-						}
-					}
-					oos.writeObject(map);
-				} finally {
-					stream.close();
-					oos.close();
+					Thread.sleep(interval);
+				}
+				catch (InterruptedException e)
+				{
+					break;
+				}
+				try
+				{
+					checkpoint();
+				}
+				catch (RuntimeException e)
+				{
+					log.error("An error occurred while writing the DiskDataStore indices", e);
 				}
 			}
-			catch (Exception e)
-			{
-				log.error("Couldn't write DiskDataStore index to file " + index + ".", e);
-			}
+			log.debug("Shutting down the checkpoint thread");
 		}
 	}
 
@@ -297,6 +543,9 @@ public class DiskDataStore implements IDataStore
 		private PageWindowManager manager;
 		private boolean unbound = false;
 
+		/** whether the page windows have changed since the index was written */
+		private transient boolean dirty = false;
+
 		protected SessionEntry(DiskDataStore diskDataStore, String sessionId)
 		{
 			this.diskDataStore = diskDataStore;
@@ -336,41 +585,72 @@ public class DiskDataStore implements IDataStore
 		 * @param data
 		 */
 		public synchronized void savePage(int pageId, byte data[])
+		{
+			// only save page that has some data
+			if (data != null)
+			{
+				savePage(pageId, data.length, checksum(data), ByteBuffer.wrap(data));
+			}
+		}
+
+		/**
+		 * Saves the serialized page from the buffer to appropriate file.
+		 * 
+		 * @param pageId
+		 * @param data
+		 */
+		public synchronized void savePage(int pageId, PageDataBuffer data)
+		{
+			CRC32 crc = new CRC32();
+			data.updateChecksum(crc);
+			savePage(pageId, data.length(), crc.getValue(), data.toByteBuffers());
+		}
+
+		private void savePage(int pageId, int length, long checksum, ByteBuffer... data)
 		{
 			if (unbound)
 			{
 				return;
 			}
-			// only save page that has some data
-			if (data != null)
-			{
-				// allocate window for page
-				PageWindow window = getManager().createPageWindow(pageId, data.length);
 
-				FileChannel channel = getFileChannel(true);
-				if (channel != null)
+			// allocate window for page
+			PageWindow window = getManager().createPageWindow(pageId, PAGE_HEADER_SIZE + length);
+			dirty = true;
+
+			FileChannel channel = getFileChannel(true);
+			if (channel != null)
+			{
+				try
 				{
-					try
-					{
-						// write the content
-						channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
-					}
-					catch (IOException e)
+					// write the header and the content
+					ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER_SIZE);
+					header.putInt(pageId).putInt(length).putLong(checksum);
+					header.flip();
+					long position = window.getFilePartOffset();
+					writeFully(channel, header, position);
+					position += PAGE_HEADER_SIZE;
+					for (ByteBuffer buffer : data)
 					{
-						log.error("Error writing to a channel " + channel, e);
-					}
-					finally
-					{
-						IOUtils.closeQuietly(channel);
+						int size = buffer.remaining();
+						writeFully(channel, buffer, position);
+						position += size;
 					}
 				}
-				else
+				catch (IOException e)
 				{
-					log.warn(
-						"Cannot save page with id '{}' because the data file cannot be opened.",
-						pageId);
+					log.error("Error writing to a channel " + channel, e);
+					IOUtils.closeQuietly(channel);
+				}
+				finally
+				{
+					releaseFileChannel(channel);
 				}
 			}
+			else
+			{
+				log.warn("Cannot save page with id '{}' because the data file cannot be opened.",
+					pageId);
+			}
 		}
 
 		/**
@@ -385,6 +665,7 @@ public class DiskDataStore implements IDataStore
 				return;
 			}
 			getManager().removePage(pageId);
+			dirty = true;
 		}
 
 		/**
@@ -399,22 +680,35 @@ public class DiskDataStore implements IDataStore
 			FileChannel channel = getFileChannel(false);
 			if (channel != null)
 			{
-				ByteBuffer buffer = ByteBuffer.allocate(window.getFilePartSize());
+				int length = window.getFilePartSize() - PAGE_HEADER_SIZE;
+				ByteBuffer header = ByteBuffer.allocate(PAGE_HEADER_SIZE);
+				ByteBuffer buffer = ByteBuffer.allocate(Math.max(length, 0));
 				try
 				{
-					channel.read(buffer, window.getFilePartOffset());
-					if (buffer.hasArray())
+					readFully(channel, header, window.getFilePartOffset());
+					readFully(channel, buffer, window.getFilePartOffset() + PAGE_HEADER_SIZE);
+					header.flip();
+					byte[] data = buffer.array();
+					if (header.getInt() == window.getPageId() && header.getInt() == length &&
+						header.getLong() == checksum(data))
+					{
+						result = data;
+					}
+					else
 					{
-						result = buffer.array();
+						log.warn(
+							"The data of page with id '{}' in session with id '{}' is not valid.",
+							window.getPageId(), sessionId);
 					}
 				}
 				catch (IOException e)
 				{
 					log.error("Error reading from file channel " + channel, e);
+					IOUtils.closeQuietly(channel);
 				}
 				finally
 				{
-					IOUtils.closeQuietly(channel);
+					releaseFileChannel(channel);
 				}
 			}
 			return result;
@@ -422,11 +716,22 @@ public class DiskDataStore implements IDataStore
 
 		private FileChannel getFileChannel(boolean create)
 		{
+			FileChannelPool pool = diskDataStore.fileChannelPool;
+			if (pool != null)
+			{
+				FileChannel pooled = pool.checkout(sessionId);
+				if (pooled != null)
+				{
+					return pooled;
+				}
+			}
+
 			FileChannel channel = null;
 			File file = new File(getFileName());
 			if (create || file.exists())
 			{
-				String mode = create ? "rw" : "r";
+				// pooled channels are shared by reads and writes
+				String mode = create || pool != null ? "rw" : "r";
 				try
 				{
 					RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode);
@@ -441,6 +746,70 @@ public class DiskDataStore implements IDataStore
 			return channel;
 		}
 
+		/**
+		 * Writes the index of the page windows if it has changed since it was written last time.
+		 * The index is written to a temporary file first, so a crash leaves either the old or the
+		 * new index.
+		 */
+		private synchronized void saveIndex()
+		{
+			if (unbound || dirty == false)
+			{
+				return;
+			}
+
+			File sessionFolder = diskDataStore.getSessionFolder(sessionId, true);
+			File index = new File(sessionFolder, INDEX_FILE_NAME);
+			File temp = new File(sessionFolder, INDEX_FILE_NAME + ".tmp");
+			DataOutputStream out = null;
+			try
+			{
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+				out.writeInt(INDEX_MAGIC);
+				out.writeInt(INDEX_VERSION);
+				getManager().write(out);
+				out.close();
+				out = null;
+
+				if (temp.renameTo(index) == false)
+				{
+					// some platforms do not replace an existing file
+					Files.remove(index);
+					if (temp.renameTo(index) == false)
+					{
+						throw new IOException("Cannot rename " + temp + " to " + index);
+					}
+				}
+				dirty = false;
+			}
+			catch (IOException e)
+			{
+				log.error("Couldn't write DiskDataStore index to file " + index + ".", e);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(out);
+			}
+		}
+
+		/**
+		 * Gives the channel back to the pool or closes it if the channels are not pooled.
+		 * 
+		 * @param channel
+		 */
+		private void releaseFileChannel(FileChannel channel)
+		{
+			FileChannelPool pool = diskDataStore.fileChannelPool;
+			if (pool != null && unbound == false && channel.isOpen())
+			{
+				pool.checkin(sessionId, channel);
+			}
+			else
+			{
+				IOUtils.closeQuietly(channel);
+			}
+		}
+
 		/**
 		 * Loads the specified page data.
 		 * 
@@ -467,12 +836,11 @@ public class DiskDataStore implements IDataStore
 		 */
 		public synchronized void unbind()
 		{
-			File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
-			if (sessionFolder.exists())
+			if (diskDataStore.fileChannelPool != null)
 			{
-				Files.removeFolder(sessionFolder);
-				cleanup(sessionFolder);
+				diskDataStore.fileChannelPool.remove(sessionId);
 			}
+			deleteSessionFolder(diskDataStore.getSessionFolder(sessionId, false));
 			unbound = true;
 		}
 
@@ -483,15 +851,17 @@ public class DiskDataStore implements IDataStore
 		 * @param sessionFolder
 		 *            must not be null
 		 */
-		private void cleanup(final File sessionFolder)
+		private static void cleanup(final File sessionFolder)
 		{
 			File high = sessionFolder.getParentFile();
-			if (high.list().length == 0)
+			String[] highFiles = high.list();
+			if (highFiles != null && highFiles.length == 0)
 			{
 				if (Files.removeFolder(high))
 				{
 					File low = high.getParentFile();
-					if (low.list().length == 0)
+					String[] lowFiles = low.list();
+					if (lowFiles != null && lowFiles.length == 0)
 					{
 						Files.removeFolder(low);
 					}
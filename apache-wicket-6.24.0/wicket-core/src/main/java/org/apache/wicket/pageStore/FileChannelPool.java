@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.io.IOUtils;
+
+/**
+ * A bounded pool of open {@link FileChannel}s used by {@link DiskDataStore} to avoid opening and
+ * closing the session's data file for every read and write.
+ * <p>
+ * A channel is taken out of the pool with {@link #checkout(String)} and given back with
+ * {@link #checkin(String, FileChannel)}. A checked out channel is owned exclusively by the caller,
+ * so the pool never closes a channel that is in use. When more than {@code capacity} channels are
+ * checked in the least recently used one is closed.
+ */
+public class FileChannelPool
+{
+	private final int capacity;
+
+	private final MostRecentlyUsedMap<String, FileChannel> channels;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param capacity
+	 *            the maximum number of idle open channels
+	 */
+	public FileChannelPool(final int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("The capacity of the pool should be at least 1.");
+		}
+		this.capacity = capacity;
+		channels = new MostRecentlyUsedMap<String, FileChannel>(capacity);
+	}
+
+	/**
+	 * Takes the open channel for the given key out of the pool.
+	 *
+	 * @param key
+	 *            the key of the channel, e.g. the session id
+	 * @return the pooled channel or {@code null} if there is no open channel for this key
+	 */
+	public FileChannel checkout(final String key)
+	{
+		FileChannel channel;
+		synchronized (channels)
+		{
+			channel = channels.remove(key);
+		}
+
+		if (channel != null && channel.isOpen())
+		{
+			hits.incrementAndGet();
+			return channel;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Puts back a channel which has been taken with {@link #checkout(String)} or newly opened. If
+	 * this exceeds the capacity the least recently used channel is closed.
+	 *
+	 * @param key
+	 *            the key of the channel, e.g. the session id
+	 * @param channel
+	 *            the open channel
+	 */
+	public void checkin(final String key, final FileChannel channel)
+	{
+		FileChannel replaced;
+		FileChannel evicted;
+		synchronized (channels)
+		{
+			replaced = channels.put(key, channel);
+			evicted = channels.getRemovedValue();
+		}
+
+		if (replaced != null && replaced != channel)
+		{
+			IOUtils.closeQuietly(replaced);
+		}
+		if (evicted != null)
+		{
+			IOUtils.closeQuietly(evicted);
+		}
+	}
+
+	/**
+	 * Closes the pooled channel for the given key, if any.
+	 *
+	 * @param key
+	 *            the key of the channel, e.g. the session id
+	 */
+	public void remove(final String key)
+	{
+		FileChannel channel;
+		synchronized (channels)
+		{
+			channel = channels.remove(key);
+		}
+		IOUtils.closeQuietly(channel);
+	}
+
+	/**
+	 * Closes all pooled channels.
+	 */
+	public void clear()
+	{
+		List<FileChannel> toClose;
+		synchronized (channels)
+		{
+			toClose = new ArrayList<FileChannel>(channels.values());
+			channels.clear();
+		}
+		for (FileChannel channel : toClose)
+		{
+			IOUtils.closeQuietly(channel);
+		}
+	}
+
+	/**
+	 * @return the maximum number of idle open channels
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the number of idle open channels
+	 */
+	public int getSize()
+	{
+		synchronized (channels)
+		{
+			return channels.size();
+		}
+	}
+
+	/**
+	 * @return how many times an open channel was found in the pool
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return how many times a channel had to be opened because it was not in the pool
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+/**
+ * An {@link IDataStore} which can store the data of a page from a {@link PageDataBuffer}, without
+ * copying it into a byte array first.
+ * 
+ * @see org.apache.wicket.serialize.IStreamingSerializer
+ */
+public interface IStreamingDataStore extends IDataStore
+{
+	/**
+	 * Stores the data of a page. The data store takes over the reference of the caller and
+	 * releases it when the data is no longer needed.
+	 * 
+	 * @param sessionId
+	 *            The id of the session
+	 * @param id
+	 *            The id of the page
+	 * @param data
+	 *            The serialized data of the page
+	 */
+	void storeData(String sessionId, int id, PageDataBuffer data);
+}
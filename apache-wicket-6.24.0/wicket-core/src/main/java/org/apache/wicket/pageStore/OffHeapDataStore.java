@@ -0,0 +1,630 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which stores the data in direct {@link ByteBuffer}s, i.e. outside of
+ * the Java heap, so that many page versions can be kept in memory without making the garbage
+ * collection pauses longer.
+ * <p>
+ * The memory is allocated lazily in slabs, up to the configured maximum size, and split into blocks
+ * of {@value #BLOCK_SIZE} bytes. A page occupies as many blocks as needed for its data. When there
+ * are not enough free blocks for a new page the least recently used pages of all sessions are
+ * evicted. Evicted pages can optionally be passed to another {@link IDataStore}, e.g.
+ * {@link DiskDataStore}, which is asked for the pages not found in memory.
+ * </p>
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <!--@formatter:off-->
+ * MyApp#init()
+ * {
+ *
+ * 	setPageManagerProvider(new DefaultPageManagerProvider(this)
+ * 	{
+ * 		protected IDataStore newDataStore()
+ * 		{
+ * 			return new OffHeapDataStore(Bytes.megabytes(512), super.newDataStore());
+ * 		}
+ * 	}
+ * }
+ * <!--@formatter:on-->
+ * </pre>
+ *
+ * </p>
+ */
+public class OffHeapDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(OffHeapDataStore.class);
+
+	/**
+	 * The size of a block in bytes
+	 */
+	static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * The number of blocks in a slab
+	 */
+	private static final int BLOCKS_PER_SLAB = 256;
+
+	/**
+	 * The number of locks guarding the writes to the overflow data store, must be a power of two
+	 */
+	private static final int SESSION_LOCKS = 32;
+
+	private final int totalBlocks;
+
+	private final ByteBuffer[] slabs;
+
+	/**
+	 * The stack of the indices of the freed blocks
+	 */
+	private final int[] freeBlocks;
+
+	private int freeBlockCount;
+
+	/**
+	 * The number of blocks taken from the allocated slabs so far
+	 */
+	private int usedBlockCount;
+
+	/**
+	 * The pages in access order, shared by all sessions
+	 */
+	private final LinkedHashMap<PageKey, Entry> entries = new LinkedHashMap<PageKey, Entry>(16,
+		0.75f, true);
+
+	/**
+	 * The ids of the stored pages per session
+	 */
+	private final Map<String, Set<Integer>> sessions = new HashMap<String, Set<Integer>>();
+
+	private long storedBytes;
+
+	/**
+	 * The evicted pages which are being written to the overflow data store
+	 */
+	private final Map<PageKey, Entry> overflowing = new HashMap<PageKey, Entry>();
+
+	/**
+	 * The locks ordering the writes to and the removals from the overflow data store per session
+	 */
+	private final Object[] sessionLocks;
+
+	/**
+	 * The data store where the evicted pages are passed, or {@code null}
+	 */
+	private final IDataStore overflowDataStore;
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            the maximum size of the memory used for the pages of all sessions
+	 */
+	public OffHeapDataStore(final Bytes maxSize)
+	{
+		this(maxSize, null);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            the maximum size of the memory used for the pages of all sessions
+	 * @param overflowDataStore
+	 *            the data store where the evicted pages are passed, or {@code null} to discard
+	 *            them
+	 */
+	public OffHeapDataStore(final Bytes maxSize, final IDataStore overflowDataStore)
+	{
+		Args.notNull(maxSize, "maxSize");
+
+		long blocks = maxSize.bytes() / BLOCK_SIZE;
+		if (blocks < 1 || blocks > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("The maximum size should be between " +
+				Bytes.bytes(BLOCK_SIZE) + " and " + Bytes.bytes((long)Integer.MAX_VALUE * BLOCK_SIZE));
+		}
+
+		totalBlocks = (int)blocks;
+		slabs = new ByteBuffer[(totalBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB];
+		freeBlocks = new int[totalBlocks];
+		this.overflowDataStore = overflowDataStore;
+
+		sessionLocks = new Object[SESSION_LOCKS];
+		for (int i = 0; i < SESSION_LOCKS; i++)
+		{
+			sessionLocks[i] = new Object();
+		}
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] data;
+		synchronized (this)
+		{
+			PageKey key = new PageKey(sessionId, id);
+			data = read(entries.get(key));
+			if (data == null)
+			{
+				// evicted, but maybe not yet in the overflow data store
+				Entry entry = overflowing.get(key);
+				if (entry != null)
+				{
+					data = entry.data;
+				}
+			}
+		}
+
+		if (data == null && overflowDataStore != null)
+		{
+			data = overflowDataStore.getData(sessionId, id);
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Returning data{} for page with id '{}' in session with id '{}'",
+				new Object[] { data != null ? "" : "(null)", id, sessionId });
+		}
+		return data;
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		synchronized (lockFor(sessionId))
+		{
+			synchronized (this)
+			{
+				PageKey key = new PageKey(sessionId, id);
+				remove(key);
+				overflowing.remove(key);
+			}
+
+			if (overflowDataStore != null)
+			{
+				overflowDataStore.removeData(sessionId, id);
+			}
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		synchronized (lockFor(sessionId))
+		{
+			synchronized (this)
+			{
+				Set<Integer> ids = sessions.remove(sessionId);
+				if (ids != null)
+				{
+					for (Integer id : ids)
+					{
+						Entry entry = entries.remove(new PageKey(sessionId, id));
+						if (entry != null)
+						{
+							release(entry);
+						}
+					}
+				}
+
+				for (Iterator<PageKey> keys = overflowing.keySet().iterator(); keys.hasNext();)
+				{
+					if (keys.next().sessionId.equals(sessionId))
+					{
+						keys.remove();
+					}
+				}
+			}
+
+			// the pending writes of evicted pages either happened before or are skipped now
+			if (overflowDataStore != null)
+			{
+				overflowDataStore.removeData(sessionId);
+			}
+		}
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		PageKey key = new PageKey(sessionId, id);
+		int blockCount = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		if (blockCount > totalBlocks)
+		{
+			log.debug("Page with id '{}' in session with id '{}' does not fit in memory", id,
+				sessionId);
+			synchronized (lockFor(sessionId))
+			{
+				// the older data must neither be read nor overwrite this one later
+				synchronized (this)
+				{
+					remove(key);
+					overflowing.remove(key);
+				}
+
+				if (overflowDataStore != null)
+				{
+					overflowDataStore.storeData(sessionId, id, data);
+				}
+			}
+			return;
+		}
+
+		List<Entry> evicted = new ArrayList<Entry>();
+		synchronized (this)
+		{
+			remove(key);
+			overflowing.remove(key);
+
+			Iterator<Entry> eldest = entries.values().iterator();
+			while (availableBlocks() < blockCount)
+			{
+				Entry entry = eldest.next();
+				eldest.remove();
+				unindex(entry.key);
+				if (overflowDataStore != null)
+				{
+					entry.data = read(entry);
+					overflowing.put(entry.key, entry);
+				}
+				release(entry);
+				evicted.add(entry);
+			}
+
+			Entry entry = new Entry(key, data.length, allocate(blockCount));
+			write(entry, data);
+			entries.put(key, entry);
+			index(key);
+		}
+
+		for (Entry entry : evicted)
+		{
+			evictionCount.incrementAndGet();
+			if (overflowDataStore != null)
+			{
+				overflow(entry);
+			}
+		}
+	}
+
+	/**
+	 * Writes an evicted page to the overflow data store unless it has been removed or evicted
+	 * again meanwhile. The page is readable from {@link #overflowing} until it is written.
+	 * 
+	 * @param entry
+	 *            the evicted page
+	 */
+	private void overflow(final Entry entry)
+	{
+		synchronized (lockFor(entry.key.sessionId))
+		{
+			synchronized (this)
+			{
+				if (overflowing.get(entry.key) != entry)
+				{
+					return;
+				}
+			}
+
+			try
+			{
+				overflowDataStore.storeData(entry.key.sessionId, entry.key.pageId, entry.data);
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					if (overflowing.get(entry.key) == entry)
+					{
+						overflowing.remove(entry.key);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param sessionId
+	 * @return the lock ordering the access to the overflow data store for the session
+	 */
+	private Object lockFor(final String sessionId)
+	{
+		int hash = sessionId.hashCode();
+		hash ^= (hash >>> 16);
+		return sessionLocks[hash & (SESSION_LOCKS - 1)];
+	}
+
+	@Override
+	public void destroy()
+	{
+		synchronized (this)
+		{
+			entries.clear();
+			sessions.clear();
+			overflowing.clear();
+			for (int i = 0; i < slabs.length; i++)
+			{
+				slabs[i] = null;
+			}
+			freeBlockCount = 0;
+			usedBlockCount = 0;
+			storedBytes = 0;
+		}
+
+		if (overflowDataStore != null)
+		{
+			overflowDataStore.destroy();
+		}
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		// the eviction may write to the overflow data store
+		return overflowDataStore != null && overflowDataStore.canBeAsynchronous();
+	}
+
+	/**
+	 * @return the maximum number of bytes available for the pages
+	 */
+	public long getCapacity()
+	{
+		return (long)totalBlocks * BLOCK_SIZE;
+	}
+
+	/**
+	 * @return the number of bytes of the stored pages
+	 */
+	public synchronized long getStoredBytes()
+	{
+		return storedBytes;
+	}
+
+	/**
+	 * @return the number of bytes of the allocated direct buffers
+	 */
+	public synchronized long getAllocatedBytes()
+	{
+		long allocated = 0;
+		for (ByteBuffer slab : slabs)
+		{
+			if (slab != null)
+			{
+				allocated += slab.capacity();
+			}
+		}
+		return allocated;
+	}
+
+	/**
+	 * @return the number of stored pages
+	 */
+	public synchronized int getPageCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of pages evicted to make room for new ones
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+
+	private int availableBlocks()
+	{
+		return freeBlockCount + (totalBlocks - usedBlockCount);
+	}
+
+	private int[] allocate(final int blockCount)
+	{
+		int[] blocks = new int[blockCount];
+		for (int i = 0; i < blockCount; i++)
+		{
+			if (freeBlockCount > 0)
+			{
+				blocks[i] = freeBlocks[--freeBlockCount];
+			}
+			else
+			{
+				blocks[i] = usedBlockCount++;
+			}
+		}
+		return blocks;
+	}
+
+	private void release(final Entry entry)
+	{
+		for (int block : entry.blocks)
+		{
+			freeBlocks[freeBlockCount++] = block;
+		}
+		storedBytes -= entry.length;
+	}
+
+	private void remove(final PageKey key)
+	{
+		Entry entry = entries.remove(key);
+		if (entry != null)
+		{
+			unindex(key);
+			release(entry);
+		}
+	}
+
+	private void index(final PageKey key)
+	{
+		Set<Integer> ids = sessions.get(key.sessionId);
+		if (ids == null)
+		{
+			ids = new HashSet<Integer>();
+			sessions.put(key.sessionId, ids);
+		}
+		ids.add(key.pageId);
+	}
+
+	private void unindex(final PageKey key)
+	{
+		Set<Integer> ids = sessions.get(key.sessionId);
+		if (ids != null)
+		{
+			ids.remove(key.pageId);
+			if (ids.isEmpty())
+			{
+				sessions.remove(key.sessionId);
+			}
+		}
+	}
+
+	/**
+	 * @param block
+	 * @return the slab positioned at the start of the block
+	 */
+	private ByteBuffer slabFor(final int block)
+	{
+		int index = block / BLOCKS_PER_SLAB;
+		ByteBuffer slab = slabs[index];
+		if (slab == null)
+		{
+			int blocks = Math.min(BLOCKS_PER_SLAB, totalBlocks - index * BLOCKS_PER_SLAB);
+			slab = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+			slabs[index] = slab;
+		}
+		slab.position((block % BLOCKS_PER_SLAB) * BLOCK_SIZE);
+		return slab;
+	}
+
+	private void write(final Entry entry, final byte[] data)
+	{
+		int offset = 0;
+		for (int block : entry.blocks)
+		{
+			int length = Math.min(BLOCK_SIZE, data.length - offset);
+			slabFor(block).put(data, offset, length);
+			offset += length;
+		}
+		storedBytes += entry.length;
+	}
+
+	private byte[] read(final Entry entry)
+	{
+		if (entry == null)
+		{
+			return null;
+		}
+
+		byte[] data = new byte[entry.length];
+		int offset = 0;
+		for (int block : entry.blocks)
+		{
+			int length = Math.min(BLOCK_SIZE, data.length - offset);
+			slabFor(block).get(data, offset, length);
+			offset += length;
+		}
+		return data;
+	}
+
+	/**
+	 * The key of a stored page
+	 */
+	private static final class PageKey
+	{
+		private final String sessionId;
+
+		private final int pageId;
+
+		private PageKey(String sessionId, int pageId)
+		{
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+			{
+				return true;
+			}
+			if ((obj instanceof PageKey) == false)
+			{
+				return false;
+			}
+			PageKey rhs = (PageKey)obj;
+			return pageId == rhs.pageId && sessionId.equals(rhs.sessionId);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * sessionId.hashCode() + pageId;
+		}
+	}
+
+	/**
+	 * The location of a stored page
+	 */
+	private static final class Entry
+	{
+		private final PageKey key;
+
+		private final int length;
+
+		private final int[] blocks;
+
+		/**
+		 * The data copied to the heap before the entry is evicted to the overflow data store
+		 */
+		private byte[] data;
+
+		private Entry(PageKey key, int length, int[] blocks)
+		{
+			this.key = key;
+			this.length = length;
+			this.blocks = blocks;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Checksum;
+
+/**
+ * An output stream collecting the serialized data of a page in chunks borrowed from a shared pool.
+ * <p>
+ * Unlike a {@link java.io.ByteArrayOutputStream} the data is never copied to grow the buffer or to
+ * get the result, so a page can be written to a {@link IStreamingDataStore} without the short
+ * living arrays of the size of the page.
+ * </p>
+ * <p>
+ * The buffer is reference counted. The chunks are given back to the pool when the last reference
+ * is released. Releasing is optional, an unreleased buffer is simply garbage collected.
+ * </p>
+ * 
+ * @see IStreamingDataStore
+ */
+public class PageDataBuffer extends OutputStream
+{
+	/** the size of a chunk */
+	static final int CHUNK_SIZE = 16 * 1024;
+
+	/** the maximum number of free chunks kept in the pool */
+	private static final int MAX_POOLED_CHUNKS = 64;
+
+	private static final Queue<byte[]> POOL = new ConcurrentLinkedQueue<byte[]>();
+
+	private static final AtomicInteger POOL_SIZE = new AtomicInteger();
+
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	/** the number of bytes in the last chunk */
+	private int position = CHUNK_SIZE;
+
+	private int length;
+
+	@Override
+	public void write(final int b)
+	{
+		if (position == CHUNK_SIZE)
+		{
+			addChunk();
+		}
+		chunks.get(chunks.size() - 1)[position++] = (byte)b;
+		length++;
+	}
+
+	@Override
+	public void write(final byte[] b, int off, int len)
+	{
+		if (off < 0 || len < 0 || off > b.length - len)
+		{
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0)
+		{
+			if (position == CHUNK_SIZE)
+			{
+				addChunk();
+			}
+			int count = Math.min(len, CHUNK_SIZE - position);
+			System.arraycopy(b, off, chunks.get(chunks.size() - 1), position, count);
+			position += count;
+			off += count;
+			len -= count;
+			length += count;
+		}
+	}
+
+	private void addChunk()
+	{
+		if (references.get() == 0)
+		{
+			throw new IllegalStateException("The buffer has been released");
+		}
+		byte[] chunk = POOL.poll();
+		if (chunk != null)
+		{
+			POOL_SIZE.decrementAndGet();
+		}
+		else
+		{
+			chunk = new byte[CHUNK_SIZE];
+		}
+		chunks.add(chunk);
+		position = 0;
+	}
+
+	/**
+	 * @return the number of written bytes
+	 */
+	public int length()
+	{
+		return length;
+	}
+
+	/**
+	 * @return the written data in read only buffers sharing the chunks
+	 */
+	public ByteBuffer[] toByteBuffers()
+	{
+		ByteBuffer[] buffers = new ByteBuffer[chunks.size()];
+		for (int i = 0; i < buffers.length; i++)
+		{
+			int size = i == buffers.length - 1 ? position : CHUNK_SIZE;
+			buffers[i] = ByteBuffer.wrap(chunks.get(i), 0, size).asReadOnlyBuffer();
+		}
+		return buffers;
+	}
+
+	/**
+	 * @return a copy of the written data
+	 */
+	public byte[] toByteArray()
+	{
+		byte[] data = new byte[length];
+		int offset = 0;
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			int size = i == chunks.size() - 1 ? position : CHUNK_SIZE;
+			System.arraycopy(chunks.get(i), 0, data, offset, size);
+			offset += size;
+		}
+		return data;
+	}
+
+	/**
+	 * Updates the checksum with the written data
+	 * 
+	 * @param checksum
+	 */
+	public void updateChecksum(final Checksum checksum)
+	{
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			checksum.update(chunks.get(i), 0, i == chunks.size() - 1 ? position : CHUNK_SIZE);
+		}
+	}
+
+	/**
+	 * Writes the data to the output stream
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(final OutputStream out) throws IOException
+	{
+		for (int i = 0; i < chunks.size(); i++)
+		{
+			out.write(chunks.get(i), 0, i == chunks.size() - 1 ? position : CHUNK_SIZE);
+		}
+	}
+
+	/**
+	 * Adds a reference to the buffer, unless it has been released already
+	 * 
+	 * @return {@code true} if the reference has been added, {@code false} if the buffer has been
+	 *         released
+	 */
+	public boolean retain()
+	{
+		int count;
+		do
+		{
+			count = references.get();
+			if (count == 0)
+			{
+				return false;
+			}
+		}
+		while (!references.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Releases a reference to the buffer. The chunks are given back to the pool when the last
+	 * reference is released and must not be used any more.
+	 */
+	public void release()
+	{
+		if (references.decrementAndGet() == 0)
+		{
+			for (byte[] chunk : chunks)
+			{
+				if (POOL_SIZE.incrementAndGet() <= MAX_POOLED_CHUNKS)
+				{
+					POOL.offer(chunk);
+				}
+				else
+				{
+					POOL_SIZE.decrementAndGet();
+				}
+			}
+			chunks.clear();
+			length = 0;
+			position = CHUNK_SIZE;
+		}
+	}
+}
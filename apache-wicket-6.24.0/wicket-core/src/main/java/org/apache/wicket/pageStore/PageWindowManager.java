@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -503,4 +506,54 @@ public class PageWindowManager implements Serializable
 	{
 		return totalSize;
 	}
+
+	/**
+	 * Writes the page windows in a compact binary form, to be read by
+	 * {@link #read(DataInput, long)}.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public synchronized void write(DataOutput out) throws IOException
+	{
+		out.writeInt(indexPointer);
+		out.writeInt(totalSize);
+		out.writeInt(windows.size());
+		for (PageWindowInternal window : windows)
+		{
+			out.writeInt(window.pageId);
+			out.writeInt(window.filePartOffset);
+			out.writeInt(window.filePartSize);
+		}
+	}
+
+	/**
+	 * Reads the page windows written by {@link #write(DataOutput)}.
+	 * 
+	 * @param in
+	 * @param maxSize
+	 *            maximum page size
+	 * @return the page window manager
+	 * @throws IOException
+	 */
+	public static PageWindowManager read(DataInput in, long maxSize) throws IOException
+	{
+		PageWindowManager manager = new PageWindowManager(maxSize);
+		manager.indexPointer = in.readInt();
+		manager.totalSize = in.readInt();
+		int count = in.readInt();
+		if (count < 0 || manager.indexPointer < -1 || manager.indexPointer >= count)
+		{
+			throw new IOException("Invalid page window index");
+		}
+		for (int i = 0; i < count; i++)
+		{
+			PageWindowInternal window = new PageWindowInternal();
+			window.pageId = in.readInt();
+			window.filePartOffset = in.readInt();
+			window.filePartSize = in.readInt();
+			manager.windows.add(window);
+		}
+		return manager;
+	}
 }
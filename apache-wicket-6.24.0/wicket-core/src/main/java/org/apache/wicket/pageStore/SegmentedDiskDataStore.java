@@ -0,0 +1,1062 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which stores the data of all sessions in a few shared files on disk.
+ * <p>
+ * Unlike {@link DiskDataStore}, which creates a folder and a file for every session, the pages of
+ * all sessions are appended to rolling segment files. An in-memory index maps each page to the
+ * segment, offset and length of its last stored version. Replacing or removing a page, or removing
+ * a whole session, only updates the index. A background thread reclaims the space of the removed
+ * records by moving the live records of sparse segments to the current segment and deleting the
+ * segments which contain no live records anymore. The same thread writes the index to disk when it
+ * has changed, so the pages survive a crash up to the last checkpoint.
+ * </p>
+ * <p>
+ * As with {@link DiskDataStore} the size of the pages of a session is limited. When the limit is
+ * exceeded the oldest pages of the session are removed.
+ * </p>
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <!--@formatter:off-->
+ * MyApp#init()
+ * {
+ *
+ * 	setPageManagerProvider(new DefaultPageManagerProvider(this)
+ * 	{
+ * 		protected IDataStore newDataStore()
+ * 		{
+ * 			IStoreSettings storeSettings = getStoreSettings();
+ * 			return new SegmentedDiskDataStore(getName(), storeSettings.getFileStoreFolder(),
+ * 				storeSettings.getMaxSizePerSession());
+ * 		}
+ * 	}
+ * }
+ * <!--@formatter:on-->
+ * </pre>
+ *
+ * </p>
+ */
+public class SegmentedDiskDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(SegmentedDiskDataStore.class);
+
+	private static final String INDEX_FILE_NAME = "SegmentedDiskDataStoreIndex";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	private static final int INDEX_VERSION = 1;
+
+	/**
+	 * A segment is compacted when less than this part of it is occupied by live records
+	 */
+	private static final double COMPACTION_THRESHOLD = 0.5d;
+
+	private static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(64);
+
+	private static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.seconds(10);
+
+	private final File storeFolder;
+
+	private final long maxSizePerSession;
+
+	private final long segmentSize;
+
+	private final ConcurrentMap<String, SessionIndex> sessions = new ConcurrentHashMap<String, SessionIndex>();
+
+	private final ConcurrentMap<Integer, Segment> segments = new ConcurrentHashMap<Integer, Segment>();
+
+	/**
+	 * Guards {@link #activeSegment} and its write position
+	 */
+	private final Object appendLock = new Object();
+
+	/**
+	 * The segment where the records are appended. Guarded by {@link #appendLock}.
+	 */
+	private Segment activeSegment;
+
+	/**
+	 * Guarded by {@link #appendLock}.
+	 */
+	private int nextSegmentId;
+
+	private final Thread compactionThread;
+
+	private final AtomicLong compactedCount = new AtomicLong();
+
+	/**
+	 * Counts the changes of the index, to skip checkpoints when nothing has changed
+	 */
+	private final AtomicLong modificationCount = new AtomicLong();
+
+	private final Object checkpointLock = new Object();
+
+	/**
+	 * The value of {@link #modificationCount} written by the last checkpoint. Guarded by
+	 * {@link #checkpointLock}.
+	 */
+	private long savedModificationCount = -1;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 */
+	public SegmentedDiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, DEFAULT_SEGMENT_SIZE,
+			DEFAULT_COMPACTION_INTERVAL);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param segmentSize
+	 *            the size after which a new segment file is started
+	 * @param compactionInterval
+	 *            how often the segments are checked for space to reclaim
+	 */
+	public SegmentedDiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final Duration compactionInterval)
+	{
+		Args.notNull(fileStoreFolder, "fileStoreFolder");
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession").bytes();
+		this.segmentSize = Args.notNull(segmentSize, "segmentSize").bytes();
+		Args.notNull(compactionInterval, "compactionInterval");
+
+		storeFolder = new File(fileStoreFolder, applicationName + "-segments");
+		try
+		{
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				loadIndex();
+			}
+			else
+			{
+				log.warn("Cannot create file store folder for some reason.");
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating SegmentedDiskDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		compactionThread = new Thread(new CompactionRunnable(compactionInterval.getMilliseconds()),
+			"Wicket-SegmentCompactionThread");
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] data = null;
+		SessionIndex index = sessions.get(sessionId);
+		if (index != null)
+		{
+			Record record = index.get(id);
+			while (record != null)
+			{
+				data = record.read();
+				if (data != null)
+				{
+					break;
+				}
+				// retry only if the record has been moved by the compaction while it was read
+				Record current = index.get(id);
+				record = current != record ? current : null;
+			}
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Returning data{} for page with id '{}' in session with id '{}'",
+				new Object[] { data != null ? "" : "(null)", id, sessionId });
+		}
+		return data;
+	}
+
+	@Override
+	public void removeData(final String sessionId, final int id)
+	{
+		SessionIndex index = sessions.get(sessionId);
+		if (index != null)
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("Removing data for page with id '{}' in session with id '{}'", id,
+					sessionId);
+			}
+			index.remove(id);
+			modificationCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void removeData(final String sessionId)
+	{
+		SessionIndex index = sessions.remove(sessionId);
+		if (index != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			index.clear();
+			modificationCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		Record record = append(id, data);
+		if (record == null)
+		{
+			log.warn("Cannot save page with id '{}' because the segment file cannot be written.",
+				id);
+			return;
+		}
+
+		while (true)
+		{
+			SessionIndex index = getSessionIndex(sessionId);
+			if (index.put(id, record))
+			{
+				break;
+			}
+			// the session has been removed concurrently, so retry with a new index
+			sessions.remove(sessionId, index);
+		}
+		modificationCount.incrementAndGet();
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Storing data for page with id '{}' in session with id '{}'", id, sessionId);
+		}
+	}
+
+	@Override
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		compactionThread.interrupt();
+		try
+		{
+			compactionThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			log.error(e.getMessage(), e);
+		}
+
+		checkpoint();
+
+		for (Segment segment : segments.values())
+		{
+			segment.close();
+		}
+		log.debug("Destroyed.");
+	}
+
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return true;
+	}
+
+	/**
+	 * @return the number of segment files
+	 */
+	public int getSegmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * @return the size of all segment files
+	 */
+	public long getSegmentBytes()
+	{
+		long bytes = 0;
+		for (Segment segment : segments.values())
+		{
+			bytes += segment.getSize();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the size of all records which are still referenced by the index
+	 */
+	public long getLiveBytes()
+	{
+		long bytes = 0;
+		for (Segment segment : segments.values())
+		{
+			bytes += segment.liveBytes.get();
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return the number of records moved by the compaction
+	 */
+	public long getCompactedCount()
+	{
+		return compactedCount.get();
+	}
+
+	/**
+	 * @return the folder where the segment files are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return storeFolder;
+	}
+
+	private SessionIndex getSessionIndex(final String sessionId)
+	{
+		SessionIndex index = sessions.get(sessionId);
+		if (index == null)
+		{
+			index = new SessionIndex(sessionId);
+			SessionIndex existing = sessions.putIfAbsent(sessionId, index);
+			if (existing != null)
+			{
+				index = existing;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Appends the data to the active segment
+	 *
+	 * @param pageId
+	 * @param data
+	 * @return the record of the data or {@code null} if it cannot be written
+	 */
+	private Record append(final int pageId, final byte[] data)
+	{
+		Segment segment;
+		long offset;
+		synchronized (appendLock)
+		{
+			if (activeSegment == null ||
+				(activeSegment.writePosition > 0 && activeSegment.writePosition + data.length > segmentSize))
+			{
+				activeSegment = newSegment();
+				if (activeSegment == null)
+				{
+					return null;
+				}
+			}
+			segment = activeSegment;
+			offset = segment.writePosition;
+			segment.writePosition += data.length;
+			segment.liveBytes.addAndGet(data.length);
+		}
+
+		Record record = new Record(segment, pageId, offset, data.length);
+		if (record.write(data) == false)
+		{
+			record.release();
+			return null;
+		}
+		return record;
+	}
+
+	/**
+	 * @return a new segment or {@code null} if it cannot be created
+	 */
+	private Segment newSegment()
+	{
+		int id = nextSegmentId++;
+		File file = new File(storeFolder, SEGMENT_FILE_PREFIX + id);
+		try
+		{
+			Segment segment = new Segment(id, file, 0);
+			segments.put(id, segment);
+			return segment;
+		}
+		catch (IOException e)
+		{
+			log.error("Cannot create segment file " + file, e);
+			return null;
+		}
+	}
+
+	private boolean isActive(final Segment segment)
+	{
+		synchronized (appendLock)
+		{
+			return segment == activeSegment;
+		}
+	}
+
+	/**
+	 * Deletes the segments without live records and moves the live records of the sparse segments
+	 * to the active segment. Each segment knows its live records, so only the records of the
+	 * sparse segments are visited.
+	 */
+	void compact()
+	{
+		List<Segment> empty = new ArrayList<Segment>();
+		for (Segment segment : segments.values())
+		{
+			if (Thread.currentThread().isInterrupted())
+			{
+				break;
+			}
+			if (isActive(segment))
+			{
+				continue;
+			}
+
+			if (segment.liveBytes.get() > 0 &&
+				segment.liveBytes.get() < segment.getSize() * COMPACTION_THRESHOLD)
+			{
+				for (Record record : segment.getRecords())
+				{
+					SessionIndex index = record.index;
+					byte[] data = index != null ? record.read() : null;
+					Record moved = data != null ? append(record.pageId, data) : null;
+					if (moved != null)
+					{
+						if (index.replace(record.pageId, record, moved))
+						{
+							compactedCount.incrementAndGet();
+							modificationCount.incrementAndGet();
+						}
+						else
+						{
+							moved.release();
+						}
+					}
+				}
+			}
+
+			if (segment.liveBytes.get() <= 0)
+			{
+				empty.add(segment);
+			}
+		}
+
+		if (empty.isEmpty() == false)
+		{
+			// the checkpoint must not refer to the records in the deleted segments
+			checkpoint();
+			for (Segment segment : empty)
+			{
+				segments.remove(segment.id);
+				segment.delete();
+			}
+		}
+	}
+
+	/**
+	 * Writes the index to disk if it has changed since the last checkpoint.
+	 */
+	void checkpoint()
+	{
+		synchronized (checkpointLock)
+		{
+			long modifications = modificationCount.get();
+			if (modifications != savedModificationCount && saveIndex())
+			{
+				savedModificationCount = modifications;
+			}
+		}
+	}
+
+	/**
+	 * Loads the index saved by the last checkpoint and deletes the segments which are not
+	 * referenced by it.
+	 */
+	private void loadIndex()
+	{
+		File indexFile = new File(storeFolder, INDEX_FILE_NAME);
+		if (indexFile.exists() && indexFile.length() > 0)
+		{
+			DataInputStream in = null;
+			try
+			{
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+				if (in.readInt() != INDEX_VERSION)
+				{
+					throw new IOException("Unsupported index version");
+				}
+				nextSegmentId = in.readInt();
+
+				int segmentCount = in.readInt();
+				for (int i = 0; i < segmentCount; i++)
+				{
+					int id = in.readInt();
+					long size = in.readLong();
+					File file = new File(storeFolder, SEGMENT_FILE_PREFIX + id);
+					if (file.length() >= size)
+					{
+						segments.put(id, new Segment(id, file, size));
+					}
+				}
+
+				int sessionCount = in.readInt();
+				for (int i = 0; i < sessionCount; i++)
+				{
+					SessionIndex index = new SessionIndex(in.readUTF());
+					int recordCount = in.readInt();
+					for (int j = 0; j < recordCount; j++)
+					{
+						int pageId = in.readInt();
+						Segment segment = segments.get(in.readInt());
+						long offset = in.readLong();
+						int length = in.readInt();
+						if (segment != null)
+						{
+							segment.liveBytes.addAndGet(length);
+							index.put(pageId, new Record(segment, pageId, offset, length));
+						}
+					}
+					sessions.put(index.sessionId, index);
+				}
+			}
+			catch (IOException e)
+			{
+				log.error("Couldn't load SegmentedDiskDataStore index from file " + indexFile + ".",
+					e);
+				for (Segment segment : segments.values())
+				{
+					segment.close();
+				}
+				segments.clear();
+				sessions.clear();
+			}
+			finally
+			{
+				IOUtils.closeQuietly(in);
+			}
+		}
+
+		// delete the segments not referenced by the index, e.g. written after the last checkpoint
+		// before a crash
+		File[] files = storeFolder.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				String name = file.getName();
+				if (name.startsWith(SEGMENT_FILE_PREFIX))
+				{
+					try
+					{
+						int id = Integer.parseInt(name.substring(SEGMENT_FILE_PREFIX.length()));
+						nextSegmentId = Math.max(nextSegmentId, id + 1);
+						if (segments.containsKey(id))
+						{
+							continue;
+						}
+					}
+					catch (NumberFormatException e)
+					{
+						// not a segment
+					}
+					Files.remove(file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the index to a temporary file which replaces the index file when it is complete.
+	 *
+	 * @return {@code true} if the index has been written
+	 */
+	private boolean saveIndex()
+	{
+		if (storeFolder.exists() == false)
+		{
+			return false;
+		}
+
+		File indexFile = new File(storeFolder, INDEX_FILE_NAME);
+		File temp = new File(storeFolder, INDEX_FILE_NAME + ".tmp");
+		DataOutputStream out = null;
+		try
+		{
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeInt(INDEX_VERSION);
+			synchronized (appendLock)
+			{
+				out.writeInt(nextSegmentId);
+			}
+
+			List<Segment> segmentList = new ArrayList<Segment>(segments.values());
+			out.writeInt(segmentList.size());
+			for (Segment segment : segmentList)
+			{
+				out.writeInt(segment.id);
+				out.writeLong(segment.getSize());
+			}
+
+			List<SessionIndex> indices = new ArrayList<SessionIndex>(sessions.values());
+			out.writeInt(indices.size());
+			for (SessionIndex index : indices)
+			{
+				Map<Integer, Record> records = index.getRecords();
+				out.writeUTF(index.sessionId);
+				out.writeInt(records.size());
+				for (Entry<Integer, Record> entry : records.entrySet())
+				{
+					Record record = entry.getValue();
+					out.writeInt(entry.getKey());
+					out.writeInt(record.segment.id);
+					out.writeLong(record.offset);
+					out.writeInt(record.length);
+				}
+			}
+			out.close();
+			out = null;
+
+			if (temp.renameTo(indexFile) == false)
+			{
+				// some platforms do not replace an existing file
+				Files.remove(indexFile);
+				if (temp.renameTo(indexFile) == false)
+				{
+					throw new IOException("Cannot rename " + temp + " to " + indexFile);
+				}
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.error("Couldn't write SegmentedDiskDataStore index to file " + indexFile + ".", e);
+			return false;
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * The records of the pages of a session in the order of their storing
+	 */
+	private class SessionIndex
+	{
+		private final String sessionId;
+
+		private final LinkedHashMap<Integer, Record> records = new LinkedHashMap<Integer, Record>();
+
+		private long bytes;
+
+		private boolean removed;
+
+		private SessionIndex(String sessionId)
+		{
+			this.sessionId = sessionId;
+		}
+
+		private synchronized Record get(int pageId)
+		{
+			return records.get(pageId);
+		}
+
+		/**
+		 * @param pageId
+		 * @param record
+		 * @return {@code false} if the session has been removed
+		 */
+		private synchronized boolean put(int pageId, Record record)
+		{
+			if (removed)
+			{
+				return false;
+			}
+
+			// re-insert to move the page at the end of the store order
+			Record previous = records.remove(pageId);
+			if (previous != null)
+			{
+				bytes -= previous.length;
+				previous.release();
+			}
+			records.put(pageId, record);
+			record.register(this);
+			bytes += record.length;
+
+			Iterator<Record> eldest = records.values().iterator();
+			while (bytes > maxSizePerSession && records.size() > 1)
+			{
+				Record evicted = eldest.next();
+				eldest.remove();
+				bytes -= evicted.length;
+				evicted.release();
+			}
+			return true;
+		}
+
+		/**
+		 * Replaces the record of a page if it is still the expected one
+		 *
+		 * @param pageId
+		 * @param expected
+		 * @param record
+		 * @return {@code true} if the record has been replaced
+		 */
+		private synchronized boolean replace(int pageId, Record expected, Record record)
+		{
+			if (removed || records.get(pageId) != expected)
+			{
+				return false;
+			}
+			// keep the position in the store order
+			records.put(pageId, record);
+			record.register(this);
+			expected.release();
+			return true;
+		}
+
+		private synchronized void remove(int pageId)
+		{
+			Record record = records.remove(pageId);
+			if (record != null)
+			{
+				bytes -= record.length;
+				record.release();
+			}
+		}
+
+		private synchronized void clear()
+		{
+			removed = true;
+			for (Record record : records.values())
+			{
+				record.release();
+			}
+			records.clear();
+			bytes = 0;
+		}
+
+		/**
+		 * @return a copy of the records
+		 */
+		private synchronized Map<Integer, Record> getRecords()
+		{
+			return new HashMap<Integer, Record>(records);
+		}
+	}
+
+	/**
+	 * The location of the data of a page in a segment
+	 */
+	private static class Record
+	{
+		private final Segment segment;
+
+		private final int pageId;
+
+		private final long offset;
+
+		private final int length;
+
+		/**
+		 * The index referencing this record, {@code null} until the record is put in it
+		 */
+		private volatile SessionIndex index;
+
+		private Record(Segment segment, int pageId, long offset, int length)
+		{
+			this.segment = segment;
+			this.pageId = pageId;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * Adds this record to the live records of its segment
+		 *
+		 * @param index
+		 *            the index referencing this record
+		 */
+		private void register(SessionIndex index)
+		{
+			this.index = index;
+			segment.records.add(this);
+		}
+
+		private void release()
+		{
+			segment.records.remove(this);
+			segment.liveBytes.addAndGet(-length);
+		}
+
+		private boolean write(byte[] data)
+		{
+			return segment.write(data, offset);
+		}
+
+		/**
+		 * @return the data or {@code null} if the segment has been deleted
+		 */
+		private byte[] read()
+		{
+			return segment.read(offset, length);
+		}
+	}
+
+	/**
+	 * A file where the records are appended
+	 */
+	private static class Segment
+	{
+		private final int id;
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		/**
+		 * The size of the records which are still referenced by the index
+		 */
+		private final AtomicLong liveBytes = new AtomicLong();
+
+		/**
+		 * The records which are still referenced by the index
+		 */
+		private final Set<Record> records =
+			Collections.newSetFromMap(new ConcurrentHashMap<Record, Boolean>());
+
+		/**
+		 * Taken for reading by the readers and writers of the file and for writing when the file
+		 * is deleted
+		 */
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/**
+		 * The offset of the next record. Guarded by the store's append lock.
+		 */
+		private long writePosition;
+
+		private boolean deleted;
+
+		private Segment(int id, File file, long size) throws IOException
+		{
+			this.id = id;
+			this.file = file;
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			writePosition = size;
+		}
+
+		/**
+		 * @return a copy of the records which are still referenced by the index
+		 */
+		private List<Record> getRecords()
+		{
+			return new ArrayList<Record>(records);
+		}
+
+		private long getSize()
+		{
+			lock.readLock().lock();
+			try
+			{
+				return deleted ? 0 : channel.size();
+			}
+			catch (IOException e)
+			{
+				return 0;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private boolean write(byte[] data, long offset)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (deleted)
+				{
+					return false;
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining())
+				{
+					channel.write(buffer, offset + buffer.position());
+				}
+				return true;
+			}
+			catch (IOException e)
+			{
+				log.error("Error writing to segment " + file, e);
+				return false;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private byte[] read(long offset, int length)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (deleted)
+				{
+					return null;
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(length);
+				while (buffer.hasRemaining())
+				{
+					if (channel.read(buffer, offset + buffer.position()) < 0)
+					{
+						throw new IOException("Unexpected end of segment " + file);
+					}
+				}
+				return buffer.array();
+			}
+			catch (IOException e)
+			{
+				log.error("Error reading from segment " + file, e);
+				return null;
+			}
+			finally
+			{
+				lock.readLock().unlock();
+			}
+		}
+
+		private void close()
+		{
+			lock.writeLock().lock();
+			try
+			{
+				IOUtils.closeQuietly(channel);
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+
+		private void delete()
+		{
+			lock.writeLock().lock();
+			try
+			{
+				deleted = true;
+				IOUtils.closeQuietly(channel);
+				Files.remove(file);
+			}
+			finally
+			{
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * The thread that reclaims the space of the removed records and checkpoints the index
+	 */
+	private class CompactionRunnable implements Runnable
+	{
+		private final long interval;
+
+		private CompactionRunnable(long interval)
+		{
+			this.interval = interval;
+		}
+
+		@Override
+		public void run()
+		{
+			while (!Thread.interrupted())
+			{
+				try
+				{
+					Thread.sleep(interval);
+					compact();
+					checkpoint();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Error compacting the segments", e);
+				}
+			}
+		}
+	}
+}
@@ -16,8 +16,7 @@
  */
 package org.apache.wicket.protocol.http;
 
-import static java.lang.System.arraycopy;
-
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -25,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MetaDataKey;
@@ -49,6 +50,9 @@ import org.slf4j.LoggerFactory;
  * The information in the log files can take any format, depending on the request logger
  * implementation: currently Wicket supports two formats: a {@link RequestLogger legacy, log4j
  * compatible format}, and a {@link JsonRequestLogger JSON format}.
+ * <p>
+ * The data of the last requests is kept in a lock-free ring buffer, so request logging does not
+ * serialize concurrent requests.
  */
 public abstract class AbstractRequestLogger implements IRequestLogger
 {
@@ -83,25 +87,7 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 	/**
 	 * Rounded request buffer that keeps the request data for the last N requests in the buffer.
 	 */
-	private RequestData[] requestWindow;
-
-	/**
-	 * Cursor pointing to the current writable location in the buffer. Points to the first empty
-	 * slot or if the buffer has been filled completely to the oldest request in the buffer.
-	 */
-	private int indexInWindow = 0;
-
-	/**
-	 * records the total request time across the sliding request window so that it can be used to
-	 * calculate the average request time across the window duration.
-	 */
-	private long totalRequestTime = 0l;
-
-	/**
-	 * records the start time of the oldest request across the sliding window so that it can be used
-	 * to calculate the average request time across the window duration.
-	 */
-	private Date startTimeOfOldestRequest;
+	private volatile RequestWindow requestWindow;
 
 	/**
 	 * Construct.
@@ -109,7 +95,7 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 	public AbstractRequestLogger()
 	{
 		int requestsWindowSize = getRequestsWindowSize();
-		requestWindow = new RequestData[requestsWindowSize];
+		requestWindow = new RequestWindow(requestsWindowSize);
 		liveSessions = new ConcurrentHashMap<String, SessionData>();
 	}
 
@@ -142,43 +128,7 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 	@Override
 	public List<RequestData> getRequests()
 	{
-		synchronized (requestWindow)
-		{
-			RequestData[] result = new RequestData[hasBufferRolledOver() ? requestWindow.length
-				: indexInWindow];
-			copyRequestsInOrder(result);
-			return Arrays.asList(result);
-		}
-	}
-
-	/**
-	 * Copies all request data into {@code copy} such that the oldest request is in slot 0 and the
-	 * most recent request is in slot {@code copy.length}
-	 * 
-	 * @param copy
-	 *            the target, has to have a capacity of at least {@code requestWindow.length}
-	 */
-	private void copyRequestsInOrder(RequestData[] copy)
-	{
-		int destPos = 0;
-		
-		if (hasBufferRolledOver())
-		{
-			destPos = requestWindow.length - indexInWindow;
-			
-			// first copy the oldest requests stored behind the cursor into the copy
-			arraycopy(requestWindow, indexInWindow, copy, 0, destPos);
-		}
-		
-		arraycopy(requestWindow, 0, copy, destPos, indexInWindow);
-	}
-
-	/**
-	 * @return whether the buffer has been filled to capacity at least once
-	 */
-	private boolean hasBufferRolledOver()
-	{
-		return requestWindow.length > 0 && requestWindow[requestWindow.length - 1] != null;
+		return requestWindow.getRequests();
 	}
 
 	@Override
@@ -273,10 +223,7 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 	public void sessionCreated(String sessionId)
 	{
 		liveSessions.put(sessionId, new SessionData(sessionId));
-		if (liveSessions.size() > peakSessions.get())
-		{
-			peakSessions.set(liveSessions.size());
-		}
+		updatePeak(peakSessions, liveSessions.size());
 		totalCreatedSessions.incrementAndGet();
 	}
 
@@ -299,12 +246,29 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 			requestCycle.setMetaData(REQUEST_DATA, rd);
 			int activeCount = activeRequests.incrementAndGet();
 
-			if (activeCount > peakActiveRequests.get())
+			updatePeak(peakActiveRequests, activeCount);
+		}
+		return rd;
+	}
+
+	/**
+	 * Raises a peak to the given value, if it is lower.
+	 * 
+	 * @param peak
+	 *            the peak
+	 * @param value
+	 *            the current value
+	 */
+	private static void updatePeak(final AtomicInteger peak, final int value)
+	{
+		int current;
+		while ((current = peak.get()) < value)
+		{
+			if (peak.compareAndSet(current, value))
 			{
-				peakActiveRequests.set(activeCount);
+				break;
 			}
 		}
-		return rd;
 	}
 
 	@Override
@@ -335,71 +299,25 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 		// ensure the buffer has the proper installed length
 		resizeBuffer();
 
-		synchronized (requestWindow)
-		{
-			// if the requestWindow is a zero-length array, nothing gets stored
-			if (requestWindow.length == 0)
-				return;
-
-			// use the oldest request data to recalculate the average request time
-			RequestData old = requestWindow[indexInWindow];
-
-			// replace the oldest request with the nweset request
-			requestWindow[indexInWindow] = rd;
-
-			// move the cursor to the next writable position containing the oldest request or if the
-			// buffer hasn't been filled completely the first empty slot
-			indexInWindow = (indexInWindow + 1) % requestWindow.length;
-			if (old != null)
-			{
-				startTimeOfOldestRequest = requestWindow[indexInWindow].getStartDate();
-				totalRequestTime -= old.getTimeTaken();
-			}
-			else
-			{
-				if (startTimeOfOldestRequest == null)
-					startTimeOfOldestRequest = rd.getStartDate();
-			}
-			totalRequestTime += rd.getTimeTaken();
-		}
-	}
-
-	private int getWindowSize()
-	{
-		synchronized (requestWindow)
-		{
-			if (requestWindow[requestWindow.length - 1] == null)
-				return indexInWindow;
-			else
-				return requestWindow.length;
-		}
+		requestWindow.add(rd);
 	}
 
 	@Override
 	public long getAverageRequestTime()
 	{
-		synchronized (requestWindow)
-		{
-			int windowSize = getWindowSize();
-			if (windowSize == 0)
-				return 0;
-			return totalRequestTime / windowSize;
-		}
+		return requestWindow.getAverageRequestTime();
 	}
 
 	@Override
 	public long getRequestsPerMinute()
 	{
-		synchronized (requestWindow)
-		{
-			int windowSize = getWindowSize();
-			if (windowSize == 0)
-				return 0;
-			long start = startTimeOfOldestRequest.getTime();
-			long end = System.currentTimeMillis();
-			double diff = end - start;
-			return Math.round(windowSize / (diff / 60000.0));
-		}
+		List<RequestData> requests = requestWindow.getRequests();
+		if (requests.isEmpty())
+			return 0;
+		long start = requests.get(0).getStartDate().getTime();
+		long end = System.currentTimeMillis();
+		double diff = end - start;
+		return Math.round(requests.size() / (diff / 60000.0));
 	}
 
 	@Override
@@ -435,52 +353,28 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 		int newCapacity = getRequestsWindowSize();
 
 		// do nothing if the capacity requirement hasn't changed
-		if (newCapacity == requestWindow.length)
+		if (newCapacity == requestWindow.capacity)
 			return;
 
-		RequestData[] newRequestWindow = new RequestData[newCapacity];
-		synchronized (requestWindow)
+		synchronized (this)
 		{
-			int oldCapacity = requestWindow.length;
-			int oldNumberOfElements = hasBufferRolledOver() ? oldCapacity : indexInWindow;
-
-			if (newCapacity > oldCapacity)
-			{
-				// increase the capacity of the buffer when more requests need to be stored
-				// and preserve the order of the requests while copying them into the new buffer.
-				copyRequestsInOrder(newRequestWindow);
+			RequestWindow oldRequestWindow = requestWindow;
+			if (newCapacity == oldRequestWindow.capacity)
+				return;
 
-				// the next writable position is at the first non-copied element in the buffer
-				indexInWindow = oldNumberOfElements;
-				requestWindow = newRequestWindow;
-			}
-			else if (newCapacity < oldCapacity)
+			// keep the most recent requests that fit into the new buffer, in their order - requests
+			// added to the old buffer while it is replaced are lost
+			RequestWindow newRequestWindow = new RequestWindow(newCapacity);
+			List<RequestData> requests = oldRequestWindow.getRequests();
+			for (RequestData rd : requests.subList(Math.max(0, requests.size() - newCapacity),
+				requests.size()))
 			{
-				// sort the requests in the current buffer such that the oldest request is in slot 0
-				RequestData[] sortedRequestWindow = new RequestData[oldCapacity];
-				copyRequestsInOrder(sortedRequestWindow);
-
-				// determine the number of elements that need to be copied into the smaller target
-				int numberOfElementsToCopy = Math.min(newCapacity, oldNumberOfElements);
-
-				// determine the position from where the copying must start
-				int numberOfElementsToSkip = Math.max(0, oldNumberOfElements -
-					numberOfElementsToCopy);
-
-				// fill the new buffer with the leftovers of the old buffer, skipping the oldest
-				// requests
-				arraycopy(sortedRequestWindow, numberOfElementsToSkip, newRequestWindow, 0,
-					numberOfElementsToCopy);
-
-				// the next writable position is 0 when the buffer is filled to capacity, or the
-				// number of copied elements when the buffer isn't filled to capacity.
-				indexInWindow = numberOfElementsToCopy >= newCapacity ? 0 : numberOfElementsToCopy;
-				requestWindow = newRequestWindow;
+				newRequestWindow.add(rd);
 			}
+			requestWindow = newRequestWindow;
 		}
 	}
 
-
 	/**
 	 * Thread-safely formats the passed date in format 'yyyy-MM-dd hh:mm:ss,SSS' with GMT timezone
 	 * 
@@ -533,4 +427,111 @@ public abstract class AbstractRequestLogger implements IRequestLogger
 		}
 		return requestsWindowSize;
 	}
+
+	/**
+	 * A fixed-size ring buffer of the last requests. Writers claim a slot by incrementing a
+	 * sequence, readers take a snapshot of all slots and drop the ones that were overwritten
+	 * meanwhile.
+	 */
+	private static final class RequestWindow
+	{
+		private final int capacity;
+
+		private final AtomicReferenceArray<Entry> slots;
+
+		/**
+		 * Number of requests ever added. The next request goes into slot {@code added % capacity},
+		 * replacing the oldest request once the buffer has been filled.
+		 */
+		private final AtomicLong added = new AtomicLong();
+
+		/**
+		 * records the total request time across the sliding request window so that it can be used
+		 * to calculate the average request time across the window duration.
+		 */
+		private final AtomicLong totalRequestTime = new AtomicLong();
+
+		private RequestWindow(final int capacity)
+		{
+			this.capacity = capacity;
+			slots = new AtomicReferenceArray<Entry>(capacity);
+		}
+
+		private void add(final RequestData rd)
+		{
+			// if the requestWindow is a zero-length array, nothing gets stored
+			if (capacity == 0)
+				return;
+
+			long sequence = added.getAndIncrement();
+			int slot = (int)(sequence % capacity);
+			Entry entry = new Entry(sequence, rd);
+
+			Entry old;
+			do
+			{
+				old = slots.get(slot);
+				if (old != null && old.sequence > sequence)
+				{
+					// overtaken by a more recent request
+					return;
+				}
+			}
+			while (slots.compareAndSet(slot, old, entry) == false);
+
+			// use the replaced request data to recalculate the average request time
+			long delta = rd.getTimeTaken();
+			if (old != null)
+			{
+				delta -= old.requestData.getTimeTaken();
+			}
+			totalRequestTime.addAndGet(delta);
+		}
+
+		/**
+		 * @return the requests in the window, the oldest first
+		 */
+		private List<RequestData> getRequests()
+		{
+			long end = added.get();
+			long start = Math.max(0, end - capacity);
+
+			List<RequestData> result = new ArrayList<RequestData>((int)(end - start));
+			for (long sequence = start; sequence < end; sequence++)
+			{
+				Entry entry = slots.get((int)(sequence % capacity));
+
+				// skip slots not yet written or already overwritten by a later request
+				if (entry != null && entry.sequence == sequence)
+				{
+					result.add(entry.requestData);
+				}
+			}
+			return result;
+		}
+
+		private long getAverageRequestTime()
+		{
+			long windowSize = Math.min(added.get(), capacity);
+			if (windowSize == 0)
+				return 0;
+			return totalRequestTime.get() / windowSize;
+		}
+	}
+
+	/**
+	 * The data of a request in the {@link RequestWindow} along with its sequence number.
+	 */
+	private static final class Entry
+	{
+		private final long sequence;
+
+		private final RequestData requestData;
+
+		private Entry(final long sequence, final RequestData requestData)
+		{
+			this.sequence = sequence;
+			this.requestData = requestData;
+		}
+	}
 }
@@ -19,6 +19,7 @@ package org.apache.wicket.protocol.http;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.IEncodingResponse;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.AppendingStringBuffer;
@@ -41,7 +43,10 @@ import org.apache.wicket.util.time.Time;
  * 
  * @author Matej Knopp
  */
-public class BufferedWebResponse extends WebResponse implements IMetaDataBufferingWebResponse
+public class BufferedWebResponse extends WebResponse
+	implements
+		IMetaDataBufferingWebResponse,
+		IEncodingResponse
 {
 	private final WebResponse originalResponse;
 
@@ -422,6 +427,32 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	private final List<Action> actions = new ArrayList<Action>();
 	private WriteCharSequenceAction charSequenceAction;
 	private WriteDataAction dataAction;
+	private Charset textCharset;
+
+	/**
+	 * Makes this response encode the text written to it with the given charset, so it can be mixed
+	 * with pre-encoded bytes. The text is written as bytes to the original response then, and is
+	 * not passed through the response filters.
+	 * 
+	 * @param textCharset
+	 *            the charset to encode the text with, {@code null} to buffer the text as is
+	 * @see IEncodingResponse
+	 */
+	public void setTextCharset(Charset textCharset)
+	{
+		if (charSequenceAction != null)
+		{
+			throw new IllegalStateException(
+				"Can't change the text charset after write(CharSequence) has been called.");
+		}
+		this.textCharset = textCharset;
+	}
+
+	@Override
+	public Charset getTextCharset()
+	{
+		return textCharset;
+	}
 
 	@Override
 	public void reset()
@@ -482,6 +513,12 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 	@Override
 	public void write(CharSequence sequence)
 	{
+		if (textCharset != null)
+		{
+			write(sequence.toString().getBytes(textCharset));
+			return;
+		}
+
 		if (dataAction != null)
 		{
 			throw new IllegalStateException(
@@ -517,6 +554,26 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * Estimates the heap used by the content buffered in this response. Text is counted with the
+	 * capacity of its buffer, two bytes per char.
+	 * 
+	 * @return the estimated number of bytes
+	 */
+	long getBufferedBytes()
+	{
+		long bytes = 0;
+		if (charSequenceAction != null)
+		{
+			bytes += 2L * charSequenceAction.builder.capacity();
+		}
+		if (dataAction != null)
+		{
+			bytes += dataAction.stream.size();
+		}
+		return bytes;
+	}
+
 	/**
 	 * Replaces the text in this response
 	 * 
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+/**
+ * Usage of the store that keeps the buffered responses of
+ * {@link org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER}
+ * between the redirect and the request that picks them up.
+ * 
+ * @see WebApplication#getStoredResponsesStatistics()
+ */
+public interface IStoredResponsesStatistics
+{
+	/**
+	 * @return the number of responses currently stored
+	 */
+	int getSize();
+
+	/**
+	 * @return the estimated number of bytes used by the stored responses
+	 */
+	long getBytes();
+
+	/**
+	 * @return the maximum number of bytes the stored responses may use
+	 */
+	long getMaxBytes();
+
+	/**
+	 * @return how often a stored response was picked up
+	 */
+	long getHits();
+
+	/**
+	 * @return how often a response was asked for but was not stored (anymore)
+	 */
+	long getMisses();
+
+	/**
+	 * @return the number of responses removed because their lifetime was over
+	 */
+	long getExpirations();
+
+	/**
+	 * @return the number of responses removed, or not stored at all, to stay within the bounds
+	 */
+	long getEvictions();
+}
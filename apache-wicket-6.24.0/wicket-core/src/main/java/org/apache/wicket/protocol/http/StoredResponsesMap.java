@@ -16,19 +16,41 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import org.apache.wicket.util.collections.MostRecentlyUsedMap;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.thread.ICode;
+import org.apache.wicket.util.thread.Task;
 import org.apache.wicket.util.time.Duration;
-import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * A map that contains the buffered responses. It has a constraint on the maximum entries that it
- * can contain, and a constraint on the duration of time an entry is considered valid/non-expired
+ * A store for the buffered responses. It has a constraint on the maximum entries and on the
+ * estimated bytes that it can contain, and a constraint on the duration of time an entry is
+ * considered valid/non-expired.
+ * <p>
+ * The entries are spread over segments with a lock each, so concurrent requests rarely wait for
+ * each other. When a bound is exceeded the oldest entries are evicted. Expired entries are removed
+ * by a background task, which is started with the first entry and stopped by {@link #destroy()}.
  */
-class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
+class StoredResponsesMap implements IStoredResponsesStatistics
 {
-	private static final long serialVersionUID = 1L;
+	private static final Logger log = LoggerFactory.getLogger(StoredResponsesMap.class);
+
+	/** the number of segments, must be a power of two */
+	private static final int SEGMENTS = 16;
+
+	/** the estimated bytes used by an entry besides its key and the buffered content */
+	private static final long ENTRY_OVERHEAD = 256;
+
+	/** the longest time in milliseconds between two runs of the expiry task */
+	private static final long MAX_EXPIRY_INTERVAL = 10000;
 
 	/**
 	 * The actual object that is stored as a value of the map. It wraps the buffered response and
@@ -37,20 +59,72 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 	private static class Value
 	{
 		/** the original response to store */
-		private BufferedWebResponse response;
+		private final BufferedWebResponse response;
+
+		/** the time in milliseconds when this response is stored */
+		private final long creationTime;
 
-		/** the time when this response is stored */
-		private Time creationTime;
+		/** the estimated bytes used by this entry */
+		private final long bytes;
+
+		/** the position of this value in the order of storing */
+		private final long sequence;
+
+		private Value(BufferedWebResponse response, long creationTime, long bytes, long sequence)
+		{
+			this.response = response;
+			this.creationTime = creationTime;
+			this.bytes = bytes;
+			this.sequence = sequence;
+		}
 	}
 
 	/**
-	 * The duration of time before a {@link Value} is considered as expired
+	 * A part of the entries, in the order they were stored.
 	 */
-	private final Duration lifetime;
+	private static class Segment
+	{
+		private final Map<String, Value> entries = new LinkedHashMap<String, Value>();
+	}
+
+	private final Segment[] segments;
+
+	private final int maxEntries;
+
+	private final long maxBytes;
+
+	/**
+	 * The duration of time in milliseconds before a {@link Value} is considered as expired
+	 */
+	private final long lifetime;
+
+	private final Duration expiryInterval;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final Object expiryLock = new Object();
+
+	/** the task removing the expired entries, {@code null} until the first entry is stored */
+	private volatile Task expiryTask;
+
+	/** whether {@link #destroy()} was called, guarded by {@link #expiryLock} */
+	private boolean destroyed;
 
 	/**
 	 * Construct.
-	 * 
+	 *
 	 * @param maxEntries
 	 *            how much entries this map can contain
 	 * @param lifetime
@@ -58,32 +132,48 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 	 */
 	public StoredResponsesMap(int maxEntries, Duration lifetime)
 	{
-		super(maxEntries);
-
-		this.lifetime = lifetime;
+		this(maxEntries, Bytes.bytes(Long.MAX_VALUE), lifetime);
 	}
 
-	@Override
-	protected synchronized boolean removeEldestEntry(java.util.Map.Entry<String, Object> eldest)
+	/**
+	 * Construct.
+	 *
+	 * @param maxEntries
+	 *            how much entries this map can contain
+	 * @param maxBytes
+	 *            how much bytes the buffered responses in this map can use
+	 * @param lifetime
+	 *            the duration of time to keep an entry in the map before considering it expired
+	 */
+	public StoredResponsesMap(int maxEntries, Bytes maxBytes, Duration lifetime)
 	{
-		boolean removed = super.removeEldestEntry(eldest);
-		if (removed == false)
+		Args.withinRange(1, Integer.MAX_VALUE, maxEntries, "maxEntries");
+		Args.notNull(maxBytes, "maxBytes");
+		Args.notNull(lifetime, "lifetime");
+
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes.bytes();
+		this.lifetime = lifetime.getMilliseconds();
+
+		expiryInterval = Duration.milliseconds(Math.max(1,
+			Math.min(this.lifetime / 4, MAX_EXPIRY_INTERVAL)));
+
+		segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++)
 		{
-			Value value = (Value)eldest.getValue();
-			if (value != null)
-			{
-				Duration elapsedTime = Time.now().subtract(value.creationTime);
-				if (lifetime.lessThanOrEqual(elapsedTime))
-				{
-					removedValue = value.response;
-					removed = true;
-				}
-			}
+			segments[i] = new Segment();
 		}
-		return removed;
 	}
 
-	@Override
+	/**
+	 * Stores a buffered response.
+	 *
+	 * @param key
+	 *            the key
+	 * @param bufferedResponse
+	 *            the {@link BufferedWebResponse} to store
+	 * @return the response previously stored with the key, or {@code null}
+	 */
 	public BufferedWebResponse put(String key, Object bufferedResponse)
 	{
 		if (!(bufferedResponse instanceof BufferedWebResponse))
@@ -92,59 +182,377 @@ class StoredResponsesMap extends MostRecentlyUsedMap<String, Object>
 				" can store only instances of " + BufferedWebResponse.class.getSimpleName());
 		}
 
-		Value value = new Value();
-		value.creationTime = Time.now();
-		value.response = (BufferedWebResponse)bufferedResponse;
+		BufferedWebResponse response = (BufferedWebResponse)bufferedResponse;
+		long entryBytes = ENTRY_OVERHEAD + 2L * key.length() + response.getBufferedBytes();
+		if (entryBytes > maxBytes)
+		{
+			log.debug("Not storing the response for '{}', its {} bytes exceed the maximum", key,
+				entryBytes);
+			evictions.incrementAndGet();
+			return remove(key, false);
+		}
+
+		Value value = new Value(response, System.currentTimeMillis(), entryBytes,
+			sequence.incrementAndGet());
 
+		Segment segment = segmentFor(key);
 		Value oldValue;
-		synchronized (this)
+		synchronized (segment)
+		{
+			// remove first to keep the entries in the order of their creation
+			oldValue = segment.entries.remove(key);
+			segment.entries.put(key, value);
+		}
+
+		size.incrementAndGet();
+		bytes.addAndGet(entryBytes);
+		if (oldValue != null)
 		{
-			oldValue = (Value)super.put(key, value);
+			removed(oldValue);
+		}
+
+		while (size.get() > maxEntries || bytes.get() > maxBytes)
+		{
+			if (evictEldest(value) == false)
+			{
+				break;
+			}
 		}
 
+		startExpiry();
+
 		return oldValue != null ? oldValue.response : null;
 	}
 
-	@Override
+	/**
+	 * Gets a stored response.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the response, or {@code null} if there is none or it expired
+	 */
 	public BufferedWebResponse get(Object key)
 	{
-		BufferedWebResponse result = null;
+		Segment segment = segmentFor(key);
 		Value value;
-		synchronized (this)
+		synchronized (segment)
 		{
-			value = (Value)super.get(key);
+			value = segment.entries.get(key);
 		}
-		if (value != null)
+
+		if (value == null)
 		{
-			Duration elapsedTime = Time.now().subtract(value.creationTime);
-			if (lifetime.greaterThan(elapsedTime))
+			misses.incrementAndGet();
+			return null;
+		}
+
+		if (isExpired(value, System.currentTimeMillis()))
+		{
+			// expired, remove it
+			boolean removed;
+			synchronized (segment)
 			{
-				result = value.response;
+				removed = segment.entries.get(key) == value && segment.entries.remove(key) != null;
 			}
-			else
+			if (removed)
 			{
-				// expired, remove it
-				remove(key);
+				removed(value);
+				expirations.incrementAndGet();
 			}
+			misses.incrementAndGet();
+			return null;
 		}
-		return result;
+
+		hits.incrementAndGet();
+		return value.response;
 	}
 
-	@Override
+	/**
+	 * Removes a stored response.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed response, or {@code null} if there is none or it expired
+	 */
 	public BufferedWebResponse remove(Object key)
 	{
-		Value removedValue;
-		synchronized (this)
+		return remove(key, true);
+	}
+
+	private BufferedWebResponse remove(Object key, boolean count)
+	{
+		Segment segment = segmentFor(key);
+		Value value;
+		synchronized (segment)
+		{
+			value = segment.entries.remove(key);
+		}
+
+		if (value == null)
+		{
+			if (count)
+			{
+				misses.incrementAndGet();
+			}
+			return null;
+		}
+
+		removed(value);
+
+		if (isExpired(value, System.currentTimeMillis()))
+		{
+			expirations.incrementAndGet();
+			if (count)
+			{
+				misses.incrementAndGet();
+			}
+			return null;
+		}
+
+		if (count)
+		{
+			hits.incrementAndGet();
+		}
+		return value.response;
+	}
+
+	/**
+	 * @param key
+	 *            the key
+	 * @return {@code true} if a non-expired response is stored with the key
+	 */
+	public boolean containsKey(Object key)
+	{
+		Segment segment = segmentFor(key);
+		Value value;
+		synchronized (segment)
+		{
+			value = segment.entries.get(key);
+		}
+		return value != null && isExpired(value, System.currentTimeMillis()) == false;
+	}
+
+	/**
+	 * @return the number of stored responses
+	 */
+	public int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Removes the expired entries.
+	 */
+	public void expire()
+	{
+		long now = System.currentTimeMillis();
+		for (Segment segment : segments)
+		{
+			int removedEntries = 0;
+			long removedBytes = 0;
+			synchronized (segment)
+			{
+				// the entries are in the order of their creation
+				Iterator<Value> values = segment.entries.values().iterator();
+				while (values.hasNext())
+				{
+					Value value = values.next();
+					if (isExpired(value, now) == false)
+					{
+						break;
+					}
+					values.remove();
+					removedEntries++;
+					removedBytes += value.bytes;
+				}
+			}
+
+			if (removedEntries > 0)
+			{
+				size.addAndGet(-removedEntries);
+				bytes.addAndGet(-removedBytes);
+				expirations.addAndGet(removedEntries);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries and stops the expiry task.
+	 */
+	public void destroy()
+	{
+		synchronized (expiryLock)
+		{
+			destroyed = true;
+			if (expiryTask != null)
+			{
+				expiryTask.interrupt();
+				expiryTask = null;
+			}
+		}
+
+		for (Segment segment : segments)
 		{
-			removedValue = (Value)super.remove(key);
+			synchronized (segment)
+			{
+				for (Value value : segment.entries.values())
+				{
+					removed(value);
+				}
+				segment.entries.clear();
+			}
 		}
+	}
+
+	@Override
+	public int getSize()
+	{
+		return size.get();
+	}
+
+	@Override
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+
+	@Override
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	@Override
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses()
+	{
+		return misses.get();
+	}
 
-		return removedValue != null ? removedValue.response : null;
+	@Override
+	public long getExpirations()
+	{
+		return expirations.get();
 	}
 
 	@Override
-	public void putAll(Map<? extends String, ?> m)
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	private Segment segmentFor(Object key)
+	{
+		int hash = key.hashCode();
+		hash ^= (hash >>> 20) ^ (hash >>> 12);
+		hash ^= (hash >>> 7) ^ (hash >>> 4);
+		return segments[hash & (SEGMENTS - 1)];
+	}
+
+	private boolean isExpired(Value value, long now)
+	{
+		return now - value.creationTime >= lifetime;
+	}
+
+	private void removed(Value value)
+	{
+		size.decrementAndGet();
+		bytes.addAndGet(-value.bytes);
+	}
+
+	/**
+	 * Evicts the eldest entry other than the given value. Only the first entry of each segment is
+	 * looked at, so the lock of a segment is held only briefly.
+	 *
+	 * @param keep
+	 *            the value not to evict
+	 * @return {@code false} if there was nothing to evict
+	 */
+	private boolean evictEldest(Value keep)
+	{
+		Segment eldestSegment = null;
+		Value eldest = null;
+		for (Segment segment : segments)
+		{
+			synchronized (segment)
+			{
+				Iterator<Value> values = segment.entries.values().iterator();
+				if (values.hasNext())
+				{
+					Value value = values.next();
+					if (value == keep && values.hasNext())
+					{
+						value = values.next();
+					}
+					if (value != keep && (eldest == null || value.sequence < eldest.sequence))
+					{
+						eldestSegment = segment;
+						eldest = value;
+					}
+				}
+			}
+		}
+
+		if (eldest == null)
+		{
+			return false;
+		}
+
+		boolean evicted = false;
+		synchronized (eldestSegment)
+		{
+			Iterator<Value> values = eldestSegment.entries.values().iterator();
+			while (values.hasNext())
+			{
+				if (values.next() == eldest)
+				{
+					values.remove();
+					evicted = true;
+					break;
+				}
+			}
+		}
+
+		if (evicted)
+		{
+			removed(eldest);
+			evictions.incrementAndGet();
+		}
+
+		// try again if another thread removed it meanwhile
+		return true;
+	}
+
+	/**
+	 * Starts the expiry task unless it is running already. The task runs until {@link #destroy()}
+	 * is called.
+	 */
+	private void startExpiry()
 	{
-		throw new UnsupportedOperationException();
+		if (expiryTask != null)
+		{
+			return;
+		}
+
+		synchronized (expiryLock)
+		{
+			if (expiryTask == null && destroyed == false)
+			{
+				expiryTask = new Task(StoredResponsesMap.class.getSimpleName());
+				expiryTask.run(expiryInterval, new ICode()
+				{
+					@Override
+					public void run(Logger log)
+					{
+						expire();
+					}
+				});
+			}
+		}
 	}
 }
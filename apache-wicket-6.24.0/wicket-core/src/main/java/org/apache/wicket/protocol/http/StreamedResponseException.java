@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import org.apache.wicket.IWicketInternalException;
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * Thrown when rendering a page failed after parts of it were streamed to the client already, see
+ * {@link StreamingWebResponse}. Since the response is committed no error page can be rendered
+ * anymore, so Wicket gives up responding.
+ */
+public class StreamedResponseException extends WicketRuntimeException
+	implements
+		IWicketInternalException
+{
+	/** */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 * @param cause
+	 */
+	public StreamedResponseException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import org.apache.wicket.request.http.WebResponse;
+
+/**
+ * A {@link BufferedWebResponse} which can start streaming while the page is still rendered. Until
+ * {@link #stream()} is called everything is buffered. Then the buffer is written to the original
+ * response and flushed, and from then on the content is written directly to the original
+ * response. Meta data (headers, cookies, status) set after streaming has started is still
+ * buffered and written by {@link #writeTo(WebResponse)}, but most containers will ignore it since
+ * the response has been committed.
+ * 
+ * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamOnePassRender(boolean)
+ */
+public class StreamingWebResponse extends BufferedWebResponse
+{
+	private final WebResponse originalResponse;
+
+	private boolean streaming = false;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 */
+	public StreamingWebResponse(WebResponse originalResponse)
+	{
+		super(originalResponse);
+		this.originalResponse = originalResponse;
+	}
+
+	/**
+	 * Writes the buffered content to the original response, flushes it and writes everything
+	 * following directly. Does nothing if streaming has already started or
+	 * {@link #canStream()} returns {@code false}.
+	 */
+	public void stream()
+	{
+		if (streaming || canStream() == false)
+		{
+			return;
+		}
+
+		writeTo(originalResponse);
+		reset();
+		originalResponse.flush();
+		streaming = true;
+	}
+
+	/**
+	 * Can streaming start now? Once streaming has started the response can't be redirected and
+	 * no cookies or headers can be added anymore.
+	 * 
+	 * @return {@code true} by default
+	 */
+	protected boolean canStream()
+	{
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if content has been written to the original response already
+	 */
+	public boolean isStreaming()
+	{
+		return streaming;
+	}
+
+	@Override
+	public void write(CharSequence sequence)
+	{
+		if (streaming && getTextCharset() == null)
+		{
+			originalResponse.write(sequence);
+		}
+		else
+		{
+			super.write(sequence);
+		}
+	}
+
+	@Override
+	public void write(byte[] array)
+	{
+		if (streaming)
+		{
+			originalResponse.write(array);
+		}
+		else
+		{
+			super.write(array);
+		}
+	}
+
+	@Override
+	public void write(byte[] array, int offset, int length)
+	{
+		if (streaming)
+		{
+			originalResponse.write(array, offset, length);
+		}
+		else
+		{
+			super.write(array, offset, length);
+		}
+	}
+}
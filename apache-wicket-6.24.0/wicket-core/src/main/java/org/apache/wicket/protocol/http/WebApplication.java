@@ -82,6 +82,7 @@ import org.apache.wicket.util.file.FileCleaner;
 import org.apache.wicket.util.file.IFileCleaner;
 import org.apache.wicket.util.file.Path;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.lang.PackageName;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
@@ -698,6 +699,8 @@ public abstract class WebApplication extends Application
 			fileCleaner.destroy();
 		}
 
+		storedResponses.destroy();
+
 		super.internalDestroy();
 	}
 
@@ -950,11 +953,22 @@ public abstract class WebApplication extends Application
 	}
 
 	/*
-	 * Can contain at most 1000 responses and each entry can live at most one minute. For now there
-	 * is no need to configure these parameters externally.
+	 * Can contain at most 1000 responses using at most 32 MB and each entry can live at most one
+	 * minute. For now there is no need to configure these parameters externally.
 	 */
 	private final StoredResponsesMap storedResponses = new StoredResponsesMap(1000,
-		Duration.seconds(60));
+		Bytes.megabytes(32), Duration.seconds(60));
+
+	/**
+	 * Gets the usage of the store keeping the buffered responses of
+	 * {@link org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy#REDIRECT_TO_BUFFER}.
+	 * 
+	 * @return the statistics of the stored responses
+	 */
+	public final IStoredResponsesStatistics getStoredResponsesStatistics()
+	{
+		return storedResponses;
+	}
 
 	/**
 	 * 
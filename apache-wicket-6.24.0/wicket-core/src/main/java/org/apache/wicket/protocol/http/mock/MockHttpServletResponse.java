@@ -20,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -311,6 +312,18 @@ public class MockHttpServletResponse implements HttpServletResponse, IMetaDataBu
 	{
 		if (mode == MODE_BINARY)
 		{
+			// the text of pages rendered with pre-encoded markup is written as bytes
+			if (characterEncoding != null)
+			{
+				try
+				{
+					return new String(byteStream.toByteArray(), characterEncoding);
+				}
+				catch (UnsupportedEncodingException e)
+				{
+					// fall back to the default encoding
+				}
+			}
 			return new String(byteStream.toByteArray());
 		}
 		else
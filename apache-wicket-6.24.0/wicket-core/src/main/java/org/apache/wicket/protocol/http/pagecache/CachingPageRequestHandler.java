@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.pagecache;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.core.request.handler.IPageClassRequestHandler;
+import org.apache.wicket.core.request.handler.IPageProvider;
+import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
+import org.apache.wicket.feedback.FeedbackCollector;
+import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.IRequestHandlerDelegate;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+
+/**
+ * Serves the response of a page from the {@link StatelessPageCache}, or renders the page and
+ * stores its response.
+ * 
+ * @see StatelessPageCacheMapper
+ */
+class CachingPageRequestHandler implements IRequestHandlerDelegate, IPageClassRequestHandler
+{
+	private final StatelessPageCacheMapper mapper;
+
+	private final RenderPageRequestHandler delegate;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param mapper
+	 * @param delegate
+	 */
+	CachingPageRequestHandler(final StatelessPageCacheMapper mapper,
+		final RenderPageRequestHandler delegate)
+	{
+		this.mapper = mapper;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public RenderPageRequestHandler getDelegateHandler()
+	{
+		return delegate;
+	}
+
+	@Override
+	public Class<? extends IRequestablePage> getPageClass()
+	{
+		return delegate.getPageClass();
+	}
+
+	@Override
+	public PageParameters getPageParameters()
+	{
+		return delegate.getPageParameters();
+	}
+
+	@Override
+	public void respond(final IRequestCycle requestCycle)
+	{
+		final Request request = requestCycle.getRequest();
+		final Response response = requestCycle.getResponse();
+		if (!(request instanceof WebRequest) || !(response instanceof WebResponse))
+		{
+			delegate.respond(requestCycle);
+			return;
+		}
+
+		final WebRequest webRequest = (WebRequest)request;
+		final WebResponse webResponse = (WebResponse)response;
+
+		if (hasSessionFeedback() || isSessionIdInUrls(webRequest))
+		{
+			// the messages have to be rendered by the page, and the urls have to carry the id of
+			// this session
+			delegate.respond(requestCycle);
+			return;
+		}
+
+		final StatelessPageCache cache = mapper.getCache();
+		final Object key = mapper.getCacheKey(delegate, webRequest);
+
+		StatelessPageCache.Entry entry = cache.get(key);
+		if (entry == null)
+		{
+			CapturingWebResponse capture = new CapturingWebResponse(webResponse);
+			requestCycle.setResponse(capture);
+			try
+			{
+				delegate.respond(requestCycle);
+			}
+			finally
+			{
+				requestCycle.setResponse(webResponse);
+			}
+
+			if (!capture.isCacheable() || !isPageCacheable() || isSessionIdInUrls(webRequest))
+			{
+				capture.writeTo(webResponse);
+				return;
+			}
+			entry = cache.put(key, delegate.getPageClass(), capture.contentType, capture.headers,
+				capture.content.toByteArray());
+		}
+		cache.respond(entry, webRequest, webResponse);
+	}
+
+	/**
+	 * @return true, if the session has feedback messages, e.g. reported before a redirect
+	 */
+	private static boolean hasSessionFeedback()
+	{
+		return Session.exists() && !Session.get().getFeedbackMessages().isEmpty();
+	}
+
+	/**
+	 * Checks whether the servlet container encodes the session id into the urls of the response,
+	 * i.e. whether there is a session whose id the client did not send in a cookie. Such a response
+	 * must neither be stored nor be replaced with a stored one, because it would give the session
+	 * to every other client.
+	 * 
+	 * @param request
+	 * @return true, if the urls of the response may contain the session id
+	 */
+	private static boolean isSessionIdInUrls(final WebRequest request)
+	{
+		Object containerRequest = request.getContainerRequest();
+		if (containerRequest instanceof HttpServletRequest)
+		{
+			HttpServletRequest httpRequest = (HttpServletRequest)containerRequest;
+			return (httpRequest.getSession(false) != null) &&
+				!httpRequest.isRequestedSessionIdFromCookie();
+		}
+		return Session.exists() && !Session.get().isTemporary();
+	}
+
+	/**
+	 * @return true, if the rendered page is stateless and had no feedback messages to render
+	 */
+	private boolean isPageCacheable()
+	{
+		IPageProvider provider = delegate.getPageProvider();
+		if (provider.hasPageInstance())
+		{
+			IRequestablePage page = provider.getPageInstance();
+			return (page instanceof Page) && ((Page)page).isPageStateless() &&
+				new FeedbackCollector((Page)page).collect().isEmpty();
+		}
+		return false;
+	}
+
+	@Override
+	public void detach(final IRequestCycle requestCycle)
+	{
+		delegate.detach(requestCycle);
+	}
+
+	/**
+	 * A response which keeps a copy of the content and the headers written to it, and remembers if
+	 * anything was done that can't be cached.
+	 */
+	private static class CapturingWebResponse extends BufferedWebResponse
+	{
+		/** The headers set by the cache for every stored response, in lower case */
+		private static final Set<String> CACHE_HEADERS = new HashSet<String>(Arrays.asList("date",
+			"expires", "pragma", "cache-control", "etag", "last-modified", "content-type",
+			"content-length"));
+
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+		private final Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+		private String contentType;
+
+		private boolean uncacheable;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param originalResponse
+		 */
+		CapturingWebResponse(final WebResponse originalResponse)
+		{
+			super(originalResponse);
+
+			String encoding = Application.get()
+				.getRequestCycleSettings()
+				.getResponseRequestEncoding();
+			setTextCharset(Charset.forName(encoding));
+		}
+
+		/**
+		 * @return true, if there is content and nothing was done that can't be cached
+		 */
+		boolean isCacheable()
+		{
+			return !uncacheable && (content.size() > 0);
+		}
+
+		@Override
+		public void reset()
+		{
+			super.reset();
+			content.reset();
+			headers.clear();
+		}
+
+		@Override
+		public void setHeader(final String name, final String value)
+		{
+			super.setHeader(name, value);
+			if (isPageHeader(name))
+			{
+				removeHeader(name);
+				addPageHeader(name, value);
+			}
+		}
+
+		@Override
+		public void addHeader(final String name, final String value)
+		{
+			super.addHeader(name, value);
+			if (isPageHeader(name))
+			{
+				addPageHeader(name, value);
+			}
+		}
+
+		private static boolean isPageHeader(final String name)
+		{
+			return !CACHE_HEADERS.contains(name.toLowerCase(Locale.ENGLISH));
+		}
+
+		private void addPageHeader(final String name, final String value)
+		{
+			List<String> values = headers.get(name);
+			if (values == null)
+			{
+				values = new ArrayList<String>();
+				headers.put(name, values);
+			}
+			values.add(value);
+		}
+
+		private void removeHeader(final String name)
+		{
+			Iterator<String> names = headers.keySet().iterator();
+			while (names.hasNext())
+			{
+				if (names.next().equalsIgnoreCase(name))
+				{
+					names.remove();
+				}
+			}
+		}
+
+		@Override
+		public void setContentType(final String mimeType)
+		{
+			super.setContentType(mimeType);
+			contentType = mimeType;
+		}
+
+		@Override
+		public void addCookie(final Cookie cookie)
+		{
+			super.addCookie(cookie);
+			uncacheable = true;
+		}
+
+		@Override
+		public void clearCookie(final Cookie cookie)
+		{
+			super.clearCookie(cookie);
+			uncacheable = true;
+		}
+
+		@Override
+		public void sendRedirect(final String url)
+		{
+			super.sendRedirect(url);
+			uncacheable = true;
+		}
+
+		@Override
+		public void setStatus(final int sc)
+		{
+			super.setStatus(sc);
+			if (sc != HttpServletResponse.SC_OK)
+			{
+				uncacheable = true;
+			}
+		}
+
+		@Override
+		public void sendError(final int sc, final String msg)
+		{
+			super.sendError(sc, msg);
+			uncacheable = true;
+		}
+
+		@Override
+		public void write(final byte[] array)
+		{
+			super.write(array);
+			content.write(array, 0, array.length);
+		}
+
+		@Override
+		public void write(final byte[] array, final int offset, final int length)
+		{
+			super.write(array, offset, length);
+			content.write(array, offset, length);
+		}
+	}
+}
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.pagecache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Stores the responses of stateless bookmarkable pages, see {@link StatelessPageCacheMapper}.
+ * Stored responses are served with the headers set by the page, an ETag and a Last-Modified
+ * header, and conditional requests of clients having a valid copy are answered with 304 (Not
+ * Modified).
+ * <p>
+ * The least recently used responses are evicted when the size of all responses exceeds the
+ * maximum size, and responses expire after their time to live.
+ * 
+ * @see StatelessPageCacheMapper
+ */
+public class StatelessPageCache
+{
+	private final long maxSize;
+
+	private final Duration timeToLive;
+
+	/** The responses in access order */
+	private final Map<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+	private long size;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private long notModified;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *            the maximum size of all responses
+	 * @param timeToLive
+	 *            the duration a response is valid
+	 */
+	public StatelessPageCache(final Bytes maxSize, final Duration timeToLive)
+	{
+		this.maxSize = Args.notNull(maxSize, "maxSize").bytes();
+		this.timeToLive = Args.notNull(timeToLive, "timeToLive");
+	}
+
+	/**
+	 * Gets the response for the key.
+	 * 
+	 * @param key
+	 * @return the response, {@code null} if there is none or it has expired
+	 */
+	public synchronized Entry get(final Object key)
+	{
+		Entry entry = entries.get(key);
+		if ((entry != null) && entry.isExpired(System.currentTimeMillis()))
+		{
+			remove(key);
+			entry = null;
+		}
+
+		if (entry == null)
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores a response. Responses bigger than the maximum size are not stored.
+	 * 
+	 * @param key
+	 * @param pageClass
+	 *            the class of the page
+	 * @param contentType
+	 *            the content type of the response
+	 * @param content
+	 *            the content of the response
+	 * @return the entry of the response
+	 */
+	public Entry put(final Object key, final Class<?> pageClass, final String contentType,
+		final byte[] content)
+	{
+		return put(key, pageClass, contentType, Collections.<String, List<String>> emptyMap(),
+			content);
+	}
+
+	/**
+	 * Stores a response. Responses bigger than the maximum size are not stored.
+	 * 
+	 * @param key
+	 * @param pageClass
+	 *            the class of the page
+	 * @param contentType
+	 *            the content type of the response
+	 * @param headers
+	 *            the values of the headers set by the page, in the order they were set
+	 * @param content
+	 *            the content of the response
+	 * @return the entry of the response
+	 */
+	public synchronized Entry put(final Object key, final Class<?> pageClass,
+		final String contentType, final Map<String, List<String>> headers, final byte[] content)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(headers, "headers");
+
+		Entry entry = new Entry(pageClass, contentType, headers, content, timeToLive);
+		remove(key);
+		if (entry.getSize() > maxSize)
+		{
+			return entry;
+		}
+
+		entries.put(key, entry);
+		size += entry.getSize();
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > maxSize)
+		{
+			Entry eldest = iterator.next();
+			iterator.remove();
+			size -= eldest.getSize();
+			evictions++;
+		}
+		return entry;
+	}
+
+	/**
+	 * Removes the response for the key.
+	 * 
+	 * @param key
+	 */
+	public synchronized void remove(final Object key)
+	{
+		Entry entry = entries.remove(key);
+		if (entry != null)
+		{
+			size -= entry.getSize();
+		}
+	}
+
+	/**
+	 * Removes all responses of a page class.
+	 * 
+	 * @param pageClass
+	 *            the page class, {@code null} for all pages
+	 */
+	public synchronized void invalidate(final Class<?> pageClass)
+	{
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if ((pageClass == null) || (pageClass == entry.pageClass))
+			{
+				iterator.remove();
+				size -= entry.getSize();
+			}
+		}
+	}
+
+	/**
+	 * Removes all responses.
+	 */
+	public void clear()
+	{
+		invalidate(null);
+	}
+
+	/**
+	 * Writes the response to the web response, or 304 (Not Modified) if the client has a valid
+	 * copy of it.
+	 * 
+	 * @param entry
+	 * @param request
+	 * @param response
+	 */
+	public void respond(final Entry entry, final WebRequest request, final WebResponse response)
+	{
+		for (Map.Entry<String, List<String>> header : entry.getHeaders().entrySet())
+		{
+			for (String value : header.getValue())
+			{
+				response.addHeader(header.getKey(), value);
+			}
+		}
+		response.setHeader("ETag", entry.getETag());
+		response.setLastModifiedTime(entry.getLastModified());
+		setCacheHeaders(entry, response);
+
+		if (isNotModified(entry, request))
+		{
+			synchronized (this)
+			{
+				notModified++;
+			}
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		response.setContentType(entry.getContentType());
+		response.setContentLength(entry.content.length);
+		response.write(entry.content);
+	}
+
+	/**
+	 * Sets the cache headers of a stored response. By default the clients may store the response,
+	 * but have to revalidate it on every request.
+	 * 
+	 * @param entry
+	 * @param response
+	 */
+	protected void setCacheHeaders(final Entry entry, final WebResponse response)
+	{
+		response.setHeader("Cache-Control", "no-cache");
+	}
+
+	/**
+	 * Checks the conditional headers of the request. The If-Modified-Since header is ignored if
+	 * the request has an If-None-Match header.
+	 * 
+	 * @param entry
+	 * @param request
+	 * @return true, if the client has a valid copy of the response
+	 */
+	protected boolean isNotModified(final Entry entry, final WebRequest request)
+	{
+		final String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null)
+		{
+			for (String tag : Strings.split(ifNoneMatch, ','))
+			{
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(entry.getETag()))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		final Time ifModifiedSince = request.getIfModifiedSinceHeader();
+		return (ifModifiedSince != null) &&
+			(entry.getLastModified().getMilliseconds() / 1000 <= ifModifiedSince.getMilliseconds() / 1000);
+	}
+
+	/**
+	 * @return the number of stored responses
+	 */
+	public synchronized int getCount()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return the size of all stored responses in bytes
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of lookups which found a response
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups which found no response
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of responses evicted because the cache exceeded its maximum size
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return the number of requests answered with 304 (Not Modified)
+	 */
+	public synchronized long getNotModified()
+	{
+		return notModified;
+	}
+
+	/**
+	 * A stored response.
+	 */
+	public static final class Entry
+	{
+		private final Class<?> pageClass;
+
+		private final String contentType;
+
+		private final Map<String, List<String>> headers;
+
+		private final byte[] content;
+
+		private final String eTag;
+
+		private final Time lastModified;
+
+		private final long expiresAt;
+
+		private Entry(final Class<?> pageClass, final String contentType,
+			final Map<String, List<String>> headers, final byte[] content,
+			final Duration timeToLive)
+		{
+			this.pageClass = pageClass;
+			this.contentType = contentType;
+			this.content = content;
+
+			Map<String, List<String>> copy = new LinkedHashMap<String, List<String>>();
+			for (Map.Entry<String, List<String>> header : headers.entrySet())
+			{
+				copy.put(header.getKey(),
+					Collections.unmodifiableList(new ArrayList<String>(header.getValue())));
+			}
+			this.headers = Collections.unmodifiableMap(copy);
+
+			CRC32 checksum = new CRC32();
+			checksum.update(content);
+			eTag = "\"" + Long.toHexString(checksum.getValue()) + '-' +
+				Integer.toHexString(content.length) + "\"";
+
+			long now = System.currentTimeMillis();
+			lastModified = Time.millis(now);
+			long ttl = timeToLive.getMilliseconds();
+			expiresAt = (ttl > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + ttl;
+		}
+
+		/**
+		 * @return the content type of the response
+		 */
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		/**
+		 * @return the values of the headers set by the page
+		 */
+		public Map<String, List<String>> getHeaders()
+		{
+			return headers;
+		}
+
+		/**
+		 * @return the ETag of the response
+		 */
+		public String getETag()
+		{
+			return eTag;
+		}
+
+		/**
+		 * @return the time the response was stored
+		 */
+		public Time getLastModified()
+		{
+			return lastModified;
+		}
+
+		/**
+		 * @return the size of the response in bytes
+		 */
+		public long getSize()
+		{
+			return content.length;
+		}
+
+		private boolean isExpired(final long now)
+		{
+			return now >= expiresAt;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.pagecache;
+
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.wicket.Session;
+import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.component.IRequestablePage;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.mapper.IRequestMapperDelegate;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A {@link IRequestMapper} that caches the responses of stateless bookmarkable pages in a
+ * {@link StatelessPageCache}. A cached response is served without creating and rendering the page
+ * again, as long as the page class, the page parameters and the locale and style
+ * of the session are the same.
+ * <p>
+ * Only GET requests for new instances of pages are cached, and the response is only stored if the
+ * page is stateless after rendering, had no feedback messages and the response has no cookies, no
+ * redirect and no status other than 200. Responses are neither stored nor served while the session
+ * has feedback messages, or while the servlet container encodes the session id into the urls,
+ * i.e. there is a session whose id the client did not send in a cookie.
+ * <p>
+ * The content type and the headers set by the page, e.g. in
+ * {@link org.apache.wicket.markup.html.WebPage#setHeaders(org.apache.wicket.request.http.WebResponse)},
+ * are stored and replayed with every cached response. The headers the cache sets itself are not
+ * stored: Date, Expires, Pragma, Cache-Control, ETag, Last-Modified, Content-Type and
+ * Content-Length. Use
+ * {@link #getVaryKey(RenderPageRequestHandler, WebRequest)} for other request properties the
+ * response depends on, e.g. the roles of the user.
+ * <p>
+ * To setup it:
+ * 
+ * <pre>
+ * public class MyApplication extends WebApplication
+ * {
+ * 	public void init()
+ * 	{
+ * 		super.init();
+ * 
+ * 		mountPage(&quot;catalog&quot;, CatalogPage.class);
+ * 
+ * 		// notice that in most cases this should be done as the
+ * 		// last mounting-related operation because it replaces the root mapper
+ * 		setRootRequestMapper(new StatelessPageCacheMapper(getRootRequestMapper(),
+ * 			new StatelessPageCache(Bytes.megabytes(10), Duration.minutes(5))));
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @see StatelessPageCache
+ */
+public class StatelessPageCacheMapper implements IRequestMapperDelegate
+{
+	private final IRequestMapper delegate;
+
+	private final StatelessPageCache cache;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param delegate
+	 * @param cache
+	 */
+	public StatelessPageCacheMapper(final IRequestMapper delegate, final StatelessPageCache cache)
+	{
+		this.delegate = Args.notNull(delegate, "delegate");
+		this.cache = Args.notNull(cache, "cache");
+	}
+
+	@Override
+	public IRequestMapper getDelegateMapper()
+	{
+		return delegate;
+	}
+
+	/**
+	 * @return the cache of the responses
+	 */
+	public StatelessPageCache getCache()
+	{
+		return cache;
+	}
+
+	@Override
+	public int getCompatibilityScore(final Request request)
+	{
+		return delegate.getCompatibilityScore(request);
+	}
+
+	@Override
+	public IRequestHandler mapRequest(final Request request)
+	{
+		IRequestHandler handler = delegate.mapRequest(request);
+		if ((handler instanceof RenderPageRequestHandler) && (request instanceof WebRequest))
+		{
+			RenderPageRequestHandler pageHandler = (RenderPageRequestHandler)handler;
+			if (pageHandler.getPageProvider().isNewPageInstance() &&
+				isCacheable((WebRequest)request) && isCacheable(pageHandler.getPageClass()))
+			{
+				handler = new CachingPageRequestHandler(this, pageHandler);
+			}
+		}
+		return handler;
+	}
+
+	@Override
+	public Url mapHandler(IRequestHandler handler)
+	{
+		if (handler instanceof CachingPageRequestHandler)
+		{
+			handler = ((CachingPageRequestHandler)handler).getDelegateHandler();
+		}
+		return delegate.mapHandler(handler);
+	}
+
+	/**
+	 * Can the response of a request be cached? By default only GET requests which are no Ajax
+	 * requests are cached.
+	 * 
+	 * @param request
+	 * @return true, if the response can be cached
+	 */
+	protected boolean isCacheable(final WebRequest request)
+	{
+		if (request.isAjax())
+		{
+			return false;
+		}
+
+		Object containerRequest = request.getContainerRequest();
+		return (containerRequest instanceof HttpServletRequest) &&
+			"GET".equalsIgnoreCase(((HttpServletRequest)containerRequest).getMethod());
+	}
+
+	/**
+	 * Can the responses of a page class be cached? By default all page classes can be cached,
+	 * override to restrict the cache to some pages.
+	 * 
+	 * @param pageClass
+	 * @return true, if the responses can be cached
+	 */
+	protected boolean isCacheable(final Class<? extends IRequestablePage> pageClass)
+	{
+		return true;
+	}
+
+	/**
+	 * Gets the key of the response of a page.
+	 * 
+	 * @param handler
+	 *            the handler of the page
+	 * @param request
+	 * @return the key
+	 */
+	protected Object getCacheKey(final RenderPageRequestHandler handler, final WebRequest request)
+	{
+		Session session = Session.get();
+		return Arrays.asList(handler.getPageClass(), handler.getPageParameters(),
+			session.getLocale(), session.getStyle(), getVaryKey(handler, request));
+	}
+
+	/**
+	 * Gets a key for other properties of the request the response of a page depends on.
+	 * 
+	 * @param handler
+	 *            the handler of the page
+	 * @param request
+	 * @return the key, {@code null} by default
+	 */
+	protected Object getVaryKey(final RenderPageRequestHandler handler, final WebRequest request)
+	{
+		return null;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in microseconds, cheap enough to be updated on every request.
+ * <p>
+ * Latencies below 16 microseconds are counted exactly, larger ones in buckets of an eighth of their
+ * power of two, i.e. percentiles are accurate to 12.5%. Recording is lock-free, reading is not
+ * atomic across buckets and thus only approximately consistent while latencies are recorded
+ * concurrently.
+ */
+public class LatencyHistogram
+{
+	/** number of values counted exactly */
+	private static final int LINEAR_BUCKETS = 16;
+
+	/** number of sub-buckets per power of two, above {@link #LINEAR_BUCKETS} */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** exponent of {@link #LINEAR_BUCKETS} */
+	private static final int LINEAR_EXPONENT = 4;
+
+	private static final int BUCKETS = LINEAR_BUCKETS + (63 - LINEAR_EXPONENT) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param micros
+	 *            the latency in microseconds, negative values are counted as {@code 0}
+	 */
+	public void record(long micros)
+	{
+		if (micros < 0)
+		{
+			micros = 0;
+		}
+
+		buckets.incrementAndGet(bucketOf(micros));
+		count.incrementAndGet();
+		total.addAndGet(micros);
+
+		long current;
+		while ((current = max.get()) < micros)
+		{
+			if (max.compareAndSet(current, micros))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of recorded latencies
+	 */
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	/**
+	 * @return the sum of all recorded latencies in microseconds
+	 */
+	public long getTotal()
+	{
+		return total.get();
+	}
+
+	/**
+	 * @return the mean of all recorded latencies in microseconds, {@code 0} if none was recorded
+	 */
+	public long getMean()
+	{
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * @return the largest recorded latency in microseconds
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Gets a percentile of the recorded latencies.
+	 * 
+	 * @param percentile
+	 *            the percentile between {@code 0} and {@code 100}, e.g. {@code 99.9}
+	 * @return the upper bound of the bucket holding the percentile in microseconds, never more than
+	 *         {@link #getMax()}, {@code 0} if no latency was recorded
+	 */
+	public long getPercentile(final double percentile)
+	{
+		if (percentile < 0 || percentile > 100)
+		{
+			throw new IllegalArgumentException("percentile must be between 0 and 100: " +
+				percentile);
+		}
+
+		long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = buckets.get(i);
+			n += counts[i];
+		}
+		if (n == 0)
+		{
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(n * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(upperBoundOf(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @param micros
+	 *            a non-negative latency
+	 * @return the index of the bucket counting the latency
+	 */
+	static int bucketOf(final long micros)
+	{
+		if (micros < LINEAR_BUCKETS)
+		{
+			return (int)micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int)(micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - LINEAR_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @param bucket
+	 *            the index of a bucket
+	 * @return the largest latency counted by the bucket
+	 */
+	static long upperBoundOf(final int bucket)
+	{
+		if (bucket < LINEAR_BUCKETS)
+		{
+			return bucket;
+		}
+
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_EXPONENT;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long lowerBound = (long)(SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -120,6 +120,9 @@ public class RequestCycle implements IRequestCycle, IEventSink
 
 	private Response activeResponse;
 
+	/** the durations of the request phases, {@code null} if not recorded */
+	private RequestPhaseTimings phaseTimings;
+
 	/**
 	 * Construct.
 	 * 
@@ -143,6 +146,17 @@ public class RequestCycle implements IRequestCycle, IEventSink
 		exceptionMapper = context.getExceptionMapper();
 	}
 
+	/**
+	 * Gets the durations of the phases of this request.
+	 * 
+	 * @return the timings or {@code null} if the request phases are not recorded
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setRecordRequestPhases(boolean)
+	 */
+	public final RequestPhaseTimings getPhaseTimings()
+	{
+		return phaseTimings;
+	}
+
 	/**
 	 * 
 	 * @return a new url renderer
@@ -210,9 +224,16 @@ public class RequestCycle implements IRequestCycle, IEventSink
 		try
 		{
 			set(this);
+			if (Application.exists() &&
+				Application.get().getRequestCycleSettings().getRecordRequestPhases())
+			{
+				phaseTimings = new RequestPhaseTimings();
+			}
 			listeners.onBeginRequest(this);
 			onBeginRequest();
+			long mappingStart = RequestPhaseTimings.start();
 			IRequestHandler handler = resolveRequestHandler();
+			RequestPhaseTimings.stop(RequestPhase.MAPPING, mappingStart);
 			if (handler != null)
 			{
 				execute(handler);
@@ -255,6 +276,11 @@ public class RequestCycle implements IRequestCycle, IEventSink
 	{
 		Args.notNull(handler, "handler");
 
+		if (phaseTimings != null)
+		{
+			phaseTimings.setHandler(handler);
+		}
+
 		try
 		{
 			listeners.onRequestHandlerResolved(this, handler);
@@ -584,6 +610,7 @@ public class RequestCycle implements IRequestCycle, IEventSink
 	public final void detach()
 	{
 		set(this);
+		final long detachStart = RequestPhaseTimings.start();
 		try
 		{
 			onDetach();
@@ -592,7 +619,7 @@ public class RequestCycle implements IRequestCycle, IEventSink
 		{
 			try
 			{
-				onInternalDetach();
+				onInternalDetach(detachStart);
 			}
 			finally
 			{
@@ -601,7 +628,7 @@ public class RequestCycle implements IRequestCycle, IEventSink
 		}
 	}
 
-	private void onInternalDetach()
+	private void onInternalDetach(final long detachStart)
 	{
 		if (Session.exists())
 		{
@@ -613,6 +640,12 @@ public class RequestCycle implements IRequestCycle, IEventSink
 			IRequestLogger requestLogger = Application.get().getRequestLogger();
 			if (requestLogger != null)
 				requestLogger.performLogging();
+
+			if (phaseTimings != null)
+			{
+				RequestPhaseTimings.stop(RequestPhase.DETACH, detachStart);
+				Application.get().getRequestPhaseStatistics().record(phaseTimings);
+			}
 		}
 	}
 
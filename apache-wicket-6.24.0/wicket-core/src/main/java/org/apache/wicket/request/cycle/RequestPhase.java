@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+/**
+ * The phases of a request whose durations are recorded in the {@link RequestPhaseStatistics}.
+ * <p>
+ * Phases may be nested, e.g. {@link #HEADER_RENDER} is part of {@link #RENDER} and
+ * {@link #PAGE_SERIALIZATION} is part of {@link #PAGE_STORE}, so the durations of all phases do
+ * not add up to the duration of the {@link #REQUEST}.
+ * 
+ * @see RequestPhaseTimings
+ */
+public enum RequestPhase
+{
+	/**
+	 * Mapping of the request to a request handler.
+	 */
+	MAPPING,
+
+	/**
+	 * Resolution of stored pages, including their deserialization.
+	 */
+	PAGE_RESOLUTION,
+
+	/**
+	 * Invocation of component and behavior listeners.
+	 */
+	LISTENER_INVOCATION,
+
+	/**
+	 * Rendering of pages and Ajax responses.
+	 */
+	RENDER,
+
+	/**
+	 * Rendering of header contributions.
+	 */
+	HEADER_RENDER,
+
+	/**
+	 * Serialization of pages.
+	 */
+	PAGE_SERIALIZATION,
+
+	/**
+	 * Storing of touched pages, including their serialization.
+	 */
+	PAGE_STORE,
+
+	/**
+	 * Detaching of the request cycle, including storing of pages.
+	 */
+	DETACH,
+
+	/**
+	 * The whole request.
+	 */
+	REQUEST
+}
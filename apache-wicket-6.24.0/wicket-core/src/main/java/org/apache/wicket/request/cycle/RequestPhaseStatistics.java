@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.wicket.core.request.handler.IPageClassRequestHandler;
+import org.apache.wicket.core.request.handler.IPageRequestHandler;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestHandlerDelegate;
+import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Classes;
+
+/**
+ * Latency histograms of the {@link RequestPhase}s of all recorded requests of an application.
+ * <p>
+ * Requests are grouped by the type of the handler they were resolved to and the page class or
+ * resource they address - which usually identifies their mount - e.g.
+ * {@code "RenderPageRequestHandler com.example.HomePage"}. The number of groups is limited (see
+ * {@link #setMaxKeys(int)}), requests beyond it are counted in the {@link #OTHER} group. The
+ * histogram of a phase is created when the first request of the group goes through the phase.
+ * 
+ * @see org.apache.wicket.settings.IRequestCycleSettings#setRecordRequestPhases(boolean)
+ */
+public class RequestPhaseStatistics
+{
+	/**
+	 * The group of requests not fitting into the maximum number of groups.
+	 */
+	public static final String OTHER = "other";
+
+	/**
+	 * The default maximum number of groups.
+	 */
+	public static final int DEFAULT_MAX_KEYS = 100;
+
+	private final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> histograms =
+		new ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>>();
+
+	private volatile int maxKeys = DEFAULT_MAX_KEYS;
+
+	/**
+	 * Sets the maximum number of groups. Groups already recorded are kept.
+	 * 
+	 * @param maxKeys
+	 *            the maximum number of groups, at least 1
+	 */
+	public void setMaxKeys(final int maxKeys)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, maxKeys, "maxKeys");
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * @return the maximum number of groups
+	 */
+	public int getMaxKeys()
+	{
+		return maxKeys;
+	}
+
+	/**
+	 * Records the timings of a finished request. Requests that were not resolved to a handler are
+	 * ignored.
+	 * 
+	 * @param timings
+	 *            the timings of the request
+	 */
+	public void record(final RequestPhaseTimings timings)
+	{
+		IRequestHandler handler = timings.getHandler();
+		if (handler == null)
+		{
+			return;
+		}
+
+		AtomicReferenceArray<LatencyHistogram> phases = getHistograms(getKey(handler));
+		for (RequestPhase phase : RequestPhase.values())
+		{
+			long nanos = timings.getDuration(phase);
+
+			// phases the request did not go through are not recorded
+			if (nanos > 0)
+			{
+				LatencyHistogram histogram = phases.get(phase.ordinal());
+				if (histogram == null)
+				{
+					phases.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+					histogram = phases.get(phase.ordinal());
+				}
+				histogram.record(nanos / 1000);
+			}
+		}
+	}
+
+	/**
+	 * Gets the group of requests resolved to the given handler.
+	 * 
+	 * @param handler
+	 *            the first handler a request was resolved to
+	 * @return the key of the group
+	 */
+	protected String getKey(IRequestHandler handler)
+	{
+		while (handler instanceof IRequestHandlerDelegate)
+		{
+			handler = ((IRequestHandlerDelegate)handler).getDelegateHandler();
+		}
+
+		StringBuilder key = new StringBuilder(Classes.simpleName(handler.getClass()));
+
+		if (handler instanceof IPageRequestHandler)
+		{
+			// do not resolve a page just for the statistics
+			IPageRequestHandler pageRequestHandler = (IPageRequestHandler)handler;
+			if (pageRequestHandler.isPageInstanceCreated())
+			{
+				key.append(' ').append(pageRequestHandler.getPage().getClass().getName());
+			}
+		}
+		else if (handler instanceof IPageClassRequestHandler)
+		{
+			key.append(' ').append(
+				((IPageClassRequestHandler)handler).getPageClass().getName());
+		}
+		else if (handler instanceof ResourceReferenceRequestHandler)
+		{
+			ResourceReference.Key reference = ((ResourceReferenceRequestHandler)handler).getResourceReference()
+				.getKey();
+			key.append(' ').append(reference.getScope()).append('/').append(reference.getName());
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * @param key
+	 *            the group
+	 * @return the histograms of the phases of the group, {@code null} for phases not recorded yet
+	 */
+	private AtomicReferenceArray<LatencyHistogram> getHistograms(String key)
+	{
+		AtomicReferenceArray<LatencyHistogram> phases = histograms.get(key);
+		if (phases == null)
+		{
+			if (histograms.size() >= maxKeys)
+			{
+				key = OTHER;
+			}
+
+			phases = new AtomicReferenceArray<LatencyHistogram>(RequestPhase.values().length);
+			AtomicReferenceArray<LatencyHistogram> existing = histograms.putIfAbsent(key, phases);
+			if (existing != null)
+			{
+				phases = existing;
+			}
+		}
+		return phases;
+	}
+
+	/**
+	 * @return the keys of all groups of requests, sorted
+	 */
+	public Set<String> getKeys()
+	{
+		return new TreeSet<String>(histograms.keySet());
+	}
+
+	/**
+	 * Gets the histogram of a phase of a group of requests.
+	 * 
+	 * @param key
+	 *            the group
+	 * @param phase
+	 *            the phase
+	 * @return the histogram, empty if no request of the group went through the phase, or
+	 *         {@code null} if no request of the group was recorded
+	 */
+	public LatencyHistogram getHistogram(final String key, final RequestPhase phase)
+	{
+		AtomicReferenceArray<LatencyHistogram> phases = histograms.get(key);
+		if (phases == null)
+		{
+			return null;
+		}
+		LatencyHistogram histogram = phases.get(phase.ordinal());
+		return histogram != null ? histogram : new LatencyHistogram();
+	}
+
+	/**
+	 * Removes all recorded requests.
+	 */
+	public void clear()
+	{
+		histograms.clear();
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+import org.apache.wicket.request.IRequestHandler;
+
+/**
+ * The durations of the {@link RequestPhase}s of a single request. Instrumented code measures a
+ * phase with:
+ * 
+ * <pre>
+ * long start = RequestPhaseTimings.start();
+ * try
+ * {
+ * 	// the phase
+ * }
+ * finally
+ * {
+ * 	RequestPhaseTimings.stop(RequestPhase.RENDER, start);
+ * }
+ * </pre>
+ * 
+ * Both calls are no-ops if the current request cycle does not record its phases.
+ * 
+ * @see org.apache.wicket.settings.IRequestCycleSettings#setRecordRequestPhases(boolean)
+ */
+public final class RequestPhaseTimings
+{
+	/** the start of the request */
+	private final long start;
+
+	/** the nanoseconds spent in each phase */
+	private final long[] durations = new long[RequestPhase.values().length];
+
+	/** the first handler the request was resolved to */
+	private IRequestHandler handler;
+
+	/**
+	 * Construct.
+	 */
+	RequestPhaseTimings()
+	{
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Gets the timings of the current request cycle.
+	 * 
+	 * @return the timings or {@code null} if the request phases are not recorded
+	 */
+	public static RequestPhaseTimings get()
+	{
+		RequestCycle requestCycle = RequestCycle.get();
+		return requestCycle != null ? requestCycle.getPhaseTimings() : null;
+	}
+
+	/**
+	 * Starts measuring a phase.
+	 * 
+	 * @return the start to pass to {@link #stop(RequestPhase, long)}, {@code 0} if the request
+	 *         phases are not recorded
+	 */
+	public static long start()
+	{
+		return get() != null ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Stops measuring a phase.
+	 * 
+	 * @param phase
+	 *            the measured phase
+	 * @param start
+	 *            the start as returned by {@link #start()}
+	 */
+	public static void stop(final RequestPhase phase, final long start)
+	{
+		if (start != 0)
+		{
+			RequestPhaseTimings timings = get();
+			if (timings != null)
+			{
+				timings.add(phase, System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * Adds to the duration of a phase.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @param nanos
+	 *            the nanoseconds spent in the phase
+	 */
+	public void add(final RequestPhase phase, final long nanos)
+	{
+		durations[phase.ordinal()] += nanos;
+	}
+
+	/**
+	 * Gets the duration of a phase.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @return the nanoseconds spent in the phase, for {@link RequestPhase#REQUEST} the nanoseconds
+	 *         since the start of the request
+	 */
+	public long getDuration(final RequestPhase phase)
+	{
+		if (phase == RequestPhase.REQUEST)
+		{
+			return System.nanoTime() - start;
+		}
+		return durations[phase.ordinal()];
+	}
+
+	/**
+	 * @return the first handler the request was resolved to, may be {@code null}
+	 */
+	public IRequestHandler getHandler()
+	{
+		return handler;
+	}
+
+	/**
+	 * Remembers the handler the request was resolved to, only the first one is kept.
+	 * 
+	 * @param handler
+	 */
+	void setHandler(final IRequestHandler handler)
+	{
+		if (this.handler == null)
+		{
+			this.handler = handler;
+		}
+	}
+}
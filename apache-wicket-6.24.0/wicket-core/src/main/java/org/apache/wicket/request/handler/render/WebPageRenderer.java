@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.request.handler.render;
 
+import java.nio.charset.Charset;
 import java.util.List;
 
 import org.apache.wicket.Application;
@@ -25,14 +26,19 @@ import org.apache.wicket.core.request.handler.RenderPageRequestHandler.RedirectP
 import org.apache.wicket.feedback.FeedbackCollector;
 import org.apache.wicket.feedback.FeedbackMessage;
 import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.StreamedResponseException;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestPhase;
+import org.apache.wicket.request.cycle.RequestPhaseTimings;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -111,6 +117,21 @@ public class WebPageRenderer extends PageRenderer
 	 * @return BufferedWebResponse containing page body
 	 */
 	protected BufferedWebResponse renderPage(Url targetUrl, RequestCycle requestCycle)
+	{
+		return renderPage(targetUrl, requestCycle, false);
+	}
+
+	/**
+	 * Renders page to a {@link BufferedWebResponse}, or to a {@link StreamingWebResponse} which
+	 * starts streaming after the &lt;head&gt; section has been rendered.
+	 * 
+	 * @param targetUrl
+	 * @param requestCycle
+	 * @param stream
+	 *            whether the page may be streamed
+	 * @return BufferedWebResponse containing page body
+	 */
+	private BufferedWebResponse renderPage(Url targetUrl, RequestCycle requestCycle, boolean stream)
 	{
 		// get the page before checking for a scheduled request handler because
 		// the page may call setResponsePage in its constructor
@@ -128,7 +149,24 @@ public class WebPageRenderer extends PageRenderer
 		final WebResponse originalResponse = (WebResponse)requestCycle.getResponse();
 
 		// buffered web response for page
-		BufferedWebResponse response = new BufferedWebResponse(originalResponse);
+		final BufferedWebResponse response;
+		if (stream)
+		{
+			response = new StreamingWebResponse(originalResponse)
+			{
+				@Override
+				protected boolean canStream()
+				{
+					// the session cookie can't be sent once the response is committed
+					return isSessionTemporary() == false || getPage().isPageStateless();
+				}
+			};
+		}
+		else
+		{
+			response = new BufferedWebResponse(originalResponse);
+		}
+		response.setTextCharset(getTextCharset());
 
 		// keep the original base URL
 		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
@@ -136,10 +174,24 @@ public class WebPageRenderer extends PageRenderer
 		try
 		{
 			requestCycle.setResponse(response);
-			requestablePage.renderPage();
+			long renderStart = RequestPhaseTimings.start();
+			try
+			{
+				requestablePage.renderPage();
+			}
+			finally
+			{
+				RequestPhaseTimings.stop(RequestPhase.RENDER, renderStart);
+			}
 
 			if (scheduled == null && requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
 			{
+				if (isStreaming(response))
+				{
+					throw new StreamedResponseException(
+						"A request handler was scheduled after the page was streamed already", null);
+				}
+
 				// This is a special case.
 				// During page render another request handler got scheduled and will want to
 				// overwrite the response, so we need to let it.
@@ -154,6 +206,15 @@ public class WebPageRenderer extends PageRenderer
 				return response;
 			}
 		}
+		catch (RuntimeException e)
+		{
+			if (isStreaming(response) && (e instanceof StreamedResponseException) == false)
+			{
+				throw new StreamedResponseException(
+					"Rendering failed after the page was streamed already", e);
+			}
+			throw e;
+		}
 		finally
 		{
 			// restore original response and base URL
@@ -162,6 +223,73 @@ public class WebPageRenderer extends PageRenderer
 		}
 	}
 
+	private static boolean isStreaming(BufferedWebResponse response)
+	{
+		return (response instanceof StreamingWebResponse) &&
+			((StreamingWebResponse)response).isStreaming();
+	}
+
+	/**
+	 * Should the page be streamed to the client while it is rendered?
+	 * 
+	 * @return {@code true} if the page is one pass rendered and streaming is enabled
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamOnePassRender(boolean)
+	 */
+	protected boolean isStreamOnePassRender()
+	{
+		if (Application.exists() == false || isOnePassRender() == false)
+		{
+			return false;
+		}
+
+		Application application = Application.get();
+		return application.getRequestCycleSettings().getStreamOnePassRender() &&
+			hasResponseFilters(application) == false;
+	}
+
+	/**
+	 * Gets the charset to encode the page with while it is rendered, so the pre-encoded markup can
+	 * be written.
+	 * 
+	 * @return the charset, {@code null} to render the page as text
+	 * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeMarkup(boolean)
+	 */
+	protected Charset getTextCharset()
+	{
+		if (Application.exists() == false)
+		{
+			return null;
+		}
+
+		Application application = Application.get();
+		if (application.getMarkupSettings().getPreEncodeMarkup() == false)
+		{
+			return null;
+		}
+
+		if (hasResponseFilters(application))
+		{
+			return null;
+		}
+
+		return Charset.forName(application.getRequestCycleSettings()
+			.getResponseRequestEncoding());
+	}
+
+	/**
+	 * The response filters work on the text of the whole page, so the page can neither be
+	 * pre-encoded nor streamed if there are any.
+	 * 
+	 * @param application
+	 * @return {@code true} if response filters are configured
+	 */
+	private static boolean hasResponseFilters(Application application)
+	{
+		List<IResponseFilter> responseFilters = application.getRequestCycleSettings()
+			.getResponseFilters();
+		return (responseFilters != null) && (responseFilters.isEmpty() == false);
+	}
+
 	/**
 	 * 
 	 * @param url
@@ -226,7 +354,8 @@ public class WebPageRenderer extends PageRenderer
 			// or the targetUrl matches current url, page is stateless but it's redirect-to-render
 			// or the request determines that the current url should be preserved
 			// just render the page
-			BufferedWebResponse response = renderPage(currentUrl, requestCycle);
+			BufferedWebResponse response = isStreamOnePassRender() ? renderPage(currentUrl,
+				requestCycle, true) : renderPage(currentUrl, requestCycle);
 			if (response != null)
 			{
 				response.writeTo((WebResponse)requestCycle.getResponse());
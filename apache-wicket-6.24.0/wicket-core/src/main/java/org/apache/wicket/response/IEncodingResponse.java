@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.response;
+
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.Response;
+
+/**
+ * A {@link Response} which encodes the text written to it, so text and bytes can be written
+ * interchangeably. Markup elements use it to write their cached, pre-encoded bytes instead of
+ * their text.
+ * 
+ * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeMarkup(boolean)
+ */
+public interface IEncodingResponse
+{
+	/**
+	 * Gets the charset the text is encoded with. Bytes encoded with this charset can be written
+	 * with {@link Response#write(byte[])} in place of the text.
+	 * 
+	 * @return the charset, {@code null} if the response currently does not encode its text
+	 */
+	Charset getTextCharset();
+}
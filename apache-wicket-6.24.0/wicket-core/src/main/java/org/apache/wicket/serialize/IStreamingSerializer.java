@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize;
+
+import java.io.OutputStream;
+
+/**
+ * A serializer which can write the serialized object to a stream, so the data does not have to be
+ * collected in a byte array first.
+ */
+public interface IStreamingSerializer extends ISerializer
+{
+	/**
+	 * Writes the serialized object to the stream. The data written to the stream can be read back
+	 * with {@link #deserialize(byte[])}.
+	 * 
+	 * @param object
+	 *            the object to serialize
+	 * @param out
+	 *            the stream to write to
+	 * @return {@code true} if the object has been serialized, {@code false} if it could not be
+	 *         serialized. The stream may contain a part of the data then.
+	 */
+	boolean serialize(Object object, OutputStream out);
+}
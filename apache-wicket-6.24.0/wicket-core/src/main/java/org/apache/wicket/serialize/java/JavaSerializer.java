@@ -33,6 +33,7 @@ import org.apache.wicket.application.IClassResolver;
 import org.apache.wicket.core.util.io.SerializableChecker;
 import org.apache.wicket.core.util.objects.checker.CheckingObjectOutputStream;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.IStreamingSerializer;
 import org.apache.wicket.settings.IApplicationSettings;
 import org.apache.wicket.util.io.IOUtils;
 import org.slf4j.Logger;
@@ -45,7 +46,7 @@ import org.slf4j.LoggerFactory;
  * Requires the application key to enable serialization and deserialisation outside thread in which
  * application thread local is set
  */
-public class JavaSerializer implements ISerializer
+public class JavaSerializer implements IStreamingSerializer
 {
 	private static final Logger log = LoggerFactory.getLogger(JavaSerializer.class);
 	/**
@@ -66,36 +67,31 @@ public class JavaSerializer implements ISerializer
 
 	@Override
 	public byte[] serialize(final Object object)
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		return serialize(object, out) ? out.toByteArray() : null;
+	}
+
+	/**
+	 * Writes the serialized object to the stream. The stream is flushed but left open.
+	 */
+	@Override
+	public boolean serialize(final Object object, final OutputStream out)
 	{
 		try
 		{
-			final ByteArrayOutputStream out = new ByteArrayOutputStream();
-			ObjectOutputStream oos = null;
-			try
-			{
-				oos = newObjectOutputStream(out);
-				oos.writeObject(applicationKey);
-				oos.writeObject(object);
-			}
-			finally
-			{
-				try
-				{
-					IOUtils.close(oos);
-				}
-				finally
-				{
-					out.close();
-				}
-			}
-			return out.toByteArray();
+			ObjectOutputStream oos = newObjectOutputStream(out);
+			oos.writeObject(applicationKey);
+			oos.writeObject(object);
+			oos.flush();
+			return true;
 		}
 		catch (Exception e)
 		{
 			log.error("Error serializing object " + object.getClass() + " [object=" + object + "]",
 				e);
 		}
-		return null;
+		return false;
 	}
 
 	@Override
@@ -179,8 +175,16 @@ public class JavaSerializer implements ISerializer
 	/**
 	 * Extend {@link ObjectInputStream} to add framework class resolution logic.
 	 */
-	private static class ClassResolverObjectInputStream extends ObjectInputStream
+	protected static class ClassResolverObjectInputStream extends ObjectInputStream
 	{
+		/**
+		 * Construct.
+		 * 
+		 * @param in
+		 *            The input stream that should be used for the reading
+		 * @throws IOException
+		 *             if an I/O error occurs while reading stream header
+		 */
 		public ClassResolverObjectInputStream(InputStream in) throws IOException
 		{
 			super(in);
@@ -240,16 +244,31 @@ public class JavaSerializer implements ISerializer
 	 *     This is done so to save some CPU time to make the checks for no reason.
 	 * </p>
 	 */
-	private static class SerializationCheckerObjectOutputStream extends ObjectOutputStream
+	protected static class SerializationCheckerObjectOutputStream extends ObjectOutputStream
 	{
 		private final OutputStream outputStream;
 
 		private final ObjectOutputStream oos;
 
 		private SerializationCheckerObjectOutputStream(OutputStream outputStream) throws IOException
+		{
+			this(outputStream, new ObjectOutputStream(outputStream));
+		}
+
+		/**
+		 * Construct.
+		 * 
+		 * @param outputStream
+		 *            the output stream used to collect the debug information
+		 * @param oos
+		 *            the object output stream writing to <em>outputStream</em>
+		 * @throws IOException
+		 */
+		public SerializationCheckerObjectOutputStream(OutputStream outputStream,
+			ObjectOutputStream oos) throws IOException
 		{
 			this.outputStream = outputStream;
-			oos = new ObjectOutputStream(outputStream);
+			this.oos = oos;
 		}
 
 		@Override
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.registry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.wicket.AttributeModifier;
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.PageReference;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.behavior.AttributeAppender;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.border.Border;
+import org.apache.wicket.markup.html.form.AbstractTextComponent;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.FormComponent;
+import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.link.AbstractLink;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.AbstractItem;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.markup.html.panel.Fragment;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.repeater.AbstractRepeater;
+import org.apache.wicket.markup.repeater.RepeatingView;
+import org.apache.wicket.model.AbstractPropertyModel;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.model.ChainingModel;
+import org.apache.wicket.model.ComponentPropertyModel;
+import org.apache.wicket.model.CompoundPropertyModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.model.ResourceModel;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * Assigns compact ids to classes, so a serialized class descriptor can be written as a number
+ * instead of the class name and the description of all its fields.
+ * <p>
+ * The ids are given in the order of registration, not on first use, so they are the same in every
+ * JVM running the application. The classes must always be registered in the same order, before
+ * the first object is serialized. Otherwise the data written before a restart or by another node
+ * of a cluster cannot be read any more. New classes should only be appended.
+ * </p>
+ * <p>
+ * A new registry already contains the most common Wicket and JDK types found in pages.
+ * </p>
+ */
+public class ClassRegistry
+{
+	/** the maximum number of classes, so the ids fit in an unsigned short */
+	static final int MAX_CLASSES = 0xFFFE;
+
+	private final List<Class<?>> classes = new CopyOnWriteArrayList<Class<?>>();
+
+	private final Map<Class<?>, Integer> ids = new ConcurrentHashMap<Class<?>, Integer>();
+
+	/**
+	 * Construct.
+	 */
+	public ClassRegistry()
+	{
+		// JDK
+		register(Object[].class, String[].class, int[].class, byte[].class, Boolean.class,
+			Byte.class, Character.class, Short.class, Integer.class, Long.class, Float.class,
+			Double.class, Number.class, Enum.class, ArrayList.class, HashMap.class,
+			LinkedHashMap.class);
+
+		// components
+		register(Component.class, MarkupContainer.class, Page.class, WebPage.class,
+			WebComponent.class, WebMarkupContainer.class, Label.class, Panel.class, Fragment.class,
+			Border.class, AbstractLink.class, Link.class, BookmarkablePageLink.class,
+			AjaxLink.class, Form.class, FormComponent.class, AbstractTextComponent.class,
+			TextField.class, AbstractRepeater.class, RepeatingView.class, ListView.class,
+			AbstractItem.class, ListItem.class);
+
+		// models, behaviors and parameters
+		register(Model.class, AbstractReadOnlyModel.class, LoadableDetachableModel.class,
+			ChainingModel.class, AbstractPropertyModel.class, PropertyModel.class,
+			CompoundPropertyModel.class, ComponentPropertyModel.class, ResourceModel.class,
+			StringResourceModel.class, Behavior.class, AttributeModifier.class,
+			AttributeAppender.class, PageParameters.class, PageReference.class);
+	}
+
+	/**
+	 * Registers classes. A class registered twice keeps its first id.
+	 * 
+	 * @param classes
+	 *            the classes to register
+	 * @return {@code this}, for chaining
+	 */
+	public synchronized ClassRegistry register(final Class<?>... classes)
+	{
+		for (Class<?> cls : classes)
+		{
+			Args.notNull(cls, "cls");
+			if (ids.containsKey(cls) == false)
+			{
+				if (this.classes.size() == MAX_CLASSES)
+				{
+					throw new IllegalStateException("Cannot register more than " + MAX_CLASSES +
+						" classes");
+				}
+				ids.put(cls, this.classes.size());
+				this.classes.add(cls);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @param cls
+	 * @return the id of the class or {@code -1} if it is not registered
+	 */
+	public int getId(final Class<?> cls)
+	{
+		Integer id = ids.get(cls);
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * @param id
+	 * @return the class with the id or {@code null} if there is no such class
+	 */
+	public Class<?> getClass(final int id)
+	{
+		return id >= 0 && id < classes.size() ? classes.get(id) : null;
+	}
+
+	/**
+	 * @return the number of registered classes
+	 */
+	public int size()
+	{
+		return classes.size();
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.registry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.core.util.lang.WicketObjects;
+import org.apache.wicket.core.util.objects.checker.CheckingObjectOutputStream;
+import org.apache.wicket.core.util.objects.checker.IObjectChecker;
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An {@link ISerializer} based on Java Serialization which writes compact class descriptors.
+ * <p>
+ * Java Serialization writes the name, the serialVersionUID and the names and types of all fields
+ * of every class the first time it is used in a stream. For pages with many component and model
+ * classes these descriptors are a large part of the serialized data. This serializer writes the
+ * id of the class in the {@link ClassRegistry} instead, or just the class name for classes which
+ * are not registered, and uses the descriptor of the local class when reading. The objects
+ * themselves are written by Java Serialization as usual, so custom {@code writeObject()} methods
+ * and {@link java.io.Externalizable} objects keep working.
+ * </p>
+ * <p>
+ * Only the class descriptors are compacted. There are no codecs for the fields of the objects:
+ * the flags and the data of components, their models and {@code PageParameters} are written by
+ * Java Serialization unchanged, so they take as many bytes as with {@link JavaSerializer}. The ids
+ * are not assigned on first use either, since they would differ between the nodes of a cluster and
+ * after a restart. A class which is not registered is written with its name the first time it is
+ * used in a page, Java Serialization refers to its descriptor by a handle afterwards.
+ * </p>
+ * <p>
+ * Since the fields are not described, the serialized data can only be read by the same version of
+ * the classes. Pages may be read by another version though, e.g. after a restart with a persistent
+ * page store or when sessions are replicated during a rolling deployment. So every descriptor also
+ * carries the serialVersionUID and a fingerprint of the class name, which catches a registry that
+ * maps the id to another class, and of the names and types of the fields. If they do not match the
+ * local class an {@link InvalidClassException} is thrown, like Java Serialization does for
+ * incompatible classes, instead of misreading the data. To use this serializer, put the following
+ * code in your application's init:
+ * 
+ * <pre>
+ * getFrameworkSettings().setSerializer(new ClassRegistrySerializer(getApplicationKey()));
+ * </pre>
+ * 
+ * </p>
+ */
+public class ClassRegistrySerializer extends JavaSerializer
+{
+	/** the marker written before the name of a class which is not registered */
+	private static final int UNREGISTERED = 0;
+
+	private final ClassRegistry registry;
+
+	private final IObjectChecker[] checkers;
+
+	/** the fingerprints of the classes, see {@link #getFingerprint(ObjectStreamClass)} */
+	private final ConcurrentMap<Class<?>, Integer> fingerprints =
+		new ConcurrentHashMap<Class<?>, Integer>();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationKey
+	 *            the name of the application
+	 */
+	public ClassRegistrySerializer(final String applicationKey)
+	{
+		this(applicationKey, new ClassRegistry());
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationKey
+	 *            the name of the application
+	 * @param registry
+	 *            the registry with the ids of the classes
+	 * @param checkers
+	 *            optional {@link IObjectChecker checkers} run for every serialized object
+	 */
+	public ClassRegistrySerializer(final String applicationKey, final ClassRegistry registry,
+		final IObjectChecker... checkers)
+	{
+		super(applicationKey);
+		this.registry = Args.notNull(registry, "registry");
+		this.checkers = checkers;
+	}
+
+	/**
+	 * @return the registry with the ids of the classes
+	 */
+	public ClassRegistry getRegistry()
+	{
+		return registry;
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(final OutputStream out) throws IOException
+	{
+		ObjectOutputStream oos = new RegistryObjectOutputStream(out, this);
+		if (checkers != null && checkers.length > 0)
+		{
+			return new CheckingObjectOutputStream(oos, checkers);
+		}
+		return new SerializationCheckerObjectOutputStream(out, oos);
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(final InputStream in) throws IOException
+	{
+		return new RegistryObjectInputStream(in, this);
+	}
+
+	/**
+	 * Computes the fingerprint of the name of a class and the names and types of its fields. The
+	 * name catches a registry which maps the id to another class, the serialVersionUID is written
+	 * separately.
+	 * 
+	 * @param desc
+	 *            the local descriptor of the class
+	 * @return the fingerprint
+	 */
+	private int getFingerprint(final ObjectStreamClass desc)
+	{
+		Class<?> cls = desc.forClass();
+		Integer fingerprint = fingerprints.get(cls);
+		if (fingerprint == null)
+		{
+			int hash = desc.getName().hashCode();
+			for (ObjectStreamField field : desc.getFields())
+			{
+				String type = field.getTypeString();
+				hash = 31 * hash + field.getName().hashCode();
+				hash = 31 * hash + (type != null ? type.hashCode() : field.getTypeCode());
+			}
+			fingerprint = hash;
+			fingerprints.put(cls, fingerprint);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Writes the class descriptors as ids of the {@link ClassRegistry}, followed by the
+	 * serialVersionUID and the fingerprint of the class
+	 */
+	private static class RegistryObjectOutputStream extends ObjectOutputStream
+	{
+		private final ClassRegistrySerializer serializer;
+
+		private RegistryObjectOutputStream(final OutputStream out,
+			final ClassRegistrySerializer serializer) throws IOException
+		{
+			super(out);
+			this.serializer = serializer;
+		}
+
+		@Override
+		protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException
+		{
+			int id = serializer.registry.getId(desc.forClass());
+			if (id == -1)
+			{
+				writeShort(UNREGISTERED);
+				writeUTF(desc.getName());
+			}
+			else
+			{
+				writeShort(id + 1);
+			}
+			writeLong(desc.getSerialVersionUID());
+			writeInt(serializer.getFingerprint(desc));
+		}
+	}
+
+	/**
+	 * Reads the class descriptors written by {@link RegistryObjectOutputStream}
+	 */
+	private static class RegistryObjectInputStream extends ClassResolverObjectInputStream
+	{
+		private final ClassRegistrySerializer serializer;
+
+		private RegistryObjectInputStream(final InputStream in,
+			final ClassRegistrySerializer serializer) throws IOException
+		{
+			super(in);
+			this.serializer = serializer;
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+			ClassNotFoundException
+		{
+			int id = readUnsignedShort();
+			ClassRegistry registry = serializer.registry;
+			Class<?> cls;
+			if (id == UNREGISTERED)
+			{
+				String className = readUTF();
+				cls = WicketObjects.resolveClass(className);
+				if (cls == null)
+				{
+					throw new ClassNotFoundException(className);
+				}
+			}
+			else
+			{
+				cls = registry.getClass(id - 1);
+				if (cls == null)
+				{
+					throw new ClassNotFoundException("No class registered with id " + (id - 1));
+				}
+			}
+			long serialVersionUID = readLong();
+			int fingerprint = readInt();
+
+			ObjectStreamClass desc = ObjectStreamClass.lookupAny(cls);
+			if (desc.getSerialVersionUID() != serialVersionUID)
+			{
+				throw new InvalidClassException(cls.getName(),
+					"local class incompatible: stream classdesc serialVersionUID = " +
+						serialVersionUID + ", local class serialVersionUID = " +
+						desc.getSerialVersionUID());
+			}
+			if (serializer.getFingerprint(desc) != fingerprint)
+			{
+				throw new InvalidClassException(cls.getName(), id == UNREGISTERED
+					? "local class incompatible: the fields have changed"
+					: "local class incompatible: the fields or the registered class with id " +
+						(id - 1) + " have changed");
+			}
+			return desc;
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			// the descriptor has been looked up for the local class already
+			Class<?> cls = desc.forClass();
+			return cls != null ? cls : super.resolveClass(desc);
+		}
+	}
+}
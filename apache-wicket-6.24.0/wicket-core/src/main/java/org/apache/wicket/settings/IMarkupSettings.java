@@ -16,7 +16,10 @@
  */
 package org.apache.wicket.settings;
 
+import java.io.File;
+
 import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * Interface for markup related settings.
@@ -70,6 +73,29 @@ public interface IMarkupSettings
 	 */
 	boolean getStripComments();
 
+	/**
+	 * Gets the maximum size of the markup cache.
+	 * 
+	 * @return the maximum size, {@code null} if the markup cache is unbounded
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(Bytes)
+	 */
+	Bytes getMarkupCacheMaxSize();
+
+	/**
+	 * Gets the file the markup cache is saved to on shutdown and loaded from on startup.
+	 * 
+	 * @return the markup snapshot file, {@code null} if no snapshot is used
+	 * @see IMarkupSettings#setMarkupSnapshotFile(File)
+	 */
+	File getMarkupSnapshotFile();
+
+	/**
+	 * @return whether pages are rendered into a byte buffer, with the static markup written as
+	 *         pre-encoded bytes
+	 * @see IMarkupSettings#setPreEncodeMarkup(boolean)
+	 */
+	boolean getPreEncodeMarkup();
+
 	/**
 	 * Gets whether to remove wicket tags from the output.
 	 * 
@@ -140,6 +166,45 @@ public interface IMarkupSettings
 	 */
 	void setStripComments(boolean stripComments);
 
+	/**
+	 * Sets the maximum size of the markup cache, as estimated from the length of the markup. When
+	 * the cache gets bigger the least recently used markup is evicted and has to be loaded again
+	 * when it is needed. Defaults to {@code null}, i.e. the markup cache is unbounded.
+	 * <p>
+	 * The size has to be set before the markup cache is created, i.e. in
+	 * {@link org.apache.wicket.Application#init()}.
+	 * 
+	 * @param maxSize
+	 *            the maximum size, {@code null} for an unbounded markup cache
+	 * @see org.apache.wicket.markup.MarkupCache.BoundedCacheImplementation
+	 */
+	void setMarkupCacheMaxSize(Bytes maxSize);
+
+	/**
+	 * Sets the file the parsed markup is saved to when the application is shut down. A new
+	 * application instance loads the snapshot into its markup cache on startup, so the markup
+	 * files don't have to be parsed again. Markup whose resource has been modified since the
+	 * snapshot was written is ignored. Defaults to {@code null}, i.e. no snapshot is used.
+	 * 
+	 * @param markupSnapshotFile
+	 *            the markup snapshot file, {@code null} to disable the snapshot
+	 */
+	void setMarkupSnapshotFile(File markupSnapshotFile);
+
+	/**
+	 * Enables rendering of pages into a byte buffer encoded with the response encoding. Raw markup
+	 * and component tags which are not modified during render are then written as bytes, which
+	 * are encoded once per markup and cached, instead of being encoded on every request.
+	 * <p>
+	 * Response filters need the page as text, so pages are rendered as text if any response
+	 * filter is configured, as in development mode. Defaults to false.
+	 * 
+	 * @param preEncodeMarkup
+	 *            true to write pre-encoded markup
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#getResponseRequestEncoding()
+	 */
+	void setPreEncodeMarkup(boolean preEncodeMarkup);
+
 	/**
 	 * Sets whether to remove wicket tags from the output.
 	 * 
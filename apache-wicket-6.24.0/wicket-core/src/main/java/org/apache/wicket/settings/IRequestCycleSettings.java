@@ -159,6 +159,15 @@ public interface IRequestCycleSettings
 	 */
 	boolean getGatherExtendedBrowserInfo();
 
+	/**
+	 * Gets whether the durations of the phases of each request are recorded in the
+	 * {@link org.apache.wicket.Application#getRequestPhaseStatistics() request phase statistics}.
+	 * 
+	 * @return Whether to record the request phases
+	 * @see #setRecordRequestPhases(boolean)
+	 */
+	boolean getRecordRequestPhases();
+
 	/**
 	 * Gets in what way the render part of a request is handled.
 	 * 
@@ -192,6 +201,15 @@ public interface IRequestCycleSettings
 	 */
 	String getResponseRequestEncoding();
 
+	/**
+	 * Gets whether pages rendered with {@link RenderStrategy#ONE_PASS_RENDER} are streamed to the
+	 * client.
+	 * 
+	 * @return Whether to stream pages
+	 * @see #setStreamOnePassRender(boolean)
+	 */
+	boolean getStreamOnePassRender();
+
 	/**
 	 * Gets the time that a request will by default be waiting for the previous request to be
 	 * handled before giving up.
@@ -234,6 +252,18 @@ public interface IRequestCycleSettings
 	 */
 	void setGatherExtendedBrowserInfo(boolean gatherExtendedBrowserInfo);
 
+	/**
+	 * Sets whether the durations of the phases of each request - mapping, page resolution,
+	 * listener invocation, rendering, page storing and detaching - are recorded in the
+	 * {@link org.apache.wicket.Application#getRequestPhaseStatistics() request phase statistics}.
+	 * The overhead is a few calls to {@link System#nanoTime()} per request, so it can be left on in
+	 * production. Disabled by default.
+	 * 
+	 * @param recordRequestPhases
+	 *            Whether to record the request phases
+	 */
+	void setRecordRequestPhases(boolean recordRequestPhases);
+
 	/**
 	 * Sets in what way the render part of a request is handled. Basically, there are two different
 	 * options:
@@ -281,6 +311,25 @@ public interface IRequestCycleSettings
 	 */
 	void setResponseRequestEncoding(final String responseRequestEncoding);
 
+	/**
+	 * Sets whether pages rendered with {@link RenderStrategy#ONE_PASS_RENDER} are streamed to the
+	 * client. The &lt;head&gt; section is flushed as soon as it is rendered, so the browser can
+	 * start loading the CSS and JavaScript resources, and the body is written as the components
+	 * render. False by default.
+	 * <p>
+	 * Pages are only streamed if no {@link IResponseFilter}s are configured, and the head is only
+	 * flushed if the page is stateless or the session is bound already, because no headers or
+	 * cookies can be added once the response is committed. If rendering fails after the head was
+	 * flushed no error page can be rendered: a
+	 * {@link org.apache.wicket.protocol.http.StreamedResponseException} is thrown, which the
+	 * default exception mapper logs before it gives up responding.
+	 * </p>
+	 * 
+	 * @param streamOnePassRender
+	 *            Whether to stream pages
+	 */
+	void setStreamOnePassRender(boolean streamOnePassRender);
+
 	/**
 	 * Sets the time that a request will by default be waiting for the previous request to be
 	 * handled before giving up.
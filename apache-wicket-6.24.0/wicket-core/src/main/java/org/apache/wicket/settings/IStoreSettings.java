@@ -20,6 +20,7 @@ import java.io.File;
 
 import org.apache.wicket.page.IPageManager;
 import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
@@ -53,6 +54,22 @@ public interface IStoreSettings
 	 */
 	void setInmemoryCacheSize(int inmemoryCacheSize);
 
+	/**
+	 * @return the maximum size of the page instances which will be stored in the application scoped
+	 *         cache. {@code 0} means no limit by size.
+	 */
+	Bytes getInmemoryCacheMaxBytes();
+
+	/**
+	 * Sets the maximum size of the page instances which will be stored in the application scoped
+	 * second level cache. When both this and {@link #setInmemoryCacheSize(int)} are set the least
+	 * recently used pages are evicted as soon as either of the limits is exceeded.
+	 * 
+	 * @param maxBytes
+	 *            the maximum size of the cached pages, {@code 0} for no limit by size
+	 */
+	void setInmemoryCacheMaxBytes(Bytes maxBytes);
+
 	/**
 	 * @return maximum page size. After this size is exceeded, the {@link DiskDataStore} will start
 	 *         saving the pages at the beginning of file.
@@ -85,6 +102,22 @@ public interface IStoreSettings
 	 */
 	void setFileStoreFolder(File fileStoreFolder);
 
+	/**
+	 * @return the maximum number of session data files which {@link DiskDataStore} keeps open
+	 *         between accesses. {@code 0} means that the files are not kept open.
+	 */
+	int getFileChannelPoolCapacity();
+
+	/**
+	 * Sets the maximum number of session data files which {@link DiskDataStore} keeps open between
+	 * accesses. When the limit is reached the least recently used file is closed.
+	 * 
+	 * @param capacity
+	 *            the maximum number of open files, {@code 0} to open and close the file for every
+	 *            read and write
+	 */
+	void setFileChannelPoolCapacity(int capacity);
+
 	/**
 	 * @return the capacity of the queue used to store the pages which will be stored asynchronously
 	 * @see AsynchronousDataStore
@@ -100,6 +133,39 @@ public interface IStoreSettings
 	 */
 	void setAsynchronousQueueCapacity(int capacity);
 
+	/**
+	 * @return the number of threads which store the pages asynchronously
+	 * @see AsynchronousDataStore
+	 */
+	int getAsynchronousThreadCount();
+
+	/**
+	 * Sets the number of threads which store the pages asynchronously. The pages of a session are
+	 * always stored by the same thread, in the order in which they are stored.
+	 * 
+	 * @param threadCount
+	 *            the number of threads
+	 * @see AsynchronousDataStore
+	 */
+	void setAsynchronousThreadCount(int threadCount);
+
+	/**
+	 * @return the maximum number of pages stored as deltas against the same snapshot, or {@code 0}
+	 *         if the pages are stored in full
+	 * @see DeltaDataStore
+	 */
+	int getMaxDeltaChainLength();
+
+	/**
+	 * Sets the maximum number of pages stored as binary deltas against the same snapshot. A new
+	 * snapshot is started after this number of pages. {@code 0} stores every page in full.
+	 * 
+	 * @param length
+	 *            the maximum number of deltas per snapshot
+	 * @see DeltaDataStore
+	 */
+	void setMaxDeltaChainLength(int length);
+
 	/**
 	 * Sets a flag whether to wrap the configured {@link IDataStore} with
 	 * {@link AsynchronousDataStore}. By doing this the HTTP worker thread will not wait for the
@@ -16,9 +16,12 @@
  */
 package org.apache.wicket.settings.def;
 
+import java.io.File;
+
 import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * @author Jonathan Locke
@@ -61,6 +64,15 @@ public class MarkupSettings implements IMarkupSettings
 	 */
 	private boolean stripWicketTags = false;
 
+	/** The maximum size of the markup cache, null if unbounded */
+	private Bytes markupCacheMaxSize;
+
+	/** The file the markup cache is saved to and loaded from */
+	private File markupSnapshotFile;
+
+	/** Write pre-encoded markup */
+	private boolean preEncodeMarkup = false;
+
 	/**
 	 * Construct
 	 */
@@ -126,6 +138,33 @@ public class MarkupSettings implements IMarkupSettings
 		return markupFactory;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupCacheMaxSize()
+	 */
+	@Override
+	public Bytes getMarkupCacheMaxSize()
+	{
+		return markupCacheMaxSize;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupSnapshotFile()
+	 */
+	@Override
+	public File getMarkupSnapshotFile()
+	{
+		return markupSnapshotFile;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getPreEncodeMarkup()
+	 */
+	@Override
+	public boolean getPreEncodeMarkup()
+	{
+		return preEncodeMarkup;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#getStripComments()
 	 */
@@ -208,6 +247,33 @@ public class MarkupSettings implements IMarkupSettings
 		markupFactory = factory;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	@Override
+	public void setMarkupCacheMaxSize(final Bytes maxSize)
+	{
+		markupCacheMaxSize = maxSize;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupSnapshotFile(java.io.File)
+	 */
+	@Override
+	public void setMarkupSnapshotFile(final File markupSnapshotFile)
+	{
+		this.markupSnapshotFile = markupSnapshotFile;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setPreEncodeMarkup(boolean)
+	 */
+	@Override
+	public void setPreEncodeMarkup(final boolean preEncodeMarkup)
+	{
+		this.preEncodeMarkup = preEncodeMarkup;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#setStripComments(boolean)
 	 */
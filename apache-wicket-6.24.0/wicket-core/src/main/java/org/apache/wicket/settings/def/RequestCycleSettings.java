@@ -47,6 +47,9 @@ public class RequestCycleSettings implements IRequestCycleSettings
 	 */
 	private boolean gatherExtendedBrowserInfo = false;
 
+	/** Whether the request phases are recorded, false by default */
+	private boolean recordRequestPhases = false;
+
 	/**
 	 * The render strategy, defaults to 'REDIRECT_TO_BUFFER'. This property influences the default
 	 * way in how a logical request that consists of an 'action' and a 'render' part is handled, and
@@ -64,6 +67,9 @@ public class RequestCycleSettings implements IRequestCycleSettings
 	 */
 	private String responseRequestEncoding = "UTF-8";
 
+	/** Whether one pass rendered pages are streamed, false by default */
+	private boolean streamOnePassRender = false;
+
 	/**
 	 * The time that a request will by default be waiting for the previous request to be handled
 	 * before giving up. Defaults to one minute.
@@ -105,6 +111,15 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		return gatherExtendedBrowserInfo;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#getRecordRequestPhases()
+	 */
+	@Override
+	public boolean getRecordRequestPhases()
+	{
+		return recordRequestPhases;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#getRenderStrategy()
 	 */
@@ -139,6 +154,15 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		return responseRequestEncoding;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#getStreamOnePassRender()
+	 */
+	@Override
+	public boolean getStreamOnePassRender()
+	{
+		return streamOnePassRender;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#getTimeout()
 	 */
@@ -166,6 +190,15 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		this.gatherExtendedBrowserInfo = gatherExtendedBrowserInfo;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setRecordRequestPhases(boolean)
+	 */
+	@Override
+	public void setRecordRequestPhases(boolean recordRequestPhases)
+	{
+		this.recordRequestPhases = recordRequestPhases;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#setRenderStrategy(RenderStrategy)
 	 */
@@ -185,6 +218,15 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		this.responseRequestEncoding = encoding;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamOnePassRender(boolean)
+	 */
+	@Override
+	public void setStreamOnePassRender(boolean streamOnePassRender)
+	{
+		this.streamOnePassRender = streamOnePassRender;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#setTimeout(org.apache.wicket.util.time.Duration)
 	 */
@@ -45,12 +45,20 @@ public class StoreSettings implements IStoreSettings
 
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
+	private Bytes inmemoryCacheMaxBytes = Bytes.bytes(0L);
+
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
 
 	private File fileStoreFolder = null;
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int fileChannelPoolCapacity = 0;
+
+	private int asynchronousThreadCount = 1;
+
+	private int maxDeltaChainLength = 0;
+
 	private boolean isAsynchronous = true;
 
 	/**
@@ -74,6 +82,18 @@ public class StoreSettings implements IStoreSettings
 		this.inmemoryCacheSize = inmemoryCacheSize;
 	}
 
+	@Override
+	public Bytes getInmemoryCacheMaxBytes()
+	{
+		return inmemoryCacheMaxBytes;
+	}
+
+	@Override
+	public void setInmemoryCacheMaxBytes(final Bytes maxBytes)
+	{
+		inmemoryCacheMaxBytes = Args.notNull(maxBytes, "maxBytes");
+	}
+
 	@Override
 	public Bytes getMaxSizePerSession()
 	{
@@ -120,6 +140,23 @@ public class StoreSettings implements IStoreSettings
 		this.fileStoreFolder = Args.notNull(fileStoreFolder, "fileStoreFolder");
 	}
 
+	@Override
+	public int getFileChannelPoolCapacity()
+	{
+		return fileChannelPoolCapacity;
+	}
+
+	@Override
+	public void setFileChannelPoolCapacity(int capacity)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException(
+				"The capacity of the file channel pool should not be negative.");
+		}
+		fileChannelPoolCapacity = capacity;
+	}
+
 	@Override
 	public int getAsynchronousQueueCapacity()
 	{
@@ -137,6 +174,40 @@ public class StoreSettings implements IStoreSettings
 		asynchronousQueueCapacity = queueCapacity;
 	}
 
+	@Override
+	public int getAsynchronousThreadCount()
+	{
+		return asynchronousThreadCount;
+	}
+
+	@Override
+	public void setAsynchronousThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+		{
+			throw new IllegalArgumentException(
+				"The number of asynchronous threads should be at least 1.");
+		}
+		asynchronousThreadCount = threadCount;
+	}
+
+	@Override
+	public int getMaxDeltaChainLength()
+	{
+		return maxDeltaChainLength;
+	}
+
+	@Override
+	public void setMaxDeltaChainLength(int length)
+	{
+		if (length < 0)
+		{
+			throw new IllegalArgumentException(
+				"The maximum length of the delta chains cannot be negative.");
+		}
+		maxDeltaChainLength = length;
+	}
+
 	@Override
 	public void setAsynchronous(boolean async)
 	{
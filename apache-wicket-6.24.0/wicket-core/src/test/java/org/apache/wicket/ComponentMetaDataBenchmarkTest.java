@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the time spent changing the metadata and the behaviors of components, and checks that
+ * a component tree whose metadata has been changed serializes no larger than a tree which has been
+ * built with the final metadata. The layout of the data slot of {@link Component} is not changed,
+ * so its heap footprint is not measured.
+ */
+@Category(SlowTests.class)
+public class ComponentMetaDataBenchmarkTest extends WicketTestCase
+{
+	private static final Logger log = LoggerFactory.getLogger(ComponentMetaDataBenchmarkTest.class);
+
+	private static final int COMPONENTS = 5000;
+
+	private static final int WARMUP_ITERATIONS = 10;
+
+	private static final int ITERATIONS = 50;
+
+	private static final MetaDataKey<String> KEY1 = new MetaDataKey<String>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private static final MetaDataKey<String> KEY2 = new MetaDataKey<String>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private static class MarkerBehavior extends Behavior
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Builds a tree of labels with models, where every 5th label has a behavior and every 10th
+	 * label has metadata.
+	 * 
+	 * @return the container of the labels
+	 */
+	private static WebMarkupContainer newTree()
+	{
+		WebMarkupContainer container = new WebMarkupContainer("container");
+		for (int i = 0; i < COMPONENTS; i++)
+		{
+			Label label = new Label("label" + i, "text");
+			if (i % 5 == 0)
+			{
+				label.add(new MarkerBehavior());
+			}
+			if (i % 10 == 0)
+			{
+				label.setMetaData(KEY1, "value");
+			}
+			container.add(label);
+		}
+		return container;
+	}
+
+	private static int serializedSize(final Object object) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.size();
+	}
+
+	/**
+	 * Adds behaviors and metadata to the labels, then replaces and removes the metadata
+	 * 
+	 * @param labels
+	 */
+	private static void change(final Label[] labels)
+	{
+		for (Label label : labels)
+		{
+			Behavior behavior = new MarkerBehavior();
+			label.add(behavior);
+			label.setMetaData(KEY1, "1");
+			label.setMetaData(KEY2, "2");
+			label.setMetaData(KEY1, "3");
+			label.getMetaData(KEY2);
+			label.setMetaData(KEY1, null);
+			label.setMetaData(KEY2, null);
+			label.remove(behavior);
+		}
+	}
+
+	/**
+	 * Logs the serialized size of a big component tree, which must not grow by adding, replacing
+	 * and removing metadata
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void serializedSize() throws IOException
+	{
+		int baseline = serializedSize(newTree());
+
+		WebMarkupContainer container = newTree();
+		for (Component label : container)
+		{
+			label.setMetaData(KEY2, "other");
+			label.setMetaData(KEY1, "changed");
+			label.setMetaData(KEY1, null);
+			label.setMetaData(KEY2, null);
+			if (label.getId().endsWith("0"))
+			{
+				label.setMetaData(KEY1, "value");
+			}
+		}
+		int size = serializedSize(container);
+
+		log.info("{} components: {} bytes serialized, {} bytes per component", new Object[] {
+				COMPONENTS, size, size / COMPONENTS });
+		assertTrue(size + " bytes serialized, at most " + baseline + " expected",
+			size <= baseline);
+	}
+
+	/**
+	 * Logs the time spent changing the behaviors and the metadata of components
+	 */
+	@Test
+	public void throughput()
+	{
+		Label[] labels = new Label[COMPONENTS];
+		for (int i = 0; i < labels.length; i++)
+		{
+			labels[i] = new Label("label" + i, "text");
+		}
+
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+		{
+			change(labels);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			change(labels);
+		}
+		long duration = System.nanoTime() - start;
+
+		log.info("Component data: {} ns per change", duration / ((long)ITERATIONS * COMPONENTS));
+	}
+}
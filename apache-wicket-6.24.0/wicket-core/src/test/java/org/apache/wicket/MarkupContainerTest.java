@@ -16,6 +16,7 @@
  */
 package org.apache.wicket;
 
+import org.apache.wicket.core.util.lang.WicketObjects;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.markup.html.WebMarkupContainer;
@@ -107,6 +108,70 @@ public class MarkupContainerTest extends WicketTestCase
 		assertNull(a.get("q"));
 	}
 
+	/**
+	 * Children of big containers are looked up by id while adding, replacing, removing and
+	 * swapping them.
+	 */
+	@Test
+	public void getFromBigContainer()
+	{
+		WebMarkupContainer container = new WebMarkupContainer("container");
+		for (int i = 0; i < 100; i++)
+		{
+			container.add(new WebComponent(Integer.toString(i)));
+		}
+		assertEquals("42", container.get("42").getId());
+		assertNull(container.get("100"));
+
+		WebComponent replacement = new WebComponent("42");
+		container.replace(replacement);
+		assertSame(replacement, container.get("42"));
+		assertSame(replacement, container.get(42));
+
+		container.remove("10");
+		assertNull(container.get("10"));
+		assertEquals(99, container.size());
+		assertEquals("11", container.get(10).getId());
+
+		container.swap(0, 98);
+		assertEquals("99", container.get(0).getId());
+		assertEquals("0", container.get("0").getId());
+
+		try
+		{
+			container.add(new WebComponent("50"));
+			fail();
+		}
+		catch (IllegalArgumentException expected)
+		{
+		}
+
+		container.add(new WebComponent("10"));
+		assertEquals("10", container.get(99).getId());
+		assertSame(container.get(99), container.get("10"));
+	}
+
+	/**
+	 * The index of the children is rebuilt after deserialization.
+	 */
+	@Test
+	public void getFromDeserializedBigContainer()
+	{
+		WebMarkupContainer container = new WebMarkupContainer("container");
+		for (int i = 0; i < 100; i++)
+		{
+			container.add(new WebComponent(Integer.toString(i)));
+		}
+		assertNotNull(container.get("0"));
+
+		WebMarkupContainer clone = (WebMarkupContainer)WicketObjects.cloneObject(container);
+		assertNotNull(clone.get("99"));
+		assertSame(clone, clone.get("99").getParent());
+
+		clone.remove("99");
+		assertNull(clone.get("99"));
+	}
+
 	/**
 	 * https://issues.apache.org/jira/browse/WICKET-4006
 	 */
@@ -16,13 +16,14 @@
  */
 package org.apache.wicket;
 
-import org.junit.Assert;
+import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.html.basic.Label;
 import org.junit.Test;
 
 /**
  * Some tests for meta data.
  */
-public class MetaDataTest extends Assert
+public class MetaDataTest extends WicketTestCase
 {
 	private static final MetaDataKey<String> KEY1 = new MetaDataKey<String>()
 	{
@@ -81,4 +82,42 @@ public class MetaDataTest extends Assert
 		md = KEY2.set(md, null);
 		assertNull(md);
 	}
+
+	/**
+	 * Metadata of a component is kept besides its model and behaviors, a single entry is stored
+	 * without an array.
+	 */
+	@Test
+	public void componentMetaData()
+	{
+		Component label = new Label("label", "text");
+		Behavior behavior = new Behavior()
+		{
+			private static final long serialVersionUID = 1L;
+		};
+		label.add(behavior);
+
+		label.setMetaData(KEY1, "1");
+		assertEquals("1", label.getMetaData(KEY1));
+		assertNull(label.getMetaData(KEY2));
+		assertTrue(label.data_get(1) instanceof MetaDataEntry);
+
+		label.setMetaData(KEY2, "2");
+		label.setMetaData(KEY1, "3");
+		assertEquals("3", label.getMetaData(KEY1));
+		assertEquals("2", label.getMetaData(KEY2));
+		assertEquals(3, label.data_length());
+
+		label.setMetaData(KEY1, null);
+		assertNull(label.getMetaData(KEY1));
+		assertEquals("2", label.getMetaData(KEY2));
+		assertTrue(label.data_get(1) instanceof MetaDataEntry);
+
+		label.setMetaData(KEY2, null);
+		assertNull(label.getMetaData(KEY2));
+		assertEquals(2, label.data_length());
+		assertEquals("text", label.getDefaultModelObject());
+		assertEquals(1, label.getBehaviors().size());
+		assertSame(behavior, label.getBehaviors().get(0));
+	}
 }
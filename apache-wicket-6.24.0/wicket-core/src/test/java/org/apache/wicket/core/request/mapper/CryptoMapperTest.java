@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.core.request.mapper;
 
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+
 import org.apache.wicket.MockPage;
 import org.apache.wicket.core.request.handler.BookmarkableListenerInterfaceRequestHandler;
 import org.apache.wicket.core.request.handler.ListenerInterfaceRequestHandler;
@@ -44,6 +48,7 @@ import org.apache.wicket.settings.ISecuritySettings;
 import org.apache.wicket.util.IProvider;
 import org.apache.wicket.util.crypt.CachingSunJceCryptFactory;
 import org.apache.wicket.util.crypt.ICrypt;
+import org.apache.wicket.util.crypt.SunJceCrypt;
 import org.apache.wicket.util.string.StringValue;
 import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.tester.WicketTester;
@@ -172,6 +177,64 @@ public class CryptoMapperTest extends AbstractMapperTest
 		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, encryptedUrl.toString());
 	}
 
+	/**
+	 * Tests that repeated encryptions are cached per session.
+	 */
+	@Test
+	public void encryptionCache()
+	{
+		final int[] encryptions = new int[1];
+		final ICrypt crypt = new SunJceCrypt()
+		{
+			@Override
+			protected byte[] crypt(byte[] input, int mode) throws GeneralSecurityException
+			{
+				if (mode == Cipher.ENCRYPT_MODE)
+				{
+					encryptions[0]++;
+				}
+				return super.crypt(input, mode);
+			}
+		};
+		crypt.setKey(ISecuritySettings.DEFAULT_ENCRYPTION_KEY);
+		CryptoMapper cachingMapper = new CryptoMapper(mapper.getDelegateMapper(), new IProvider<ICrypt>()
+		{
+			@Override
+			public ICrypt get()
+			{
+				return crypt;
+			}
+		});
+		assertEquals(0, cachingMapper.getEncryptionCacheSize());
+
+		IRequestHandler handler = new RenderPageRequestHandler(new PageProvider(Page2.class,
+			new PageParameters()));
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(2, encryptions[0]);
+
+		// encryptions are not cached for temporary sessions
+		assertSame(cachingMapper, cachingMapper.setEncryptionCacheSize(10));
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(3, encryptions[0]);
+
+		tester.getSession().bind();
+		assertEquals(10, cachingMapper.getEncryptionCacheSize());
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(4, encryptions[0]);
+
+		// another session
+		tester.getSession().invalidateNow();
+		tester.getSession().bind();
+		assertEquals(ENCRYPTED_BOOKMARKABLE_URL, cachingMapper.mapHandler(handler).toString());
+		assertEquals(5, encryptions[0]);
+
+		Url decryptedUrl = cachingMapper.decryptUrl(getRequest(Url.parse(ENCRYPTED_BOOKMARKABLE_URL)),
+			Url.parse(ENCRYPTED_BOOKMARKABLE_URL));
+		assertEquals(PLAIN_BOOKMARKABLE_URL, decryptedUrl.toString());
+	}
+
 	/**
 	 * Tests that encrypted URLs for bookmarkable pages are decrypted and passed to the wrapped mapper.
 	 */
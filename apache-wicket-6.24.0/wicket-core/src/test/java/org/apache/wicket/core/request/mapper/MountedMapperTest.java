@@ -19,6 +19,8 @@ package org.apache.wicket.core.request.mapper;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 
+import java.util.Arrays;
+
 import org.apache.wicket.MockPage;
 import org.apache.wicket.core.request.handler.BookmarkableListenerInterfaceRequestHandler;
 import org.apache.wicket.core.request.handler.BookmarkablePageRequestHandler;
@@ -36,6 +38,7 @@ import org.apache.wicket.request.Url;
 import org.apache.wicket.request.component.IRequestableComponent;
 import org.apache.wicket.request.component.IRequestablePage;
 import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.mapper.CompoundRequestMapper;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.junit.Test;
 
@@ -890,4 +893,49 @@ public class MountedMapperTest extends AbstractMapperTest
 			" got exact = " + exactCompatScore + " and optional = " + optCompatScore,
 				requiredParamScore > optCompatScore);
 	}
+
+	/**
+	 * The leading segments up to the first placeholder are fixed, the page class is the key of the
+	 * handlers
+	 */
+	@Test
+	public void fixedSegmentsAndHandlerKey()
+	{
+		assertArrayEquals(new String[] { "some", "mount", "path" }, encoder.getFixedSegments());
+		assertArrayEquals(new String[] { "some" }, placeholderEncoder.getFixedSegments());
+		assertArrayEquals(new String[] { "some" }, optionPlaceholderEncoder.getFixedSegments());
+		assertEquals(MockPage.class, encoder.getHandlerKey());
+	}
+
+	/**
+	 * A subclass mapping other urls is not indexed by the compound mapper
+	 */
+	@Test
+	public void subclassNotIndexed()
+	{
+		MountedMapper aliasMapper = new MountedMapper("/some/mount/path", MockPage.class)
+		{
+			@Override
+			protected IMapperContext getContext()
+			{
+				return context;
+			}
+
+			@Override
+			protected UrlInfo parseRequest(Request request)
+			{
+				if (request.getUrl().getSegments().equals(Arrays.asList("alias")))
+				{
+					request = request.cloneWithUrl(Url.parse("some/mount/path"));
+				}
+				return super.parseRequest(request);
+			}
+		};
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(aliasMapper);
+
+		IRequestHandler handler = compound.mapRequest(getRequest(Url.parse("alias")));
+		assertThat(handler, instanceOf(RenderPageRequestHandler.class));
+		assertEquals(MockPage.class, ((RenderPageRequestHandler)handler).getPageClass());
+	}
 }
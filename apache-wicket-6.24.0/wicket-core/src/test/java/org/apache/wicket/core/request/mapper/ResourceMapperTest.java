@@ -274,4 +274,17 @@ public class ResourceMapperTest extends WicketTestCase
 			pageParameters = attributes.getParameters();
 		}
 	}
+
+	/**
+	 * The last segment of the mount path isn't fixed since it can be decorated by the caching
+	 * strategy
+	 */
+	@Test
+	public void fixedSegments()
+	{
+		assertArrayEquals(new String[] { "test" },
+			((ResourceMapper)mapper).getFixedSegments());
+		assertArrayEquals(new String[] { "test2" },
+			((ResourceMapper)mapperWithPlaceholder).getFixedSegments());
+	}
 }
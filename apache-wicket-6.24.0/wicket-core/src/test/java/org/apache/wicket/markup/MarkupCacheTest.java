@@ -16,10 +16,16 @@
  */
 package org.apache.wicket.markup;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.markup.parser.XmlTag;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.junit.Before;
 import org.junit.Test;
@@ -86,6 +92,200 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * The parsed markup is written to a snapshot and loaded into a new cache
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void snapshot() throws Exception
+	{
+		executeTest(MarkupInheritanceExtension_1.class, "MarkupInheritanceExpectedResult_1.html");
+
+		// the snapshot does not need serializable markup elements
+		assertFalse(Serializable.class.isAssignableFrom(ComponentTag.class));
+		assertFalse(Serializable.class.isAssignableFrom(XmlTag.class));
+
+		File file = File.createTempFile("MarkupCacheTest", null);
+		try
+		{
+			int count = cache.writeSnapshot(file);
+			assertTrue(count > 0);
+
+			MarkupCache snapshotCache = new MarkupCache();
+			assertEquals(count, snapshotCache.readSnapshot(file));
+			assertEquals(count, snapshotCache.size());
+			for (String location : snapshotCache.getMarkupCache().getKeys())
+			{
+				Markup markup = cache.getMarkupCache().get(location);
+				Markup snapshotMarkup = snapshotCache.getMarkupCache().get(location);
+				assertEquals(markup.toString(true), snapshotMarkup.toString(true));
+				assertEquals(markup.size(), snapshotMarkup.size());
+				for (int i = 0; i < markup.size(); i++)
+				{
+					assertSameElement(markup, snapshotMarkup, i);
+				}
+			}
+
+			// markup already cached is not replaced
+			assertEquals(0, snapshotCache.readSnapshot(file));
+
+			cache = snapshotCache;
+			executeTest(MarkupInheritanceExtension_1.class, "MarkupInheritanceExpectedResult_1.html");
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private static void assertSameElement(Markup markup, Markup snapshotMarkup, int index)
+	{
+		MarkupElement element = markup.get(index);
+		MarkupElement snapshotElement = snapshotMarkup.get(index);
+		assertEquals(element.getClass(), snapshotElement.getClass());
+		assertTrue(element.equalTo(snapshotElement));
+		assertEquals(element.toCharSequence().toString(), snapshotElement.toCharSequence()
+			.toString());
+		if (element instanceof ComponentTag)
+		{
+			ComponentTag tag = (ComponentTag)element;
+			ComponentTag snapshotTag = (ComponentTag)snapshotElement;
+			assertEquals(tag.getId(), snapshotTag.getId());
+			assertEquals(tag.getMarkupClass(), snapshotTag.getMarkupClass());
+			assertEquals(tag.isAutoComponentTag(), snapshotTag.isAutoComponentTag());
+			assertEquals(tag.getXmlTag().isMutable(), snapshotTag.getXmlTag().isMutable());
+			assertEquals(tag.getPos(), snapshotTag.getPos());
+			if (tag.getOpenTag() != null)
+			{
+				int openTag = indexOf(markup, tag.getOpenTag());
+				assertSame(snapshotMarkup.get(openTag), snapshotTag.getOpenTag());
+				assertTrue(snapshotTag.closes(snapshotMarkup.get(openTag)));
+			}
+		}
+	}
+
+	private static int indexOf(Markup markup, MarkupElement element)
+	{
+		for (int i = 0; i < markup.size(); i++)
+		{
+			if (markup.get(i) == element)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A snapshot written by another version is ignored
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void snapshotOfAnotherVersion() throws IOException
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+
+		File file = File.createTempFile("MarkupCacheTest", null);
+		try
+		{
+			assertTrue(cache.writeSnapshot(file) > 0);
+
+			MarkupCache snapshotCache = new MarkupCache()
+			{
+				@Override
+				protected String getSnapshotVersion()
+				{
+					return "another version";
+				}
+			};
+			assertEquals(0, snapshotCache.readSnapshot(file));
+			assertEquals(0, snapshotCache.size());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Rendering a page again finds its markup in the cache
+	 */
+	@Test
+	public void statistics()
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		long hits = cache.getHitCount();
+		long misses = cache.getMissCount();
+		long loads = cache.getLoadCount();
+		assertTrue(misses > 0);
+		assertTrue(loads > 0);
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		assertTrue(cache.getHitCount() > hits);
+		assertEquals(misses, cache.getMissCount());
+		assertEquals(loads, cache.getLoadCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	/**
+	 * A bounded cache evicts entries when its maximum size is exceeded
+	 */
+	@Test
+	public void boundedCacheEvicts()
+	{
+		MarkupCache.BoundedCacheImplementation<String, String> bounded = new MarkupCache.BoundedCacheImplementation<String, String>(
+			Bytes.bytes(1000));
+
+		String value = new String(new char[100]);
+		for (int i = 0; i < 10; i++)
+		{
+			bounded.put("key" + i, value);
+		}
+
+		assertTrue(bounded.size() < 10);
+		assertTrue(bounded.getEstimatedSize() <= bounded.getMaxSize());
+		assertEquals(10 - bounded.size(), bounded.getEvictionCount());
+
+		long size = bounded.getEstimatedSize();
+		String key = bounded.getKeys().iterator().next();
+		assertTrue(bounded.remove(key));
+		assertFalse(bounded.remove(key));
+		assertTrue(bounded.getEstimatedSize() < size);
+
+		bounded.clear();
+		assertEquals(0, bounded.size());
+		assertEquals(0, bounded.getEstimatedSize());
+	}
+
+	/**
+	 * A bounded cache evicts the least recently used entries first
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void boundedCacheEvictsLeastRecentlyUsed() throws InterruptedException
+	{
+		MarkupCache.BoundedCacheImplementation<String, String> bounded = new MarkupCache.BoundedCacheImplementation<String, String>(
+			Bytes.bytes(1000));
+
+		String value = new String(new char[100]);
+		for (int i = 0; i < 3; i++)
+		{
+			bounded.put("key" + i, value);
+			Thread.sleep(1);
+		}
+		bounded.get("key0");
+		Thread.sleep(1);
+
+		bounded.put("key3", value);
+
+		assertTrue(bounded.containsKey("key0"));
+		assertFalse(bounded.containsKey("key1"));
+		assertTrue(bounded.containsKey("key3"));
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
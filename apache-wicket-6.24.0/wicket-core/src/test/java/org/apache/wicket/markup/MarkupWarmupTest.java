@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.Locale;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.MarkupWarmup.Report;
+import org.apache.wicket.markup.MarkupWarmup.Result;
+import org.apache.wicket.markup.MarkupWarmup.Status;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.page.HomePage;
+import org.apache.wicket.markup.html.page.SimplePanel;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupWarmup}
+ */
+public class MarkupWarmupTest extends WicketTestCase
+{
+	private MarkupCache getMarkupCache()
+	{
+		return (MarkupCache)MarkupFactory.get().getMarkupCache();
+	}
+
+	/**
+	 * The markup of the classes is cached before the first request
+	 * 
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void warmup() throws Exception
+	{
+		Locale locale = tester.getSession().getLocale();
+		Report report = new MarkupWarmup(tester.getApplication()).addClasses(
+			MarkupInheritanceExtension_1.class, WebMarkupContainer.class,
+			ProvidingPanel.class, VariationPanel.class)
+			.addLocales(locale)
+			.setThreads(2)
+			.run();
+
+		assertEquals(4, report.getResults().size());
+		assertStatus(report, MarkupInheritanceExtension_1.class, Status.LOADED);
+		assertStatus(report, WebMarkupContainer.class, Status.NOT_FOUND);
+		assertStatus(report, ProvidingPanel.class, Status.SKIPPED);
+		assertStatus(report, VariationPanel.class, Status.SKIPPED);
+		assertTrue(report.getResults(Status.FAILED).isEmpty());
+
+		// the page is rendered with the cached markup
+		int size = getMarkupCache().size();
+		assertTrue(size > 0);
+		executeTest(MarkupInheritanceExtension_1.class, "MarkupInheritanceExpectedResult_1.html");
+		assertEquals(size, getMarkupCache().size());
+	}
+
+	/**
+	 * The classes of a package are found
+	 */
+	@Test
+	public void warmupPackage()
+	{
+		Report report = new MarkupWarmup(tester.getApplication()).addPackage(
+			"org.apache.wicket.markup.html.page")
+			.addLocales(tester.getSession().getLocale())
+			.run();
+
+		assertStatus(report, HomePage.class, Status.LOADED);
+		assertStatus(report, SimplePanel.class, Status.LOADED);
+		assertTrue(report.getResults(Status.FAILED).isEmpty());
+
+		int size = getMarkupCache().size();
+		tester.startPage(HomePage.class);
+		tester.assertRenderedPage(HomePage.class);
+		assertEquals(size, getMarkupCache().size());
+	}
+
+	/**
+	 * Only a prototype may load the markup of a class it is no instance of
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void noPrototype()
+	{
+		MarkupFactory.get().getContainerClass(new WebMarkupContainer("id"), SimplePanel.class);
+	}
+
+	private static void assertStatus(Report report, Class<? extends MarkupContainer> clazz,
+		Status status)
+	{
+		for (Result result : report.getResults())
+		{
+			if (result.getContainerClass() == clazz)
+			{
+				assertEquals(result.toString(), status, result.getStatus());
+				return;
+			}
+		}
+		fail("No result for " + clazz);
+	}
+
+	/**
+	 * A panel providing its own markup
+	 */
+	public static class ProvidingPanel extends Panel implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param id
+		 */
+		public ProvidingPanel(String id)
+		{
+			super(id);
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<wicket:panel></wicket:panel>");
+		}
+	}
+
+	/**
+	 * A panel whose instances look up the markup of a variation
+	 */
+	public static class VariationPanel extends Panel
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param id
+		 */
+		public VariationPanel(String id)
+		{
+			super(id);
+		}
+
+		@Override
+		public String getVariation()
+		{
+			return "compact";
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.nio.charset.Charset;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.ExternalLink;
+import org.apache.wicket.markup.parser.XmlTag.TagType;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.response.ByteArrayResponse;
+import org.apache.wicket.response.IEncodingResponse;
+import org.apache.wicket.response.StringResponse;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for pre-encoded markup
+ */
+public class PreEncodedMarkupTest extends WicketTestCase
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			// no response filters are registered in deployment mode
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * A page rendered with pre-encoded markup has the same output as a page rendered as text
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void renderPage() throws Exception
+	{
+		tester.startPage(new PreEncodedPage());
+		String text = tester.getLastResponseAsString();
+		assertEquals(0, tester.getLastResponse().getBinaryContent().length);
+
+		tester.getApplication().getMarkupSettings().setPreEncodeMarkup(true);
+		tester.startPage(new PreEncodedPage());
+		assertEquals(text, new String(tester.getLastResponse().getBinaryContent(), UTF_8));
+
+		// again with the cached bytes
+		tester.startPage(new PreEncodedPage());
+		assertEquals(text, new String(tester.getLastResponse().getBinaryContent(), UTF_8));
+	}
+
+	/**
+	 * Only tags which are not modified are written pre-encoded
+	 */
+	@Test
+	public void modifiedTag()
+	{
+		ComponentTag tag = new ComponentTag("span", TagType.OPEN);
+		tag.put("wicket:id", "label");
+		tag.put("title", "\u00e4 & \u00f6");
+		tag.makeImmutable();
+
+		StringResponse expected = new StringResponse();
+		tag.writeOutput(expected, true, "wicket");
+
+		EncodingResponse response = new EncodingResponse();
+		tag.mutable().writeOutput(response, true, "wicket");
+		assertEquals(1, response.encodedWrites);
+		assertEquals(expected.toString(), new String(response.getBytes(), UTF_8));
+
+		ComponentTag modified = tag.mutable();
+		modified.put("title", "\u00fc");
+		response = new EncodingResponse();
+		modified.writeOutput(response, true, "wicket");
+		assertEquals(0, response.encodedWrites);
+		assertEquals("<span title=\"\u00fc\">", new String(response.getBytes(), UTF_8));
+
+		// the same attributes in another order are written in another order
+		ComponentTag reordered = tag.mutable();
+		reordered.remove("wicket:id");
+		reordered.put("wicket:id", "label");
+		response = new EncodingResponse();
+		reordered.writeOutput(response, false, "wicket");
+		assertEquals(0, response.encodedWrites);
+	}
+
+	/**
+	 * Raw markup is written as text to responses which don't encode their text
+	 */
+	@Test
+	public void rawMarkup()
+	{
+		RawMarkup markup = new RawMarkup("<p>\u00e4</p>");
+
+		StringResponse text = new StringResponse();
+		markup.writeTo(text);
+		assertEquals("<p>\u00e4</p>", text.toString());
+
+		EncodingResponse response = new EncodingResponse();
+		markup.writeTo(response);
+		markup.writeTo(response);
+		assertEquals(2, response.encodedWrites);
+		assertEquals("<p>\u00e4</p><p>\u00e4</p>", new String(response.getBytes(), UTF_8));
+	}
+
+	private static class EncodingResponse extends ByteArrayResponse implements IEncodingResponse
+	{
+		private int encodedWrites;
+
+		@Override
+		public Charset getTextCharset()
+		{
+			return UTF_8;
+		}
+
+		@Override
+		public void write(CharSequence string)
+		{
+			super.write(string.toString().getBytes(UTF_8));
+		}
+
+		@Override
+		public void write(byte[] array)
+		{
+			encodedWrites++;
+			super.write(array);
+		}
+	}
+
+	/**
+	 * A page with raw markup, unmodified and modified component tags
+	 */
+	public static class PreEncodedPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public PreEncodedPage()
+		{
+			add(new Label("label", "Gr\u00fc\u00dfe \u20ac"));
+			add(new ExternalLink("link", "http://wicket.apache.org/?a=1&b=2"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body>"
+				+ "<h1 title=\"a &amp; b\">Gr\u00fc\u00dfe &euro;</h1>"
+				+ "<span wicket:id=\"label\" class=\"x\">label</span>"
+				+ "<a wicket:id=\"link\" class=\"y\">link \u00e4</a>" + "</body></html>");
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.Locale;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.event.Broadcast;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OutputCacheBehavior}
+ */
+public class OutputCacheBehaviorTest extends WicketTestCase
+{
+	private static int loads;
+
+	private static int version;
+
+	private static int heads;
+
+	/**
+	 * The cached output is used without loading the models of the children
+	 */
+	@Test
+	public void cachedOutput()
+	{
+		loads = 0;
+		version = 1;
+		heads = 0;
+
+		tester.startPage(CachingPage.class);
+		String first = tester.getLastResponseAsString();
+		assertEquals(1, loads);
+		assertEquals(1, heads);
+		assertTrue(first.contains("<span wicket:id=\"label\">label 1</span>"));
+		assertTrue(first.contains("cachedChild();"));
+		assertTrue(first.contains(".cachedPanel{}"));
+
+		tester.startPage(CachingPage.class);
+		assertEquals(1, loads);
+		assertEquals(1, heads);
+		String second = tester.getLastResponseAsString();
+		assertTrue(second.contains(".cachedPanel{}"));
+		assertEquals(first, second);
+		assertEquals(1, OutputCache.get(tester.getApplication()).getHits());
+
+		// another locale is another key
+		tester.getSession().setLocale(Locale.GERMAN);
+		tester.startPage(CachingPage.class);
+		assertEquals(2, loads);
+	}
+
+	/**
+	 * A new key renders the children again
+	 */
+	@Test
+	public void newKey()
+	{
+		loads = 0;
+		version = 1;
+
+		tester.startPage(CachingPage.class);
+		version = 2;
+		tester.startPage(CachingPage.class);
+		assertEquals(2, loads);
+		assertTrue(tester.getLastResponseAsString().contains("label 2"));
+	}
+
+	/**
+	 * The cached output of a region is invalidated by an event
+	 */
+	@Test
+	public void invalidateByEvent()
+	{
+		loads = 0;
+		version = 1;
+
+		CachingPage page = tester.startPage(CachingPage.class);
+		page.send(page, Broadcast.BREADTH, new OutputCacheInvalidation("other"));
+		tester.startPage(CachingPage.class);
+		assertEquals(1, loads);
+
+		page.send(page, Broadcast.BREADTH, new OutputCacheInvalidation("menu"));
+		tester.startPage(CachingPage.class);
+		assertEquals(2, loads);
+		assertTrue(tester.getLastResponseAsString().contains("cachedChild();"));
+	}
+
+	/**
+	 * A page with a cached container
+	 */
+	public static class CachingPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public CachingPage()
+		{
+			WebMarkupContainer menu = new WebMarkupContainer("menu");
+			menu.add(new OutputCacheBehavior("menu", Duration.minutes(1))
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Object getCacheKey(Component component)
+				{
+					return version;
+				}
+			});
+			add(menu);
+
+			menu.add(new Label("label", new AbstractReadOnlyModel<String>()
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public String getObject()
+				{
+					loads++;
+					return "label " + version;
+				}
+			})
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void renderHead(IHeaderResponse response)
+				{
+					super.renderHead(response);
+					heads++;
+					response.render(JavaScriptHeaderItem.forScript("cachedChild();", "child"));
+				}
+			});
+			menu.add(new HeadPanel("panel"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><head></head><body>"
+				+ "<div wicket:id=\"menu\"><span wicket:id=\"label\">label</span>"
+				+ "<div wicket:id=\"panel\"></div></div>"
+				+ "</body></html>");
+		}
+	}
+
+	/**
+	 * A panel contributing to the header with its markup
+	 */
+	public static class HeadPanel extends Panel implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param id
+		 */
+		public HeadPanel(String id)
+		{
+			super(id);
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<wicket:head><style>.cachedPanel{}</style></wicket:head><wicket:panel>panel</wicket:panel>");
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.outputcache;
+
+import java.util.Collections;
+
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OutputCache}
+ */
+public class OutputCacheTest extends Assert
+{
+	private static OutputCache.Entry entry(final String region, final int length,
+		final Duration timeToLive)
+	{
+		StringBuilder markup = new StringBuilder();
+		for (int i = 0; i < length; i++)
+		{
+			markup.append('x');
+		}
+		return new OutputCache.Entry(region, markup, Collections.<HeaderItem> emptyList(),
+			timeToLive);
+	}
+
+	/**
+	 * The least recently used entries are evicted
+	 */
+	@Test
+	public void evictLeastRecentlyUsed()
+	{
+		OutputCache cache = new OutputCache(Bytes.bytes(100));
+		cache.put("a", entry("r", 20, Duration.MAXIMUM));
+		cache.put("b", entry("r", 20, Duration.MAXIMUM));
+		assertEquals(80, cache.getSize());
+
+		// touch a, so b is the least recently used one
+		assertNotNull(cache.get("a"));
+		cache.put("c", entry("r", 20, Duration.MAXIMUM));
+
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertEquals(80, cache.getSize());
+
+		// too big to be cached at all
+		cache.put("d", entry("r", 60, Duration.MAXIMUM));
+		assertNull(cache.get("d"));
+		assertEquals(2, cache.getCount());
+
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	/**
+	 * Expired entries are not returned
+	 */
+	@Test
+	public void expire()
+	{
+		OutputCache cache = new OutputCache(Bytes.kilobytes(1));
+		cache.put("a", entry("r", 10, Duration.NONE));
+		cache.put("b", entry("r", 10, Duration.minutes(1)));
+
+		assertNull(cache.get("a"));
+		assertNotNull(cache.get("b"));
+		assertEquals(1, cache.getCount());
+		assertEquals(20, cache.getSize());
+	}
+
+	/**
+	 * All entries of a region are invalidated
+	 */
+	@Test
+	public void invalidate()
+	{
+		OutputCache cache = new OutputCache(Bytes.kilobytes(1));
+		cache.put("a", entry("menu", 10, Duration.MAXIMUM));
+		cache.put("b", entry("menu", 10, Duration.MAXIMUM));
+		cache.put("c", entry("footer", 10, Duration.MAXIMUM));
+
+		cache.invalidate("menu");
+		assertNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(20, cache.getSize());
+
+		cache.clear();
+		assertEquals(0, cache.getCount());
+		assertEquals(0, cache.getSize());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import org.apache.wicket.markup.parser.IXmlPullParser.HttpTagType;
+import org.apache.wicket.util.SlowTests;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of {@link XmlPullParser}
+ */
+@Category(SlowTests.class)
+public class XmlPullParserBenchmarkTest extends Assert
+{
+	private static final Logger log = LoggerFactory.getLogger(XmlPullParserBenchmarkTest.class);
+
+	private static final int WARMUP_ITERATIONS = 20;
+
+	private static final int ITERATIONS = 100;
+
+	/**
+	 * Generates a template with typical markup: nested tags with several attributes, wicket
+	 * attributes and tags, entities, comments, scripts and styles.
+	 * 
+	 * @param blocks
+	 *            the number of blocks
+	 * @return the markup
+	 */
+	static String generateMarkup(final int blocks)
+	{
+		StringBuilder markup = new StringBuilder(blocks * 600);
+		markup.append("<!DOCTYPE html>\n<html xmlns:wicket=\"http://wicket.apache.org\">\n<head>\n");
+		markup.append("<style type=\"text/css\">.row > .cell { color: red; }</style>\n");
+		markup.append("<script type=\"text/javascript\">if (a < b && c > d) { x(); }</script>\n");
+		markup.append("</head>\n<body>\n");
+		for (int i = 0; i < blocks; i++)
+		{
+			markup.append("<div wicket:id=\"item").append(i).append("\" class=\"row c")
+				.append(i % 7).append("\" data-index='").append(i).append("'>\n");
+			markup.append("  <span wicket:message=\"title:label.").append(i)
+				.append("\" title=\"a &amp; b\">Text &lt;").append(i).append("&gt;</span>\n");
+			markup.append("  <a href=\"page?x=").append(i).append(
+				"&amp;y=2\" onclick=\"return false;\" >link</a>\n");
+			markup.append("  <input type=\"text\" name=\"f").append(i).append(
+				"\" value=\"\" disabled/>\n");
+			markup.append("  <wicket:message key=\"msg").append(i).append(
+				"\">default</wicket:message>\n");
+			markup.append("  <!-- comment ").append(i).append(" -->\n");
+			markup.append("  <img src=\"img/").append(i).append(".png\" alt=\"\"/>\n");
+			if (i % 50 == 0)
+			{
+				markup.append("  <SCRIPT>var s = '<div>';</SCRIPT>\n");
+				markup.append("  <script type=\"text/x-template\"><b>").append(i).append(
+					"</b></script>\n");
+			}
+			markup.append("</div>\n");
+		}
+		markup.append("</body>\n</html>\n");
+		return markup.toString();
+	}
+
+	/**
+	 * @param markup
+	 * @return the number of elements
+	 * @throws Exception
+	 */
+	private static int parse(final String markup) throws Exception
+	{
+		XmlPullParser parser = new XmlPullParser();
+		parser.parse(markup);
+		int count = 0;
+		while (parser.next() != HttpTagType.NOT_INITIALIZED)
+		{
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Logs the number of characters parsed per millisecond
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void throughput() throws Exception
+	{
+		String markup = generateMarkup(200);
+		int elements = parse(markup);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+		{
+			assertEquals(elements, parse(markup));
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++)
+		{
+			parse(markup);
+		}
+		long duration = System.nanoTime() - start;
+
+		log.info("XmlPullParser: {} chars/ms, {} elements/ms",
+			(long)markup.length() * ITERATIONS * 1000000L / duration,
+			(long)elements * ITERATIONS * 1000000L / duration);
+	}
+}
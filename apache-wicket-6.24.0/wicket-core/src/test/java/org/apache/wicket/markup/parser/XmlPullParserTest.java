@@ -454,4 +454,47 @@ public class XmlPullParserTest extends Assert
 		type = parser.next();
 		assertEquals(HttpTagType.CONDITIONAL_COMMENT_ENDIF, type);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * The body text is relative to the position marker at the time the body was parsed
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void bodyTextFromPositionMarker() throws Exception
+	{
+		final XmlPullParser parser = new XmlPullParser();
+		parser.parse("<a>text<b>more text");
+		assertEquals(HttpTagType.TAG, parser.next());
+		assertEquals(HttpTagType.BODY, parser.next());
+		assertEquals("<a>text", parser.getString().toString());
+
+		parser.setPositionMarker();
+		assertEquals(HttpTagType.TAG, parser.next());
+		assertEquals(HttpTagType.BODY, parser.next());
+		parser.setPositionMarker(0);
+		assertEquals("<b>more text", parser.getString().toString());
+	}
+
+	/**
+	 * Names, namespaces and attributes are scanned without regular expressions
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void attributesWithoutRegex() throws Exception
+	{
+		final XmlPullParser parser = new XmlPullParser();
+		parser.parse("<wicket:panel a=\"1 &amp; 2\" b=c.d-e  wicket:id='x' xml:ns:c = \"&lt;\" d/>");
+		XmlTag tag = parser.nextTag();
+		assertEquals("wicket", tag.getNamespace());
+		assertEquals("panel", tag.getName());
+		assertTrue(tag.isOpenClose());
+		assertEquals("1 & 2", tag.getAttributes().getString("a"));
+		assertEquals("c.d-e", tag.getAttributes().getString("b"));
+		assertEquals("x", tag.getAttributes().getString("wicket:id"));
+		assertEquals("<", tag.getAttributes().getString("xml:ns:c"));
+		assertEquals("", tag.getAttributes().getString("d"));
+		assertEquals(5, tag.getAttributes().size());
+	}
+}
@@ -108,6 +108,53 @@ public class PageAccessSynchronizerTest extends Assert
 		assertTrue(!t2locks[0].before(t1locks[0].add(hold)));
 	}
 
+	/**
+	 * Waiting for a page locked by another thread is counted for that page
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void contentionStatistics() throws Exception
+	{
+		final PageAccessSynchronizer sync = new PageAccessSynchronizer(Duration.seconds(5));
+		final Duration hold = Duration.milliseconds(200);
+		final CountDownLatch locked = new CountDownLatch(1);
+
+		Thread t1 = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				sync.lockPage(1);
+				sync.lockPage(2);
+				locked.countDown();
+				hold.sleep();
+				sync.unlockAllPages();
+			}
+		};
+		t1.start();
+		locked.await();
+
+		// page 3 is free, page 1 is held by t1
+		sync.lockPage(3);
+		sync.lockPage(1);
+		t1.join();
+
+		assertEquals(4, sync.getLockCount());
+		assertEquals(1, sync.getContendedLockCount());
+		assertEquals(0, sync.getTimeoutCount());
+		assertTrue(sync.getMaxWaitTime() > 0);
+		assertEquals(sync.getMaxWaitTime(), sync.getTotalWaitTime());
+		assertEquals(Long.valueOf(1), sync.getContentionCounts().get(1));
+		assertNull(sync.getContentionCounts().get(3));
+
+		// only the locks of this thread are left and released at once
+		assertNull(sync.getLocks().get().get(2));
+		assertEquals(2, sync.getLocks().get().size());
+		sync.unlockAllPages();
+		assertTrue(sync.getLocks().get().isEmpty());
+	}
+
 	/**
 	 * @param pages
 	 * @param workers
@@ -16,6 +16,11 @@
  */
 package org.apache.wicket.page.persistent.disk;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -179,6 +184,36 @@ public class PageWindowManagerTest extends Assert
 		assertWindow(window, 8, 50, 10);
 	}
 
+	/**
+	 * The page windows read back from their binary form are the same
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writeAndRead() throws IOException
+	{
+		PageWindowManager manager = new PageWindowManager(100);
+		manager.createPageWindow(1, 40);
+		manager.createPageWindow(2, 40);
+		manager.createPageWindow(3, 40);
+		manager.removePage(2);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		manager.write(new DataOutputStream(bytes));
+		PageWindowManager read = PageWindowManager.read(new DataInputStream(
+			new ByteArrayInputStream(bytes.toByteArray())), 100);
+
+		assertEquals(manager.getTotalSize(), read.getTotalSize());
+		assertWindow(read.getPageWindow(1), 1, 0, 40);
+		assertNull(read.getPageWindow(2));
+		assertWindow(read.getPageWindow(3), 3, 80, 40);
+
+		// the next page is placed where the original manager places it
+		PageWindow expected = manager.createPageWindow(4, 40);
+		assertWindow(read.createPageWindow(4, 40), 4, expected.getFilePartOffset(), 40);
+		assertNull(read.getPageWindow(1));
+	}
+
 
 	private void assertWindow(PageWindow window, int pageId, int filePartOffset, int filePartSize)
 	{
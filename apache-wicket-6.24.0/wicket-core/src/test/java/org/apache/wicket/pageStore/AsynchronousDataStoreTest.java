@@ -20,8 +20,10 @@ import java.security.SecureRandom;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -77,6 +79,113 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * Storing a page which is still waiting in the queue replaces its data instead of queueing it
+	 * again
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void coalesceQueuedPages() throws Exception
+	{
+		final CountDownLatch storing = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		InMemoryPageStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				storing.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 10, 2);
+
+		// blocks the thread of session s1 in the wrapped store
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		Assert.assertTrue(storing.await(5, TimeUnit.SECONDS));
+
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+		dataStore.storeData("s1", 2, new byte[] { 3 });
+		Assert.assertEquals(1, dataStore.getCoalescedCount());
+		Assert.assertEquals(1, dataStore.getQueueSize());
+		Assert.assertArrayEquals(new byte[] { 3 }, dataStore.getData("s1", 2));
+
+		proceed.countDown();
+		long timeout = System.currentTimeMillis() + 5000;
+		while (dataStore.getStoredCount() < 2 && System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, dataStore.getStoredCount());
+		Assert.assertArrayEquals(new byte[] { 3 }, wrapped.getData("s1", 2));
+		Assert.assertEquals(0, dataStore.getSynchronousStoreCount());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * A page stored after its queued entry was removed is queued again instead of replacing the
+	 * data of the removed entry
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void storeAfterRemove() throws Exception
+	{
+		final CountDownLatch storing = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		InMemoryPageStore wrapped = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				storing.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+		AsynchronousDataStore dataStore = new AsynchronousDataStore(wrapped, 10, 1);
+
+		// blocks the page saving thread in the wrapped store
+		dataStore.storeData("s1", 1, new byte[] { 1 });
+		Assert.assertTrue(storing.await(5, TimeUnit.SECONDS));
+
+		dataStore.storeData("s1", 2, new byte[] { 2 });
+		dataStore.removeData("s1", 2);
+		Assert.assertEquals(0, dataStore.getQueueSize());
+
+		dataStore.storeData("s1", 2, new byte[] { 3 });
+		Assert.assertEquals(0, dataStore.getCoalescedCount());
+		Assert.assertEquals(1, dataStore.getQueueSize());
+		Assert.assertArrayEquals(new byte[] { 3 }, dataStore.getData("s1", 2));
+
+		proceed.countDown();
+		long timeout = System.currentTimeMillis() + 5000;
+		while (dataStore.getStoredCount() < 2 && System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		Assert.assertArrayEquals(new byte[] { 3 }, wrapped.getData("s1", 2));
+
+		dataStore.destroy();
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 		protected abstract void r();
@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import org.apache.wicket.page.IManageablePage;
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPage;
+import org.apache.wicket.pageStore.DefaultPageStore.SerializedPagesCache;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultPageStore}
+ */
+public class DefaultPageStoreTest extends Assert
+{
+	private static SerializedPage page(String sessionId, int pageId, int length)
+	{
+		return new SerializedPage(sessionId, pageId, new byte[length]);
+	}
+
+	/**
+	 * The least recently used page is evicted when the number of pages is exceeded
+	 */
+	@Test
+	public void evictsLeastRecentlyUsedByCount()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(2);
+
+		cache.storePage(page("s1", 1, 10));
+		cache.storePage(page("s1", 2, 10));
+		// touch page 1, so page 2 becomes the eldest
+		assertNotNull(cache.getPage("s1", 1));
+		cache.storePage(page("s1", 3, 10));
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.getPage("s1", 1));
+		assertNull(cache.getPage("s1", 2));
+		assertNotNull(cache.getPage("s1", 3));
+	}
+
+	/**
+	 * The least recently used pages are evicted when the number of bytes is exceeded
+	 */
+	@Test
+	public void evictsLeastRecentlyUsedByBytes()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(0, 100);
+
+		cache.storePage(page("s1", 1, 40));
+		cache.storePage(page("s1", 2, 40));
+		assertEquals(80, cache.bytes());
+
+		cache.storePage(page("s1", 3, 40));
+		assertNull(cache.getPage("s1", 1));
+		assertEquals(80, cache.bytes());
+
+		// a page bigger than the whole budget is not kept
+		cache.storePage(page("s1", 4, 101));
+		assertNull(cache.getPage("s1", 4));
+		assertEquals(0, cache.bytes());
+	}
+
+	/**
+	 * Storing a page with the same session and page id replaces the old one
+	 */
+	@Test
+	public void replacesPage()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(10, 1000);
+
+		cache.storePage(page("s1", 1, 10));
+		SerializedPage replacement = page("s1", 1, 20);
+		cache.storePage(replacement);
+
+		assertEquals(1, cache.size());
+		assertEquals(20, cache.bytes());
+		assertSame(replacement, cache.getPage("s1", 1));
+	}
+
+	/**
+	 * Removing single pages and all pages of a session
+	 */
+	@Test
+	public void removePages()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(1000);
+
+		for (int i = 0; i < 100; i++)
+		{
+			cache.storePage(page("s1", i, 1));
+			cache.storePage(page("s2", i, 1));
+		}
+		assertEquals(200, cache.size());
+
+		assertNotNull(cache.removePage("s2", 5));
+		assertNull(cache.removePage("s2", 5));
+		assertEquals(199, cache.size());
+
+		cache.removePages("s1");
+		assertEquals(99, cache.size());
+		assertEquals(99, cache.bytes());
+		assertNull(cache.getPage("s1", 1));
+		assertNotNull(cache.getPage("s2", 1));
+	}
+
+	/**
+	 * A cache without limits does not store anything
+	 */
+	@Test
+	public void disabled()
+	{
+		SerializedPagesCache cache = new SerializedPagesCache(0);
+
+		cache.storePage(page("s1", 1, 10));
+		assertNull(cache.getPage("s1", 1));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Pages are streamed to the data store, also with the default cache, unless the store opts out
+	 */
+	@Test
+	public void streaming()
+	{
+		StreamingDataStore dataStore = new StreamingDataStore();
+		new DefaultPageStore(new JavaSerializer("app"), dataStore, 0).storePage("s1", new Page(1));
+		assertEquals(1, dataStore.streamed);
+
+		// the streamed page is cached too
+		DefaultPageStore pageStore = new DefaultPageStore(new JavaSerializer("app"), dataStore, 40);
+		pageStore.storePage("s1", new Page(2));
+		assertEquals(2, dataStore.streamed);
+		dataStore.removeData("s1", 2);
+		assertEquals(2, pageStore.getPage("s1", 2).getPageId());
+
+		final int[] stored = new int[1];
+		new DefaultPageStore(new JavaSerializer("app"), dataStore, 40)
+		{
+			@Override
+			protected boolean supportsStreaming()
+			{
+				return false;
+			}
+
+			@Override
+			protected void storePageData(String sessionId, int pageId, byte[] data)
+			{
+				stored[0]++;
+				super.storePageData(sessionId, pageId, data);
+			}
+		}.storePage("s1", new Page(3));
+		assertEquals(1, stored[0]);
+		assertEquals(2, dataStore.streamed);
+		assertNotNull(dataStore.getData("s1", 3));
+	}
+
+	private static class Page implements IManageablePage
+	{
+		private final int id;
+
+		private Page(int id)
+		{
+			this.id = id;
+		}
+
+		@Override
+		public boolean isPageStateless()
+		{
+			return false;
+		}
+
+		@Override
+		public int getPageId()
+		{
+			return id;
+		}
+
+		@Override
+		public void detach()
+		{
+		}
+
+		@Override
+		public boolean setFreezePageId(boolean freeze)
+		{
+			return false;
+		}
+	}
+
+	private static class StreamingDataStore extends InMemoryPageStore implements
+		IStreamingDataStore
+	{
+		private int streamed;
+
+		@Override
+		public void storeData(String sessionId, int id, PageDataBuffer data)
+		{
+			streamed++;
+			storeData(sessionId, id, data.toByteArray());
+			data.release();
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.wicket.settings.def.StoreSettings;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeltaDataStore}
+ */
+public class DeltaDataStoreTest extends Assert
+{
+	private static final Random RANDOM = new Random();
+
+	private static byte[] data(int length)
+	{
+		byte[] data = new byte[length];
+		RANDOM.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * @return a copy of the data with a few changed and inserted bytes
+	 */
+	private static byte[] change(byte[] data)
+	{
+		byte[] changed = new byte[data.length + 3];
+		System.arraycopy(data, 0, changed, 0, 100);
+		changed[100] = 1;
+		changed[101] = 2;
+		changed[102] = 3;
+		System.arraycopy(data, 100, changed, 103, data.length - 100);
+		changed[500] ^= 0xFF;
+		return changed;
+	}
+
+	/**
+	 * Consecutive versions are stored as small deltas and read back unchanged
+	 */
+	@Test
+	public void storeVersions()
+	{
+		InMemoryPageStore wrapped = new InMemoryPageStore();
+		DeltaDataStore dataStore = new DeltaDataStore(wrapped, 10);
+
+		byte[] version1 = data(2000);
+		byte[] version2 = change(version1);
+		byte[] version3 = change(version2);
+		dataStore.storeData("s1", 1, version1);
+		dataStore.storeData("s1", 2, version2);
+		// a new version with the same page id
+		dataStore.storeData("s1", 2, version3);
+
+		assertArrayEquals(version1, dataStore.getData("s1", 1));
+		assertArrayEquals(version3, dataStore.getData("s1", 2));
+		assertEquals(1, dataStore.getSnapshotCount());
+		assertEquals(2, dataStore.getDeltaCount());
+		assertEquals(6009, dataStore.getStoredBytes());
+		assertTrue(wrapped.getData("s1", 1).length < 100);
+		assertTrue(wrapped.getData("s1", 2).length < 100);
+
+		// the pages are read from the wrapped data store without the remembered snapshot
+		DeltaDataStore restarted = new DeltaDataStore(wrapped, 10);
+		assertArrayEquals(version3, restarted.getData("s1", 2));
+
+		dataStore.removeData("s1");
+		assertNull(dataStore.getData("s1", 1));
+	}
+
+	/**
+	 * A new snapshot is started after the maximum number of deltas or for different data
+	 */
+	@Test
+	public void newSnapshot()
+	{
+		DeltaDataStore dataStore = new DeltaDataStore(new InMemoryPageStore(), 2);
+
+		byte[] data = data(1000);
+		for (int i = 1; i <= 4; i++)
+		{
+			data = change(data);
+			dataStore.storeData("s1", i, data);
+		}
+		assertEquals(2, dataStore.getSnapshotCount());
+		assertEquals(2, dataStore.getDeltaCount());
+
+		byte[] different = data(1000);
+		dataStore.storeData("s1", 5, different);
+		assertEquals(3, dataStore.getSnapshotCount());
+		assertArrayEquals(different, dataStore.getData("s1", 5));
+		assertArrayEquals(data, dataStore.getData("s1", 4));
+
+		// other sessions have their own snapshots
+		dataStore.storeData("s2", 1, data);
+		assertEquals(4, dataStore.getSnapshotCount());
+	}
+
+	/**
+	 * A page which becomes the new snapshot is written once
+	 */
+	@Test
+	public void unrelatedPages()
+	{
+		DeltaDataStore dataStore = new DeltaDataStore(new InMemoryPageStore(), 10);
+
+		byte[][] pages = new byte[10][];
+		for (int i = 0; i < pages.length; i++)
+		{
+			pages[i] = data(1000);
+			dataStore.storeData("s1", i, pages[i]);
+		}
+		assertEquals(10, dataStore.getSnapshotCount());
+		assertEquals(0, dataStore.getDeltaCount());
+		// the data of each page, a reference to it and the last snapshot id
+		assertTrue(dataStore.getWrittenBytes() < dataStore.getStoredBytes() + pages.length * 50);
+		for (int i = 0; i < pages.length; i++)
+		{
+			assertArrayEquals(pages[i], dataStore.getData("s1", i));
+		}
+	}
+
+	/**
+	 * The snapshot ids stored before a restart are not reused
+	 */
+	@Test
+	public void restart()
+	{
+		InMemoryPageStore wrapped = new InMemoryPageStore();
+		byte[] page1 = data(1000);
+		byte[] page2 = change(page1);
+		DeltaDataStore dataStore = new DeltaDataStore(wrapped, 10);
+		dataStore.storeData("s1", 1, page1);
+		dataStore.storeData("s1", 2, page2);
+
+		byte[] page3 = data(1000);
+		DeltaDataStore restarted = new DeltaDataStore(wrapped, 10);
+		restarted.storeData("s1", 3, page3);
+		assertArrayEquals(page1, restarted.getData("s1", 1));
+		assertArrayEquals(page2, restarted.getData("s1", 2));
+		assertArrayEquals(page3, restarted.getData("s1", 3));
+	}
+
+	/**
+	 * Data which has not been written by the delta data store is returned unchanged
+	 */
+	@Test
+	public void foreignData()
+	{
+		InMemoryPageStore wrapped = new InMemoryPageStore();
+		byte[] data = data(100);
+		data[0] = (byte)0xAC;
+		wrapped.storeData("s1", 1, data);
+		// starts like the type of a record written by older versions
+		byte[] other = data(100);
+		other[0] = 1;
+		wrapped.storeData("s1", 2, other);
+
+		DeltaDataStore dataStore = new DeltaDataStore(wrapped, 10);
+		assertArrayEquals(data, dataStore.getData("s1", 1));
+		assertArrayEquals(other, dataStore.getData("s1", 2));
+	}
+
+	/**
+	 * The newest pages are still available when the disk data store evicts the oldest data of the
+	 * session
+	 */
+	@Test
+	public void diskDataStoreOverflow()
+	{
+		java.io.File fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		DiskDataStore diskDataStore = new DiskDataStore("diskDataStoreOverflow",
+			fileStoreFolder, Bytes.kilobytes(3), 0, Duration.NONE);
+		Files.removeFolder(diskDataStore.getStoreFolder());
+		DeltaDataStore dataStore = new DeltaDataStore(diskDataStore, 100);
+
+		// versions which differ from the first one in a few bytes
+		byte[][] pages = new byte[100][];
+		byte[] data = data(1000);
+		for (int i = 0; i < pages.length; i++)
+		{
+			pages[i] = data.clone();
+			pages[i][500] = (byte)i;
+			pages[i][900] = (byte)i;
+			dataStore.storeData("s1", i, pages[i]);
+		}
+		assertEquals(1, dataStore.getSnapshotCount());
+		assertTrue(dataStore.getWrittenBytes() > 3 * 1024);
+
+		assertNull(dataStore.getData("s1", 0));
+		for (int i = pages.length - 20; i < pages.length; i++)
+		{
+			assertArrayEquals(pages[i], dataStore.getData("s1", i));
+		}
+
+		dataStore.removeData("s1");
+		dataStore.destroy();
+	}
+
+	/**
+	 * The delta encoding round trip
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void encodeAndDecode() throws Exception
+	{
+		byte[] base = data(1000);
+		byte[] data = Arrays.copyOfRange(base, 300, 900);
+		byte[] delta = DeltaDataStore.encode(1, 2L, base, data);
+		assertTrue(delta.length < 50);
+
+		int header = DeltaDataStore.HEADER_LENGTH + 12;
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta, header,
+			delta.length - header));
+		assertArrayEquals(data, DeltaDataStore.decode(in, base));
+
+		byte[] empty = new byte[0];
+		delta = DeltaDataStore.encode(1, 2L, base, empty);
+		in = new DataInputStream(new ByteArrayInputStream(delta, header, delta.length - header));
+		assertArrayEquals(empty, DeltaDataStore.decode(in, base));
+	}
+}
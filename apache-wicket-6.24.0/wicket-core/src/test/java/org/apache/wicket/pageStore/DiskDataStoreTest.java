@@ -16,6 +16,8 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +31,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.settings.def.StoreSettings;
 import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.file.Files;
 import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -381,6 +385,151 @@ public class DiskDataStoreTest extends Assert
 		dataStore.destroy();
 	}
 
+	/**
+	 * store() with pooled file channels
+	 */
+	@Test
+	public void storeWithFileChannelPool()
+	{
+		generateFiles();
+
+		IStoreSettings storeSettings = new StoreSettings(null);
+		java.io.File fileStoreFolder = storeSettings.getFileStoreFolder();
+
+		DiskDataStore diskDataStore = new DiskDataStore("app1", fileStoreFolder,
+			MAX_SIZE_PER_SESSION, SESSION_COUNT / 2);
+		dataStore = diskDataStore;
+		int asynchronousQueueCapacity = storeSettings.getAsynchronousQueueCapacity();
+		dataStore = new AsynchronousDataStore(dataStore, asynchronousQueueCapacity);
+
+		doTestDataStore();
+
+		FileChannelPool pool = diskDataStore.getFileChannelPool();
+		assertTrue(pool.getHits() > 0);
+		assertTrue(pool.getMisses() > 0);
+		// all sessions are removed at the end of the test
+		assertEquals(0, pool.getSize());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * The pages written before the last checkpoint are available after a crash
+	 */
+	@Test
+	public void restartAfterCrash()
+	{
+		java.io.File fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		DiskDataStore store = new DiskDataStore("restartAfterCrash", fileStoreFolder,
+			MAX_SIZE_PER_SESSION, 0, Duration.NONE);
+		Files.removeFolder(store.getStoreFolder());
+
+		byte[] page1 = new byte[] { 1, 2, 3 };
+		byte[] page2 = new byte[] { 4, 5 };
+		store.storeData("s1", 1, page1);
+		store.storeData("s2", 2, page2);
+		store.checkpoint();
+		store.storeData("s1", 3, new byte[] { 6 });
+
+		// the first store is not destroyed
+		DiskDataStore restarted = new DiskDataStore("restartAfterCrash", fileStoreFolder,
+			MAX_SIZE_PER_SESSION, 0, Duration.NONE);
+		assertArrayEquals(page1, restarted.getData("s1", 1));
+		assertArrayEquals(page2, restarted.getData("s2", 2));
+		assertNull(restarted.getData("s1", 3));
+
+		restarted.removeData("s1");
+		restarted.removeData("s2");
+		assertFalse(restarted.getSessionFolder("s1", false).exists());
+		restarted.destroy();
+	}
+
+	/**
+	 * Session folders without an index, e.g. written by older versions, are deleted when the session
+	 * is accessed, nothing is read at startup
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void deleteSessionFoldersWithoutIndex() throws IOException
+	{
+		java.io.File fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		DiskDataStore store = new DiskDataStore("deleteSessionFoldersWithoutIndex",
+			fileStoreFolder, MAX_SIZE_PER_SESSION, 0, Duration.NONE);
+		Files.removeFolder(store.getStoreFolder());
+
+		byte[] page = new byte[] { 1, 2, 3 };
+		store.storeData("s1", 1, page);
+		store.destroy();
+
+		// the data file of an older version, without an index
+		java.io.File legacyFolder = store.getSessionFolder("legacy", true);
+		Files.writeTo(new java.io.File(legacyFolder, "data"), new ByteArrayInputStream(
+			new byte[] { 4, 5 }));
+
+		DiskDataStore restarted = new DiskDataStore("deleteSessionFoldersWithoutIndex",
+			fileStoreFolder, MAX_SIZE_PER_SESSION, 0, Duration.NONE);
+		assertTrue(legacyFolder.exists());
+		assertNull(restarted.getData("legacy", 1));
+		assertFalse(legacyFolder.exists());
+		assertFalse(legacyFolder.getParentFile().getParentFile().exists());
+		assertArrayEquals(page, restarted.getData("s1", 1));
+
+		restarted.removeData("s1");
+		restarted.destroy();
+	}
+
+	/**
+	 * Pages written from a {@link PageDataBuffer} are read back like the ones stored as byte array
+	 */
+	@Test
+	public void storeStreamed()
+	{
+		java.io.File fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		DiskDataStore store = new DiskDataStore("storeStreamed", fileStoreFolder,
+			MAX_SIZE_PER_SESSION, 0, Duration.NONE);
+		Files.removeFolder(store.getStoreFolder());
+
+		byte[] page = new byte[PageDataBuffer.CHUNK_SIZE * 2 + 11];
+		new Random().nextBytes(page);
+		PageDataBuffer buffer = new PageDataBuffer();
+		buffer.write(page, 0, page.length);
+		store.storeData("s1", 1, buffer);
+
+		// the data store has released the buffer
+		assertFalse(buffer.retain());
+		assertArrayEquals(page, store.getData("s1", 1));
+
+		store.removeData("s1");
+		store.destroy();
+	}
+
+	/**
+	 * A page overwritten after the last checkpoint is not returned instead of another one
+	 */
+	@Test
+	public void overwrittenPageAfterCrash()
+	{
+		java.io.File fileStoreFolder = new StoreSettings(null).getFileStoreFolder();
+		Bytes maxSize = Bytes.bytes(2 * (DiskDataStore.PAGE_HEADER_SIZE + 40));
+		DiskDataStore store = new DiskDataStore("overwrittenPageAfterCrash", fileStoreFolder,
+			maxSize, 0, Duration.NONE);
+		Files.removeFolder(store.getStoreFolder());
+
+		store.storeData("s1", 1, new byte[40]);
+		store.checkpoint();
+		store.storeData("s1", 2, new byte[40]);
+		// wraps around and overwrites page 1
+		store.storeData("s1", 3, new byte[40]);
+
+		DiskDataStore restarted = new DiskDataStore("overwrittenPageAfterCrash",
+			fileStoreFolder, maxSize, 0, Duration.NONE);
+		assertNull(restarted.getData("s1", 1));
+
+		restarted.removeData("s1");
+		restarted.destroy();
+	}
+
 	/**
 	 * https://issues.apache.org/jira/browse/WICKET-4478
 	 *
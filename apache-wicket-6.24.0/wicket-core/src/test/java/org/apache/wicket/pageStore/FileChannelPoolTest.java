@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileChannelPool}
+ */
+public class FileChannelPoolTest extends Assert
+{
+	private File file;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		file = File.createTempFile("FileChannelPoolTest", null);
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		file.delete();
+	}
+
+	private FileChannel open() throws IOException
+	{
+		return new RandomAccessFile(file, "rw").getChannel();
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void checkoutAfterCheckin() throws IOException
+	{
+		FileChannelPool pool = new FileChannelPool(2);
+
+		assertNull(pool.checkout("a"));
+		FileChannel channel = open();
+		pool.checkin("a", channel);
+		assertEquals(1, pool.getSize());
+
+		assertSame(channel, pool.checkout("a"));
+		// a checked out channel is not in the pool anymore
+		assertEquals(0, pool.getSize());
+		assertNull(pool.checkout("a"));
+
+		assertEquals(1, pool.getHits());
+		assertEquals(2, pool.getMisses());
+		channel.close();
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@Test
+	public void evictsLeastRecentlyUsed() throws IOException
+	{
+		FileChannelPool pool = new FileChannelPool(2);
+
+		FileChannel a = open();
+		FileChannel b = open();
+		FileChannel c = open();
+		pool.checkin("a", a);
+		pool.checkin("b", b);
+		pool.checkin("c", c);
+
+		assertEquals(2, pool.getSize());
+		assertFalse(a.isOpen());
+		assertTrue(b.isOpen());
+		assertTrue(c.isOpen());
+
+		pool.remove("b");
+		assertFalse(b.isOpen());
+
+		pool.clear();
+		assertFalse(c.isOpen());
+		assertEquals(0, pool.getSize());
+	}
+
+	/**
+	 * A closed channel is never handed out.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void closedChannelIsDropped() throws IOException
+	{
+		FileChannelPool pool = new FileChannelPool(1);
+
+		FileChannel channel = open();
+		pool.checkin("a", channel);
+		channel.close();
+
+		assertNull(pool.checkout("a"));
+		assertEquals(0, pool.getHits());
+	}
+}
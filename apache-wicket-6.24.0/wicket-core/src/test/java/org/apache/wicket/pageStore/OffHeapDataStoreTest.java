@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OffHeapDataStore}
+ */
+public class OffHeapDataStoreTest extends Assert
+{
+	private static final Random RANDOM = new Random();
+
+	private static byte[] data(int length)
+	{
+		byte[] data = new byte[length];
+		RANDOM.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Pages spanning several blocks are read back unchanged
+	 */
+	@Test
+	public void storeAndGet()
+	{
+		OffHeapDataStore dataStore = new OffHeapDataStore(Bytes.megabytes(2));
+
+		byte[] small = data(10);
+		byte[] large = data(OffHeapDataStore.BLOCK_SIZE * 3 + 7);
+		byte[] empty = new byte[0];
+		dataStore.storeData("s1", 1, small);
+		dataStore.storeData("s1", 2, large);
+		dataStore.storeData("s2", 1, empty);
+
+		assertArrayEquals(small, dataStore.getData("s1", 1));
+		assertArrayEquals(large, dataStore.getData("s1", 2));
+		assertArrayEquals(empty, dataStore.getData("s2", 1));
+		assertNull(dataStore.getData("s2", 2));
+		assertEquals(3, dataStore.getPageCount());
+		assertEquals(small.length + large.length, dataStore.getStoredBytes());
+
+		// replacing a page frees its old blocks
+		byte[] replacement = data(5);
+		dataStore.storeData("s1", 2, replacement);
+		assertArrayEquals(replacement, dataStore.getData("s1", 2));
+		assertEquals(small.length + replacement.length, dataStore.getStoredBytes());
+
+		dataStore.removeData("s1");
+		assertNull(dataStore.getData("s1", 1));
+		assertNull(dataStore.getData("s1", 2));
+		assertEquals(1, dataStore.getPageCount());
+
+		dataStore.removeData("s2", 1);
+		assertEquals(0, dataStore.getPageCount());
+		assertEquals(0, dataStore.getStoredBytes());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * The least recently used pages of all sessions are evicted to the overflow data store
+	 */
+	@Test
+	public void evictToOverflow()
+	{
+		InMemoryPageStore overflow = new InMemoryPageStore();
+		OffHeapDataStore dataStore = new OffHeapDataStore(
+			Bytes.bytes(OffHeapDataStore.BLOCK_SIZE * 4), overflow);
+
+		byte[] page1 = data(OffHeapDataStore.BLOCK_SIZE * 2);
+		byte[] page2 = data(OffHeapDataStore.BLOCK_SIZE);
+		byte[] page3 = data(OffHeapDataStore.BLOCK_SIZE);
+		dataStore.storeData("s1", 1, page1);
+		dataStore.storeData("s2", 2, page2);
+		dataStore.storeData("s1", 3, page3);
+		assertEquals(0, dataStore.getEvictionCount());
+
+		// touch page 1, so page 2 is the least recently used one
+		assertArrayEquals(page1, dataStore.getData("s1", 1));
+
+		byte[] page4 = data(OffHeapDataStore.BLOCK_SIZE);
+		dataStore.storeData("s2", 4, page4);
+
+		assertEquals(1, dataStore.getEvictionCount());
+		assertEquals(3, dataStore.getPageCount());
+		assertArrayEquals(page2, overflow.getData("s2", 2));
+		// still readable through the overflow data store
+		assertArrayEquals(page2, dataStore.getData("s2", 2));
+		assertArrayEquals(page4, dataStore.getData("s2", 4));
+
+		// a page bigger than the whole memory goes straight to the overflow data store
+		byte[] huge = data(OffHeapDataStore.BLOCK_SIZE * 5);
+		dataStore.storeData("s1", 5, huge);
+		assertArrayEquals(huge, overflow.getData("s1", 5));
+		assertEquals(3, dataStore.getPageCount());
+
+		dataStore.removeData("s2");
+		assertNull(dataStore.getData("s2", 2));
+		assertNull(dataStore.getData("s2", 4));
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * A page replaced by a version too big for the memory is read from the overflow data store
+	 */
+	@Test
+	public void replaceWithOversized()
+	{
+		InMemoryPageStore overflow = new InMemoryPageStore();
+		OffHeapDataStore dataStore = new OffHeapDataStore(
+			Bytes.bytes(OffHeapDataStore.BLOCK_SIZE * 2), overflow);
+
+		dataStore.storeData("s1", 1, data(OffHeapDataStore.BLOCK_SIZE));
+		byte[] huge = data(OffHeapDataStore.BLOCK_SIZE * 3);
+		dataStore.storeData("s1", 1, huge);
+		assertEquals(0, dataStore.getPageCount());
+		assertEquals(0, dataStore.getStoredBytes());
+		assertArrayEquals(huge, dataStore.getData("s1", 1));
+
+		// without an overflow data store the older page is dropped as well
+		dataStore = new OffHeapDataStore(Bytes.bytes(OffHeapDataStore.BLOCK_SIZE * 2));
+		dataStore.storeData("s1", 1, data(OffHeapDataStore.BLOCK_SIZE));
+		dataStore.storeData("s1", 1, huge);
+		assertNull(dataStore.getData("s1", 1));
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * A page being written to the overflow data store is still readable, and removing its session
+	 * meanwhile removes it from the overflow data store too
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void removeWhileOverflowing() throws Exception
+	{
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final InMemoryPageStore overflow = new InMemoryPageStore()
+		{
+			@Override
+			public void storeData(String sessionId, int pageId, byte[] pageAsBytes)
+			{
+				writing.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.storeData(sessionId, pageId, pageAsBytes);
+			}
+		};
+		final OffHeapDataStore dataStore = new OffHeapDataStore(
+			Bytes.bytes(OffHeapDataStore.BLOCK_SIZE), overflow);
+
+		byte[] page1 = data(OffHeapDataStore.BLOCK_SIZE);
+		dataStore.storeData("s1", 1, page1);
+
+		Thread evicting = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				dataStore.storeData("s2", 2, data(OffHeapDataStore.BLOCK_SIZE));
+			}
+		};
+		evicting.start();
+		assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+		// neither in memory nor in the overflow data store yet
+		assertArrayEquals(page1, dataStore.getData("s1", 1));
+
+		Thread removing = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				dataStore.removeData("s1");
+			}
+		};
+		removing.start();
+
+		proceed.countDown();
+		evicting.join(5000);
+		removing.join(5000);
+
+		assertNull(overflow.getData("s1", 1));
+		assertNull(dataStore.getData("s1", 1));
+
+		dataStore.destroy();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PageDataBuffer}
+ */
+public class PageDataBufferTest extends Assert
+{
+	/**
+	 * Data spanning several chunks is returned unchanged
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void writeChunks() throws IOException
+	{
+		byte[] data = new byte[PageDataBuffer.CHUNK_SIZE * 2 + 5];
+		new Random().nextBytes(data);
+
+		PageDataBuffer buffer = new PageDataBuffer();
+		buffer.write(data[0]);
+		buffer.write(data, 1, PageDataBuffer.CHUNK_SIZE);
+		buffer.write(data, PageDataBuffer.CHUNK_SIZE + 1, data.length - PageDataBuffer.CHUNK_SIZE - 1);
+
+		assertEquals(data.length, buffer.length());
+		assertArrayEquals(data, buffer.toByteArray());
+
+		ByteBuffer[] buffers = buffer.toByteBuffers();
+		assertEquals(3, buffers.length);
+		int length = 0;
+		for (ByteBuffer byteBuffer : buffers)
+		{
+			length += byteBuffer.remaining();
+		}
+		assertEquals(data.length, length);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(out);
+		assertArrayEquals(data, out.toByteArray());
+
+		CRC32 expected = new CRC32();
+		expected.update(data);
+		CRC32 actual = new CRC32();
+		buffer.updateChecksum(actual);
+		assertEquals(expected.getValue(), actual.getValue());
+
+		buffer.release();
+	}
+
+	/**
+	 * The buffer is released with its last reference
+	 */
+	@Test
+	public void references()
+	{
+		PageDataBuffer buffer = new PageDataBuffer();
+		buffer.write(1);
+
+		assertTrue(buffer.retain());
+		buffer.release();
+		assertEquals(1, buffer.length());
+
+		buffer.release();
+		assertEquals(0, buffer.length());
+		assertFalse(buffer.retain());
+	}
+}
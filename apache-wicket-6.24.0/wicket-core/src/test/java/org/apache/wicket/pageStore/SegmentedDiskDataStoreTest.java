@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentedDiskDataStore}
+ */
+public class SegmentedDiskDataStoreTest extends Assert
+{
+	private static final Random RANDOM = new Random();
+
+	private File folder;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("SegmentedDiskDataStoreTest", null);
+		folder.delete();
+		folder.mkdirs();
+	}
+
+	/**
+	 */
+	@After
+	public void after()
+	{
+		Files.removeFolder(folder);
+	}
+
+	private SegmentedDiskDataStore newDataStore(Bytes maxSizePerSession)
+	{
+		// the compaction is triggered explicitly by the tests
+		return new SegmentedDiskDataStore("app", folder, maxSizePerSession, Bytes.bytes(100),
+			Duration.hours(1));
+	}
+
+	private static byte[] data(int length)
+	{
+		byte[] data = new byte[length];
+		RANDOM.nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Pages of several sessions are stored in shared segments
+	 */
+	@Test
+	public void storeAndGet()
+	{
+		SegmentedDiskDataStore dataStore = newDataStore(Bytes.megabytes(1));
+
+		byte[] page1 = data(60);
+		byte[] page2 = data(60);
+		byte[] page3 = data(30);
+		dataStore.storeData("s1", 1, page1);
+		dataStore.storeData("s2", 1, page2);
+		dataStore.storeData("s1", 2, page3);
+
+		assertArrayEquals(page1, dataStore.getData("s1", 1));
+		assertArrayEquals(page2, dataStore.getData("s2", 1));
+		assertArrayEquals(page3, dataStore.getData("s1", 2));
+		assertNull(dataStore.getData("s2", 2));
+		assertEquals(2, dataStore.getSegmentCount());
+		assertEquals(150, dataStore.getLiveBytes());
+
+		dataStore.removeData("s1", 1);
+		assertNull(dataStore.getData("s1", 1));
+		dataStore.removeData("s2");
+		assertNull(dataStore.getData("s2", 1));
+		assertEquals(30, dataStore.getLiveBytes());
+		// removing is only an index update
+		assertEquals(2, dataStore.getSegmentCount());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * The oldest pages of a session are removed when the session exceeds its limit
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		SegmentedDiskDataStore dataStore = newDataStore(Bytes.bytes(100));
+
+		dataStore.storeData("s1", 1, data(40));
+		dataStore.storeData("s1", 2, data(40));
+		// storing again moves the page at the end of the store order
+		dataStore.storeData("s1", 1, data(40));
+		dataStore.storeData("s1", 3, data(40));
+
+		assertNull(dataStore.getData("s1", 2));
+		assertNotNull(dataStore.getData("s1", 1));
+		assertNotNull(dataStore.getData("s1", 3));
+		assertEquals(80, dataStore.getLiveBytes());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * The compaction moves the live records out of sparse segments and deletes them
+	 */
+	@Test
+	public void compact()
+	{
+		SegmentedDiskDataStore dataStore = newDataStore(Bytes.megabytes(1));
+
+		byte[] live = data(20);
+		dataStore.storeData("s1", 1, live);
+		for (int i = 2; i <= 5; i++)
+		{
+			dataStore.storeData("s2", i, data(20));
+		}
+		// a new segment is started for the next record
+		dataStore.storeData("s3", 1, data(50));
+		assertEquals(2, dataStore.getSegmentCount());
+
+		dataStore.removeData("s2");
+		dataStore.compact();
+
+		assertEquals(1, dataStore.getCompactedCount());
+		assertArrayEquals(live, dataStore.getData("s1", 1));
+		assertEquals(70, dataStore.getLiveBytes());
+		assertEquals(1, dataStore.getSegmentCount());
+		assertEquals(70, dataStore.getSegmentBytes());
+
+		dataStore.destroy();
+	}
+
+	/**
+	 * The pages are available again after a restart
+	 */
+	@Test
+	public void restart()
+	{
+		SegmentedDiskDataStore dataStore = newDataStore(Bytes.megabytes(1));
+
+		byte[] page1 = data(60);
+		byte[] page2 = data(60);
+		dataStore.storeData("s1", 1, page1);
+		dataStore.storeData("s2", 1, page2);
+		dataStore.storeData("s2", 2, data(60));
+		dataStore.removeData("s2", 2);
+		dataStore.destroy();
+
+		dataStore = newDataStore(Bytes.megabytes(1));
+		assertArrayEquals(page1, dataStore.getData("s1", 1));
+		assertArrayEquals(page2, dataStore.getData("s2", 1));
+		assertNull(dataStore.getData("s2", 2));
+		assertEquals(120, dataStore.getLiveBytes());
+
+		byte[] page3 = data(10);
+		dataStore.storeData("s1", 3, page3);
+		assertArrayEquals(page3, dataStore.getData("s1", 3));
+		dataStore.destroy();
+	}
+
+	/**
+	 * The pages stored up to the last checkpoint are available after a crash, i.e. a restart
+	 * without {@link SegmentedDiskDataStore#destroy()}
+	 */
+	@Test
+	public void restartAfterCrash()
+	{
+		SegmentedDiskDataStore crashed = newDataStore(Bytes.megabytes(1));
+
+		byte[] page1 = data(60);
+		crashed.storeData("s1", 1, page1);
+		crashed.checkpoint();
+		crashed.storeData("s1", 2, data(60));
+
+		SegmentedDiskDataStore dataStore = newDataStore(Bytes.megabytes(1));
+		assertArrayEquals(page1, dataStore.getData("s1", 1));
+		assertNull(dataStore.getData("s1", 2));
+		assertEquals(60, dataStore.getLiveBytes());
+		dataStore.destroy();
+
+		crashed.destroy();
+	}
+}
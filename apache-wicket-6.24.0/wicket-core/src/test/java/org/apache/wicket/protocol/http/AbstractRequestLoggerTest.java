@@ -16,6 +16,11 @@
  */
 package org.apache.wicket.protocol.http;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.ThreadContext;
 import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.protocol.http.IRequestLogger.RequestData;
 import org.junit.Test;
@@ -77,6 +82,102 @@ public class AbstractRequestLoggerTest extends WicketTestCase
 		assertEquals(4, logger.getRequests().size());
 		assertEquals("8", logger.getRequests().get(3).getRequestedUrl());
 }
+
+	/**
+	 * The most recent requests are kept when the window is resized.
+	 */
+	@Test
+	public void resize()
+	{
+		tester.getApplication().getRequestLoggerSettings().setRequestsWindowSize(4);
+
+		AbstractRequestLogger logger = newRequestLogger();
+		for (int i = 0; i < 6; i++)
+		{
+			logger.addRequest(requestData());
+		}
+		assertEquals("[2, 3, 4, 5]", urls(logger));
+
+		tester.getApplication().getRequestLoggerSettings().setRequestsWindowSize(2);
+		logger.addRequest(requestData());
+		assertEquals("[5, 6]", urls(logger));
+
+		tester.getApplication().getRequestLoggerSettings().setRequestsWindowSize(3);
+		logger.addRequest(requestData());
+		assertEquals("[5, 6, 7]", urls(logger));
+		logger.addRequest(requestData());
+		assertEquals("[6, 7, 8]", urls(logger));
+	}
+
+	/**
+	 * Requests are added concurrently without losing the aggregates.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void concurrentRequests() throws Exception
+	{
+		tester.getApplication().getRequestLoggerSettings().setRequestsWindowSize(16);
+
+		final AbstractRequestLogger logger = newRequestLogger();
+		final Application application = tester.getApplication();
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					ThreadContext.setApplication(application);
+					try
+					{
+						for (int i = 0; i < 1000; i++)
+						{
+							RequestData data = new RequestData();
+							data.setTimeTaken(10);
+							logger.addRequest(data);
+							logger.getRequests();
+						}
+					}
+					finally
+					{
+						ThreadContext.detach();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(16, logger.getRequests().size());
+		assertEquals(10, logger.getAverageRequestTime());
+	}
+
+	private AbstractRequestLogger newRequestLogger()
+	{
+		return new AbstractRequestLogger()
+		{
+			@Override
+			protected void log(RequestData rd, SessionData sd)
+			{
+			}
+		};
+	}
+
+	private String urls(AbstractRequestLogger logger)
+	{
+		List<String> urls = new ArrayList<String>();
+		for (RequestData data : logger.getRequests())
+		{
+			urls.add(data.getRequestedUrl());
+		}
+		return urls.toString();
+	}
 	
 	private RequestData requestData() {
 		RequestData data = new RequestData();
@@ -23,6 +23,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.wicket.util.SlowTests;
+import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 import org.junit.Assert;
@@ -84,6 +85,84 @@ public class StoredResponsesMapTest extends Assert
 		map.put("1", new Object());
 	}
 
+	/**
+	 * Verifies that the oldest entries are evicted when the stored responses use more bytes than
+	 * allowed, and that a response bigger than the maximum is not stored at all
+	 */
+	@Test
+	public void maxBytes()
+	{
+		StoredResponsesMap map = new StoredResponsesMap(1000, Bytes.bytes(20000),
+			Duration.days(1));
+		map.put("1", newResponse());
+		map.put("2", newResponse());
+		assertEquals(2, map.size());
+		assertTrue(map.getBytes() <= 20000);
+
+		map.put("3", newResponse());
+		assertEquals(2, map.size());
+		assertFalse(map.containsKey("1"));
+		assertTrue(map.containsKey("2"));
+		assertTrue(map.containsKey("3"));
+		assertEquals(1, map.getEvictions());
+
+		BufferedWebResponse big = new BufferedWebResponse(null);
+		big.write(new byte[30000]);
+		map.put("4", big);
+		assertFalse(map.containsKey("4"));
+		assertEquals(2, map.size());
+		assertEquals(2, map.getEvictions());
+	}
+
+	/**
+	 * Verifies that expired entries are removed without accessing the map
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void expiresInBackground() throws Exception
+	{
+		StoredResponsesMap map = new StoredResponsesMap(1000, Duration.milliseconds(100));
+		map.put("1", newResponse());
+		map.put("2", newResponse());
+		assertTrue(map.getBytes() > 0);
+
+		TimeUnit.MILLISECONDS.sleep(500);
+		assertEquals(0, map.size());
+		assertEquals(0, map.getBytes());
+		assertEquals(2, map.getExpirations());
+
+		map.destroy();
+	}
+
+	/**
+	 * Verifies the counted hits and misses
+	 */
+	@Test
+	public void hitsAndMisses()
+	{
+		StoredResponsesMap map = new StoredResponsesMap(1000, Duration.days(1));
+		BufferedWebResponse response = newResponse();
+		map.put("1", response);
+
+		assertSame(response, map.remove("1"));
+		assertNull(map.remove("1"));
+		assertNull(map.get("2"));
+		assertEquals(1, map.getHits());
+		assertEquals(2, map.getMisses());
+		assertEquals(0, map.size());
+		assertEquals(0, map.getBytes());
+
+		map.destroy();
+	}
+
+	private static BufferedWebResponse newResponse()
+	{
+		BufferedWebResponse response = new BufferedWebResponse(null);
+		response.write("<html><body>buffered</body></html>");
+		return response;
+	}
+
 	/**
 	 * <a href="https://issues.apache.org/jira/browse/WICKET-3736">WICKET-3736</a>
 	 * 
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.MarkupStream;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.response.filter.EmptySrcAttributeCheckFilter;
+import org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy;
+import org.apache.wicket.util.lang.Exceptions;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StreamingWebResponse} used by one pass rendering
+ */
+public class StreamingWebResponseTest extends WicketTestCase
+{
+	/** The content of the servlet response when the body was rendered */
+	private static String sentBeforeBody;
+
+	@Override
+	protected WebApplication newApplication()
+	{
+		return new MockApplication()
+		{
+			// no response filters are registered in deployment mode
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+
+			@Override
+			protected void init()
+			{
+				super.init();
+
+				getRequestCycleSettings().setRenderStrategy(RenderStrategy.ONE_PASS_RENDER);
+			}
+		};
+	}
+
+	/**
+	 * The head is sent before the body is rendered.
+	 */
+	@Test
+	public void streamHead()
+	{
+		tester.startPage(new StreamedPage(false));
+		String buffered = tester.getLastResponseAsString();
+		assertEquals("", sentBeforeBody);
+
+		tester.getApplication().getRequestCycleSettings().setStreamOnePassRender(true);
+		tester.startPage(new StreamedPage(false));
+		assertEquals(buffered, tester.getLastResponseAsString());
+		assertTrue(sentBeforeBody.contains("<title>streamed</title></head>"));
+		assertFalse(sentBeforeBody.contains("</body>"));
+	}
+
+	/**
+	 * Rendering fails after the head was sent.
+	 */
+	@Test
+	public void exceptionAfterStreaming()
+	{
+		tester.getApplication().getRequestCycleSettings().setStreamOnePassRender(true);
+		try
+		{
+			tester.startPage(new StreamedPage(true));
+			fail();
+		}
+		catch (StreamedResponseException expected)
+		{
+			assertNotNull(Exceptions.findCause(expected, IllegalStateException.class));
+		}
+	}
+
+	/**
+	 * No error page is rendered after the head was sent.
+	 */
+	@Test
+	public void giveUpRespondingAfterStreaming()
+	{
+		tester.getApplication().getRequestCycleSettings().setStreamOnePassRender(true);
+		tester.setExposeExceptions(false);
+		tester.startPage(new StreamedPage(true));
+		String document = tester.getLastResponseAsString();
+		assertTrue(document.contains("</head>"));
+		assertFalse(document.contains("failed"));
+	}
+
+	/**
+	 * Pages are not streamed if there are response filters.
+	 */
+	@Test
+	public void responseFilters()
+	{
+		tester.getApplication().getRequestCycleSettings().setStreamOnePassRender(true);
+		tester.getApplication().getRequestCycleSettings().addResponseFilter(
+			new EmptySrcAttributeCheckFilter());
+		tester.startPage(new StreamedPage(false));
+		assertEquals("", sentBeforeBody);
+	}
+
+	/**
+	 * A page with a component which records what was sent before it was rendered
+	 */
+	private static class StreamedPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		public StreamedPage(final boolean fail)
+		{
+			add(new Label("label", "body")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag)
+				{
+					sentBeforeBody = ((MockHttpServletResponse)getResponse().getContainerResponse())
+						.getDocument();
+					if (fail)
+					{
+						throw new IllegalStateException("failed");
+					}
+					super.onComponentTagBody(markupStream, openTag);
+				}
+			});
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head><title>streamed</title></head><body><span wicket:id=\"label\"></span></body></html>");
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.pagecache;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.protocol.http.mock.MockHttpServletRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StatelessPageCacheMapper}
+ */
+public class StatelessPageCacheMapperTest extends WicketTestCase
+{
+	private static int instances;
+
+	private StatelessPageCache cache;
+
+	@Override
+	protected WebApplication newApplication()
+	{
+		instances = 0;
+		cache = new StatelessPageCache(Bytes.kilobytes(100), Duration.ONE_HOUR);
+
+		return new MockApplication()
+		{
+			@Override
+			protected void init()
+			{
+				super.init();
+
+				mountPage("stateless", StatelessPage.class);
+				mountPage("stateful", StatefulPage.class);
+				mountPage("headers", HeaderPage.class);
+				setRootRequestMapper(new StatelessPageCacheMapper(getRootRequestMapper(), cache));
+			}
+		};
+	}
+
+	/**
+	 * The second request is served from the cache without creating the page.
+	 */
+	@Test
+	public void cachedResponse()
+	{
+		get("stateless?name=one");
+		String document = tester.getLastResponseAsString();
+		assertTrue(document.contains("one"));
+		assertNotNull(tester.getLastResponse().getHeader("ETag"));
+
+		get("stateless?name=one");
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(document, tester.getLastResponseAsString());
+		assertEquals(1, instances);
+		assertEquals(1, cache.getHits());
+
+		get("stateless?name=two");
+		assertTrue(tester.getLastResponseAsString().contains("two"));
+		assertEquals(2, instances);
+		assertEquals(2, cache.getCount());
+	}
+
+	/**
+	 * A client with a valid copy gets 304 (Not Modified).
+	 */
+	@Test
+	public void notModified()
+	{
+		get("stateless?name=one");
+		String eTag = tester.getLastResponse().getHeader("ETag");
+
+		tester.addRequestHeader("If-None-Match", eTag);
+		get("stateless?name=one");
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+		assertEquals("", tester.getLastResponseAsString());
+		assertEquals(1, cache.getNotModified());
+
+		tester.addRequestHeader("If-None-Match", "\"other\"");
+		get("stateless?name=one");
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(1, instances);
+	}
+
+	/**
+	 * Invalidated responses are rendered again.
+	 */
+	@Test
+	public void invalidate()
+	{
+		get("stateless?name=one");
+		cache.invalidate(StatelessPage.class);
+		assertEquals(0, cache.getCount());
+
+		get("stateless?name=one");
+		assertEquals(2, instances);
+		assertEquals(1, cache.getCount());
+	}
+
+	/**
+	 * Stateful pages are not cached.
+	 */
+	@Test
+	public void statefulPage()
+	{
+		get("stateful");
+		get("stateful");
+		assertEquals(2, instances);
+		assertEquals(0, cache.getCount());
+	}
+
+	/**
+	 * POST requests are not cached.
+	 */
+	@Test
+	public void post()
+	{
+		tester.getRequest().setMethod("POST");
+		tester.executeUrl("stateless?name=one");
+		assertEquals(0, cache.getCount());
+	}
+
+	/**
+	 * The headers set by the page are stored with the response.
+	 */
+	@Test
+	public void headers()
+	{
+		get("headers");
+		assertEquals("DENY", tester.getLastResponse().getHeader("X-Frame-Options"));
+		assertEquals(1, cache.getCount());
+
+		get("headers");
+		assertEquals(1, instances);
+		assertEquals("DENY", tester.getLastResponse().getHeader("X-Frame-Options"));
+		assertEquals("de", tester.getLastResponse().getHeader("Content-Language"));
+		assertEquals("no-cache", tester.getLastResponse().getHeader("Cache-Control"));
+	}
+
+	/**
+	 * Responses are neither served nor stored while the session has feedback messages.
+	 */
+	@Test
+	public void feedback()
+	{
+		get("stateless?name=one");
+
+		tester.getSession().info("saved");
+		get("stateless?name=one");
+		assertEquals(2, instances);
+		get("stateless?name=two");
+		assertEquals(3, instances);
+		assertEquals(1, cache.getCount());
+
+		tester.getSession().getFeedbackMessages().clear();
+		get("stateless?name=one");
+		assertEquals(3, instances);
+	}
+
+	/**
+	 * Responses are neither served nor stored while the session id is encoded into the urls.
+	 */
+	@Test
+	public void urlRewriting()
+	{
+		get("stateless?name=one");
+
+		// the servlet container has a session for a client without cookies
+		tester.getHttpSession().setTemporary(false);
+		tester.setRequest(new MockHttpServletRequest(tester.getApplication(),
+			tester.getHttpSession(), tester.getServletContext())
+		{
+			@Override
+			public boolean isRequestedSessionIdFromCookie()
+			{
+				return false;
+			}
+
+			@Override
+			public boolean isRequestedSessionIdFromURL()
+			{
+				return true;
+			}
+		});
+		get("stateless?name=one");
+		assertEquals(2, instances);
+		assertEquals(0, cache.getHits());
+
+		tester.setRequest(new MockHttpServletRequest(tester.getApplication(),
+			tester.getHttpSession(), tester.getServletContext())
+		{
+			@Override
+			public boolean isRequestedSessionIdFromCookie()
+			{
+				return false;
+			}
+		});
+		get("stateless?name=two");
+		assertEquals(3, instances);
+		assertEquals(1, cache.getCount());
+	}
+
+	private void get(String url)
+	{
+		tester.getRequest().setMethod("GET");
+		tester.executeUrl(url);
+	}
+
+	private static abstract class TestPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		public TestPage(PageParameters parameters)
+		{
+			super(parameters);
+			instances++;
+
+			add(new Label("name", parameters.get("name").toString("")));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream("<html><body><span wicket:id=\"name\"></span></body></html>");
+		}
+	}
+
+	/**
+	 * A stateless page.
+	 */
+	public static class StatelessPage extends TestPage
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param parameters
+		 */
+		public StatelessPage(PageParameters parameters)
+		{
+			super(parameters);
+		}
+	}
+
+	/**
+	 * A stateful page.
+	 */
+	public static class StatefulPage extends TestPage
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param parameters
+		 */
+		public StatefulPage(PageParameters parameters)
+		{
+			super(parameters);
+			setStatelessHint(false);
+		}
+	}
+
+	/**
+	 * A stateless page setting headers.
+	 */
+	public static class HeaderPage extends TestPage
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param parameters
+		 */
+		public HeaderPage(PageParameters parameters)
+		{
+			super(parameters);
+		}
+
+		@Override
+		protected void setHeaders(WebResponse response)
+		{
+			super.setHeaders(response);
+			response.setHeader("X-Frame-Options", "SAMEORIGIN");
+			response.setHeader("X-Frame-Options", "DENY");
+			response.addHeader("Content-Language", "de");
+		}
+	}
+}
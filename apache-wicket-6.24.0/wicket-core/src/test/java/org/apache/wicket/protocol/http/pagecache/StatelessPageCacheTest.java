@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http.pagecache;
+
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StatelessPageCache}
+ */
+public class StatelessPageCacheTest extends Assert
+{
+	/**
+	 * The least recently used responses are evicted.
+	 */
+	@Test
+	public void evictLeastRecentlyUsed()
+	{
+		StatelessPageCache cache = new StatelessPageCache(Bytes.bytes(10), Duration.ONE_HOUR);
+		cache.put("a", String.class, "text/html", new byte[4]);
+		cache.put("b", String.class, "text/html", new byte[4]);
+		assertNotNull(cache.get("a"));
+
+		cache.put("c", String.class, "text/html", new byte[4]);
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(8, cache.getSize());
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Responses bigger than the cache are not stored.
+	 */
+	@Test
+	public void tooBig()
+	{
+		StatelessPageCache cache = new StatelessPageCache(Bytes.bytes(10), Duration.ONE_HOUR);
+		cache.put("a", String.class, "text/html", new byte[11]);
+		assertEquals(0, cache.getCount());
+		assertEquals(0, cache.getSize());
+	}
+
+	/**
+	 * Responses expire after their time to live.
+	 */
+	@Test
+	public void expire()
+	{
+		StatelessPageCache cache = new StatelessPageCache(Bytes.bytes(10), Duration.NONE);
+		cache.put("a", String.class, "text/html", new byte[4]);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getSize());
+	}
+
+	/**
+	 * Equal content gets equal ETags.
+	 */
+	@Test
+	public void eTag()
+	{
+		StatelessPageCache cache = new StatelessPageCache(Bytes.bytes(100), Duration.ONE_HOUR);
+		String a = cache.put("a", String.class, "text/html", "abc".getBytes()).getETag();
+		String b = cache.put("b", String.class, "text/html", "abc".getBytes()).getETag();
+		String c = cache.put("c", String.class, "text/html", "abd".getBytes()).getETag();
+		assertEquals(a, b);
+		assertFalse(a.equals(c));
+		assertTrue(a.startsWith("\"") && a.endsWith("\""));
+	}
+}
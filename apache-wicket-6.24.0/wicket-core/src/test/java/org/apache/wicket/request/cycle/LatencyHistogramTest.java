@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}
+ */
+public class LatencyHistogramTest extends Assert
+{
+	/**
+	 * Every value falls into a bucket whose bounds enclose it.
+	 */
+	@Test
+	public void buckets()
+	{
+		for (long micros : new long[] { 0, 1, 15, 16, 17, 31, 32, 100, 1000, 123456789,
+				Long.MAX_VALUE })
+		{
+			int bucket = LatencyHistogram.bucketOf(micros);
+			assertTrue(micros + " <= " + LatencyHistogram.upperBoundOf(bucket),
+				micros <= LatencyHistogram.upperBoundOf(bucket));
+			if (bucket > 0)
+			{
+				assertTrue(micros > LatencyHistogram.upperBoundOf(bucket - 1));
+			}
+		}
+
+		assertEquals(15, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(15)));
+		assertEquals(17, LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(16)));
+		assertEquals(Long.MAX_VALUE,
+			LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+	}
+
+	/**
+	 * Percentiles are accurate to the width of a bucket.
+	 */
+	@Test
+	public void percentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+
+		for (int micros = 1; micros <= 1000; micros++)
+		{
+			histogram.record(micros);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getTotal());
+		assertEquals(500, histogram.getMean());
+		assertEquals(1000, histogram.getMax());
+
+		assertEquals(1, histogram.getPercentile(0));
+		assertWithin(500, histogram.getPercentile(50));
+		assertWithin(990, histogram.getPercentile(99));
+		assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	private void assertWithin(long expected, long actual)
+	{
+		assertTrue(expected + " ~ " + actual, actual >= expected && actual <= expected * 1.125);
+	}
+}
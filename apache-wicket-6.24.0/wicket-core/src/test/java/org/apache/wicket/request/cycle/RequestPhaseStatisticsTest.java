@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.cycle;
+
+import org.apache.wicket.IPageManagerProvider;
+import org.apache.wicket.MockPageWithLink;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.page.IPageManager;
+import org.apache.wicket.page.IPageManagerContext;
+import org.apache.wicket.page.PageStoreManager;
+import org.apache.wicket.pageStore.DefaultPageStore;
+import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.versioning.InMemoryPageStore;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestPhaseStatistics}
+ */
+public class RequestPhaseStatisticsTest extends WicketTestCase
+{
+	@Override
+	protected WicketTester newWicketTester(final WebApplication app)
+	{
+		return new WicketTester(app)
+		{
+			@Override
+			protected IPageManagerProvider newTestPageManagerProvider()
+			{
+				return new IPageManagerProvider()
+				{
+					@Override
+					public IPageManager get(IPageManagerContext pageManagerContext)
+					{
+						IPageStore pageStore = new DefaultPageStore(new JavaSerializer(
+							app.getApplicationKey()), new InMemoryPageStore(), 4);
+						return new PageStoreManager(app.getName(), pageStore, pageManagerContext);
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Requests are not recorded by default.
+	 */
+	@Test
+	public void disabled()
+	{
+		tester.startPage(newPage());
+
+		assertTrue(tester.getApplication().getRequestPhaseStatistics().getKeys().isEmpty());
+	}
+
+	/**
+	 * The phases of requests are recorded per handler and page.
+	 */
+	@Test
+	public void recordRequestPhases()
+	{
+		tester.getApplication().getRequestCycleSettings().setRecordRequestPhases(true);
+
+		MockPageWithLink page = tester.startPage(newPage());
+		tester.executeUrl(tester.urlFor((Link<?>)page.get(MockPageWithLink.LINK_ID)));
+
+		RequestPhaseStatistics statistics = tester.getApplication().getRequestPhaseStatistics();
+
+		String listenerKey = "ListenerInterfaceRequestHandler " + MockPageWithLink.class.getName();
+		assertTrue(statistics.getKeys().toString(), statistics.getKeys().contains(listenerKey));
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.REQUEST).getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.MAPPING).getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.PAGE_RESOLUTION)
+			.getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.LISTENER_INVOCATION)
+			.getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.RENDER).getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.HEADER_RENDER)
+			.getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.PAGE_SERIALIZATION)
+			.getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.PAGE_STORE).getCount());
+		assertEquals(1, statistics.getHistogram(listenerKey, RequestPhase.DETACH).getCount());
+
+		String renderKey = "RenderPageRequestHandler " + MockPageWithLink.class.getName();
+		assertTrue(statistics.getKeys().toString(), statistics.getKeys().contains(renderKey));
+		assertEquals(0, statistics.getHistogram(renderKey, RequestPhase.LISTENER_INVOCATION)
+			.getCount());
+
+		statistics.clear();
+		assertTrue(statistics.getKeys().isEmpty());
+	}
+
+	/**
+	 * Requests beyond the maximum number of groups are counted in the other group.
+	 */
+	@Test
+	public void maxKeys()
+	{
+		tester.getApplication().getRequestCycleSettings().setRecordRequestPhases(true);
+		RequestPhaseStatistics statistics = tester.getApplication().getRequestPhaseStatistics();
+		statistics.setMaxKeys(1);
+
+		MockPageWithLink page = tester.startPage(newPage());
+		tester.executeUrl(tester.urlFor((Link<?>)page.get(MockPageWithLink.LINK_ID)));
+
+		assertEquals(2, statistics.getKeys().size());
+		assertTrue(statistics.getKeys().contains(RequestPhaseStatistics.OTHER));
+		assertEquals(1, statistics.getHistogram(RequestPhaseStatistics.OTHER, RequestPhase.RENDER)
+			.getCount());
+	}
+
+	private static MockPageWithLink newPage()
+	{
+		MockPageWithLink page = new MockPageWithLink();
+		page.add(new Link<Void>(MockPageWithLink.LINK_ID)
+		{
+			@Override
+			public void onClick()
+			{
+			}
+		});
+		return page;
+	}
+}
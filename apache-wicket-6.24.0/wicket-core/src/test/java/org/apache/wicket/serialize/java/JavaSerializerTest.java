@@ -43,6 +43,27 @@ import org.junit.Test;
  */
 public class JavaSerializerTest extends WicketTestCase
 {
+	/**
+	 * The stream of the caller is not closed
+	 */
+	@Test
+	public void streamLeftOpen()
+	{
+		final boolean[] closed = new boolean[1];
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		{
+			@Override
+			public void close() throws IOException
+			{
+				closed[0] = true;
+			}
+		};
+		JavaSerializer serializer = new JavaSerializer("JavaSerializerTest");
+		assertTrue(serializer.serialize("text", out));
+		assertFalse(closed[0]);
+		assertEquals("text", serializer.deserialize(out.toByteArray()));
+	}
+
 	/**
 	 * https://issues.apache.org/jira/browse/WICKET-4812
 	 *
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.registry;
+
+import java.io.InvalidClassException;
+import java.io.Serializable;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.core.util.objects.checker.NotDetachedModelChecker;
+import org.apache.wicket.markup.html.WebComponent;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.serialize.java.JavaSerializer;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ClassRegistrySerializer}
+ */
+public class ClassRegistrySerializerTest extends WicketTestCase
+{
+	/**
+	 * A component tree is read back unchanged and is smaller than with {@link JavaSerializer}
+	 */
+	@Test
+	public void componentTree()
+	{
+		Person person = new Person();
+		person.name = "name";
+		WebMarkupContainer container = new WebMarkupContainer("container");
+		container.add(new Label("label", Model.of("text")));
+		container.add(new Label("name", new PropertyModel<String>(person, "name")));
+		container.setOutputMarkupId(true);
+
+		ClassRegistrySerializer serializer = new ClassRegistrySerializer(
+			"ClassRegistrySerializerTest");
+		byte[] bytes = serializer.serialize(container);
+		byte[] javaBytes = new JavaSerializer("ClassRegistrySerializerTest").serialize(container);
+		assertTrue(bytes.length < javaBytes.length);
+
+		WebMarkupContainer read = (WebMarkupContainer)serializer.deserialize(bytes);
+		assertEquals("container", read.getId());
+		assertTrue(read.getOutputMarkupId());
+		assertEquals("text", read.get("label").getDefaultModelObject());
+		assertEquals("name", read.get("name").getDefaultModelObject());
+	}
+
+	/**
+	 * Registered and not registered classes are read back
+	 */
+	@Test
+	public void unregisteredClass()
+	{
+		ClassRegistry registry = new ClassRegistry();
+		assertEquals(-1, registry.getId(Person.class));
+
+		ClassRegistrySerializer serializer = new ClassRegistrySerializer(
+			"ClassRegistrySerializerTest", registry);
+		PageParameters parameters = new PageParameters().add("a", "b").set(0, "c");
+		Person person = new Person();
+		person.name = "name";
+		person.parameters = parameters;
+
+		Person read = (Person)serializer.deserialize(serializer.serialize(person));
+		assertEquals("name", read.name);
+		assertEquals(parameters, read.parameters);
+
+		// registering the class makes its descriptor smaller
+		int length = serializer.serialize(person).length;
+		registry.register(Person.class);
+		assertTrue(serializer.serialize(person).length < length);
+	}
+
+	/**
+	 * Data written with another class registered with the same id is not misread
+	 */
+	@Test
+	public void incompatibleRegistry()
+	{
+		ClassRegistry registry = new ClassRegistry();
+		registry.register(Person.class);
+		ClassRegistry otherRegistry = new ClassRegistry();
+		otherRegistry.register(Animal.class);
+		assertEquals(registry.getId(Person.class), otherRegistry.getId(Animal.class));
+
+		Person person = new Person();
+		person.name = "name";
+		byte[] bytes = new ClassRegistrySerializer("ClassRegistrySerializerTest", registry).serialize(
+			person);
+
+		try
+		{
+			new ClassRegistrySerializer("ClassRegistrySerializerTest", otherRegistry).deserialize(
+				bytes);
+			fail("the data of a Person must not be read as an Animal");
+		}
+		catch (RuntimeException e)
+		{
+			assertTrue(e.getCause() instanceof InvalidClassException);
+		}
+	}
+
+	/**
+	 * The checkers are run for the serialized objects
+	 */
+	@Test
+	public void checkers()
+	{
+		ClassRegistrySerializer serializer = new ClassRegistrySerializer(
+			"ClassRegistrySerializerTest", new ClassRegistry(), new NotDetachedModelChecker());
+
+		IModel<String> model = new NotDetachedModel();
+		model.getObject();
+		WebComponent component = new WebComponent("id", model);
+		assertNull(serializer.serialize(component));
+	}
+
+	/**
+	 * Objects which are not serializable are reported
+	 */
+	@Test
+	public void notSerializable()
+	{
+		ClassRegistrySerializer serializer = new ClassRegistrySerializer(
+			"ClassRegistrySerializerTest");
+		assertNull(serializer.serialize(new WebComponent("id", Model.of(new Person()))
+		{
+			private final Object member = new Object();
+		}));
+	}
+
+	private static class Person implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+
+		private PageParameters parameters;
+	}
+
+	private static class Animal implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private String name;
+
+		private PageParameters parameters;
+	}
+
+	private static class NotDetachedModel extends LoadableDetachableModel<String>
+	{
+		@Override
+		protected String load()
+		{
+			return "loaded";
+		}
+	}
+}
@@ -58,6 +58,20 @@ public class DebugDiskDataStore extends DiskDataStore
 
 	}
 
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 */
+	public DebugDiskDataStore(String applicationName, File fileStoreFolder,
+		Bytes maxSizePerSession, int fileChannelPoolCapacity)
+	{
+		super(applicationName, fileStoreFolder, maxSizePerSession, fileChannelPoolCapacity);
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -45,6 +45,7 @@ public class DebugPageManagerProvider extends DefaultPageManagerProvider
 	/**
 	 * @return the extended with debug information {@link DiskDataStore}
 	 */
+	@Override
 	public DebugDiskDataStore getDataStore()
 	{
 		return dataStore;
@@ -56,8 +57,9 @@ public class DebugPageManagerProvider extends DefaultPageManagerProvider
 		IStoreSettings storeSettings = application.getStoreSettings();
 		File fileStoreFolder = storeSettings.getFileStoreFolder();
 		Bytes maxSizePerSession = storeSettings.getMaxSizePerSession();
+		int fileChannelPoolCapacity = storeSettings.getFileChannelPoolCapacity();
 		dataStore = new DebugDiskDataStore(application.getName(), fileStoreFolder,
-			maxSizePerSession);
+			maxSizePerSession, fileChannelPoolCapacity);
 		return dataStore;
 	}
 }
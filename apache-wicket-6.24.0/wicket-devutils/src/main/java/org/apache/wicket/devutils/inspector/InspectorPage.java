@@ -48,6 +48,7 @@ public final class InspectorPage extends DevUtilsPage
 	public InspectorPage(final PageParameters parameters)
 	{
 		add(new ApplicationView("application", Application.get()));
+		add(new MarkupCacheView("markupCache", Application.get()));
 		add(new SessionView("session", Session.get()));
 		IManageablePage page = null;
 		try
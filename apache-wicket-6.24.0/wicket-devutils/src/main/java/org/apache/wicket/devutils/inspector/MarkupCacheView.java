@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.devutils.inspector;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.devutils.DevUtilsPanel;
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.MarkupCache;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.util.lang.Bytes;
+
+/**
+ * A Wicket panel that shows the statistics of the markup cache of an application. It is hidden
+ * if the application doesn't use a {@link MarkupCache}.
+ */
+public final class MarkupCacheView extends DevUtilsPanel
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param id
+	 *            Component id
+	 * @param application
+	 *            The application whose markup cache to view
+	 */
+	public MarkupCacheView(final String id, final Application application)
+	{
+		super(id);
+
+		IMarkupCache markupCache = application.getMarkupSettings()
+			.getMarkupFactory()
+			.getMarkupCache();
+		Bytes maxSize = application.getMarkupSettings().getMarkupCacheMaxSize();
+
+		add(new Label("entries", "" + markupCache.size()));
+		add(new Label("maxSize", (maxSize != null) ? maxSize.toString() : "unbounded"));
+
+		if (markupCache instanceof MarkupCache)
+		{
+			MarkupCache cache = (MarkupCache)markupCache;
+			add(new Label("hits", "" + cache.getHitCount()));
+			add(new Label("misses", "" + cache.getMissCount()));
+			add(new Label("loads", "" + cache.getLoadCount()));
+			add(new Label("loadTime", "" + cache.getLoadTime()));
+			add(new Label("evictions", "" + cache.getEvictionCount()));
+		}
+		else
+		{
+			add(new Label("hits"));
+			add(new Label("misses"));
+			add(new Label("loads"));
+			add(new Label("loadTime"));
+			add(new Label("evictions"));
+			setVisible(false);
+		}
+	}
+}
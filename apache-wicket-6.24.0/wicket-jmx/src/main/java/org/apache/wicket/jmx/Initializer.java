@@ -31,6 +31,7 @@ import javax.management.ObjectName;
 
 import org.apache.wicket.IInitializer;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.protocol.http.WebApplication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -196,6 +197,15 @@ public class Initializer implements IInitializer
 			RequestLogger sessionsBean = new RequestLogger(application);
 			ObjectName sessionsBeanName = new ObjectName(domain + ":type=RequestLogger");
 			register(sessionsBean, sessionsBeanName);
+
+			register(new RequestPhaseStatistics(application), new ObjectName(domain +
+				":type=RequestPhaseStatistics"));
+
+			if (application instanceof WebApplication)
+			{
+				register(new StoredResponses((WebApplication)application), new ObjectName(domain +
+					":type=StoredResponses"));
+			}
 		}
 		catch (MalformedObjectNameException e)
 		{
@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.jmx;
 
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.MarkupCache;
+import org.apache.wicket.util.lang.Bytes;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -81,6 +85,66 @@ public class MarkupSettings implements MarkupSettingsMBean
 		return application.getMarkupSettings().getDefaultMarkupEncoding();
 	}
 
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheHits()
+	 */
+	@Override
+	public long getMarkupCacheHits()
+	{
+		MarkupCache cache = getMarkupCache();
+		return (cache != null) ? cache.getHitCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMisses()
+	 */
+	@Override
+	public long getMarkupCacheMisses()
+	{
+		MarkupCache cache = getMarkupCache();
+		return (cache != null) ? cache.getMissCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheLoads()
+	 */
+	@Override
+	public long getMarkupCacheLoads()
+	{
+		MarkupCache cache = getMarkupCache();
+		return (cache != null) ? cache.getLoadCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheLoadTime()
+	 */
+	@Override
+	public String getMarkupCacheLoadTime()
+	{
+		MarkupCache cache = getMarkupCache();
+		return (cache != null) ? cache.getLoadTime().toString() : null;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheEvictions()
+	 */
+	@Override
+	public long getMarkupCacheEvictions()
+	{
+		MarkupCache cache = getMarkupCache();
+		return (cache != null) ? cache.getEvictionCount() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getMarkupCacheMaxSize()
+	 */
+	@Override
+	public String getMarkupCacheMaxSize()
+	{
+		Bytes maxSize = application.getMarkupSettings().getMarkupCacheMaxSize();
+		return (maxSize != null) ? maxSize.toString() : null;
+	}
+
 	/**
 	 * @see org.apache.wicket.jmx.MarkupSettingsMBean#getStripComments()
 	 */
@@ -161,4 +225,22 @@ public class MarkupSettings implements MarkupSettingsMBean
 	{
 		application.getMarkupSettings().setStripWicketTags(stripWicketTags);
 	}
+
+	/**
+	 * @return the application's markup cache, null if it isn't a {@link MarkupCache}
+	 */
+	private MarkupCache getMarkupCache()
+	{
+		ThreadContext.setApplication(application);
+
+		try
+		{
+			IMarkupCache cache = application.getMarkupSettings().getMarkupFactory().getMarkupCache();
+			return (cache instanceof MarkupCache) ? (MarkupCache)cache : null;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
 }
@@ -57,6 +57,42 @@ public interface MarkupSettingsMBean
 	 */
 	String getDefaultMarkupEncoding();
 
+	/**
+	 * @return the number of lookups which found the markup in the markup cache, -1 if the
+	 *         application doesn't use a {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	long getMarkupCacheHits();
+
+	/**
+	 * @return the number of lookups which didn't find the markup in the markup cache, -1 if the
+	 *         application doesn't use a {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	long getMarkupCacheMisses();
+
+	/**
+	 * @return the number of markup loaded by the markup cache, -1 if the application doesn't use
+	 *         a {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	long getMarkupCacheLoads();
+
+	/**
+	 * @return the total time spent loading markup, null if the application doesn't use a
+	 *         {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	String getMarkupCacheLoadTime();
+
+	/**
+	 * @return the number of markup evicted from the markup cache, -1 if the application doesn't
+	 *         use a {@link org.apache.wicket.markup.MarkupCache}
+	 */
+	long getMarkupCacheEvictions();
+
+	/**
+	 * @return the maximum size of the markup cache, null if unbounded
+	 * @see IMarkupSettings#setMarkupCacheMaxSize(org.apache.wicket.util.lang.Bytes)
+	 */
+	String getMarkupCacheMaxSize();
+
 	/**
 	 * @return Returns the stripComments.
 	 * @see IMarkupSettings#setStripComments(boolean)
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.request.cycle.LatencyHistogram;
+import org.apache.wicket.request.cycle.RequestPhase;
+
+
+/**
+ * Exposes {@link org.apache.wicket.request.cycle.RequestPhaseStatistics} for JMX.
+ */
+public class RequestPhaseStatistics implements RequestPhaseStatisticsMBean
+{
+	private final org.apache.wicket.Application application;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param application
+	 *            The application
+	 */
+	public RequestPhaseStatistics(final org.apache.wicket.Application application)
+	{
+		this.application = application;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getRecordRequestPhases()
+	 */
+	@Override
+	public boolean getRecordRequestPhases() throws IOException
+	{
+		return application.getRequestCycleSettings().getRecordRequestPhases();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#setRecordRequestPhases(boolean)
+	 */
+	@Override
+	public void setRecordRequestPhases(final boolean recordRequestPhases) throws IOException
+	{
+		application.getRequestCycleSettings().setRecordRequestPhases(recordRequestPhases);
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getGroups()
+	 */
+	@Override
+	public String[] getGroups() throws IOException
+	{
+		return getStatistics().getKeys().toArray(new String[0]);
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getPhases()
+	 */
+	@Override
+	public String[] getPhases() throws IOException
+	{
+		RequestPhase[] phases = RequestPhase.values();
+		String[] names = new String[phases.length];
+		for (int i = 0; i < phases.length; i++)
+		{
+			names[i] = phases[i].name();
+		}
+		return names;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getSummary()
+	 */
+	@Override
+	public String[] getSummary() throws IOException
+	{
+		org.apache.wicket.request.cycle.RequestPhaseStatistics statistics = getStatistics();
+
+		List<String> lines = new ArrayList<String>();
+		for (String group : statistics.getKeys())
+		{
+			for (RequestPhase phase : RequestPhase.values())
+			{
+				LatencyHistogram histogram = statistics.getHistogram(group, phase);
+				if (histogram == null || histogram.getCount() == 0)
+				{
+					continue;
+				}
+
+				lines.add(group + " " + phase + ": count=" + histogram.getCount() + ", mean=" +
+					histogram.getMean() + ", p50=" + histogram.getPercentile(50) + ", p90=" +
+					histogram.getPercentile(90) + ", p99=" + histogram.getPercentile(99) +
+					", p99.9=" + histogram.getPercentile(99.9) + ", max=" + histogram.getMax());
+			}
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getCount(java.lang.String,
+	 *      java.lang.String)
+	 */
+	@Override
+	public long getCount(final String group, final String phase) throws IOException
+	{
+		LatencyHistogram histogram = getHistogram(group, phase);
+		return histogram != null ? histogram.getCount() : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#getPercentile(java.lang.String,
+	 *      java.lang.String, double)
+	 */
+	@Override
+	public long getPercentile(final String group, final String phase, final double percentile)
+		throws IOException
+	{
+		LatencyHistogram histogram = getHistogram(group, phase);
+		return histogram != null ? histogram.getPercentile(percentile) : 0;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.RequestPhaseStatisticsMBean#clear()
+	 */
+	@Override
+	public void clear() throws IOException
+	{
+		getStatistics().clear();
+	}
+
+	private LatencyHistogram getHistogram(final String group, final String phase)
+	{
+		return getStatistics().getHistogram(group, RequestPhase.valueOf(phase));
+	}
+
+	private org.apache.wicket.request.cycle.RequestPhaseStatistics getStatistics()
+	{
+		return application.getRequestPhaseStatistics();
+	}
+}
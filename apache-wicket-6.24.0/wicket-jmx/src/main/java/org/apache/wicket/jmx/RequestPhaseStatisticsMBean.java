@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+
+/**
+ * Latencies of the request phases, see
+ * {@link org.apache.wicket.request.cycle.RequestPhaseStatistics}.
+ * <p>
+ * Requests are grouped by the type of their handler and the page or resource they address, all
+ * latencies are in microseconds.
+ */
+public interface RequestPhaseStatisticsMBean
+{
+	/**
+	 * @return Whether the phases of requests are recorded
+	 * @throws IOException
+	 */
+	boolean getRecordRequestPhases() throws IOException;
+
+	/**
+	 * @param recordRequestPhases
+	 *            Whether the phases of requests are recorded
+	 * @throws IOException
+	 */
+	void setRecordRequestPhases(boolean recordRequestPhases) throws IOException;
+
+	/**
+	 * @return the groups of recorded requests
+	 * @throws IOException
+	 */
+	String[] getGroups() throws IOException;
+
+	/**
+	 * @return the names of all request phases
+	 * @throws IOException
+	 */
+	String[] getPhases() throws IOException;
+
+	/**
+	 * Gets a line per group and phase with the count, mean, 50th, 90th, 99th and 99.9th percentile
+	 * and the maximum of the latencies.
+	 * 
+	 * @return the summary of all recorded requests
+	 * @throws IOException
+	 */
+	String[] getSummary() throws IOException;
+
+	/**
+	 * @param group
+	 *            the group of requests
+	 * @param phase
+	 *            the name of the phase
+	 * @return the number of recorded requests of the group that went through the phase
+	 * @throws IOException
+	 */
+	long getCount(String group, String phase) throws IOException;
+
+	/**
+	 * @param group
+	 *            the group of requests
+	 * @param phase
+	 *            the name of the phase
+	 * @param percentile
+	 *            the percentile between {@code 0} and {@code 100}
+	 * @return the percentile of the latencies in microseconds
+	 * @throws IOException
+	 */
+	long getPercentile(String group, String phase, double percentile) throws IOException;
+
+	/**
+	 * Removes all recorded requests.
+	 * 
+	 * @throws IOException
+	 */
+	void clear() throws IOException;
+}
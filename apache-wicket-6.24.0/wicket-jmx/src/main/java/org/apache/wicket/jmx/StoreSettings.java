@@ -17,6 +17,13 @@
 package org.apache.wicket.jmx;
 
 import org.apache.wicket.Application;
+import org.apache.wicket.DefaultPageManagerProvider;
+import org.apache.wicket.IPageManagerProvider;
+import org.apache.wicket.pageStore.AsynchronousDataStore;
+import org.apache.wicket.pageStore.DeltaDataStore;
+import org.apache.wicket.pageStore.DiskDataStore;
+import org.apache.wicket.pageStore.FileChannelPool;
+import org.apache.wicket.pageStore.IDataStore;
 
 /**
  * Exposes Application's StoreSettings for JMX.
@@ -41,6 +48,12 @@ public class StoreSettings implements StoreSettingsMBean
 		return application.getStoreSettings().getInmemoryCacheSize();
 	}
 
+	@Override
+	public long getInmemoryCacheMaxBytes()
+	{
+		return application.getStoreSettings().getInmemoryCacheMaxBytes().bytes();
+	}
+
 	@Override
 	public long getMaxSizePerSession()
 	{
@@ -59,10 +72,161 @@ public class StoreSettings implements StoreSettingsMBean
 		return application.getStoreSettings().getAsynchronousQueueCapacity();
 	}
 
+	@Override
+	public int getAsynchronousThreadCount()
+	{
+		return application.getStoreSettings().getAsynchronousThreadCount();
+	}
+
+	@Override
+	public int getAsynchronousQueueSize()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getQueueSize() : 0;
+	}
+
+	@Override
+	public long getAsynchronousStoredCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getStoredCount() : 0;
+	}
+
+	@Override
+	public long getAsynchronousFallbackCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getSynchronousStoreCount() : 0;
+	}
+
+	@Override
+	public long getAsynchronousCoalescedCount()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getCoalescedCount() : 0;
+	}
+
+	@Override
+	public long getAsynchronousAverageStoreTime()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getAverageStoreTime() : 0;
+	}
+
+	@Override
+	public long getAsynchronousMaxStoreTime()
+	{
+		AsynchronousDataStore dataStore = getAsynchronousDataStore();
+		return dataStore != null ? dataStore.getMaxStoreTime() : 0;
+	}
+
 	@Override
 	public boolean isAsynchronous()
 	{
 		return application.getStoreSettings().isAsynchronous();
 	}
 
+	@Override
+	public int getFileChannelPoolCapacity()
+	{
+		return application.getStoreSettings().getFileChannelPoolCapacity();
+	}
+
+	@Override
+	public int getFileChannelPoolSize()
+	{
+		FileChannelPool pool = getFileChannelPool();
+		return pool != null ? pool.getSize() : 0;
+	}
+
+	@Override
+	public long getFileChannelPoolHits()
+	{
+		FileChannelPool pool = getFileChannelPool();
+		return pool != null ? pool.getHits() : 0;
+	}
+
+	@Override
+	public long getFileChannelPoolMisses()
+	{
+		FileChannelPool pool = getFileChannelPool();
+		return pool != null ? pool.getMisses() : 0;
+	}
+
+	@Override
+	public int getMaxDeltaChainLength()
+	{
+		return application.getStoreSettings().getMaxDeltaChainLength();
+	}
+
+	@Override
+	public long getDeltaSnapshotCount()
+	{
+		DeltaDataStore dataStore = getDeltaDataStore();
+		return dataStore != null ? dataStore.getSnapshotCount() : 0;
+	}
+
+	@Override
+	public long getDeltaCount()
+	{
+		DeltaDataStore dataStore = getDeltaDataStore();
+		return dataStore != null ? dataStore.getDeltaCount() : 0;
+	}
+
+	@Override
+	public long getDeltaStoredBytes()
+	{
+		DeltaDataStore dataStore = getDeltaDataStore();
+		return dataStore != null ? dataStore.getStoredBytes() : 0;
+	}
+
+	@Override
+	public long getDeltaWrittenBytes()
+	{
+		DeltaDataStore dataStore = getDeltaDataStore();
+		return dataStore != null ? dataStore.getWrittenBytes() : 0;
+	}
+
+	/**
+	 * @return the application's {@link DeltaDataStore} or {@code null}
+	 */
+	private DeltaDataStore getDeltaDataStore()
+	{
+		IPageManagerProvider provider = application.getPageManagerProvider();
+		if (provider instanceof DefaultPageManagerProvider)
+		{
+			return ((DefaultPageManagerProvider)provider).getDeltaDataStore();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the application's {@link AsynchronousDataStore} or {@code null}
+	 */
+	private AsynchronousDataStore getAsynchronousDataStore()
+	{
+		IPageManagerProvider provider = application.getPageManagerProvider();
+		if (provider instanceof DefaultPageManagerProvider)
+		{
+			return ((DefaultPageManagerProvider)provider).getAsynchronousDataStore();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the file channel pool of the application's {@link DiskDataStore} or {@code null}
+	 */
+	private FileChannelPool getFileChannelPool()
+	{
+		IPageManagerProvider provider = application.getPageManagerProvider();
+		if (provider instanceof DefaultPageManagerProvider)
+		{
+			IDataStore dataStore = ((DefaultPageManagerProvider)provider).getDataStore();
+			if (dataStore instanceof DiskDataStore)
+			{
+				return ((DiskDataStore)dataStore).getFileChannelPool();
+			}
+		}
+		return null;
+	}
 }
@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.jmx;
 
+import org.apache.wicket.pageStore.DeltaDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 
@@ -31,6 +32,12 @@ public interface StoreSettingsMBean
 	 */
 	int getInmemoryCacheSize();
 
+	/**
+	 * @return the maximum size in bytes of the page instances which will be stored in the
+	 *         application scoped cache
+	 */
+	long getInmemoryCacheMaxBytes();
+
 	/**
 	 * @return maximum page size. After this size is exceeded, the {@link DiskDataStore} will start
 	 *         saving the pages at the beginning of file.
@@ -48,9 +55,91 @@ public interface StoreSettingsMBean
 	 */
 	int getAsynchronousQueueCapacity();
 
+	/**
+	 * @return the number of threads which store the pages asynchronously
+	 */
+	int getAsynchronousThreadCount();
+
+	/**
+	 * @return the number of pages waiting to be stored asynchronously
+	 */
+	int getAsynchronousQueueSize();
+
+	/**
+	 * @return the number of pages stored asynchronously
+	 */
+	long getAsynchronousStoredCount();
+
+	/**
+	 * @return the number of pages stored synchronously because the asynchronous queue was full
+	 */
+	long getAsynchronousFallbackCount();
+
+	/**
+	 * @return the number of pages which replaced the data of the same page still waiting in the
+	 *         asynchronous queue
+	 */
+	long getAsynchronousCoalescedCount();
+
+	/**
+	 * @return the average time in nanoseconds needed to store a page asynchronously
+	 */
+	long getAsynchronousAverageStoreTime();
+
+	/**
+	 * @return the longest time in nanoseconds needed to store a page asynchronously
+	 */
+	long getAsynchronousMaxStoreTime();
+
 	/**
 	 * @return {@code true} when the HTTP worker thread doesn't wait for the storing of the page's
 	 *         bytes in {@link IDataStore}
 	 */
 	boolean isAsynchronous();
+
+	/**
+	 * @return the maximum number of session data files which {@link DiskDataStore} keeps open
+	 *         between accesses
+	 */
+	int getFileChannelPoolCapacity();
+
+	/**
+	 * @return the number of session data files which {@link DiskDataStore} currently keeps open
+	 */
+	int getFileChannelPoolSize();
+
+	/**
+	 * @return how many times {@link DiskDataStore} found the session data file already open
+	 */
+	long getFileChannelPoolHits();
+
+	/**
+	 * @return how many times {@link DiskDataStore} had to open the session data file
+	 */
+	long getFileChannelPoolMisses();
+
+	/**
+	 * @return the maximum number of pages stored as deltas against the same snapshot
+	 */
+	int getMaxDeltaChainLength();
+
+	/**
+	 * @return the number of snapshots written by {@link DeltaDataStore}
+	 */
+	long getDeltaSnapshotCount();
+
+	/**
+	 * @return the number of pages stored as a delta against an existing snapshot
+	 */
+	long getDeltaCount();
+
+	/**
+	 * @return the number of bytes of the pages stored in {@link DeltaDataStore}
+	 */
+	long getDeltaStoredBytes();
+
+	/**
+	 * @return the number of bytes written by {@link DeltaDataStore} to the wrapped data store
+	 */
+	long getDeltaWrittenBytes();
 }
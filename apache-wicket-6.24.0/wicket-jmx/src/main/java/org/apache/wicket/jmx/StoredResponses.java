@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+
+import org.apache.wicket.protocol.http.IStoredResponsesStatistics;
+import org.apache.wicket.protocol.http.WebApplication;
+
+
+/**
+ * Exposes the {@link IStoredResponsesStatistics} of a {@link WebApplication} for JMX.
+ */
+public class StoredResponses implements StoredResponsesMBean
+{
+	private final WebApplication application;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param application
+	 *            The application
+	 */
+	public StoredResponses(final WebApplication application)
+	{
+		this.application = application;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getSize()
+	 */
+	@Override
+	public int getSize() throws IOException
+	{
+		return getStatistics().getSize();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getBytes()
+	 */
+	@Override
+	public long getBytes() throws IOException
+	{
+		return getStatistics().getBytes();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getMaxBytes()
+	 */
+	@Override
+	public long getMaxBytes() throws IOException
+	{
+		return getStatistics().getMaxBytes();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getHits()
+	 */
+	@Override
+	public long getHits() throws IOException
+	{
+		return getStatistics().getHits();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getMisses()
+	 */
+	@Override
+	public long getMisses() throws IOException
+	{
+		return getStatistics().getMisses();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getExpirations()
+	 */
+	@Override
+	public long getExpirations() throws IOException
+	{
+		return getStatistics().getExpirations();
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.StoredResponsesMBean#getEvictions()
+	 */
+	@Override
+	public long getEvictions() throws IOException
+	{
+		return getStatistics().getEvictions();
+	}
+
+	private IStoredResponsesStatistics getStatistics()
+	{
+		return application.getStoredResponsesStatistics();
+	}
+}
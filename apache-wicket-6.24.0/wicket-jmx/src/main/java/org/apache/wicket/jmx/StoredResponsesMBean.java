@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.jmx;
+
+import java.io.IOException;
+
+/**
+ * Usage of the buffered responses stored for the redirect to buffer render strategy, see
+ * {@link org.apache.wicket.protocol.http.IStoredResponsesStatistics}.
+ */
+public interface StoredResponsesMBean
+{
+	/**
+	 * @return the number of responses currently stored
+	 * @throws IOException
+	 */
+	int getSize() throws IOException;
+
+	/**
+	 * @return the estimated number of bytes used by the stored responses
+	 * @throws IOException
+	 */
+	long getBytes() throws IOException;
+
+	/**
+	 * @return the maximum number of bytes the stored responses may use
+	 * @throws IOException
+	 */
+	long getMaxBytes() throws IOException;
+
+	/**
+	 * @return how often a stored response was picked up
+	 * @throws IOException
+	 */
+	long getHits() throws IOException;
+
+	/**
+	 * @return how often a response was asked for but was not stored (anymore)
+	 * @throws IOException
+	 */
+	long getMisses() throws IOException;
+
+	/**
+	 * @return the number of responses removed because their lifetime was over
+	 * @throws IOException
+	 */
+	long getExpirations() throws IOException;
+
+	/**
+	 * @return the number of responses removed, or not stored at all, to stay within the bounds
+	 * @throws IOException
+	 */
+	long getEvictions() throws IOException;
+}
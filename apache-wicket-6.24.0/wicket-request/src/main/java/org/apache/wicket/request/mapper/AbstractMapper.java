@@ -230,4 +230,26 @@ public abstract class AbstractMapper implements IRequestMapper
 		return res;
 	}
 
+	/**
+	 * Gets the leading segments of the mount path which are neither placeholders nor optional
+	 * placeholders.
+	 * 
+	 * @param mountSegments
+	 *            the segments of the mount path
+	 * @return the fixed leading segments
+	 * @see IIndexedRequestMapper#getFixedSegments()
+	 */
+	protected String[] getFixedSegments(final String[] mountSegments)
+	{
+		int count = 0;
+		while ((count < mountSegments.length) && (getPlaceholder(mountSegments[count]) == null) &&
+			(getOptionalPlaceholder(mountSegments[count]) == null))
+		{
+			count++;
+		}
+		String[] res = new String[count];
+		System.arraycopy(mountSegments, 0, res, 0, count);
+		return res;
+	}
+
 }
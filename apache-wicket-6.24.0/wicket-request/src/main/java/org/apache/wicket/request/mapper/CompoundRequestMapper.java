@@ -18,10 +18,14 @@ package org.apache.wicket.request.mapper;
 
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.wicket.request.IRequestHandler;
@@ -36,6 +40,12 @@ import org.slf4j.LoggerFactory;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * {@link IIndexedRequestMapper}s are indexed by the fixed leading segments of the urls they map and
+ * by the key of the request handlers they map, so only the mappers which can map a request or a
+ * request handler are asked for it. A mapper is indexed only if its class declares
+ * {@link IIndexedRequestMapper} itself, subclasses of an indexed mapper are asked for every request
+ * and handler unless they declare the interface again.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -100,29 +110,252 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		}
 	}
 
+	/**
+	 * A mapper with its position in the list of the mappers
+	 */
+	private static final class IndexEntry
+	{
+		private final IRequestMapper mapper;
+
+		private final int position;
+
+		private IndexEntry(final IRequestMapper mapper, final int position)
+		{
+			this.mapper = mapper;
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Orders index entries by their position in the list of the mappers
+	 */
+	private static final Comparator<IndexEntry> POSITION_ORDER = new Comparator<IndexEntry>()
+	{
+		@Override
+		public int compare(final IndexEntry o1, final IndexEntry o2)
+		{
+			return (o1.position < o2.position) ? -1 : ((o1.position > o2.position) ? 1 : 0);
+		}
+	};
+
+	/**
+	 * A node of the segment trie: the mappers whose fixed segments lead to this node
+	 */
+	private static final class SegmentNode
+	{
+		private final List<IndexEntry> entries = new ArrayList<IndexEntry>(1);
+
+		private Map<String, SegmentNode> children;
+
+		private SegmentNode child(final String segment)
+		{
+			if (children == null)
+			{
+				children = new HashMap<String, SegmentNode>();
+			}
+			SegmentNode child = children.get(segment);
+			if (child == null)
+			{
+				child = new SegmentNode();
+				children.put(segment, child);
+			}
+			return child;
+		}
+
+		private SegmentNode getChild(final String segment)
+		{
+			return (children != null) ? children.get(segment) : null;
+		}
+	}
+
+	/**
+	 * Checks whether a mapper is indexed. A subclass of an {@link IIndexedRequestMapper} may map
+	 * other urls or handlers, e.g. by overriding how it parses the url, so it must declare the
+	 * interface itself to be indexed.
+	 * 
+	 * @param mapper
+	 * @return true, if the class of the mapper declares {@link IIndexedRequestMapper}
+	 */
+	private static boolean isIndexed(final IRequestMapper mapper)
+	{
+		return (mapper instanceof IIndexedRequestMapper) &&
+			Arrays.asList(mapper.getClass().getInterfaces()).contains(IIndexedRequestMapper.class);
+	}
+
+	/**
+	 * An immutable index of the mappers, rebuilt after mappers are added or removed
+	 */
+	private static final class MapperIndex
+	{
+		/** the mappers by the fixed leading segments of the urls they map */
+		private final SegmentNode root = new SegmentNode();
+
+		/** the mappers by the key of the request handlers they map */
+		private final Map<Object, List<IndexEntry>> keyed = new HashMap<Object, List<IndexEntry>>();
+
+		/** the mappers mapping request handlers with any key */
+		private final List<IndexEntry> unkeyed = new ArrayList<IndexEntry>();
+
+		private MapperIndex(final List<IRequestMapper> mappers)
+		{
+			int position = 0;
+			for (IRequestMapper mapper : mappers)
+			{
+				IndexEntry entry = new IndexEntry(mapper, position++);
+
+				SegmentNode node = root;
+				Object key = null;
+				if (isIndexed(mapper))
+				{
+					IIndexedRequestMapper indexed = (IIndexedRequestMapper)mapper;
+					for (String segment : indexed.getFixedSegments())
+					{
+						node = node.child(segment);
+					}
+					key = indexed.getHandlerKey();
+				}
+				node.entries.add(entry);
+
+				if (key == null)
+				{
+					unkeyed.add(entry);
+				}
+				else
+				{
+					List<IndexEntry> entries = keyed.get(key);
+					if (entries == null)
+					{
+						entries = new ArrayList<IndexEntry>(1);
+						keyed.put(key, entries);
+					}
+					entries.add(entry);
+				}
+			}
+		}
+
+		/**
+		 * @param segments
+		 *            the segments of a url
+		 * @return the mappers whose fixed segments are a prefix of the url, ordered by their
+		 *         position
+		 */
+		private List<IndexEntry> getCandidates(final List<String> segments)
+		{
+			List<IndexEntry> candidates = new ArrayList<IndexEntry>(root.entries);
+			int merged = 1;
+			SegmentNode node = root;
+			for (int i = 0; i < segments.size(); i++)
+			{
+				node = node.getChild(segments.get(i));
+				if (node == null)
+				{
+					break;
+				}
+				if (node.entries.isEmpty() == false)
+				{
+					candidates.addAll(node.entries);
+					merged++;
+				}
+			}
+			if (merged > 1)
+			{
+				Collections.sort(candidates, POSITION_ORDER);
+			}
+			return candidates;
+		}
+
+		/**
+		 * @param key
+		 *            the key of a request handler
+		 * @return the mappers which can map handlers with the key, ordered by their position
+		 */
+		private List<IndexEntry> getCandidates(final Object key)
+		{
+			List<IndexEntry> entries = keyed.get(key);
+			if (entries == null)
+			{
+				return unkeyed;
+			}
+
+			// merge the sorted lists
+			List<IndexEntry> candidates = new ArrayList<IndexEntry>(unkeyed.size() +
+				entries.size());
+			int i = 0;
+			int j = 0;
+			while (i < unkeyed.size() && j < entries.size())
+			{
+				if (unkeyed.get(i).position < entries.get(j).position)
+				{
+					candidates.add(unkeyed.get(i++));
+				}
+				else
+				{
+					candidates.add(entries.get(j++));
+				}
+			}
+			candidates.addAll(unkeyed.subList(i, unkeyed.size()));
+			candidates.addAll(entries.subList(j, entries.size()));
+			return candidates;
+		}
+	}
+
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<IRequestMapper>();
 
+	/** the index of the mappers, <code>null</code> until it is built after a change */
+	private volatile MapperIndex index;
+
 	@Override
 	public CompoundRequestMapper add(final IRequestMapper mapper)
 	{
-		mappers.add(0, mapper);
+		synchronized (mappers)
+		{
+			mappers.add(0, mapper);
+			index = null;
+		}
 		return this;
 	}
 
 	@Override
 	public CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
-		mappers.remove(mapper);
+		synchronized (mappers)
+		{
+			mappers.remove(mapper);
+			index = null;
+		}
 		return this;
 	}
 
+	/**
+	 * @return the index of the current mappers
+	 */
+	private MapperIndex getIndex()
+	{
+		MapperIndex current = index;
+		if (current == null)
+		{
+			synchronized (mappers)
+			{
+				current = index;
+				if (current == null)
+				{
+					current = new MapperIndex(mappers);
+					index = current;
+				}
+			}
+		}
+		return current;
+	}
+
 	/**
 	 * Searches the registered {@link IRequestMapper}s to find one that can map the {@link Request}.
 	 * Each registered {@link IRequestMapper} is asked to provide its compatibility score. Then the
 	 * mappers are asked to map the request in order depending on the provided compatibility
 	 * score.
 	 * <p>
-	 * The mapper with highest compatibility score which can map the request is returned.
+	 * The mapper with highest compatibility score which can map the request is returned. An
+	 * {@link IIndexedRequestMapper} whose fixed segments don't match the url of the request is
+	 * skipped.
 	 * 
 	 * @param request
 	 * @return RequestHandler for the request or <code>null</code> if no mapper for the request is
@@ -131,12 +364,28 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	@Override
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<MapperWithScore>(mappers.size());
+		List<String> segments = request.getUrl().getSegments();
 
-		for (IRequestMapper mapper : mappers)
+		List<MapperWithScore> list;
+		if (segments.isEmpty())
 		{
-			int score = mapper.getCompatibilityScore(request);
-			list.add(new MapperWithScore(mapper, score));
+			// mounted pages may be mapped to the home page, ask all mappers
+			list = new ArrayList<MapperWithScore>(mappers.size());
+			for (IRequestMapper mapper : mappers)
+			{
+				int score = mapper.getCompatibilityScore(request);
+				list.add(new MapperWithScore(mapper, score));
+			}
+		}
+		else
+		{
+			List<IndexEntry> candidates = getIndex().getCandidates(segments);
+			list = new ArrayList<MapperWithScore>(candidates.size());
+			for (IndexEntry candidate : candidates)
+			{
+				int score = candidate.mapper.getCompatibilityScore(request);
+				list.add(new MapperWithScore(candidate.mapper, score));
+			}
 		}
 
 		Collections.sort(list);
@@ -202,7 +451,8 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 * no more mappers are left.
 	 * <p>
 	 * The mappers are searched in reverse order as they have been registered. More recently
-	 * registered mappers have bigger priority.
+	 * registered mappers have bigger priority. If the handler has a key, an
+	 * {@link IIndexedRequestMapper} with another key is skipped.
 	 * 
 	 * @param handler
 	 * @return Url for the handler or <code>null</code> if no mapper for the handler is found.
@@ -210,14 +460,43 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	@Override
 	public Url mapHandler(final IRequestHandler handler)
 	{
-		for (IRequestMapper mapper : mappers)
+		Object key = getHandlerKey(handler);
+		if (key == null)
 		{
-			Url url = mapper.mapHandler(handler);
-			if (url != null)
+			for (IRequestMapper mapper : mappers)
 			{
-				return url;
+				Url url = mapper.mapHandler(handler);
+				if (url != null)
+				{
+					return url;
+				}
 			}
 		}
+		else
+		{
+			for (IndexEntry candidate : getIndex().getCandidates(key))
+			{
+				Url url = candidate.mapper.mapHandler(handler);
+				if (url != null)
+				{
+					return url;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the key of a request handler, which is compared to the
+	 * {@link IIndexedRequestMapper#getHandlerKey() key} of the registered mappers to find the
+	 * mappers which can map the handler. This implementation returns <code>null</code>, so all
+	 * mappers are asked to map any handler.
+	 * 
+	 * @param handler
+	 * @return the key of the handler, <code>null</code> if it has none
+	 */
+	protected Object getHandlerKey(final IRequestHandler handler)
+	{
 		return null;
 	}
 
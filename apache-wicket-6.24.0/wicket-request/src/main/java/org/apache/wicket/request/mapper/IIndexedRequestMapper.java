@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+
+/**
+ * A {@link IRequestMapper} which tells which urls and request handlers it can map, so that a
+ * {@link CompoundRequestMapper} asks it only for the requests and handlers it can map.
+ * <p>
+ * Only mappers whose class declares this interface itself are indexed. A subclass of an indexed
+ * mapper, e.g. one which overrides how the url is parsed, is asked for every request and handler
+ * unless it declares the interface again, and by that the fixed segments and the handler key
+ * still apply to it.
+ * 
+ * @see CompoundRequestMapper
+ */
+public interface IIndexedRequestMapper extends IRequestMapper
+{
+	/**
+	 * Gets the leading segments of the urls this mapper maps. The mapper must return a
+	 * compatibility score of 0 and must not map any request whose url has segments but doesn't
+	 * start with these segments.
+	 * 
+	 * @return the fixed leading segments of the urls, an empty array if the urls can start with
+	 *         any segment
+	 * @see Url#getSegments()
+	 */
+	String[] getFixedSegments();
+
+	/**
+	 * Gets the key of the request handlers this mapper maps, e.g. the class of the mounted page.
+	 * The mapper must not map any handler with another key.
+	 * 
+	 * @return the key of the handlers, <code>null</code> if the mapper maps handlers with any key
+	 * @see CompoundRequestMapper#getHandlerKey(IRequestHandler)
+	 */
+	Object getHandlerKey();
+}
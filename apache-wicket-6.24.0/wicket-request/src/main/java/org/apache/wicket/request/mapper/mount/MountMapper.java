@@ -21,6 +21,7 @@ import org.apache.wicket.request.IRequestMapper;
 import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.mapper.AbstractMapper;
+import org.apache.wicket.request.mapper.IIndexedRequestMapper;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Checks;
 import org.apache.wicket.util.string.StringValue;
@@ -30,7 +31,7 @@ import org.apache.wicket.util.string.StringValue;
  * 
  * @author igor.vaynberg
  */
-public class MountMapper extends AbstractMapper
+public class MountMapper extends AbstractMapper implements IIndexedRequestMapper
 {
 	private final String[] mountSegments;
 	private final IMountedRequestMapper mapper;
@@ -172,6 +173,26 @@ public class MountMapper extends AbstractMapper
 		return mount.getUrl();
 	}
 
+	/**
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getFixedSegments()
+	 */
+	@Override
+	public String[] getFixedSegments()
+	{
+		return getFixedSegments(mountSegments);
+	}
+
+	/**
+	 * The mounted mapper can map handlers with any key.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexedRequestMapper#getHandlerKey()
+	 */
+	@Override
+	public Object getHandlerKey()
+	{
+		return null;
+	}
+
 	public IRequestMapper getInnerRequestMapper()
 	{
 	    return innerRequestMapper;
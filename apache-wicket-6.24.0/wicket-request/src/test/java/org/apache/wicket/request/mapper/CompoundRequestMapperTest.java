@@ -16,6 +16,13 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import org.apache.wicket.request.IRequestCycle;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
 import org.junit.Assert;
 import org.junit.Test;
@@ -47,4 +54,248 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	/**
+	 * Only the mappers whose fixed segments match the url are asked to map a request, with the
+	 * same precedence as without index.
+	 */
+	@Test
+	public void mapRequestWithFixedSegments()
+	{
+		TestMapper any = new TestMapper(new String[0], null, 0, "any");
+		TestMapper foo = new TestMapper(new String[] { "foo" }, null, 1, "foo");
+		TestMapper fooBar = new TestMapper(new String[] { "foo", "bar" }, null, 2, "foo/bar");
+		TestMapper fooBar2 = new TestMapper(new String[] { "foo", "bar" }, null, 2, "foo/bar 2");
+		TestMapper baz = new TestMapper(new String[] { "baz" }, null, 1, "baz");
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(any).add(foo).add(fooBar).add(fooBar2).add(baz);
+
+		assertSame(fooBar2.handler, compound.mapRequest(request("foo/bar/x")));
+		assertEquals(1, any.requests);
+		assertEquals(1, foo.requests);
+		assertEquals(1, fooBar.requests);
+		assertEquals(1, fooBar2.requests);
+		assertEquals(0, baz.requests);
+
+		assertSame(foo.handler, compound.mapRequest(request("foo/baz")));
+		assertEquals(1, fooBar.requests);
+		assertEquals(0, baz.requests);
+
+		assertSame(any.handler, compound.mapRequest(request("bar")));
+		assertEquals(0, baz.requests);
+
+		compound.remove(fooBar2);
+		assertSame(fooBar.handler, compound.mapRequest(request("foo/bar")));
+	}
+
+	/**
+	 * All mappers are asked to map the request to the home page
+	 */
+	@Test
+	public void mapRequestWithoutSegments()
+	{
+		TestMapper any = new TestMapper(new String[0], null, 0, "any");
+		TestMapper foo = new TestMapper(new String[] { "foo" }, null, 1, "foo");
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(any).add(foo);
+
+		assertSame(foo.handler, compound.mapRequest(request("")));
+		assertEquals(1, any.requests);
+		assertEquals(1, foo.requests);
+	}
+
+	/**
+	 * Only the mappers with the key of the handler or without key are asked to map a handler, the
+	 * most recently registered first.
+	 */
+	@Test
+	public void mapHandlerWithKey()
+	{
+		TestMapper any = new TestMapper(new String[0], null, 0, "any");
+		TestMapper a = new TestMapper(new String[0], "a", 0, "a");
+		TestMapper a2 = new TestMapper(new String[0], "a", 0, "a2");
+		TestMapper b = new TestMapper(new String[0], "b", 0, "b");
+		TestMapper none = new TestMapper(new String[0], null, 0, null);
+
+		CompoundRequestMapper compound = new CompoundRequestMapper()
+		{
+			@Override
+			protected Object getHandlerKey(IRequestHandler handler)
+			{
+				return ((TestHandler)handler).key;
+			}
+		};
+		compound.add(any).add(a).add(a2).add(b).add(none);
+
+		assertEquals(Url.parse("a2"), compound.mapHandler(new TestHandler("a")));
+		assertEquals(1, none.handlers);
+		assertEquals(0, b.handlers);
+		assertEquals(0, a.handlers);
+		assertEquals(0, any.handlers);
+
+		assertEquals(Url.parse("any"), compound.mapHandler(new TestHandler("c")));
+		assertEquals(2, none.handlers);
+		assertEquals(0, b.handlers);
+		assertEquals(1, any.handlers);
+
+		// a handler without key is offered to all mappers
+		assertEquals(Url.parse("b"), compound.mapHandler(new TestHandler(null)));
+		assertEquals(3, none.handlers);
+		assertEquals(1, b.handlers);
+	}
+
+	/**
+	 * A subclass of an indexed mapper is asked for every request and handler, unless it declares
+	 * the interface again.
+	 */
+	@Test
+	public void subclassNotIndexed()
+	{
+		TestMapper subclass = new SubclassMapper(new String[] { "foo" }, "a", 1, "foo");
+		TestMapper indexed = new IndexedSubclassMapper(new String[] { "bar" }, "a", 1, "bar");
+
+		CompoundRequestMapper compound = new CompoundRequestMapper()
+		{
+			@Override
+			protected Object getHandlerKey(IRequestHandler handler)
+			{
+				return ((TestHandler)handler).key;
+			}
+		};
+		compound.add(subclass).add(indexed);
+
+		compound.mapRequest(request("baz"));
+		assertEquals(1, subclass.requests);
+		assertEquals(0, indexed.requests);
+
+		compound.mapHandler(new TestHandler("b"));
+		assertEquals(1, subclass.handlers);
+		assertEquals(0, indexed.handlers);
+	}
+
+	private static Request request(final String url)
+	{
+		return new Request()
+		{
+			@Override
+			public Url getUrl()
+			{
+				return Url.parse(url);
+			}
+
+			@Override
+			public Url getClientUrl()
+			{
+				return getUrl();
+			}
+
+			@Override
+			public Locale getLocale()
+			{
+				return Locale.ENGLISH;
+			}
+
+			@Override
+			public Charset getCharset()
+			{
+				return Charset.forName("UTF-8");
+			}
+
+			@Override
+			public Object getContainerRequest()
+			{
+				return null;
+			}
+		};
+	}
+
+	private static class TestHandler implements IRequestHandler
+	{
+		private final Object key;
+
+		private TestHandler(Object key)
+		{
+			this.key = key;
+		}
+
+		@Override
+		public void respond(IRequestCycle requestCycle)
+		{
+		}
+
+		@Override
+		public void detach(IRequestCycle requestCycle)
+		{
+		}
+	}
+
+	private static class TestMapper implements IIndexedRequestMapper
+	{
+		private final String[] fixedSegments;
+		private final Object key;
+		private final int score;
+		private final Url url;
+		private final IRequestHandler handler;
+		private int requests;
+		private int handlers;
+
+		private TestMapper(String[] fixedSegments, Object key, int score, String url)
+		{
+			this.fixedSegments = fixedSegments;
+			this.key = key;
+			this.score = score;
+			this.url = (url != null) ? Url.parse(url) : null;
+			handler = (url != null) ? new TestHandler(key) : null;
+		}
+
+		@Override
+		public int getCompatibilityScore(Request request)
+		{
+			requests++;
+			return score;
+		}
+
+		@Override
+		public IRequestHandler mapRequest(Request request)
+		{
+			return handler;
+		}
+
+		@Override
+		public Url mapHandler(IRequestHandler requestHandler)
+		{
+			handlers++;
+			return url;
+		}
+
+		@Override
+		public String[] getFixedSegments()
+		{
+			return fixedSegments;
+		}
+
+		@Override
+		public Object getHandlerKey()
+		{
+			return key;
+		}
+	}
+
+	private static class SubclassMapper extends TestMapper
+	{
+		private SubclassMapper(String[] fixedSegments, Object key, int score, String url)
+		{
+			super(fixedSegments, key, score, url);
+		}
+	}
+
+	private static class IndexedSubclassMapper extends TestMapper implements IIndexedRequestMapper
+	{
+		private IndexedSubclassMapper(String[] fixedSegments, Object key, int score, String url)
+		{
+			super(fixedSegments, key, score, url);
+		}
+	}
 }
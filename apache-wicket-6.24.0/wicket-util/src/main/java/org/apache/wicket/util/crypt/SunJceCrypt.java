@@ -21,6 +21,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -36,6 +39,10 @@ import org.apache.wicket.util.lang.Args;
  * implementation is based around Sun's security providers and uses the <a
  * href="http://www.ietf.org/rfc/rfc2898.txt">PBEWithMD5AndDES</a> method to encrypt and decrypt the
  * data.
+ * <p>
+ * The secret key is derived only once per key and initialized ciphers are pooled after use, so
+ * a single instance - as handed out by {@link CachingSunJceCryptFactory} - does not pay for the
+ * key derivation and cipher initialization on every call.
  * 
  * @author Juergen Donnerstag
  */
@@ -58,6 +65,15 @@ public class SunJceCrypt extends AbstractCrypt
 	/** The name of encryption method (cipher) */
 	private final String cryptMethod;
 
+	/** The secret key derived from the current key, if any */
+	private volatile DerivedKey derivedKey;
+
+	/** Initialized ciphers for {@link Cipher#ENCRYPT_MODE} */
+	private final CipherPool encryptCiphers = new CipherPool();
+
+	/** Initialized ciphers for {@link Cipher#DECRYPT_MODE} */
+	private final CipherPool decryptCiphers = new CipherPool();
+
 	/**
 	 * Constructor
 	 */
@@ -93,10 +109,82 @@ public class SunJceCrypt extends AbstractCrypt
 	protected byte[] crypt(final byte[] input, final int mode)
 		throws GeneralSecurityException
 	{
-		SecretKey key = generateSecretKey();
+		SecretKey key = getSecretKey();
 		AlgorithmParameterSpec spec = createParameterSpec();
-		Cipher ciph = createCipher(key, spec, mode);
-		return ciph.doFinal(input);
+
+		CipherPool pool = getCipherPool(mode);
+		PooledCipher pooled = pool != null ? pool.poll(key, spec) : null;
+		if (pooled == null)
+		{
+			pooled = new PooledCipher(createCipher(key, spec, mode), key, spec);
+		}
+
+		byte[] result = pooled.cipher.doFinal(input);
+
+		// a cipher is reset to its initialized state by doFinal(), a failed one is dropped
+		if (pool != null)
+		{
+			pool.offer(pooled, getCipherPoolSize());
+		}
+		return result;
+	}
+
+	/**
+	 * @param mode
+	 *            the crypt mode
+	 * @return the pool of ciphers for the given mode, or {@code null} if ciphers of that mode are
+	 *         not pooled
+	 */
+	private CipherPool getCipherPool(final int mode)
+	{
+		switch (mode)
+		{
+			case Cipher.ENCRYPT_MODE :
+				return encryptCiphers;
+			case Cipher.DECRYPT_MODE :
+				return decryptCiphers;
+			default :
+				return null;
+		}
+	}
+
+	/**
+	 * Gets the maximum number of idle ciphers kept per crypt mode for reuse. The default keeps
+	 * twice as many as there are processors.
+	 * <p>
+	 * Override and return {@code 0} if the configured cipher cannot be reused after
+	 * {@link Cipher#doFinal(byte[])}, e.g. an authenticated cipher that forbids reusing the same
+	 * key and parameters for encryption.
+	 * 
+	 * @return the maximum number of pooled ciphers per crypt mode
+	 */
+	protected int getCipherPoolSize()
+	{
+		return 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Gets the secret key for the current key, generating it only if the key changed since the
+	 * last call.
+	 * 
+	 * @return the secret key
+	 * @throws NoSuchAlgorithmException
+	 *             unable to find encryption algorithm specified
+	 * @throws InvalidKeySpecException
+	 *             invalid encryption key
+	 * @see #generateSecretKey()
+	 */
+	private SecretKey getSecretKey() throws NoSuchAlgorithmException, InvalidKeySpecException
+	{
+		String key = getKey();
+
+		DerivedKey derived = derivedKey;
+		if (derived == null || derived.key.equals(key) == false)
+		{
+			derived = new DerivedKey(key, generateSecretKey());
+			derivedKey = derived;
+		}
+		return derived.secretKey;
 	}
 
 	/**
@@ -153,4 +241,91 @@ public class SunJceCrypt extends AbstractCrypt
 	{
 		return new PBEKeySpec(getKey().toCharArray());
 	}
+
+	/**
+	 * A secret key along with the key it was derived from.
+	 */
+	private static final class DerivedKey
+	{
+		private final String key;
+
+		private final SecretKey secretKey;
+
+		private DerivedKey(final String key, final SecretKey secretKey)
+		{
+			this.key = key;
+			this.secretKey = secretKey;
+		}
+	}
+
+	/**
+	 * An initialized cipher along with the key and parameters it was initialized with.
+	 */
+	private static final class PooledCipher
+	{
+		private final Cipher cipher;
+
+		private final SecretKey key;
+
+		private final AlgorithmParameterSpec spec;
+
+		private PooledCipher(final Cipher cipher, final SecretKey key,
+			final AlgorithmParameterSpec spec)
+		{
+			this.cipher = cipher;
+			this.key = key;
+			this.spec = spec;
+		}
+	}
+
+	/**
+	 * A bounded pool of idle ciphers.
+	 */
+	private static final class CipherPool
+	{
+		private final Queue<PooledCipher> ciphers = new ConcurrentLinkedQueue<PooledCipher>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		/**
+		 * Takes an idle cipher initialized with the given key and parameters. Ciphers initialized
+		 * with another key are dropped.
+		 * 
+		 * @param key
+		 * @param spec
+		 * @return the cipher or {@code null} if none is idle
+		 */
+		private PooledCipher poll(final SecretKey key, final AlgorithmParameterSpec spec)
+		{
+			PooledCipher pooled;
+			while ((pooled = ciphers.poll()) != null)
+			{
+				size.decrementAndGet();
+
+				if (pooled.key == key && pooled.spec == spec)
+				{
+					return pooled;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Returns a cipher to the pool unless the pool is full.
+		 * 
+		 * @param pooled
+		 * @param maxSize
+		 */
+		private void offer(final PooledCipher pooled, final int maxSize)
+		{
+			if (size.incrementAndGet() <= maxSize)
+			{
+				ciphers.offer(pooled);
+			}
+			else
+			{
+				size.decrementAndGet();
+			}
+		}
+	}
 }
@@ -252,17 +252,16 @@ public final class FullyBufferedReader
 
 		if (closeBracketIndex != -1)
 		{
-			CharSequence tagCode = getSubstring(startPos, closeBracketIndex + 1);
-
-			for (int i = 0; i < tagCode.length(); i++)
+			// scan the input in place, without copying the tag code
+			for (int i = startPos; i <= closeBracketIndex; i++)
 			{
-				char currentChar = tagCode.charAt(i);
-				char previousTag = tagCode.charAt(i > 0 ? i - 1 : 0);
+				char currentChar = input.charAt(i);
+				char previousTag = input.charAt(i > startPos ? i - 1 : startPos);
 
 				if (quotationChar == 0 && (currentChar == '\'' || currentChar == '\"'))
 				{// I'm entering inside a quoted string. Set quotationChar
 					quotationChar = currentChar;
-					countLinesTo(startPos + i);
+					countLinesTo(i);
 				}
 				else if (currentChar == quotationChar && previousTag != '\\')
 				{ // I'm out of quotes, reset quotationChar
@@ -21,6 +21,12 @@ import static org.hamcrest.CoreMatchers.is;
 
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.Cipher;
 
@@ -44,6 +50,73 @@ public class SunJceCryptTest extends Assert
 		assertThat(new String(decrypted), is(equalTo(input)));
 	}
 
+	/**
+	 * Ciphers are reused, a changed key has to be picked up nevertheless
+	 */
+	@Test
+	public void changedKey()
+	{
+		SunJceCrypt crypt = new SunJceCrypt();
+		crypt.setKey("key1");
+		String encrypted1 = crypt.encryptUrlSafe("input");
+		assertEquals(encrypted1, crypt.encryptUrlSafe("input"));
+		assertEquals("input", crypt.decryptUrlSafe(encrypted1));
+
+		crypt.setKey("key2");
+		String encrypted2 = crypt.encryptUrlSafe("input");
+		assertFalse(encrypted1.equals(encrypted2));
+		assertEquals("input", crypt.decryptUrlSafe(encrypted2));
+		assertFalse("input".equals(crypt.decryptUrlSafe(encrypted1)));
+
+		SunJceCrypt other = new SunJceCrypt();
+		other.setKey("key2");
+		assertEquals(encrypted2, other.encryptUrlSafe("input"));
+	}
+
+	/**
+	 * Pooled ciphers must not be shared between threads
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void concurrentEncryption() throws Exception
+	{
+		final SunJceCrypt crypt = new SunJceCrypt();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++)
+			{
+				final int thread = t;
+				results.add(executor.submit(new Callable<Boolean>()
+				{
+					@Override
+					public Boolean call()
+					{
+						for (int i = 0; i < 200; i++)
+						{
+							String input = "input-" + thread + "-" + i;
+							if (input.equals(crypt.decryptUrlSafe(crypt.encryptUrlSafe(input))) == false)
+							{
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results)
+			{
+				assertTrue(result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * Uses <em>PBEWithMD5AndTripleDES</em> if unlimited cryptography is installed
 	 */